@@ -0,0 +1,171 @@
+package com.mygdx.game;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.I18NBundle;
+import com.mygdx.game.states.game.standard.architecture.Resource;
+import com.mygdx.game.states.game.standard.map.TilesetConfig;
+import com.mygdx.game.states.game.standard.map.Tileset;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Headless game environment for benchmarks of code that
+ * needs libgdx. Starts a headless application, so files and
+ * natives are available, with a GL that does nothing, and
+ * loads the resources item factory needs. Assets are read
+ * from working directory (android/assets, set by jmh task)
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public final class GdxFixture {
+
+    private static boolean started = false; // if environment was started
+
+    private GdxFixture() {}
+
+    /**
+     * Starts headless environment, if not started yet
+     */
+    public static synchronized void start() {
+        if(started)
+            return;
+
+        new HeadlessApplication(new ApplicationAdapter() {});
+        Gdx.gl = Gdx.gl20 = nullGL();
+
+        // resources read by item factory
+        Resource.equipSheet = new Texture(1024, 1024, Pixmap.Format.RGBA8888);
+        I18NBundle lang = I18NBundle.createBundle(Gdx.files.internal("language/language"), new Locale("pt", "BR"));
+        try {
+            Field langBundle = Main.class.getDeclaredField("langBundle");
+            langBundle.setAccessible(true);
+            langBundle.set(Main.getInstance(), lang);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not set language bundle", e);
+        }
+
+        started = true;
+    }
+
+    /**
+     * Creates a GL that does nothing. Every handle created
+     * is valid and every shader compiles and links, so
+     * batches and textures can be created without a display
+     * @return the GL that does nothing
+     */
+    private static GL20 nullGL() {
+        return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] {GL20.class},
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if((name.equals("glGetShaderiv") || name.equals("glGetProgramiv")) &&
+                        ((Integer) args[1] == GL20.GL_COMPILE_STATUS || (Integer) args[1] == GL20.GL_LINK_STATUS))
+                    ((IntBuffer) args[2]).put(0, 1);
+
+                Class<?> type = method.getReturnType();
+                if(type == int.class)
+                    return 1;
+                if(type == boolean.class)
+                    return false;
+                if(type == float.class)
+                    return 0f;
+                if(type == String.class)
+                    return "";
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Reads the layers of a map file, as map reader does
+     * @param map the map file name, without extension
+     * @return the tile ids of each layer
+     */
+    public static String[] readLayers(String map) {
+        NodeList layers = parse(map).getElementsByTagName("layer");
+        String[] data = new String[layers.getLength()];
+        for(int i = 0; i < data.length; i++) {
+            String content = layers.item(i).getTextContent();
+            data[i] = content.substring(1, content.length());
+        }
+        return data;
+    }
+
+    /**
+     * Reads the tilesets of a map file, as map reader does
+     * @param map the map file name, without extension
+     * @return the tilesets of map
+     */
+    public static ArrayList<Tileset> readTilesets(String map) {
+        NodeList nodes = parse(map).getElementsByTagName("tileset");
+        ArrayList<Tileset> tilesets = new ArrayList<Tileset>();
+        for(int i = 0; i < nodes.getLength(); i++) {
+            Element ts = (Element) nodes.item(i);
+            tilesets.add(TilesetConfig.getInstance().createTileset(text(ts, "name"), Integer.parseInt(text(ts, "tilesize")),
+                    "imgs/tilesets/" + text(ts, "source"), Integer.parseInt(text(ts, "firstid")),
+                    Integer.parseInt(text(ts, "tilecount"))));
+        }
+        return tilesets;
+    }
+
+    /**
+     * Reads an integer property of a map file
+     * @param map   the map file name, without extension
+     * @param tag   the property tag
+     * @return the value of property
+     */
+    public static int readProperty(String map, String tag) {
+        return Integer.parseInt(parse(map).getElementsByTagName(tag).item(0).getTextContent());
+    }
+
+    private static String text(Element element, String tag) {
+        return element.getElementsByTagName(tag).item(0).getTextContent();
+    }
+
+    private static Document parse(String map) {
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(Gdx.files.internal("maps/" + map + ".m2d").read());
+            doc.getDocumentElement().normalize();
+            return doc;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read map " + map, e);
+        }
+    }
+
+    /**
+     * Sprite batch that only counts draws,
+     * isolating the cost of who draws
+     */
+    public static class CountingBatch extends SpriteBatch {
+        private long draws; // number of draws requested
+
+        @Override
+        public void draw(TextureRegion region, float x, float y) {
+            draws++;
+        }
+
+        public long getDraws() {return draws;}
+    }
+}
@@ -0,0 +1,137 @@
+package com.mygdx.game.messages;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary message codec with java serialization
+ * of message contents, for a login reply with a full player
+ * state (largest message the server sends) and a full save
+ * (most frequent message clients send)
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private static final String GAME_LISTENER = "class com.mygdx.game.states.game.standard.controller.Game";
+    private static final String MENU_LISTENER = "class com.mygdx.game.states.menu.MenuInitial";
+
+    private MessageContent login; // login reply with full player state
+    private MessageContent save; // full save request
+
+    private byte[] loginFrame; // login reply encoded by codec
+    private byte[] saveFrame; // save request encoded by codec
+    private byte[] loginJava; // login reply java serialized
+    private byte[] saveJava; // save request java serialized
+
+    @Setup
+    public void setup() throws IOException {
+        int[] inventory = new int[240];
+        for(int i = 0; i < inventory.length; i++)
+            inventory[i] = 3000 + i * 7;
+        int[] equipment = new int[24];
+        for(int i = 0; i < equipment.length; i++)
+            equipment[i] = 5000 + i * 11;
+
+        MessageLogin reply = new MessageLogin("benchmark", "benchmark");
+        reply.setCharacter("Benchmark");
+        reply.setWorldMap(1);
+        reply.setLevel(42);
+        reply.setExperience(1234567);
+        reply.setPosx(1024);
+        reply.setPosy(768);
+        reply.setGold(987654);
+        reply.setInventory(inventory);
+        reply.setEquipment(equipment);
+        login = new MessageContent(MENU_LISTENER, reply, MessageContent.Type.LOGIN);
+        login.setFlag(MessageFlag.OKIDOKI);
+
+        MessageSave request = new MessageSave("Benchmark", 1, 42, 1234567, 1024, 768, 987654, inventory, equipment);
+        request.setSequence(1);
+        save = new MessageContent(GAME_LISTENER, request, MessageContent.Type.SAVE);
+
+        loginFrame = MessageCodec.encode(login);
+        saveFrame = MessageCodec.encode(save);
+        loginJava = serialize(login);
+        saveJava = serialize(save);
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeLogin() {
+        return MessageCodec.encode(login);
+    }
+
+    @Benchmark
+    public MessageContent decodeLogin() {
+        return MessageCodec.decode(loginFrame);
+    }
+
+    @Benchmark
+    public byte[] encodeSave() {
+        return MessageCodec.encode(save);
+    }
+
+    @Benchmark
+    public MessageContent decodeSave() {
+        return MessageCodec.decode(saveFrame);
+    }
+
+    @Benchmark
+    public byte[] serializeLogin() throws IOException {
+        return serialize(login);
+    }
+
+    @Benchmark
+    public Object deserializeLogin() throws IOException, ClassNotFoundException {
+        return deserialize(loginJava);
+    }
+
+    @Benchmark
+    public byte[] serializeSave() throws IOException {
+        return serialize(save);
+    }
+
+    @Benchmark
+    public Object deserializeSave() throws IOException, ClassNotFoundException {
+        return deserialize(saveJava);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mygdx.game.states.game.standard.battle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures level and experience curves, called on every
+ * experience gain and by the ranking. Inputs cycle through
+ * the level range so results do not fold into constants
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+
+    private static final int MAX_LEVEL = 200; // levels cycled through
+
+    private int level; // next level to convert
+    private long exp; // next experience to convert
+
+    @Benchmark
+    public int levelLog() {
+        exp = (exp + 7919) % 100000000L;
+        return Level.levelLog(exp);
+    }
+
+    @Benchmark
+    public long expLog() {
+        level = level % MAX_LEVEL + 1;
+        return Level.expLog(level);
+    }
+}
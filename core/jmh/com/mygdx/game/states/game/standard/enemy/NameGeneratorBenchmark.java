@@ -0,0 +1,54 @@
+package com.mygdx.game.states.game.standard.enemy;
+
+import com.mygdx.game.GdxFixture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of enemy names, done on each
+ * enemy spawn. Used names are cleared periodically, as
+ * the generator retries names already used and would
+ * slow down as the set of used names grows
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameGeneratorBenchmark {
+
+    private static final int RESET_INTERVAL = 64; // names generated before clearing used names
+
+    private NameGenerator generator; // enemy name generator
+    private int generated; // names generated since last reset
+
+    @Setup
+    public void setup() {
+        GdxFixture.start();
+        generator = new NameGenerator("enemies", 1, 3);
+    }
+
+    @Benchmark
+    public String nextName() {
+        if(++generated == RESET_INTERVAL) {
+            generator.reset();
+            generated = 0;
+        }
+        return generator.nextName();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mygdx.game.states.game.standard.item.factory;
+
+import com.mygdx.game.GdxFixture;
+import com.mygdx.game.states.game.standard.item.Equipment;
+import com.mygdx.game.util.Config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures equipment drop rolls, done on each enemy
+ * death, with the game drop tries. Includes misses,
+ * so the result is the average cost of a roll
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+
+    @Param({"1", "50"})
+    private int level; // level of equipments dropped
+
+    @Setup
+    public void setup() {
+        GdxFixture.start();
+        Factory.getInstance();
+    }
+
+    @Benchmark
+    public Equipment rollEquipment() {
+        return Factory.rollEquipment(level, Config.maxDropTries);
+    }
+}
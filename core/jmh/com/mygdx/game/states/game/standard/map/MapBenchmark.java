@@ -0,0 +1,108 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Vector2;
+import com.mygdx.game.GdxFixture;
+import com.mygdx.game.states.game.standard.camera.GameCamera;
+import com.mygdx.game.states.game.standard.physics.Transform;
+import com.mygdx.game.util.Config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures map creation from the layers of map files and
+ * map rendering of a 800x480 viewport at the map center,
+ * with static layers pre-baked in sprite caches or drawn tile
+ * by tile. GL does nothing and the batch only counts draws, so
+ * render measures the work on CPU, not the GPU. Create includes
+ * the map constructor (collider and config files, and baking of
+ * static layers) and the disposal of map
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    private static final int VIEWPORT_WIDTH = 800; // width of rendered viewport
+    private static final int VIEWPORT_HEIGHT = 480; // height of rendered viewport
+
+    @Param({"example_map", "mapdemo", "testmap"})
+    private String name; // map file name
+
+    @Param({"true", "false"})
+    private boolean staticCache; // if static layers are pre-baked
+
+    private String[] layers; // layers read from map file
+    private ArrayList<Tileset> tilesets; // tilesets of map
+    private int mapSizeX; // map columns
+    private int mapSizeY; // map lines
+    private int tileSize; // map tile size
+
+    private Map map; // map rendered
+    private GameCamera gameCam; // game camera at map center
+    private OrthographicCamera camera; // libgdx camera of viewport
+    private GdxFixture.CountingBatch batch; // batch that only counts draws
+
+    @Setup
+    public void setup() {
+        GdxFixture.start();
+        Config.mapStaticCache = staticCache;
+
+        layers = GdxFixture.readLayers(name);
+        tilesets = GdxFixture.readTilesets(name);
+        mapSizeX = GdxFixture.readProperty(name, "mapwidth");
+        mapSizeY = GdxFixture.readProperty(name, "mapheight");
+        tileSize = GdxFixture.readProperty(name, "tilesize");
+
+        map = MapConfig.getInstance().createMap(layers, tilesets, name, mapSizeX, mapSizeY, tileSize);
+        Transform center = new Transform(new Vector2(mapSizeX * tileSize / 2, mapSizeY * tileSize / 2),
+                                         tileSize, tileSize, new Vector2(1, 1), 0, 0);
+        gameCam = new GameCamera(center, VIEWPORT_WIDTH, VIEWPORT_HEIGHT, tileSize, 1, mapSizeX, mapSizeY);
+        camera = new OrthographicCamera(VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+        batch = new GdxFixture.CountingBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        batch.dispose();
+        map.dispose();
+    }
+
+    /**
+     * Creates map from layers already read, as map reader does.
+     * Disposal also disposes tileset textures, which is harmless
+     * here as the GL does nothing and render only reads their size
+     */
+    @Benchmark
+    public Map createMap() {
+        Map created = MapConfig.getInstance().createMap(layers, tilesets, name, mapSizeX, mapSizeY, tileSize);
+        created.dispose();
+        return created;
+    }
+
+    @Benchmark
+    public long render() {
+        map.render(gameCam, camera, batch);
+        return batch.getDraws();
+    }
+}
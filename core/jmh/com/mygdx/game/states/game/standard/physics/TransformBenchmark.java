@@ -0,0 +1,88 @@
+package com.mygdx.game.states.game.standard.physics;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Vector2;
+import com.mygdx.game.GdxFixture;
+import com.mygdx.game.states.game.standard.camera.GameCamera;
+import com.mygdx.game.states.game.standard.map.Map;
+import com.mygdx.game.states.game.standard.map.MapConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures collision checks of a tile sized transform at
+ * the map center against the colliders of the viewport,
+ * done on every movement of player and enemies. Map is
+ * rendered once so its viewport grid is set as in game
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+
+    private static final int VIEWPORT_WIDTH = 800; // width of rendered viewport
+    private static final int VIEWPORT_HEIGHT = 480; // height of rendered viewport
+
+    @Param({"example_map", "mapdemo", "testmap"})
+    private String name; // map file name
+
+    private Map map; // current map
+    private Transform transform; // transform that moves
+    private Vector2[] moves; // movements checked in turn
+    private int next; // next movement to check
+
+    @Setup
+    public void setup() {
+        GdxFixture.start();
+
+        int tileSize = GdxFixture.readProperty(name, "tilesize");
+        int mapSizeX = GdxFixture.readProperty(name, "mapwidth");
+        int mapSizeY = GdxFixture.readProperty(name, "mapheight");
+        map = MapConfig.getInstance().createMap(GdxFixture.readLayers(name), GdxFixture.readTilesets(name), name,
+                                                mapSizeX, mapSizeY, tileSize);
+        MapConfig.getInstance().setCurrentMap(map);
+
+        transform = new Transform(new Vector2(mapSizeX * tileSize / 2, mapSizeY * tileSize / 2),
+                                  tileSize, tileSize, new Vector2(1, 1), 0, 0);
+        new Collider(transform, true, transform);
+
+        // sets viewport grid of map
+        GameCamera gameCam = new GameCamera(transform, VIEWPORT_WIDTH, VIEWPORT_HEIGHT, tileSize, 1,
+                                            mapSizeX, mapSizeY);
+        GdxFixture.CountingBatch batch = new GdxFixture.CountingBatch();
+        map.render(gameCam, new OrthographicCamera(VIEWPORT_WIDTH, VIEWPORT_HEIGHT), batch);
+        batch.dispose();
+
+        moves = new Vector2[] {new Vector2(2, 0), new Vector2(-2, 0), new Vector2(0, 2), new Vector2(0, -2)};
+    }
+
+    @TearDown
+    public void tearDown() {
+        map.dispose();
+    }
+
+    @Benchmark
+    public boolean checkCollision() {
+        next = (next + 1) & (moves.length - 1);
+        return transform.checkCollision(moves[next]);
+    }
+}
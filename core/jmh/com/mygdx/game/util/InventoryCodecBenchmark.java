@@ -0,0 +1,147 @@
+package com.mygdx.game.util;
+
+import com.mygdx.game.messages.WireReader;
+import com.mygdx.game.messages.WireWriter;
+import com.mygdx.game.states.game.standard.item.Effect;
+import com.mygdx.game.states.game.standard.item.Equipment;
+import com.mygdx.game.states.game.standard.item.Item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the dotted string inventory format with the
+ * packed int format, for a full inventory and all
+ * equipment slots worn. Encode benchmarks build the save
+ * payload on client, decode benchmarks read it on server.
+ * Run with -prof gc to compare allocation rates
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryCodecBenchmark {
+
+    private ArrayList<Item[][]> pages; // full inventory pages
+    private Equipment[] worn; // all equipment slots worn
+
+    private byte[] stringFrame; // inventory written in dotted string format
+    private byte[] packedFrame; // inventory written in packed format
+
+    @Setup
+    public void setup() {
+        int uid = 3000;
+        pages = new ArrayList<Item[][]>();
+        for(int p = 0; p < Config.inventoryNPages; p++) {
+            Item[][] page = new Item[Config.inventoryMaxItemsY][Config.inventoryMaxItemsX];
+            for(int i = 0; i < page.length; i++)
+                for(int j = 0; j < page[i].length; j++)
+                    page[i][j] = equipment(uid++, p * 10 + i + j + 1);
+            pages.add(page);
+        }
+
+        worn = new Equipment[Equipment.Slot.values().length];
+        for(int s = 0; s < worn.length; s++)
+            worn[s] = equipment(uid++, 50 + s);
+
+        WireWriter out = new WireWriter(1024);
+        out.writeString(Common.serializeInventory(pages));
+        out.writeString(Common.serializeWornEquipment(worn));
+        stringFrame = out.toByteArray();
+
+        out = new WireWriter(1024);
+        out.writeIntArray(Common.packInventory(pages));
+        out.writeIntArray(Common.packWornEquipment(worn));
+        packedFrame = out.toByteArray();
+    }
+
+    /**
+     * Creates an equipment without sprite
+     */
+    private static Equipment equipment(int uid, int level) {
+        Equipment e = new Equipment(0, "bench", "bench", new Effect(), null, 0f,
+                                    Item.Quality.NORMAL, Equipment.Slot.HELMET);
+        e.setUniqueID(uid);
+        e.setLevel(level);
+        return e;
+    }
+
+    @Benchmark
+    public byte[] encodeString() {
+        WireWriter out = new WireWriter(1024);
+        out.writeString(Common.serializeInventory(pages));
+        out.writeString(Common.serializeWornEquipment(worn));
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodePacked() {
+        WireWriter out = new WireWriter(1024);
+        out.writeIntArray(Common.packInventory(pages));
+        out.writeIntArray(Common.packWornEquipment(worn));
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads dotted strings as the server used to parse saves
+     */
+    @Benchmark
+    public void decodeString(Blackhole bh) {
+        WireReader in = new WireReader(stringFrame, 0);
+        String[] items = in.readString().split("\\.");
+        for(int i = 1; i < items.length; i++) {
+            String[] data = items[i].split(";");
+            bh.consume(Integer.parseInt(data[0].substring(3))); // item uID
+            bh.consume(Integer.parseInt(data[1].substring(3))); // item level
+            bh.consume(Integer.parseInt(data[2].substring(5))); // item inventory page
+            bh.consume(Integer.parseInt(data[3].substring(2))); // item i index in inventory
+            bh.consume(Integer.parseInt(data[4].substring(2))); // item j index in inventory
+        }
+        String[] equips = in.readString().split("\\.");
+        for(int i = 1; i < equips.length; i++) {
+            String[] data = equips[i].split(";");
+            bh.consume(Integer.parseInt(data[0].substring(3))); // equipment uID
+            bh.consume(Integer.parseInt(data[1].substring(3))); // equipment level
+            bh.consume(Integer.parseInt(data[2].substring(5))); // equipment slot
+        }
+    }
+
+    /**
+     * Reads packed arrays as the server parses saves
+     */
+    @Benchmark
+    public void decodePacked(Blackhole bh) {
+        WireReader in = new WireReader(packedFrame, 0);
+        int[] items = in.readIntArray();
+        for(int k = 0; k < items.length; k += Common.PACKED_STRIDE) {
+            bh.consume(items[k]); // item uID
+            bh.consume(items[k + 1]); // item level
+            bh.consume(Common.slotPage(items[k + 2])); // item inventory page
+            bh.consume(Common.slotI(items[k + 2])); // item i index in inventory
+            bh.consume(Common.slotJ(items[k + 2])); // item j index in inventory
+        }
+        int[] equips = in.readIntArray();
+        for(int k = 0; k < equips.length; k += Common.PACKED_STRIDE) {
+            bh.consume(equips[k]); // equipment uID
+            bh.consume(equips[k + 1]); // equipment level
+            bh.consume(equips[k + 2]); // equipment slot
+        }
+    }
+}
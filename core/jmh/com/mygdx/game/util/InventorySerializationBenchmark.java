@@ -0,0 +1,74 @@
+package com.mygdx.game.util;
+
+import com.mygdx.game.GdxFixture;
+import com.mygdx.game.states.game.standard.item.Equipment;
+import com.mygdx.game.states.game.standard.item.Item;
+import com.mygdx.game.states.game.standard.item.factory.Factory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the inventory string format used by local saves,
+ * for a full inventory of equipments of every type. Unlike
+ * codec benchmark, deserialize includes the creation of
+ * each item by the item factory, as the client does
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventorySerializationBenchmark {
+
+    private ArrayList<Item[][]> pages; // full inventory pages
+    private String serialized; // inventory serialized
+
+    @Setup
+    public void setup() {
+        GdxFixture.start();
+
+        // first uid of each equipment type
+        Equipment.Slot[] slots = Equipment.Slot.values();
+        int[] firstIds = new int[slots.length];
+        for(int s = 0; s < slots.length; s++)
+            firstIds[s] = Factory.getFirstID(slots[s]);
+
+        int n = 0;
+        pages = new ArrayList<Item[][]>();
+        for(int p = 0; p < Config.inventoryNPages; p++) {
+            Item[][] page = new Item[Config.inventoryMaxItemsY][Config.inventoryMaxItemsX];
+            for(int i = 0; i < page.length; i++)
+                for(int j = 0; j < page[i].length; j++)
+                    page[i][j] = Factory.createItem(firstIds[n++ % firstIds.length], p * 10 + i + j + 1, false);
+            pages.add(page);
+        }
+
+        serialized = Common.serializeInventory(pages);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return Common.serializeInventory(pages);
+    }
+
+    @Benchmark
+    public ArrayList<Item[][]> deserialize() {
+        return Common.deserializeInventory(serialized);
+    }
+}
@@ -0,0 +1,680 @@
+package com.mygdx.game.messages;
+
+import com.mygdx.game.sensors.SensorCompact;
+import com.mygdx.game.states.game.standard.item.Equipment;
+import com.mygdx.game.states.game.standard.item.Item;
+import com.mygdx.game.states.game.standard.market.MarketFilter;
+import com.mygdx.game.states.game.standard.market.MarketItem;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lac.cnclib.sddl.serialization.Serialization;
+
+/**
+ * Compact binary codec of message contents exchanged
+ * between client and server, replacing java serialization.
+ *
+ * A frame starts with a magic byte, the codec version and the
+ * schema id of the message type, followed by the flag, the
+ * listener and the payload fields of the type. Integers are
+ * written as varints and known listeners as a table index
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MessageCodec {
+
+    public static final int MAGIC = 0xB7; // first byte of every binary frame
+    public static final int VERSION = 8; // current codec version
+
+    /**
+     * Schema ids of each message type, kept stable across versions
+     */
+    private static final int SCHEMA_SIGNUP = 1;
+    private static final int SCHEMA_SAVE = 2;
+    private static final int SCHEMA_LOGIN = 3;
+    private static final int SCHEMA_RANKING = 4;
+    private static final int SCHEMA_MARKET = 5;
+    private static final int SCHEMA_ACK = 6;
+    private static final int SCHEMA_LOGOFF = 7;
+    private static final int SCHEMA_MISSION_DATA = 8;
+    private static final int SCHEMA_SENSOR = 9;
+
+    /**
+     * Interned listeners, written as their index in this table.
+     * New listeners must be appended to keep indexes stable
+     */
+    private static final String[] LISTENERS = {
+            "class com.mygdx.game.states.menu.MenuInitial",
+            "class com.mygdx.game.states.game.standard.controller.Game",
+            "class com.mygdx.game.states.game.standard.ranking.Ranking",
+            "class com.mygdx.game.states.game.standard.market.Market",
+            "class com.mygdx.game.states.game.standard.pervasive.PervasiveMap",
+            "class com.mygdx.game.states.game.standard.pervasive.SensorUI"
+    };
+    private static final HashMap<String, Integer> LISTENER_IDS = new HashMap<String, Integer>();
+    static {
+        for(int i = 0; i < LISTENERS.length; i++)
+            LISTENER_IDS.put(LISTENERS[i], i + 1);
+    }
+
+    /**
+     * Encodes a message content in a binary frame
+     * @param msg the message content to encode
+     * @return the encoded frame
+     */
+    public static byte[] encode(MessageContent msg) {
+        WireWriter out = new WireWriter(64);
+
+        // frame header
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(schemaOf(msg.getType()));
+
+        // message flag and listener
+        out.writeVarInt(msg.getFlag() == null ? 0 : msg.getFlag().ordinal() + 1);
+        writeListener(out, msg.getListener());
+
+        // message payload
+        Object content = msg.getContent();
+        out.writeBoolean(content != null);
+        if(content != null)
+            writePayload(out, msg.getType(), content);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks if data received is a binary frame of this codec
+     * @param data the data received
+     * @return true if data is a binary frame, false otherwise
+     */
+    public static boolean isFrame(byte[] data) {
+        return data != null && data.length >= 3 && (data[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * Decodes a binary frame in a message content
+     * @param frame the binary frame
+     * @return the decoded message content, null if frame is not valid
+     */
+    public static MessageContent decode(byte[] frame) {
+        if(!isFrame(frame))
+            return null;
+
+        try {
+            WireReader in = new WireReader(frame, 1);
+
+            // frame header
+            int version = in.readByte();
+            if(version != VERSION) {
+                System.err.println("Unsupported message codec version: " + version);
+                return null;
+            }
+            MessageContent.Type type = typeOf(in.readByte());
+            if(type == null) {
+                System.err.println("Unknown message schema received");
+                return null;
+            }
+
+            // message flag and listener
+            int flag = in.readVarInt();
+            String listener = readListener(in);
+
+            // message payload
+            Serializable content = in.readBoolean() ? readPayload(in, type) : null;
+
+            MessageContent msg = new MessageContent(listener, content, type);
+            if(flag > 0)
+                msg.setFlag(MessageFlag.values()[flag - 1]);
+            return msg;
+        } catch (RuntimeException e) {
+            System.err.println("Malformed message frame received: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the codec version of a binary frame
+     * @param frame the binary frame
+     * @return the codec version of frame, -1 if data is not a binary frame
+     */
+    public static int versionOf(byte[] frame) {
+        return isFrame(frame) ? frame[1] & 0xFF : -1;
+    }
+
+    /**
+     * Decodes only the type and listener of a binary frame, so
+     * frames of other codec versions can still be answered.
+     * The frame header layout is kept the same across versions
+     * @param frame the binary frame
+     * @return a message content without payload, null if header is not valid
+     */
+    public static MessageContent decodeHeader(byte[] frame) {
+        if(!isFrame(frame))
+            return null;
+
+        try {
+            WireReader in = new WireReader(frame, 2);
+            MessageContent.Type type = typeOf(in.readByte());
+            if(type == null)
+                return null;
+            in.readVarInt(); // flag
+            return new MessageContent(readListener(in), null, type);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a message content received, either a binary
+     * frame or a java serialized message content
+     * @param data the data received
+     * @return the message content, null if data is not a message content
+     */
+    public static MessageContent read(byte[] data) {
+        if(isFrame(data))
+            return decode(data);
+
+        Serializable rawContent = Serialization.fromJavaByteStream(data);
+        if(rawContent instanceof MessageContent)
+            return (MessageContent) rawContent;
+        return null;
+    }
+
+    /**
+     * Gets schema id of a message type
+     * @param type the message type
+     * @return the schema id of type
+     */
+    private static int schemaOf(MessageContent.Type type) {
+        switch (type) {
+            case SIGNUP: return SCHEMA_SIGNUP;
+            case SAVE: return SCHEMA_SAVE;
+            case LOGIN: return SCHEMA_LOGIN;
+            case RANKING: return SCHEMA_RANKING;
+            case MARKET: return SCHEMA_MARKET;
+            case ACK: return SCHEMA_ACK;
+            case LOGOFF: return SCHEMA_LOGOFF;
+            case MISSION_DATA: return SCHEMA_MISSION_DATA;
+            case SENSOR: return SCHEMA_SENSOR;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Gets message type of a schema id
+     * @param schema the schema id
+     * @return the message type of schema, null if schema is unknown
+     */
+    private static MessageContent.Type typeOf(int schema) {
+        switch (schema) {
+            case SCHEMA_SIGNUP: return MessageContent.Type.SIGNUP;
+            case SCHEMA_SAVE: return MessageContent.Type.SAVE;
+            case SCHEMA_LOGIN: return MessageContent.Type.LOGIN;
+            case SCHEMA_RANKING: return MessageContent.Type.RANKING;
+            case SCHEMA_MARKET: return MessageContent.Type.MARKET;
+            case SCHEMA_ACK: return MessageContent.Type.ACK;
+            case SCHEMA_LOGOFF: return MessageContent.Type.LOGOFF;
+            case SCHEMA_MISSION_DATA: return MessageContent.Type.MISSION_DATA;
+            case SCHEMA_SENSOR: return MessageContent.Type.SENSOR;
+            default: return null;
+        }
+    }
+
+    /**
+     * Writes listener as its interned index, or
+     * inline after the table size if not interned
+     */
+    private static void writeListener(WireWriter out, String listener) {
+        if(listener == null) {
+            out.writeVarInt(0);
+            return;
+        }
+
+        Integer id = LISTENER_IDS.get(listener);
+        if(id != null)
+            out.writeVarInt(id);
+        else {
+            out.writeVarInt(LISTENERS.length + 1);
+            out.writeString(listener);
+        }
+    }
+
+    /**
+     * Reads listener written by {@link #writeListener}
+     */
+    private static String readListener(WireReader in) {
+        int id = in.readVarInt();
+        if(id == 0)
+            return null;
+        if(id <= LISTENERS.length)
+            return LISTENERS[id - 1];
+        return in.readString();
+    }
+
+    /**
+     * Writes the payload fields of a message type
+     */
+    private static void writePayload(WireWriter out, MessageContent.Type type, Object content) {
+        switch (type) {
+            case SIGNUP:
+                MessageSignUp signUp = (MessageSignUp) content;
+                out.writeString(signUp.getAccount());
+                out.writeString(signUp.getPassword());
+                out.writeString(signUp.getCharacter());
+                break;
+            case SAVE:
+                MessageSave save = (MessageSave) content;
+                // delta saves only write the general fields flagged as changed
+                int fields = save.isDelta() ? save.getChanged() : MessageSave.ALL_FIELDS;
+                out.writeString(save.getCharacter());
+                out.writeLong(save.getSequence());
+                out.writeBoolean(save.isDelta());
+                out.writeVarInt(fields);
+                if((fields & MessageSave.FIELD_WORLD_MAP) != 0)
+                    out.writeInt(save.getWorldMap());
+                if((fields & MessageSave.FIELD_LEVEL) != 0)
+                    out.writeInt(save.getLevel());
+                if((fields & MessageSave.FIELD_EXPERIENCE) != 0)
+                    out.writeLong(save.getExperience());
+                if((fields & MessageSave.FIELD_POSITION) != 0) {
+                    out.writeInt(save.getPosx());
+                    out.writeInt(save.getPosy());
+                }
+                if((fields & MessageSave.FIELD_GOLD) != 0)
+                    out.writeLong(save.getGold());
+                out.writeIntArray(save.getInventory());
+                out.writeIntArray(save.getEquipment());
+                out.writeIntArray(save.getRemovedItems());
+                out.writeIntArray(save.getRemovedEquipment());
+                break;
+            case LOGIN:
+                MessageLogin login = (MessageLogin) content;
+                out.writeString(login.getAccount());
+                out.writeString(login.getPassword());
+                out.writeString(login.getCharacter());
+                out.writeInt(login.getWorldMap());
+                out.writeInt(login.getLevel());
+                out.writeLong(login.getExperience());
+                out.writeInt(login.getPosx());
+                out.writeInt(login.getPosy());
+                out.writeLong(login.getGold());
+                out.writeIntArray(login.getInventory());
+                out.writeIntArray(login.getEquipment());
+                out.writeBoolean(login.isFirstLogin());
+                break;
+            case RANKING:
+                MessageRanking ranking = (MessageRanking) content;
+                out.writeString(ranking.getCharacter());
+                out.writeInt(ranking.getPosition());
+                writeRanking(out, ranking.getRanking());
+                break;
+            case MARKET:
+                MessageMarket market = (MessageMarket) content;
+                out.writeVarInt(market.getAction() == null ? 0 : market.getAction().ordinal() + 1);
+                out.writeString(market.getCharacter());
+                writeMarketItem(out, market.getItem());
+                writeMarketItems(out, market.getItems());
+                writeMarketFilter(out, market.getFilter());
+                writeMarketItem(out, market.getAfter());
+                out.writeVarInt(market.getPageSize());
+                out.writeBoolean(market.isLastPage());
+                break;
+            case LOGOFF:
+                out.writeString(((MessageLogoff) content).getCharacter());
+                break;
+            case MISSION_DATA:
+                MessageMissionData mission = (MessageMissionData) content;
+                out.writeVarInt(mission.getAction() == null ? 0 : mission.getAction().ordinal() + 1);
+                out.writeString(mission.getCharacter());
+                out.writeInt(mission.getMission_id());
+                out.writeString(mission.getSensor_id());
+                out.writeString(mission.getInput_type());
+                out.writeString(mission.getSensor_name());
+                out.writeLong(mission.getFrom());
+                out.writeLong(mission.getTo());
+                out.writeLong(mission.getVersion());
+                out.writeBoolean(mission.isDelta());
+                out.writeLong(mission.getSensorsVersion());
+                writeMissions(out, mission.getMissions());
+                writeSensorData(out, mission.getSensorData());
+                writeInputData(out, mission.getInputData());
+                break;
+            case SENSOR:
+                MessageSensor sensor = (MessageSensor) content;
+                out.writeLong(sensor.getVersion());
+                writeSensors(out, sensor.getSensors());
+                break;
+            case ACK:
+            default:
+                out.writeString(String.valueOf(content));
+                break;
+        }
+    }
+
+    /**
+     * Reads the payload fields of a message type
+     */
+    private static Serializable readPayload(WireReader in, MessageContent.Type type) {
+        switch (type) {
+            case SIGNUP:
+                return new MessageSignUp(in.readString(), in.readString(), in.readString());
+            case SAVE:
+                String character = in.readString();
+                long sequence = in.readLong();
+                boolean delta = in.readBoolean();
+                int fields = in.readVarInt();
+                int worldMap = (fields & MessageSave.FIELD_WORLD_MAP) != 0 ? in.readInt() : 0;
+                int level = (fields & MessageSave.FIELD_LEVEL) != 0 ? in.readInt() : 0;
+                long experience = (fields & MessageSave.FIELD_EXPERIENCE) != 0 ? in.readLong() : 0;
+                int posx = (fields & MessageSave.FIELD_POSITION) != 0 ? in.readInt() : 0;
+                int posy = (fields & MessageSave.FIELD_POSITION) != 0 ? in.readInt() : 0;
+                long gold = (fields & MessageSave.FIELD_GOLD) != 0 ? in.readLong() : 0;
+                MessageSave save = new MessageSave(character, worldMap, level, experience, posx, posy, gold,
+                                                    in.readIntArray(), in.readIntArray());
+                save.setSequence(sequence);
+                save.setDelta(delta);
+                save.setChanged(fields);
+                save.setRemovedItems(in.readIntArray());
+                save.setRemovedEquipment(in.readIntArray());
+                return save;
+            case LOGIN:
+                MessageLogin login = new MessageLogin(in.readString(), in.readString());
+                login.setCharacter(in.readString());
+                login.setWorldMap(in.readInt());
+                login.setLevel(in.readInt());
+                login.setExperience(in.readLong());
+                login.setPosx(in.readInt());
+                login.setPosy(in.readInt());
+                login.setGold(in.readLong());
+                login.setInventory(in.readIntArray());
+                login.setEquipment(in.readIntArray());
+                login.setFirstLogin(in.readBoolean());
+                return login;
+            case RANKING:
+                MessageRanking ranking = new MessageRanking(in.readString());
+                ranking.setPosition(in.readInt());
+                ranking.setRanking(readRanking(in));
+                return ranking;
+            case MARKET:
+                int marketAction = in.readVarInt();
+                MessageMarket market = new MessageMarket(null,
+                        marketAction == 0 ? null : MessageMarket.Action.values()[marketAction - 1]);
+                market.setCharacter(in.readString());
+                market.setItem(readMarketItem(in));
+                market.setItems(readMarketItems(in));
+                market.setFilter(readMarketFilter(in));
+                market.setAfter(readMarketItem(in));
+                market.setPageSize(in.readVarInt());
+                market.setLastPage(in.readBoolean());
+                return market;
+            case LOGOFF:
+                return new MessageLogoff(in.readString());
+            case MISSION_DATA:
+                int missionAction = in.readVarInt();
+                MessageMissionData mission = new MessageMissionData(null,
+                        missionAction == 0 ? null : MessageMissionData.Action.values()[missionAction - 1]);
+                mission.setCharacter(in.readString());
+                mission.setMission_id(in.readInt());
+                mission.setSensor_id(in.readString());
+                mission.setInput_type(in.readString());
+                mission.setSensor_name(in.readString());
+                mission.setFrom(in.readLong());
+                mission.setTo(in.readLong());
+                mission.setVersion(in.readLong());
+                mission.setDelta(in.readBoolean());
+                mission.setSensorsVersion(in.readLong());
+                mission.setMissions(readMissions(in));
+                mission.setSensorData(readSensorData(in));
+                mission.setInputData(readInputData(in));
+                return mission;
+            case SENSOR:
+                MessageSensor sensor = new MessageSensor();
+                sensor.setVersion(in.readLong());
+                sensor.setSensors(readSensors(in));
+                return sensor;
+            case ACK:
+            default:
+                return in.readString();
+        }
+    }
+
+    /**
+     * Collections are written as their size plus one, zero meaning null.
+     * Sizes are read with the least number of bytes of an element, so
+     * sizes that do not fit in the frame are rejected before allocation
+     */
+
+    private static void writeRanking(WireWriter out, LinkedHashMap<String, Integer> ranking) {
+        out.writeVarInt(ranking == null ? 0 : ranking.size() + 1);
+        if(ranking == null)
+            return;
+        Iterator<Map.Entry<String, Integer>> it = ranking.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<String, Integer> entry = it.next();
+            out.writeString(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static LinkedHashMap<String, Integer> readRanking(WireReader in) {
+        int size = in.readSize(2, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        LinkedHashMap<String, Integer> ranking = new LinkedHashMap<String, Integer>(size * 2);
+        for(int i = 0; i < size; i++)
+            ranking.put(in.readString(), in.readInt());
+        return ranking;
+    }
+
+    private static void writeMarketItem(WireWriter out, MarketItem item) {
+        out.writeBoolean(item != null);
+        if(item == null)
+            return;
+        out.writeInt(item.getMid());
+        out.writeInt(item.getUid());
+        out.writeString(item.getSeller());
+        out.writeLong(item.getPrice());
+        out.writeInt(item.getLevel());
+        out.writeVarInt(item.getQuality() == null ? 0 : item.getQuality().ordinal() + 1);
+        out.writeBoolean(item.isSold());
+        out.writeString(item.getName());
+        out.writeString(item.getDescription());
+        out.writeInt(item.getPage());
+        out.writeInt(item.getIdxI());
+        out.writeInt(item.getIdxJ());
+    }
+
+    private static MarketItem readMarketItem(WireReader in) {
+        if(!in.readBoolean())
+            return null;
+        MarketItem item = new MarketItem();
+        item.setMid(in.readInt());
+        item.setUid(in.readInt());
+        item.setSeller(in.readString());
+        item.setPrice(in.readLong());
+        item.setLevel(in.readInt());
+        int quality = in.readVarInt();
+        item.setQuality(quality == 0 ? null : Item.Quality.values()[quality - 1]);
+        item.setSold(in.readBoolean());
+        item.setName(in.readString());
+        item.setDescription(in.readString());
+        item.setPage(in.readInt());
+        item.setIdxI(in.readInt());
+        item.setIdxJ(in.readInt());
+        return item;
+    }
+
+    private static void writeMarketItems(WireWriter out, ArrayList<MarketItem> items) {
+        out.writeVarInt(items == null ? 0 : items.size() + 1);
+        for(int i = 0; items != null && i < items.size(); i++)
+            writeMarketItem(out, items.get(i));
+    }
+
+    private static ArrayList<MarketItem> readMarketItems(WireReader in) {
+        int size = in.readSize(1, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        ArrayList<MarketItem> items = new ArrayList<MarketItem>(size);
+        for(int i = 0; i < size; i++)
+            items.add(readMarketItem(in));
+        return items;
+    }
+
+    private static void writeMarketFilter(WireWriter out, MarketFilter filter) {
+        out.writeBoolean(filter != null);
+        if(filter == null)
+            return;
+        out.writeInt(filter.getUid());
+        out.writeVarInt(filter.getSlot() == null ? 0 : filter.getSlot().ordinal() + 1);
+        out.writeVarInt(filter.getQuality() == null ? 0 : filter.getQuality().ordinal() + 1);
+        out.writeInt(filter.getMinLevel());
+        out.writeInt(filter.getMaxLevel());
+        out.writeLong(filter.getMinPrice());
+        out.writeLong(filter.getMaxPrice());
+        out.writeVarInt(filter.getSort() == null ? 0 : filter.getSort().ordinal() + 1);
+    }
+
+    private static MarketFilter readMarketFilter(WireReader in) {
+        if(!in.readBoolean())
+            return null;
+        MarketFilter filter = new MarketFilter();
+        filter.setUid(in.readInt());
+        int slot = in.readVarInt();
+        filter.setSlot(slot == 0 ? null : Equipment.Slot.values()[slot - 1]);
+        int quality = in.readVarInt();
+        filter.setQuality(quality == 0 ? null : Item.Quality.values()[quality - 1]);
+        filter.setMinLevel(in.readInt());
+        filter.setMaxLevel(in.readInt());
+        filter.setMinPrice(in.readLong());
+        filter.setMaxPrice(in.readLong());
+        int sort = in.readVarInt();
+        filter.setSort(sort == 0 ? null : MarketFilter.Sort.values()[sort - 1]);
+        return filter;
+    }
+
+    private static void writeMissions(WireWriter out, HashMap<Integer, Timestamp> missions) {
+        out.writeVarInt(missions == null ? 0 : missions.size() + 1);
+        if(missions == null)
+            return;
+        Iterator<Map.Entry<Integer, Timestamp>> it = missions.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, Timestamp> entry = it.next();
+            out.writeInt(entry.getKey());
+            out.writeBoolean(entry.getValue() != null);
+            if(entry.getValue() != null)
+                out.writeLong(entry.getValue().getTime());
+        }
+    }
+
+    private static HashMap<Integer, Timestamp> readMissions(WireReader in) {
+        int size = in.readSize(2, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        HashMap<Integer, Timestamp> missions = new HashMap<Integer, Timestamp>(size * 2);
+        for(int i = 0; i < size; i++) {
+            int id = in.readInt();
+            missions.put(id, in.readBoolean() ? new Timestamp(in.readLong()) : null);
+        }
+        return missions;
+    }
+
+    private static void writeSensorData(WireWriter out, HashMap<String, Double[]> sensorData) {
+        out.writeVarInt(sensorData == null ? 0 : sensorData.size() + 1);
+        if(sensorData == null)
+            return;
+        Iterator<Map.Entry<String, Double[]>> it = sensorData.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<String, Double[]> entry = it.next();
+            Double[] values = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeVarInt(values == null ? 0 : values.length + 1);
+            for(int i = 0; values != null && i < values.length; i++) {
+                out.writeBoolean(values[i] != null);
+                if(values[i] != null)
+                    out.writeDouble(values[i]);
+            }
+        }
+    }
+
+    private static HashMap<String, Double[]> readSensorData(WireReader in) {
+        int size = in.readSize(2, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        HashMap<String, Double[]> sensorData = new HashMap<String, Double[]>(size * 2);
+        for(int i = 0; i < size; i++) {
+            String key = in.readString();
+            int length = in.readSize(1, WireReader.MAX_COLLECTION_SIZE);
+            Double[] values = null;
+            if(length >= 0) {
+                values = new Double[length];
+                for(int j = 0; j < length; j++)
+                    values[j] = in.readBoolean() ? Double.valueOf(in.readDouble()) : null;
+            }
+            sensorData.put(key, values);
+        }
+        return sensorData;
+    }
+
+    private static void writeInputData(WireWriter out, HashMap<String, String> inputData) {
+        out.writeVarInt(inputData == null ? 0 : inputData.size() + 1);
+        if(inputData == null)
+            return;
+        Iterator<Map.Entry<String, String>> it = inputData.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            out.writeString(entry.getKey());
+            out.writeString(entry.getValue());
+        }
+    }
+
+    private static HashMap<String, String> readInputData(WireReader in) {
+        int size = in.readSize(2, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        HashMap<String, String> inputData = new HashMap<String, String>(size * 2);
+        for(int i = 0; i < size; i++)
+            inputData.put(in.readString(), in.readString());
+        return inputData;
+    }
+
+    private static void writeSensors(WireWriter out, ArrayList<SensorCompact> sensors) {
+        out.writeVarInt(sensors == null ? 0 : sensors.size() + 1);
+        for(int i = 0; sensors != null && i < sensors.size(); i++) {
+            SensorCompact s = sensors.get(i);
+            out.writeString(s.getSensor_id());
+            out.writeString(s.getSensor_type());
+            out.writeInt(s.getMission_id());
+            out.writeInt(s.getThumbnail_id());
+            out.writeString(s.getSensor_code());
+            out.writeInt(s.getN_inputs());
+            out.writeString(s.getInput_type());
+        }
+    }
+
+    private static ArrayList<SensorCompact> readSensors(WireReader in) {
+        int size = in.readSize(7, WireReader.MAX_COLLECTION_SIZE);
+        if(size < 0)
+            return null;
+        ArrayList<SensorCompact> sensors = new ArrayList<SensorCompact>(size);
+        for(int i = 0; i < size; i++) {
+            SensorCompact s = new SensorCompact();
+            s.setSensor_id(in.readString());
+            s.setSensor_type(in.readString());
+            s.setMission_id(in.readInt());
+            s.setThumbnail_id(in.readInt());
+            s.setSensor_code(in.readString());
+            s.setN_inputs(in.readInt());
+            s.setInput_type(in.readString());
+            sensors.add(s);
+        }
+        return sensors;
+    }
+}
@@ -16,5 +16,8 @@ public enum MessageFlag {
     ITEM_ALREADY_BOUGHT, // item already bought flag
     ITEM_ALREADY_SOLD, // item already sold flag
     NO_ITEMS_SOLD_BY_PLAYER, // no items being sold by client player flag
-    ITEM_ALREADY_COLLECTED // item already collected flag
+    ITEM_ALREADY_COLLECTED, // item already collected flag
+    SAVE_RESYNC_REQUIRED, // server needs a full save to accept further delta saves flag
+    SENSORS_NOT_MODIFIED, // sensors held by client are up to date flag
+    MISSION_ALREADY_COMPLETED // mission completion was already registered flag
 }
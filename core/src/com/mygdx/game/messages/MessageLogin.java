@@ -32,9 +32,9 @@ public class MessageLogin implements Serializable{
 
     private long gold; // player gold amount
 
-    private String inventoryData; // player inventory data serialized in a string
+    private int[] inventory; // player inventory items packed as {uid, level, slot} triples
 
-    private String equipmentData; // player worn equipment data serialized in a string
+    private int[] equipment; // player worn equipments packed as {uid, level, slot} triples
 
     private boolean firstLogin; // is this the first login of the player on game world?
 
@@ -97,13 +97,13 @@ public class MessageLogin implements Serializable{
 
     public void setGold(long gold) {this.gold = gold;}
 
-    public String getInventoryData() {return inventoryData;}
+    public int[] getInventory() {return inventory;}
 
-    public void setInventoryData(String inventoryData) {this.inventoryData = inventoryData;}
+    public void setInventory(int[] inventory) {this.inventory = inventory;}
 
-    public String getEquipmentData() {return equipmentData;}
+    public int[] getEquipment() {return equipment;}
 
-    public void setEquipmentData(String equipmentData) {this.equipmentData = equipmentData;}
+    public void setEquipment(int[] equipment) {this.equipment = equipment;}
 
     public boolean isFirstLogin() {return firstLogin;}
 
@@ -1,5 +1,6 @@
 package com.mygdx.game.messages;
 
+import com.mygdx.game.states.game.standard.market.MarketFilter;
 import com.mygdx.game.states.game.standard.market.MarketItem;
 
 import java.io.Serializable;
@@ -23,6 +24,14 @@ public class MessageMarket implements Serializable {
 
     private MarketItem item; // item data in case of item actions (buy_item, register_item, remove_item)
 
+    private MarketFilter filter; // retrieve_items: filter and sort order of items, null for all items
+
+    private MarketItem after; // retrieve_items: cursor, last item of previous page (null for first page)
+
+    private int pageSize; // retrieve_items: maximum number of items requested
+
+    private boolean lastPage; // retrieve_items response: if there are no more items after this page
+
     /**
      * Market message constructor
      * @param character the name of player character
@@ -68,4 +77,20 @@ public class MessageMarket implements Serializable {
     public void setItem(MarketItem item) {
         this.item = item;
     }
+
+    public MarketFilter getFilter() {return filter;}
+
+    public void setFilter(MarketFilter filter) {this.filter = filter;}
+
+    public MarketItem getAfter() {return after;}
+
+    public void setAfter(MarketItem after) {this.after = after;}
+
+    public int getPageSize() {return pageSize;}
+
+    public void setPageSize(int pageSize) {this.pageSize = pageSize;}
+
+    public boolean isLastPage() {return lastPage;}
+
+    public void setLastPage(boolean lastPage) {this.lastPage = lastPage;}
 }
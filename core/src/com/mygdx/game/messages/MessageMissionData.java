@@ -13,12 +13,17 @@ import java.util.HashMap;
 public class MessageMissionData implements Serializable{
 
     // Types of actions that can be requested to server in this message
-    public enum Action {RETRIEVE_MISSIONS, COMPLETE_MISSION}
+    public enum Action {RETRIEVE_MISSIONS, COMPLETE_MISSION, RETRIEVE_SERIES}
 
     private Action action; // the action to request to server in this message
 
     private HashMap<Integer, Timestamp> missions; // missions data
 
+    private long version; // version of missions data held by client (request) or sent by server (response)
+
+    private boolean delta; // if missions data sent holds only missions changed since version requested
+    private long sensorsVersion; // version of registered sensors in server (response), 0 if unknown
+
     private String character; // player character name
 
     private int mission_id; // id of mission in case of mission completion
@@ -31,6 +36,15 @@ public class MessageMissionData implements Serializable{
     private HashMap<String, Double[]> sensorData; // sensor collected data
     private HashMap<String, String> inputData; // player sensing data
 
+    /**
+     * Sensor series request, answered in sensor data: for each
+     * value index, one row of {bucket start in ms, count, mean,
+     * min, max} per bucket, minute or hour buckets by range
+     */
+    private String sensor_name; // sensor name (or input name) of series
+    private long from; // start of series range in ms (inclusive)
+    private long to; // end of series range in ms (exclusive)
+
     /**
      * Mission data message constructor
      * @param character the name of player character
@@ -49,6 +63,18 @@ public class MessageMissionData implements Serializable{
         return missions;
     }
 
+    public long getVersion() {return version;}
+
+    public void setVersion(long version) {this.version = version;}
+
+    public boolean isDelta() {return delta;}
+
+    public long getSensorsVersion() {return sensorsVersion;}
+
+    public void setSensorsVersion(long sensorsVersion) {this.sensorsVersion = sensorsVersion;}
+
+    public void setDelta(boolean delta) {this.delta = delta;}
+
     public String getCharacter() {return character;}
 
     public void setCharacter(String character) {this.character = character;}
@@ -76,4 +102,16 @@ public class MessageMissionData implements Serializable{
     public HashMap<String, Double[]> getSensorData() {return sensorData;}
 
     public HashMap<String, String> getInputData() {return inputData;}
+
+    public String getSensor_name() {return sensor_name;}
+
+    public void setSensor_name(String sensor_name) {this.sensor_name = sensor_name;}
+
+    public long getFrom() {return from;}
+
+    public void setFrom(long from) {this.from = from;}
+
+    public long getTo() {return to;}
+
+    public void setTo(long to) {this.to = to;}
 }
@@ -1,16 +1,29 @@
 package com.mygdx.game.messages;
 
 import java.io.Serializable;
-import java.util.LinkedHashMap;
 
 /**
- * The model for the message containing save information
+ * The model for the message containing save information.
+ * A full save carries the whole player state, while a delta
+ * save only carries the general fields flagged as changed and
+ * the inventory and equipment slots that changed since the
+ * previous save of the same session, identified by sequence
  *
  * @author  Pedro Sampaio
  * @since   1.5
  */
 public class MessageSave implements Serializable{
 
+    /**
+     * Flags of general fields present in a delta save
+     */
+    public static final int FIELD_WORLD_MAP = 1;
+    public static final int FIELD_LEVEL = 1 << 1;
+    public static final int FIELD_EXPERIENCE = 1 << 2;
+    public static final int FIELD_POSITION = 1 << 3;
+    public static final int FIELD_GOLD = 1 << 4;
+    public static final int ALL_FIELDS = FIELD_WORLD_MAP | FIELD_LEVEL | FIELD_EXPERIENCE | FIELD_POSITION | FIELD_GOLD;
+
     private String character; // player name
 
     private int worldMap; // player current world map
@@ -25,9 +38,19 @@ public class MessageSave implements Serializable{
 
     private long gold; // player gold amount
 
-    private String inventoryData; // player inventory data serialized in a string
+    private int[] inventory; // player inventory items packed as {uid, level, slot} triples
+
+    private int[] equipment; // player worn equipments packed as {uid, level, slot} triples
+
+    private long sequence; // sequence number of this save in player session
 
-    private String equipmentData; // player worn equipment data serialized in a string
+    private boolean delta; // if this save only carries changes since previous save
+
+    private int changed; // delta saves: flags of general fields present
+
+    private int[] removedItems; // delta saves: inventory slots emptied
+
+    private int[] removedEquipment; // delta saves: equipment slots emptied
 
     /**
      * Constructor that receives all save information
@@ -38,11 +61,11 @@ public class MessageSave implements Serializable{
      * @param posx              player world map pos x
      * @param posy              player world map pos y
      * @param gold              player gold amount
-     * @param inventoryData     player inventory data serialized in a string
-     * @param equipmentData     player worn equipment data serialized in a string
+     * @param inventory         player inventory items packed by Common.packInventory
+     * @param equipment         player worn equipments packed by Common.packWornEquipment
      */
     public MessageSave(String character, int worldMap, int level, long experience,
-                       int posx, int posy, long gold, String inventoryData, String equipmentData) {
+                       int posx, int posy, long gold, int[] inventory, int[] equipment) {
         this.character = character;
         this.worldMap = worldMap;
         this.level = level;
@@ -50,8 +73,8 @@ public class MessageSave implements Serializable{
         this.posx = posx;
         this.posy = posy;
         this.gold = gold;
-        this.inventoryData = inventoryData;
-        this.equipmentData = equipmentData;
+        this.inventory = inventory;
+        this.equipment = equipment;
     }
 
     public int getWorldMap() {
@@ -78,15 +101,35 @@ public class MessageSave implements Serializable{
         return gold;
     }
 
-    public String getInventoryData() {
-        return inventoryData;
+    public int[] getInventory() {
+        return inventory;
     }
 
-    public String getEquipmentData() {
-        return equipmentData;
+    public int[] getEquipment() {
+        return equipment;
     }
 
     public String getCharacter() {
         return character;
     }
+
+    public long getSequence() {return sequence;}
+
+    public void setSequence(long sequence) {this.sequence = sequence;}
+
+    public boolean isDelta() {return delta;}
+
+    public void setDelta(boolean delta) {this.delta = delta;}
+
+    public int getChanged() {return changed;}
+
+    public void setChanged(int changed) {this.changed = changed;}
+
+    public int[] getRemovedItems() {return removedItems;}
+
+    public void setRemovedItems(int[] removedItems) {this.removedItems = removedItems;}
+
+    public int[] getRemovedEquipment() {return removedEquipment;}
+
+    public void setRemovedEquipment(int[] removedEquipment) {this.removedEquipment = removedEquipment;}
 }
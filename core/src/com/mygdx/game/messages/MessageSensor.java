@@ -16,6 +16,7 @@ import java.util.HashMap;
 public class MessageSensor implements Serializable{
 
     private ArrayList<SensorCompact> sensors; // sensor data
+    private long version; // version of sensor data held by client (request) or sent by server (response)
 
     /**
      * Sensor data message constructor
@@ -31,4 +32,8 @@ public class MessageSensor implements Serializable{
     public ArrayList<SensorCompact> getSensors() {
         return sensors;
     }
+
+    public long getVersion() {return version;}
+
+    public void setVersion(long version) {this.version = version;}
 }
@@ -6,7 +6,6 @@ import java.util.ArrayList;
 import java.util.Observable;
 
 import lac.cnclib.sddl.message.Message;
-import lac.cnclib.sddl.serialization.Serialization;
 
 /**
  * Observable class that will contain
@@ -76,8 +75,9 @@ public class ServerMessages extends Observable {
      */
     public void addMessage(Message msg) {
         // gets content of each message
-        MessageContent msgContent = (MessageContent)
-                Serialization.fromJavaByteStream(msg.getContent());
+        MessageContent msgContent = MessageCodec.read(msg.getContent());
+        if(msgContent == null) // not a game message
+            return;
 
         // searches for listener to send received message
         for(int i = 0; i < listeners.size(); i++) {
@@ -0,0 +1,142 @@
+package com.mygdx.game.messages;
+
+/**
+ * Reads values written by {@link WireWriter}
+ * from a byte array. Reading past the end of
+ * data, or a size that does not fit in the data
+ * left, throws an {@link ArrayIndexOutOfBoundsException}
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class WireReader {
+
+    public static final int MAX_COLLECTION_SIZE = 65536; // most elements accepted in a collection
+
+    private byte[] buffer; // bytes to read
+    private int position; // current read position
+
+    /**
+     * Creates reader of a byte array
+     * @param buffer    the bytes to read
+     * @param position  the position to start reading from
+     */
+    public WireReader(byte[] buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    /**
+     * @return the next byte, as an unsigned value
+     */
+    public int readByte() {
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * @return the next boolean
+     */
+    public boolean readBoolean() {
+        return buffer[position++] != 0;
+    }
+
+    /**
+     * @return the next non-negative varint
+     */
+    public int readVarInt() {
+        int v = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer[position++];
+            v |= (b & 0x7F) << shift;
+            if(b >= 0)
+                return v;
+        }
+        throw new ArrayIndexOutOfBoundsException("Malformed varint");
+    }
+
+    /**
+     * @return the next zigzag encoded int
+     */
+    public int readInt() {
+        int z = readVarInt();
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /**
+     * @return the next zigzag encoded long
+     */
+    public long readLong() {
+        long z = 0;
+        for(int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer[position++];
+            z |= (long) (b & 0x7F) << shift;
+            if(b >= 0)
+                return (z >>> 1) ^ -(z & 1);
+        }
+        throw new ArrayIndexOutOfBoundsException("Malformed varint");
+    }
+
+    /**
+     * Reads the size of an array or collection, written as its size
+     * plus one, checking it against the bytes left before anything
+     * is allocated, so a malformed frame cannot allocate past its size
+     * @param minElementBytes   the least number of bytes of each element
+     * @param maxSize           the largest size accepted
+     * @return the size read, -1 if array or collection is null
+     */
+    public int readSize(int minElementBytes, int maxSize) {
+        int size = readVarInt() - 1;
+        if(size < 0)
+            return -1;
+        if(size > maxSize || (long) size * minElementBytes > buffer.length - position)
+            throw new ArrayIndexOutOfBoundsException("Size " + size + " exceeds frame data");
+        return size;
+    }
+
+    /**
+     * @return the next int array, may be null
+     */
+    public int[] readIntArray() {
+        int length = readSize(1, Integer.MAX_VALUE);
+        if(length < 0)
+            return null;
+
+        int[] a = new int[length];
+        for(int i = 0; i < length; i++)
+            a[i] = readInt();
+        return a;
+    }
+
+    /**
+     * @return the next double
+     */
+    public double readDouble() {
+        long bits = 0;
+        for(int i = 0; i < 8; i++)
+            bits = (bits << 8) | (buffer[position++] & 0xFF);
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * @return the next string, may be null
+     */
+    public String readString() {
+        int length = readSize(1, Integer.MAX_VALUE);
+        if(length < 0)
+            return null;
+
+        char[] chars = new char[length];
+        for(int i = 0; i < length; i++) {
+            int b = buffer[position++] & 0xFF;
+            if(b < 0x80)
+                chars[i] = (char) b;
+            else if(b < 0xE0)
+                chars[i] = (char) (((b & 0x1F) << 6) | (buffer[position++] & 0x3F));
+            else {
+                int b2 = buffer[position++] & 0x3F;
+                chars[i] = (char) (((b & 0x0F) << 12) | (b2 << 6) | (buffer[position++] & 0x3F));
+            }
+        }
+        return new String(chars);
+    }
+}
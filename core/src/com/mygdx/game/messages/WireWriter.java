@@ -0,0 +1,155 @@
+package com.mygdx.game.messages;
+
+/**
+ * Growable byte buffer that writes values
+ * in the compact binary wire format:
+ * varints for integers, zigzag varints for
+ * signed values and length-prefixed strings
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class WireWriter {
+
+    private byte[] buffer; // written bytes
+    private int position; // number of bytes written
+
+    /**
+     * Creates writer with an initial capacity
+     * @param capacity the initial capacity in bytes
+     */
+    public WireWriter(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Makes room for more bytes in buffer
+     * @param n the number of bytes to be written
+     */
+    private void ensure(int n) {
+        if(position + n > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, position + n)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Writes a single byte
+     * @param b the byte to write
+     */
+    public void writeByte(int b) {
+        ensure(1);
+        buffer[position++] = (byte) b;
+    }
+
+    /**
+     * Writes a boolean as a single byte
+     * @param b the boolean to write
+     */
+    public void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    /**
+     * Writes a non-negative int as a varint
+     * @param v the value to write
+     */
+    public void writeVarInt(int v) {
+        ensure(5);
+        while((v & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[position++] = (byte) v;
+    }
+
+    /**
+     * Writes a signed int as a zigzag varint
+     * @param v the value to write
+     */
+    public void writeInt(int v) {
+        writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * Writes a signed long as a zigzag varint
+     * @param v the value to write
+     */
+    public void writeLong(long v) {
+        long z = (v << 1) ^ (v >> 63);
+        ensure(10);
+        while((z & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((z & 0x7F) | 0x80);
+            z >>>= 7;
+        }
+        buffer[position++] = (byte) z;
+    }
+
+    /**
+     * Writes an int array as its length followed by its
+     * zigzag varint values. Null arrays are written as
+     * a zero length, other arrays as length plus one
+     * @param a the array to write, may be null
+     */
+    public void writeIntArray(int[] a) {
+        if(a == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(a.length + 1);
+        for(int i = 0; i < a.length; i++)
+            writeInt(a[i]);
+    }
+
+    /**
+     * Writes a double as its 8 raw bytes
+     * @param v the value to write
+     */
+    public void writeDouble(double v) {
+        long bits = Double.doubleToLongBits(v);
+        ensure(8);
+        for(int i = 56; i >= 0; i -= 8)
+            buffer[position++] = (byte) (bits >>> i);
+    }
+
+    /**
+     * Writes a string as its char count followed by
+     * its UTF-8 encoded chars. Null strings are written
+     * as a zero count, other strings as count plus one
+     * @param s the string to write, may be null
+     */
+    public void writeString(String s) {
+        if(s == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        int length = s.length();
+        writeVarInt(length + 1);
+        ensure(length * 3);
+        for(int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if(c < 0x80)
+                buffer[position++] = (byte) c;
+            else if(c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the bytes written
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[position];
+        System.arraycopy(buffer, 0, bytes, 0, position);
+        return bytes;
+    }
+}
@@ -27,6 +27,7 @@ import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.mygdx.game.Main;
 import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.messages.MessageFlag;
 import com.mygdx.game.messages.MessageLogin;
 import com.mygdx.game.messages.MessageLogoff;
 import com.mygdx.game.messages.MessageSave;
@@ -85,6 +86,7 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
     private Texture enemySheet; // enemies spritesheet
     private float battleSpawnTimer = 0f; // timer to control spawn battle
     private float saveTimer = 0f; // timer to control player saving
+    private SaveTracker saveTracker = new SaveTracker(); // tracks state sent to server for delta saves
     private float sensorTimer = Config.sensorTime; // timer to control sensor data collection
     private float accelTimer = Config.sensorTime; // timer to control accelerometer input
     private volatile boolean sync;   // true if all data is synchronized with server, false otherwise
@@ -364,9 +366,9 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
                 MapConfig.getInstance().setCurrentMap(MapConfig.getInstance().getMapWithID(playerMapName));
                 player.getAttributes().setLevel(loginMsg.getLevel());
                 player.getAttributes().setExp(loginMsg.getExperience());
-                ArrayList<Item[][]> pages = Common.deserializeInventory(loginMsg.getInventoryData());
+                ArrayList<Item[][]> pages = Common.unpackInventory(loginMsg.getInventory());
                 player.setInventory(new Inventory(loginMsg.getGold(), pages));
-                Equipment[] wornEquipment = Common.deserializeWornEquipment(loginMsg.getEquipmentData());
+                Equipment[] wornEquipment = Common.unpackWornEquipment(loginMsg.getEquipment());
                 player.getInventory().setWornEquipment(wornEquipment);
                 player.getTransform().move(new Vector2(0,0)); // to force collider update
             }
@@ -833,6 +835,9 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
         Gdx.gl.glClearColor(0, 0, 0, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
+        // creates maps loaded in background, if any
+        MapConfig.getInstance().update();
+
         // begin world batch rendering
         worldBatch.begin();
 
@@ -1011,7 +1016,7 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
         gameBGM.dispose();
         worldBatch.dispose();
         uiBatch.dispose();
-        gameMap.dispose();
+        MapConfig.getInstance().dispose(); // disposes all loaded maps
         player.dispose();
         Resource.getInstance().dispose(); // dispose remaining resources
         enemySheet.dispose();
@@ -1131,12 +1136,15 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
         int posy = MathUtils.round(player.getTransform().getPosition().y);
         // gets player gold
         long gold = player.getInventory().getGold();
-        // gets serialized string containing player inventory data
-        String invInfo = Common.serializeInventory(player.getInventory().getPages());
-        // gets serialized string containing player worn equipment data
-        String eqInfo = Common.serializeWornEquipment(player.getInventory().getWornEquipment());
-        // builds save message with info gathered
-        MessageSave saveMsg = new MessageSave(character, worldMap, level, exp, posx, posy, gold, invInfo, eqInfo);
+        // gets packed player inventory data
+        int[] inventory = Common.packInventory(player.getInventory().getPages());
+        // gets packed player worn equipment data
+        int[] equipment = Common.packWornEquipment(player.getInventory().getWornEquipment());
+        // builds save message with info gathered, only with data changed since last save
+        MessageSave saveMsg = saveTracker.nextSave(character, worldMap, level, exp, posx, posy, gold, inventory, equipment);
+        // nothing changed since last save
+        if(saveMsg == null)
+            return;
         // wraps save message in message content class
         MessageContent msg = new MessageContent(this.getClass().toString(), saveMsg, MessageContent.Type.SAVE);
         // sends save message to server with save information
@@ -1298,5 +1306,8 @@ public class Game implements GameState, GestureDetector.GestureListener, ServerL
     @Override
     public void handleServerMessage(MessageContent msg) {
         // TODO - Only set server as sync if save response is OKIDOKI
+        // server lost track of delta saves, next save must be full
+        if(msg.getType() == MessageContent.Type.SAVE && msg.getFlag() == MessageFlag.SAVE_RESYNC_REQUIRED)
+            saveTracker.requestResync();
     }
 }
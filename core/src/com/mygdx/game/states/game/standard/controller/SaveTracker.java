@@ -0,0 +1,122 @@
+package com.mygdx.game.states.game.standard.controller;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.mygdx.game.messages.MessageSave;
+import com.mygdx.game.util.Common;
+import com.mygdx.game.util.Config;
+
+/**
+ * Keeps the last player state sent to server
+ * to build delta saves containing only the data
+ * that changed since then. Player data is dirty
+ * when it differs from the last state sent
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SaveTracker {
+
+    private long sequence; // sequence number of last save sent
+    private boolean resync = true; // if next save must be a full save
+    private long lastSent; // last time a save was sent
+
+    /**
+     * Last state sent to server
+     */
+    private int worldMap; // player current world map
+    private int level;  // player level
+    private long experience; // player experience
+    private int posx; // player world map pos x
+    private int posy; // player world map pos y
+    private long gold; // player gold amount
+    private int[] inventory; // player inventory items packed as {uid, level, slot} triples
+    private int[] equipment; // player worn equipments packed as {uid, level, slot} triples
+
+    /**
+     * Reusable buffers of differences found
+     */
+    private IntArray changedItems = new IntArray();
+    private IntArray removedItems = new IntArray();
+    private IntArray changedEquips = new IntArray();
+    private IntArray removedEquips = new IntArray();
+
+    /**
+     * Builds the next save to send to server: a full save if
+     * server needs it, a delta save if any data changed or if
+     * it is time to keep player online, or null if there is
+     * nothing to send
+     *
+     * @param character the player character name
+     * @param worldMap  player current world map
+     * @param level     player level
+     * @param exp       player experience
+     * @param posx      player world map pos x
+     * @param posy      player world map pos y
+     * @param gold      player gold amount
+     * @param inventory player inventory packed by Common.packInventory
+     * @param equipment player worn equipments packed by Common.packWornEquipment
+     * @return the save to send to server, null if there is nothing to send
+     */
+    public synchronized MessageSave nextSave(String character, int worldMap, int level, long exp, int posx,
+                                             int posy, long gold, int[] inventory, int[] equipment) {
+        long now = System.currentTimeMillis();
+        MessageSave save;
+
+        if(resync) { // server needs full state
+            save = new MessageSave(character, worldMap, level, exp, posx, posy, gold, inventory, equipment);
+            resync = false;
+        } else {
+            // flags general fields that changed
+            int changed = 0;
+            if(worldMap != this.worldMap) changed |= MessageSave.FIELD_WORLD_MAP;
+            if(level != this.level) changed |= MessageSave.FIELD_LEVEL;
+            if(exp != this.experience) changed |= MessageSave.FIELD_EXPERIENCE;
+            if(posx != this.posx || posy != this.posy) changed |= MessageSave.FIELD_POSITION;
+            if(gold != this.gold) changed |= MessageSave.FIELD_GOLD;
+
+            // finds inventory and equipment slots that changed
+            changedItems.clear();
+            removedItems.clear();
+            changedEquips.clear();
+            removedEquips.clear();
+            Common.diffPacked(this.inventory, inventory, changedItems, removedItems);
+            Common.diffPacked(this.equipment, equipment, changedEquips, removedEquips);
+
+            boolean dirty = changed != 0 || changedItems.size > 0 || removedItems.size > 0
+                    || changedEquips.size > 0 || removedEquips.size > 0;
+
+            // nothing changed and player is still considered online in server
+            if(!dirty && now - lastSent < Config.saveHeartbeatTime * 1000)
+                return null;
+
+            save = new MessageSave(character, worldMap, level, exp, posx, posy, gold,
+                                    changedItems.toArray(), changedEquips.toArray());
+            save.setDelta(true);
+            save.setChanged(changed);
+            save.setRemovedItems(removedItems.toArray());
+            save.setRemovedEquipment(removedEquips.toArray());
+        }
+
+        save.setSequence(++sequence);
+
+        // stores state sent
+        this.worldMap = worldMap;
+        this.level = level;
+        this.experience = exp;
+        this.posx = posx;
+        this.posy = posy;
+        this.gold = gold;
+        this.inventory = inventory;
+        this.equipment = equipment;
+        this.lastSent = now;
+
+        return save;
+    }
+
+    /**
+     * Forces next save to be a full save
+     */
+    public synchronized void requestResync() {
+        resync = true;
+    }
+}
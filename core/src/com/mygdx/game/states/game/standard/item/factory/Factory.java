@@ -630,6 +630,68 @@ public class Factory {
         return desc;
     }
 
+    /**
+     * Gets the equipment slot of an item via its unique ID.
+     * Does not need factory data, so it is safe to use in server
+     * @param uniqueID unique ID of item
+     * @return the equipment slot of the item, null if item is not an equipment
+     */
+    public static Equipment.Slot getEquipmentSlot(int uniqueID) {
+        if(uniqueID < helmetFirstID)
+            return null;
+        else if(uniqueID < armorFirstID)
+            return Equipment.Slot.HELMET;
+        else if(uniqueID < legsFirstID)
+            return Equipment.Slot.ARMOR;
+        else if(uniqueID < bootsFirstID)
+            return Equipment.Slot.LEGS;
+        else if(uniqueID < weaponFirstID)
+            return Equipment.Slot.BOOTS;
+        else if(uniqueID < shieldFirstID)
+            return Equipment.Slot.WEAPON;
+        else if(uniqueID < ringFirstID)
+            return Equipment.Slot.SHIELD;
+        else if(uniqueID < amuletFirstID)
+            return Equipment.Slot.RING;
+        else
+            return Equipment.Slot.AMULET;
+    }
+
+    /**
+     * Gets the first unique ID of equipments of a slot.
+     * Unique IDs of a slot are contiguous
+     * @param slot the equipment slot
+     * @return the first unique ID of equipments of the slot
+     */
+    public static int getFirstID(Equipment.Slot slot) {
+        switch(slot) {
+            case HELMET: return helmetFirstID;
+            case ARMOR: return armorFirstID;
+            case LEGS: return legsFirstID;
+            case BOOTS: return bootsFirstID;
+            case WEAPON: return weaponFirstID;
+            case SHIELD: return shieldFirstID;
+            case RING: return ringFirstID;
+            default: return amuletFirstID;
+        }
+    }
+
+    /**
+     * Gets the first unique ID after equipments of a slot
+     * @param slot the equipment slot
+     * @return the first unique ID that is not of the slot
+     */
+    public static int getEndID(Equipment.Slot slot) {
+        int first = getFirstID(slot);
+        int end = Integer.MAX_VALUE;
+        for(Equipment.Slot other : Equipment.Slot.values()) {
+            int otherFirst = getFirstID(other);
+            if(otherFirst > first && otherFirst < end)
+                end = otherFirst;
+        }
+        return end;
+    }
+
     /**
      * disposes resources
      */
@@ -0,0 +1,267 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.mygdx.game.util.Config;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams the chunks of a large compiled map around the
+ * camera, so only the chunks near the player are kept in
+ * memory. Chunks are read on a background thread through the
+ * chunk index of the compiled map; the chunks right around
+ * the camera are read at once if not loaded yet, so colliders
+ * near the player are always present. Chunks farther than the
+ * stream radius (plus one, to avoid reloading at chunk borders)
+ * are unloaded. Chunks that could not be read are read again
+ * later, waiting longer after each failure. Only accessed from
+ * the rendering thread
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+class ChunkStreamer {
+
+    /**
+     * Tiles and colliders of a chunk read from compiled map
+     */
+    static class Chunk {
+        short[][] tiles; // global ids of chunk tiles of each layer, line by line, null if layer has no tiles in chunk
+        byte[] colliders; // collider type of each chunk tile, line by line
+
+        Chunk(short[][] tiles, byte[] colliders) {
+            this.tiles = tiles;
+            this.colliders = colliders;
+        }
+    }
+
+    private static ExecutorService loader; // chunk loading thread, shared by streamed maps
+
+    private FileHandle file; // the compiled map file
+    private int[] offsets; // offset of each chunk in file, line by line, -1 if chunk is empty
+    private int layerCount; // number of layers of map
+    private int chunkSize; // number of tiles on each side of a chunk
+    private int chunksX; // number of chunks in each line of chunks
+    private int chunksY; // number of lines of chunks
+    private boolean[] loaded; // if each chunk is loaded in map
+    private int[] failures; // number of failed reads in a row of each chunk
+    private long[] retryAt; // time in ms after which each failed chunk can be read again
+    private HashMap<Integer, Future<Chunk>> loading; // chunks being read in background
+    private int centerX = -1, centerY = -1; // chunk at the center of view in last update
+    private Map map; // the map that receives the chunks
+
+    /**
+     * Constructor of chunk streamer
+     * @param file          the compiled map file
+     * @param offsets       offset of each chunk in file, line by line, -1 if chunk is empty
+     * @param layerCount    number of layers of map
+     * @param chunkSize     number of tiles on each side of a chunk
+     * @param chunksX       number of chunks in each line of chunks
+     */
+    ChunkStreamer(FileHandle file, int[] offsets, int layerCount, int chunkSize, int chunksX) {
+        this.file = file;
+        this.offsets = offsets;
+        this.layerCount = layerCount;
+        this.chunkSize = chunkSize;
+        this.chunksX = chunksX;
+        this.chunksY = offsets.length / chunksX;
+        this.loaded = new boolean[offsets.length];
+        this.failures = new int[offsets.length];
+        this.retryAt = new long[offsets.length];
+        this.loading = new HashMap<Integer, Future<Chunk>>();
+    }
+
+    /**
+     * Sets the map that receives the chunks
+     * @param map the streamed map
+     */
+    void bind(Map map) {
+        this.map = map;
+    }
+
+    /**
+     * Loads the chunks around the center of view and unloads far chunks
+     * @param i the line of tile at the center of view
+     * @param j the column of tile at the center of view
+     */
+    void update(int i, int j) {
+        int cx = Math.min(Math.max(j, 0) / chunkSize, chunksX - 1);
+        int cy = Math.min(Math.max(i, 0) / chunkSize, chunksY - 1);
+        int radius = Config.mapStreamRadius;
+
+        // sets chunks read in background
+        Iterator<java.util.Map.Entry<Integer, Future<Chunk>>> it = loading.entrySet().iterator();
+        while(it.hasNext()) {
+            java.util.Map.Entry<Integer, Future<Chunk>> entry = it.next();
+            if(entry.getValue().isDone()) {
+                it.remove();
+                int index = entry.getKey();
+                Chunk chunk = getLoaded(index, entry.getValue());
+                // chunks left behind while being read are dropped
+                if(Math.max(Math.abs(index % chunksX - cx), Math.abs(index / chunksX - cy)) <= radius + 1)
+                    setChunk(index, chunk);
+            }
+        }
+
+        // chunks around center are needed now, the others are read in background (nearest first)
+        for(int ring = 0; ring <= radius; ring++) {
+            for(int y = cy - ring; y <= cy + ring; y++) {
+                for(int x = cx - ring; x <= cx + ring; x++) {
+                    if(x < 0 || y < 0 || x >= chunksX || y >= chunksY)
+                        continue;
+                    if(Math.max(Math.abs(x - cx), Math.abs(y - cy)) != ring)
+                        continue;
+                    request(y * chunksX + x, ring <= 1);
+                }
+            }
+        }
+
+        // unloads far chunks when center changes
+        if(cx != centerX || cy != centerY) {
+            centerX = cx;
+            centerY = cy;
+            for(int c = 0; c < loaded.length; c++) {
+                if(loaded[c] && Math.max(Math.abs(c % chunksX - cx), Math.abs(c / chunksX - cy)) > radius + 1) {
+                    map.setChunk(c % chunksX, c / chunksX, null);
+                    loaded[c] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Requests a chunk that is not loaded yet
+     * @param index the index of chunk
+     * @param now   if chunk is needed now (waits for it)
+     */
+    private void request(final int index, boolean now) {
+        if(loaded[index] || offsets[index] < 0)
+            return;
+        if(failures[index] > 0 && System.currentTimeMillis() < retryAt[index])
+            return; // waits before reading a failed chunk again
+
+        Future<Chunk> future = loading.get(index);
+        if(future == null && !now) {
+            loading.put(index, getLoader().submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    return read(index);
+                }
+            }));
+            return;
+        }
+
+        // needed now: waits background read or reads it now
+        Chunk chunk;
+        if(future != null) {
+            loading.remove(index);
+            chunk = getLoaded(index, future);
+        } else {
+            try {
+                chunk = read(index);
+            } catch (IOException e) {
+                System.err.println("Could not read chunk " + index + " of map " + file.name());
+                e.printStackTrace();
+                chunk = null;
+            }
+        }
+        setChunk(index, chunk);
+    }
+
+    /**
+     * Sets a chunk read in the map. Chunks that could not be
+     * read are read again later, with a delay that doubles at
+     * each failure up to {@link Config#mapStreamRetryMaxDelay}
+     * @param index the index of chunk
+     * @param chunk the chunk read, null if it could not be read
+     */
+    private void setChunk(int index, Chunk chunk) {
+        if(chunk == null) {
+            failures[index]++;
+            long delay = Config.mapStreamRetryDelay << Math.min(failures[index] - 1, 16);
+            retryAt[index] = System.currentTimeMillis() + Math.min(delay, Config.mapStreamRetryMaxDelay);
+            System.err.println("Chunk " + index + " of map " + file.name() + " is missing after " +
+                                failures[index] + " failed reads, its tiles and colliders are not loaded");
+            return;
+        }
+        failures[index] = 0;
+        if(loaded[index])
+            return;
+        map.setChunk(index % chunksX, index / chunksX, chunk);
+        loaded[index] = true;
+    }
+
+    /**
+     * Reads a chunk from compiled map file. Can run on any thread
+     * @param index the index of chunk
+     * @return the chunk read
+     */
+    private Chunk read(int index) throws IOException {
+        InputStream stream = file.read();
+        try {
+            long skip = offsets[index];
+            while(skip > 0) {
+                long skipped = stream.skip(skip);
+                if(skipped <= 0)
+                    throw new IOException("Chunk " + index + " beyond end of file");
+                skip -= skipped;
+            }
+            return MapReaderBinary.readChunk(new DataInputStream(new BufferedInputStream(stream)),
+                                             layerCount, chunkSize);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Gets the result of a chunk read in background
+     * @param index     the index of chunk
+     * @param future    the background read of chunk
+     * @return the chunk read, null if it could not be read
+     */
+    private Chunk getLoaded(int index, Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (Exception e) { // error reading chunk in background
+            System.err.println("Could not read chunk " + index + " of map " + file.name() + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stops reading chunks of map
+     */
+    void dispose() {
+        for(Future<Chunk> future : loading.values())
+            future.cancel(true);
+        loading.clear();
+    }
+
+    /**
+     * @return the chunk loading thread, created when first needed
+     */
+    private static synchronized ExecutorService getLoader() {
+        if(loader == null) {
+            loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "chunk-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loader;
+    }
+}
@@ -1,10 +1,16 @@
 package com.mygdx.game.states.game.standard.map;
 
+import com.mygdx.game.util.Config;
+
 /**
  * Class that represents a layer in the context of tile-based maps,
  * in which a layer implementation gives a new dimension to the 2D world,
  * allowing 2D objects to be positioned and drawn on top of another
  * in an organized and controlled way, without much complication.
+ * Tiles are stored as their global ids in square chunks of tiles,
+ * line by line inside each chunk, two bytes per cell (0 where there
+ * is no tile). Chunks without tiles are not stored, and chunks of
+ * streamed maps are only stored while loaded
  *
  * @author	Pedro Sampaio
  * @since	0.3
@@ -12,7 +18,13 @@ package com.mygdx.game.states.game.standard.map;
  */
 public class Layer {
 
-    private Tile[][] tiles;					//  matrix that contains all the tiles that composes the layer (including non created tiles)
+    public static final int NO_TILE = 0;	//	the id of cells without tile
+
+    private short[][] chunks;				//  global ids of the tiles of each chunk, line by line (read as unsigned), null if chunk has no tiles or is not loaded
+    private int width;						//	the number of tiles in each line of the layer
+    private int height;						//	the number of lines of the layer
+    private int chunkSize;					//	the number of tiles on each side of a chunk
+    private int chunksX;					//	the number of chunks in each line of chunks
     private float zIndex;					//	the z-index (depth) of the layer: bigger indexes on top of smaller indexes
     private float opacity;					//	the current opacity of the layer (for visualization tweaks in the viewport)
 
@@ -26,7 +38,7 @@ public class Layer {
     public Layer () {
         this.zIndex = 0;
         this.opacity = 0;
-        tiles = null;
+        chunks = null;
     }
 
     /**
@@ -36,22 +48,51 @@ public class Layer {
      * @param opacity		the current opacity of the layer (for visualization tweaks in the viewport)
      */
     public Layer (float zIndex, float opacity) {
-        this.zIndex = zIndex;
-        this.opacity = opacity;
         // initializes tiles with current map size configurated
-        tiles = new Tile[MapConfig.getInstance().getCurrentMap().getMapSizeY()]
-                        [MapConfig.getInstance().getCurrentMap().getMapSizeX()];
+        this(MapConfig.getInstance().getCurrentMap().getMapSizeX(),
+             MapConfig.getInstance().getCurrentMap().getMapSizeY(), Config.mapChunkSize, zIndex, opacity);
     }
 
     /**
      * Constructor with layer parameters
      *
-     * @param tiles			the tiles data for the layer
+     * @param tiles			the global ids of tiles of the layer, line by line
+     * @param width			the number of tiles in each line of the layer
+     * @param zIndex		the z-index (depth) of the layer: bigger indexes on top of smaller indexes
+     * @param opacity		the current opacity of the layer (for visualization tweaks in the viewport)
+     */
+    public Layer(short[] tiles, int width, float zIndex, float opacity) {
+        this(width, tiles.length / width, Config.mapChunkSize, zIndex, opacity);
+        // splits tiles in chunks, keeping only chunks with tiles
+        for(int i = 0; i < height; i++) {
+            for(int j = 0; j < width; j++) {
+                short id = tiles[i * width + j];
+                if(id == NO_TILE)
+                    continue;
+                int index = (i / chunkSize) * chunksX + j / chunkSize;
+                if(chunks[index] == null)
+                    chunks[index] = new short[chunkSize * chunkSize];
+                chunks[index][(i % chunkSize) * chunkSize + j % chunkSize] = id;
+            }
+        }
+    }
+
+    /**
+     * Constructor of a layer without tiles, for
+     * chunks to be set as they are read
+     *
+     * @param width			the number of tiles in each line of the layer
+     * @param height		the number of lines of the layer
+     * @param chunkSize		the number of tiles on each side of a chunk
      * @param zIndex		the z-index (depth) of the layer: bigger indexes on top of smaller indexes
      * @param opacity		the current opacity of the layer (for visualization tweaks in the viewport)
      */
-    public Layer(Tile[][] tiles, float zIndex, float opacity) {
-        this.tiles = tiles;
+    public Layer(int width, int height, int chunkSize, float zIndex, float opacity) {
+        this.width = width;
+        this.height = height;
+        this.chunkSize = chunkSize;
+        this.chunksX = (width + chunkSize - 1) / chunkSize;
+        this.chunks = new short[chunksX * ((height + chunkSize - 1) / chunkSize)][];
         this.zIndex = zIndex;
         this.opacity = opacity;
     }
@@ -86,45 +127,79 @@ public class Layer {
     }
 
     /**
-     * @return the matrix that contains all the tiles that composes the layer
+     * @return the number of tiles in each line of the layer
      */
-    public Tile[][] getTiles() {
-        return tiles;
+    public int getWidth() {
+        return width;
     }
 
     /**
-     * @param tiles the tiles to set
+     * @return the number of lines of the layer
      */
-    public void setTiles(Tile[][] tiles) {
-        this.tiles = tiles;
+    public int getHeight() {
+        return height;
     }
 
     /**
-     * creates a copy of the tiles structure
-     * @return	the copy of the tiles structure
+     * @return the number of tiles on each side of a chunk
      */
-    public Tile[][] createCopy() {
-        int mapSizeY = MapConfig.getInstance().getCurrentMap().getMapSizeY();
-        int mapSizeX = MapConfig.getInstance().getCurrentMap().getMapSizeX();
-        final Tile[][] result = new Tile[mapSizeY][mapSizeX];
-        for (int i = 0; i < mapSizeY; i++) {
-            for (int j = 0; j < mapSizeX; j++) {
-                if(tiles[i][j] != null)
-                    result[i][j] = new Tile(tiles[i][j].getIndexI(), tiles[i][j].getIndexJ(), tiles[i][j].getTileset(),
-                            tiles[i][j].getId(),tiles[i][j].getDrawI(), tiles[i][j].getDrawJ(), tiles[i][j].isComplete());
-            }
-        }
-        return result;
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Gets the tiles of a chunk
+     * @param cx the column of chunk
+     * @param cy the line of chunk
+     * @return the global ids of chunk tiles, line by line, null if chunk has no tiles or is not loaded
+     */
+    public short[] getChunk(int cx, int cy) {
+        return chunks[cy * chunksX + cx];
+    }
+
+    /**
+     * Sets the tiles of a chunk
+     * @param cx        the column of chunk
+     * @param cy        the line of chunk
+     * @param tiles     the global ids of chunk tiles, line by line, null to unload chunk
+     */
+    public void setChunk(int cx, int cy, short[] tiles) {
+        chunks[cy * chunksX + cx] = tiles;
+    }
+
+    /**
+     * @return the approximate size in bytes of the tiles stored
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for(int c = 0; c < chunks.length; c++)
+            if(chunks[c] != null)
+                size += chunks[c].length * 2;
+        return size;
+    }
+
+    /**
+     * Gets the global id of a tile of the layer
+     * @param i the line of tile
+     * @param j the column of tile
+     * @return the global id of tile, {@link #NO_TILE} if there is no tile
+     */
+    public int getTileId(int i, int j) {
+        short[] chunk = chunks[(i / chunkSize) * chunksX + j / chunkSize];
+        if(chunk == null)
+            return NO_TILE;
+        return chunk[(i % chunkSize) * chunkSize + j % chunkSize] & 0xFFFF;
     }
 
     /**
      * @return if the layer is empty (no tiles in it)
      */
     public boolean isEmpty() {
-
-        for(int i = 0; i < tiles.length; i++) {
-            for(int j = 0; j < tiles[i].length; j++) {
-                if(tiles[i][j] != null)
+        for(int c = 0; c < chunks.length; c++) {
+            if(chunks[c] == null)
+                continue;
+            for(int k = 0; k < chunks[c].length; k++) {
+                if(chunks[c][k] != NO_TILE)
                     return false;
             }
         }
@@ -11,19 +11,23 @@ import com.badlogic.gdx.math.Vector2;
 import com.mygdx.game.states.game.standard.camera.GameCamera;
 import com.mygdx.game.states.game.standard.physics.Collider;
 import com.mygdx.game.util.Common;
+import com.mygdx.game.util.Config;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Class that represents a map in the game.
  * A map is a collection of tiles arranged in a certain way
  * that composes the 2D world in a tile-based game.
  * Considering that we have different layers for the map,
- * the map is the collection of all layers with all of its tiles
+ * the map is the collection of all layers with all of its tiles.
+ * Tiles and colliders are stored in square chunks; chunks of
+ * large compiled maps are streamed around the camera
  *
  * @author	Pedro Sampaio
  * @since	0.3
@@ -31,22 +35,30 @@ import java.util.ArrayList;
  */
 public class Map {
 
-    private TextureRegion tileTex; // texture of tile that will be dinamically changed
+    private TextureRegion[] tileRegions; // image region of each tile global id, from tilesets regions
+    private ArrayList<Tileset> tilesets; // the tilesets of map tiles
     private ArrayList<Layer> layers;	// main data of the program: List that contains all the layers that composes the map
     private String name; // the name of the map file
-    private Collider[][] colliders; // the collider mask of map
-    private Field[][] fields; // the fields mask of map
+    private Collider[][] colliders; // the colliders of each chunk of map, line by line inside chunk (null if chunk has none)
+    private HashMap<Integer, Field> fields; // the special fields of map, by index of tile (i * mapSizeX + j)
     private ArrayList<Field> mapTeleports; // auxiliary list of map teleports to aid in binding
     private ShapeRenderer shapeRenderer; // shape renderer for collider debug
     private Rectangle viewportGrid; // the visible grid coordinates and dimension
     private Vector2 startPoint; // the start point of this map
+    private StaticLayerCache staticCache; // static bottom layers pre-baked in sprite caches, null if not baked
+    private ChunkStreamer streamer; // streams chunks of map around camera, null if map is loaded whole
 
     private int mapSizeX; // map size on X axis
     private int mapSizeY; // map size on Y axis
     private int tileSize; // tilesize of map
+    private int chunkSize; // number of tiles on each side of a chunk
+    private int chunksX; // number of chunks in each line of chunks
 
     private boolean randomBattleEnabled; // boolean that represents if random battle should occur in this map
 
+    static final int COLLIDER_PHYSICAL = 1; // collider type of physical tiles
+    static final int COLLIDER_TRIGGER = 2; // collider type of trigger tiles
+
     // existent world maps
     public enum MapID {example_map, testmap, mapdemo;}
 
@@ -60,6 +72,9 @@ public class Map {
         layers = new ArrayList<Layer>();
         // creates and adds first layer (idx 0) to list of layers (map) with full opacity (1f)
         layers.add(new Layer(0, 1f));
+        // no tiles yet
+        tilesets = new ArrayList<Tileset>();
+        tileRegions = new TextureRegion[1];
         // initializes shape render
         shapeRenderer = new ShapeRenderer();
         // random battle encounters are enabled by default
@@ -71,13 +86,38 @@ public class Map {
      * For copy, receive all properties via parameter
      *
      * @param layers 	receives the list of layers that contain all info of the tiles in layers for the map
+     * @param tilesets  the tilesets of the tiles in layers
+     * @param name the name of the map file
+     * @param mapSizeX number of tiles in map on x-axis (columns)
+     * @param mapSizeY number of tiles in map on y-axis (lines)
+     * @param tileSize the size of the map's tile
+     */
+    public Map(ArrayList<Layer> layers, ArrayList<Tileset> tilesets, String name,
+               int mapSizeX, int mapSizeY, int tileSize) {
+        this(layers, tilesets, name, mapSizeX, mapSizeY, tileSize, null, null, null);
+    }
+
+    /**
+     * Constructor for this class
+     * Receives colliders and fields already read (from
+     * a compiled map) or null to read them from text files.
+     * Streamed maps receive the streamer of their chunks instead
+     * of colliders, and layers without chunks loaded
+     *
+     * @param layers 	receives the list of layers that contain all info of the tiles in layers for the map
+     * @param tilesets  the tilesets of the tiles in layers
      * @param name the name of the map file
      * @param mapSizeX number of tiles in map on x-axis (columns)
      * @param mapSizeY number of tiles in map on y-axis (lines)
      * @param tileSize the size of the map's tile
+     * @param colliderMask the collider type of each tile, line by line (0 none, 1 physical, 2 trigger), null to read .col file
+     * @param fieldList the special fields of map, null to read .config file
+     * @param streamer the streamer of map chunks, null if map is loaded whole
      */
-    public Map(ArrayList<Layer> layers, String name, int mapSizeX, int mapSizeY, int tileSize) {
+    Map(ArrayList<Layer> layers, ArrayList<Tileset> tilesets, String name, int mapSizeX, int mapSizeY,
+        int tileSize, byte[] colliderMask, ArrayList<Field> fieldList, ChunkStreamer streamer) {
         this.layers = layers;
+        this.tilesets = tilesets;
         this.name = name;
         this.mapSizeX = mapSizeX;
         this.mapSizeY = mapSizeY;
@@ -85,22 +125,60 @@ public class Map {
         viewportGrid = new Rectangle();
         // initializes shape render
         shapeRenderer = new ShapeRenderer();
-        // initialize collider mask
-        colliders = new Collider[mapSizeY][mapSizeX];
+        // initialize colliders chunks (same chunks as layers)
+        chunkSize = layers.isEmpty() ? Config.mapChunkSize : layers.get(0).getChunkSize();
+        chunksX = (mapSizeX + chunkSize - 1) / chunkSize;
+        colliders = new Collider[chunksX * ((mapSizeY + chunkSize - 1) / chunkSize)][];
         // initialize fields mask
-        fields = new Field[mapSizeY][mapSizeX];
+        fields = new HashMap<Integer, Field>();
         // initializes start point;
         startPoint = new Vector2();
         // initializes helper list of map teleports
         mapTeleports = new ArrayList<Field>();
-        // reads colliders from collider mask file
-        loadColliders();
-        // reads fields information from map config file
-        loadFields();
+        // reads colliders from collider mask file, if not read yet (streamed maps read them by chunk)
+        this.streamer = streamer;
+        if(streamer != null)
+            streamer.bind(this);
+        else if(colliderMask != null) {
+            for(int i = 0; i < mapSizeY; i++)
+                for(int j = 0; j < mapSizeX; j++)
+                    setCollider(i, j, colliderMask[i * mapSizeX + j]);
+        } else
+            loadColliders();
+        // reads fields information from map config file, if not read yet
+        if(fieldList != null) {
+            for(int f = 0; f < fieldList.size(); f++)
+                addField(fieldList.get(f));
+        } else
+            loadFields();
         // random battle encounters are enabled by default
         randomBattleEnabled = true;
-        // gets tileset region that matches the image of current tile
-        tileTex = new TextureRegion();
+        // gathers regions of tilesets in a table indexed by tile global id
+        tileRegions = createTileRegions(tilesets);
+        // pre-bakes static layers, drawn by chunks instead of tile by tile
+        if(Config.mapStaticCache && streamer == null)
+            staticCache = StaticLayerCache.build(layers, tileRegions, mapSizeX, mapSizeY, tileSize,
+                                                 Config.mapCacheChunkSize);
+    }
+
+    /**
+     * Gathers the image regions of tilesets tiles in a
+     * table indexed by tile global id, so drawing a tile
+     * is a lookup of its id. Regions are shared with tilesets
+     * @param tilesets the tilesets of map
+     * @return the image region of each tile global id (null where id has no tile)
+     */
+    private static TextureRegion[] createTileRegions(ArrayList<Tileset> tilesets) {
+        int size = Layer.NO_TILE + 1;
+        for(int t = 0; t < tilesets.size(); t++)
+            size = Math.max(size, tilesets.get(t).getFirstID() + tilesets.get(t).getTileCount());
+
+        TextureRegion[] regions = new TextureRegion[size];
+        for(int t = 0; t < tilesets.size(); t++) {
+            Tileset tileset = tilesets.get(t);
+            System.arraycopy(tileset.getRegions(), 0, regions, tileset.getFirstID(), tileset.getTileCount());
+        }
+        return regions;
     }
 
     /**
@@ -119,11 +197,9 @@ public class Map {
                 String[] cols = line.split(",");
                 for (int j = 0; j < cols.length; j++) {
                     if(cols[j].equals("1"))  // creates collider if 1 is the info
-                        colliders[i][j] = new Collider(j*tileSize, i*tileSize,
-                                            tileSize, tileSize, true, new Vector2(i, j));
+                        setCollider(i, j, COLLIDER_PHYSICAL);
                     else if(cols[j].equals("2")) // trigger collider
-                        colliders[i][j] = new Collider(j*tileSize, i*tileSize,
-                                tileSize, tileSize, false, new Vector2(i, j));
+                        setCollider(i, j, COLLIDER_TRIGGER);
                 }
                 i++;
             }
@@ -171,18 +247,7 @@ public class Map {
                 Field.FieldType fieldType = Field.FieldType.valueOf(type);
 
                 // creates the field in the correspondent position
-                int i = (int)index.x; int j = (int)index.y;
-                Field field = new Field(index, fieldType, id, complement);
-                fields[i][j] = field;
-
-                // if type is start, save start point
-                if(fieldType == Field.FieldType.START) {
-                    startPoint = index.cpy();
-                }
-                // if type is map teleport, save to helper list to aid in binding
-                else if (fieldType == Field.FieldType.MAPTELEPORT) {
-                    mapTeleports.add(new Field(index.cpy(), fieldType, id, complement));
-                }
+                addField(new Field(index, fieldType, id, complement));
             }
         } catch (IOException e) {
             System.err.println("Could not read file: maps/" + name + ".config");
@@ -190,6 +255,59 @@ public class Map {
         }
     }
 
+    /**
+     * Creates the collider of a tile
+     * @param i     the line of tile
+     * @param j     the column of tile
+     * @param type  the collider type (0 none, 1 physical, 2 trigger)
+     */
+    private void setCollider(int i, int j, int type) {
+        if((type != COLLIDER_PHYSICAL && type != COLLIDER_TRIGGER) || i >= mapSizeY || j >= mapSizeX)
+            return;
+
+        int chunk = (i / chunkSize) * chunksX + j / chunkSize;
+        if(colliders[chunk] == null)
+            colliders[chunk] = new Collider[chunkSize * chunkSize];
+        colliders[chunk][(i % chunkSize) * chunkSize + j % chunkSize] = new Collider(j*tileSize, i*tileSize,
+                tileSize, tileSize, type == COLLIDER_PHYSICAL, new Vector2(i, j));
+    }
+
+    /**
+     * Sets the tiles and colliders of a chunk read by streamer
+     * @param cx    the column of chunk
+     * @param cy    the line of chunk
+     * @param chunk the chunk read, null to unload chunk
+     */
+    void setChunk(int cx, int cy, ChunkStreamer.Chunk chunk) {
+        colliders[cy * chunksX + cx] = null;
+        for(int l = 0; l < layers.size(); l++)
+            layers.get(l).setChunk(cx, cy, chunk == null ? null : chunk.tiles[l]);
+        if(chunk == null)
+            return;
+
+        for(int k = 0; k < chunk.colliders.length; k++)
+            if(chunk.colliders[k] != 0)
+                setCollider(cy * chunkSize + k / chunkSize, cx * chunkSize + k % chunkSize, chunk.colliders[k]);
+    }
+
+    /**
+     * Adds a special field to the mask of fields
+     * @param field the field to add
+     */
+    private void addField(Field field) {
+        Vector2 index = field.getIndex();
+        fields.put((int)index.x * mapSizeX + (int)index.y, field);
+
+        // if type is start, save start point
+        if(field.getType() == Field.FieldType.START) {
+            startPoint = index.cpy();
+        }
+        // if type is map teleport, save to helper list to aid in binding
+        else if (field.getType() == Field.FieldType.MAPTELEPORT) {
+            mapTeleports.add(new Field(index.cpy(), field.getType(), field.getID(), field.getComplement()));
+        }
+    }
+
     /**
      * Gets the binding location of this map
      * with the map passed in the parameter
@@ -224,50 +342,72 @@ public class Map {
         return layers;
     }
 
-    /**
-     * Creates a complete copy of the map
-     * @return	the copy of the map
-     */
-    public Map createCopy() {
-        ArrayList<Layer> copyLayers = new ArrayList<Layer>();
-        for(int i = 0; i < layers.size(); i++) {
-            copyLayers.add(new Layer(layers.get(i).createCopy(), layers.get(i).getzIndex(), layers.get(i).getOpacity()));
-        }
-
-        return new Map(copyLayers, name, mapSizeX, mapSizeY, tileSize);
-    }
-
     /**
      * disposes all textures used in the map
      */
     public void dispose() {
-        // disposes tilesets textures
-        ArrayList<Tileset> tilesets = TilesetConfig.getInstance().getTilesets();
-        // iterates through each tileset to dispose its texture
+        // disposes textures of map tilesets (each map loads its own)
         for(int i = 0; i < tilesets.size(); i++)
             tilesets.get(i).getImage().dispose();
         // disposes shape renderer
         shapeRenderer.dispose();
+        // disposes pre-baked static layers
+        if(staticCache != null)
+            staticCache.dispose();
+        // stops streaming chunks
+        if(streamer != null)
+            streamer.dispose();
     }
 
     /**
-     * getter for the collider mask of the map
-     * @return the collider mask of the map
+     * getter for the collider of a tile of the map
+     * @param i the line of tile
+     * @param j the column of tile
+     * @return the collider of tile, null if tile has no collider (or its chunk is not loaded)
      */
-    public Collider[][] getColliders() {return colliders;}
+    public Collider getCollider(int i, int j) {
+        Collider[] chunk = colliders[(i / chunkSize) * chunksX + j / chunkSize];
+        return chunk == null ? null : chunk[(i % chunkSize) * chunkSize + j % chunkSize];
+    }
 
     /**
-     * getter for the field mask of the map
-     * @return the field mask of the map
+     * getter for the special field of a tile of the map
+     * @param i the line of tile
+     * @param j the column of tile
+     * @return the field of tile, null if tile is not a special field
      */
-    public Field[][] getFields() {return fields;}
+    public Field getField(int i, int j) {return fields.get(i * mapSizeX + j);}
 
 
     public Vector2 getStartPoint() {return startPoint;}
 
+    /**
+     * getter for the map teleports of the map
+     * @return the fields that teleport to other maps (ids are the other map names)
+     */
+    public ArrayList<Field> getMapTeleports() {return mapTeleports;}
+
+    /**
+     * Approximate memory used by map textures and
+     * tiles, to bound the maps kept loaded
+     * @return the approximate size of map in bytes
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for(int l = 0; l < layers.size(); l++)
+            size += layers.get(l).getMemorySize();
+        for(int t = 0; t < tilesets.size(); t++)
+            size += (long) tilesets.get(t).getImage().getWidth() * tilesets.get(t).getImage().getHeight() * 4;
+        if(staticCache != null)
+            size += staticCache.getMemorySize();
+        return size;
+    }
+
     /**
      * Renders tiled map created with 2d map builder
-     * with all its tiles and layers
+     * with all its tiles and layers. Pre-baked static
+     * layers are drawn by visible chunks, other layers
+     * tile by tile with the sprite batch
      *
      * @param gameCam the game camera object of game
      * @param camera  the libgdx camera for the game
@@ -299,59 +439,60 @@ public class Map {
         viewportGrid.width = last_tile_x - first_tile_x;
         viewportGrid.height = last_tile_y - first_tile_y;
 
-        // iterates through layers drawing tiles one by one
-        for (int l = 0; l < layers.size(); l++) {
-            // gets tiles in current layer
-            Tile[][] lTiles = layers.get(l).getTiles();
+        // streams chunks around the center of view
+        if(streamer != null)
+            streamer.update(first_tile_y + last_tile_y / 2, first_tile_x + last_tile_x / 2);
+
+        // draws static layers pre-baked by chunks, outside of sprite batch
+        int firstLayer = 0;
+        if(staticCache != null) {
+            boolean drawing = batch.isDrawing();
+            if(drawing)
+                batch.end();
+            staticCache.render(first_tile_x, first_tile_y, first_tile_x + last_tile_x, first_tile_y + last_tile_y,
+                                camera.combined, first_tile_x * tileSize + offset_x, first_tile_y * tileSize + offset_y);
+            if(drawing)
+                batch.begin();
+            firstLayer = staticCache.getLayerCount();
+        }
 
-            // draws each tile
-            for (int i = 0; i < last_tile_y; i++) {
-                for (int j = 0; j < last_tile_x; j++) {
+        // visible tiles inside map bounds
+        int firstI = Math.max(first_tile_y, 0);
+        int firstJ = Math.max(first_tile_x, 0);
+        int lastI = Math.min(first_tile_y + last_tile_y, mapSizeY);
+        int lastJ = Math.min(first_tile_x + last_tile_x, mapSizeX);
+        if(firstI >= lastI || firstJ >= lastJ)
+            return;
 
-                    // gets current tile i and j
-                    int dataI = first_tile_y + i;
-                    int dataJ = first_tile_x + j;
+        // iterates through remaining layers drawing tiles one by one, chunk by chunk
+        for (int l = firstLayer; l < layers.size(); l++) {
+            // gets tiles in current layer
+            Layer layer = layers.get(l);
 
-                    // make sure not to draw out of bounds
-                    if(dataI < 0 || dataJ < 0 || dataI >= mapSizeY || dataJ >= mapSizeX) {
+            for (int cy = firstI / chunkSize; cy <= (lastI - 1) / chunkSize; cy++) {
+                for (int cx = firstJ / chunkSize; cx <= (lastJ - 1) / chunkSize; cx++) {
+                    // chunks without tiles (or not loaded) are skipped
+                    short[] chunk = layer.getChunk(cx, cy);
+                    if(chunk == null)
                         continue;
-                    }
 
-                    // checks if null before trying to draw
-                    if(lTiles[dataI][dataJ] != null) {
-                        // gets tilesize for cutting the tile in tileset
-                        int tSize = lTiles[dataI][dataJ].getTileSize();
-                        // gets indexes of tile in tileset
-                        int tIdxI = lTiles[dataI][dataJ].getIndexI();
-                        int tIdxJ = lTiles[dataI][dataJ].getIndexJ();
-                        // gets anchors for cutting tile in tileset
-                        int sImgX = tIdxJ * tSize;
-                        int sImgY = tIdxI * tSize;
-                        int tileSizeX = tSize; int tileSizeY = tSize;
-                        // clamps for image source bounds
-                        if(tileSizeX > lTiles[dataI][dataJ].getTileset().getImage().getWidth())
-                            tileSizeX = lTiles[dataI][dataJ].getTileset().getImage().getWidth();
-                        if(tileSizeY > lTiles[dataI][dataJ].getTileset().getImage().getHeight())
-                            tileSizeY = lTiles[dataI][dataJ].getTileset().getImage().getHeight();
-                        if(sImgX + tSize > lTiles[dataI][dataJ].getTileset().getImage().getWidth()) // raster limit on X
-                            sImgX = (lTiles[dataI][dataJ].getTileset().getImage().getWidth() - tileSizeX);
-                        if(sImgY + tSize > lTiles[dataI][dataJ].getTileset().getImage().getHeight()) // raster limit on Y
-                            sImgY = (lTiles[dataI][dataJ].getTileset().getImage().getHeight() - tileSizeY);
-                        if(sImgX < 0) sImgX = 0;
-                        if(sImgY < 0) sImgY = 0;
-
-                        // gets tileset region that matches the image of current tile
-                        //TextureRegion tileTex = new TextureRegion(lTiles[dataI][dataJ].getTileset().getImage(),
-                              //  sImgX, sImgY, tileSizeX, tileSizeY);
-                        tileTex.setTexture(lTiles[dataI][dataJ].getTileset().getImage());
-                        tileTex.setRegion(sImgX, sImgY, tileSizeX, tileSizeY);
-                        tileTex.flip(false, true);
-                        // finds correct position to draw current tile
-                        int x = (int) ((j * tSize) - offset_x);
-                        int y = (int) ((i * tSize) - offset_y);
-
-                        // draws current tile
-                        batch.draw(tileTex, x, y);
+                    // visible part of chunk
+                    int endI = Math.min(lastI, (cy + 1) * chunkSize);
+                    int endJ = Math.min(lastJ, (cx + 1) * chunkSize);
+                    for (int dataI = Math.max(firstI, cy * chunkSize); dataI < endI; dataI++) {
+                        int row = (dataI - cy * chunkSize) * chunkSize - cx * chunkSize;
+                        for (int dataJ = Math.max(firstJ, cx * chunkSize); dataJ < endJ; dataJ++) {
+                            // checks if there is a tile before trying to draw
+                            int id = chunk[row + dataJ] & 0xFFFF;
+                            if(id != Layer.NO_TILE) {
+                                // finds correct position to draw current tile
+                                int x = ((dataJ - first_tile_x) * tileSize) - offset_x;
+                                int y = ((dataI - first_tile_y) * tileSize) - offset_y;
+
+                                // draws current tile with its pre-cut tileset region
+                                batch.draw(tileRegions[id], x, y);
+                            }
+                        }
                     }
                 }
             }
@@ -396,9 +537,9 @@ public class Map {
                 if(dataJ >= mapSizeX)
                     dataJ = mapSizeX - 1;
 
-                if (colliders[dataI][dataJ] != null) { // only draws if exists a collider in mask pos
-                    // gets iteration collider
-                    Collider collider = colliders[dataI][dataJ];
+                // gets iteration collider
+                Collider collider = getCollider(dataI, dataJ);
+                if (collider != null) { // only draws if exists a collider in mask pos
                     // transforms world coords to screen coords for correct rendering
                     float collPosX = gameCam.worldToScreenPositionX(collider.x);
                     float collPosY = gameCam.worldToScreenPositionY(collider.y);
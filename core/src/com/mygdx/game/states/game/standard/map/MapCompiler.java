@@ -0,0 +1,359 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.math.Vector2;
+import com.mygdx.game.util.Common;
+import com.mygdx.game.util.Config;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Offline compiler of maps, run at build time. Parses the
+ * .m2d, .col and .config files of each map the same way the
+ * game does at load and writes them into one binary file
+ * (.mapb) read by {@link MapReaderBinary}, so the game does
+ * not parse XML and text on map load. Invalid maps fail
+ * the compilation instead of failing at load.
+ * Does not use libgdx files, so it runs without an application.
+ *
+ * Maps are written by square chunks of tiles with a chunk
+ * index, so large maps can be streamed by chunks.
+ *
+ * Usage: MapCompiler <maps dir> [output dir] [chunk size]
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MapCompiler {
+
+    /**
+     * Compiles every map of a directory
+     * @param args the maps directory, the output directory (maps directory if omitted)
+     *             and the chunk size ({@link Config#mapChunkSize} if omitted)
+     */
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("Usage: MapCompiler <maps dir> [output dir] [chunk size]");
+            System.exit(1);
+        }
+
+        File srcDir = new File(args[0]);
+        File outDir = new File(args.length > 1 ? args[1] : args[0]);
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : Config.mapChunkSize;
+        File[] files = srcDir.listFiles();
+        if(files == null) {
+            System.err.println("Maps directory not found: " + srcDir.getPath());
+            System.exit(1);
+        }
+        outDir.mkdirs();
+
+        int failed = 0;
+        for(int f = 0; f < files.length; f++) {
+            String fileName = files[f].getName();
+            if(!fileName.endsWith(".m2d"))
+                continue;
+            String map = fileName.substring(0, fileName.length() - ".m2d".length());
+            File out = new File(outDir, map + MapReaderBinary.EXTENSION);
+            if(compile(srcDir, map, out, chunkSize))
+                System.out.println("Compiled map " + map + " into " + out.getPath());
+            else
+                failed++;
+        }
+
+        if(failed > 0) {
+            System.err.println(failed + " maps could not be compiled");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compiles a map into a binary file
+     * @param srcDir    the directory of map files
+     * @param map       the map name, without extension
+     * @param out       the compiled map file to write
+     * @param chunkSize the number of tiles on each side of a chunk
+     * @return true if map was compiled, false otherwise
+     */
+    public static boolean compile(File srcDir, String map, File out, int chunkSize) {
+        DataOutputStream data = null;
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new File(srcDir, map + ".m2d"));
+            doc.getDocumentElement().normalize();
+
+            int mapSizeX = Integer.parseInt(doc.getElementsByTagName("mapwidth").item(0).getTextContent());
+            int mapSizeY = Integer.parseInt(doc.getElementsByTagName("mapheight").item(0).getTextContent());
+            int tileSize = Integer.parseInt(doc.getElementsByTagName("tilesize").item(0).getTextContent());
+
+            // tile global id limits of tilesets
+            NodeList tsList = doc.getElementsByTagName("tileset");
+            int[] firstIDs = new int[tsList.getLength()];
+            int[] tileCounts = new int[tsList.getLength()];
+            for(int t = 0; t < tsList.getLength(); t++) {
+                Element tsElem = (Element) tsList.item(t);
+                firstIDs[t] = Integer.parseInt(text(tsElem, "firstid"));
+                tileCounts[t] = Integer.parseInt(text(tsElem, "tilecount"));
+            }
+
+            // layers of tile ids
+            NodeList lList = doc.getElementsByTagName("layer");
+            ArrayList<short[]> layers = new ArrayList<short[]>();
+            int[] widths = new int[lList.getLength()];
+            for(int l = 0; l < lList.getLength(); l++) {
+                String content = lList.item(l).getTextContent();
+                String[] lines = content.substring(1, content.length()).split("[\r\n]+");
+                widths[l] = lines[0].split(",").length;
+                short[] tiles = new short[lines.length * widths[l]];
+                for(int i = 0; i < lines.length; i++) {
+                    String[] tIDs = lines[i].split(",");
+                    for(int j = 0; j < tIDs.length; j++) {
+                        int tileID = Integer.parseInt(tIDs[j]);
+                        if(tileID == Layer.NO_TILE)
+                            continue;
+                        if(!inTilesets(tileID, firstIDs, tileCounts) || tileID > 0xFFFF || j >= widths[l]) {
+                            System.err.println("Map " + map + ": could not find tileset of tileID " + tileID +
+                                    " (layer " + l + ", tile " + i + "," + j + ")");
+                            return false;
+                        }
+                        tiles[i * widths[l] + j] = (short) tileID;
+                    }
+                }
+                layers.add(tiles);
+            }
+
+            byte[] colliders = readColliders(new File(srcDir, map + ".col"), map, mapSizeX, mapSizeY);
+            ArrayList<String[]> fields = readFields(new File(srcDir, map + ".config"), map, mapSizeX, mapSizeY);
+            if(colliders == null || fields == null)
+                return false;
+
+            // header, tables and chunk index are written after chunks are laid out
+            ByteArrayOutputStream headBytes = new ByteArrayOutputStream();
+            DataOutputStream head = new DataOutputStream(headBytes);
+            head.writeInt(MapReaderBinary.MAGIC);
+            head.writeInt(MapReaderBinary.VERSION);
+            head.writeInt(mapSizeX);
+            head.writeInt(mapSizeY);
+            head.writeInt(tileSize);
+            head.writeInt(chunkSize);
+
+            // tilesets
+            head.writeInt(tsList.getLength());
+            for(int t = 0; t < tsList.getLength(); t++) {
+                Element tsElem = (Element) tsList.item(t);
+                head.writeUTF(text(tsElem, "name"));
+                head.writeUTF(text(tsElem, "source"));
+                head.writeInt(Integer.parseInt(text(tsElem, "tilesize")));
+                head.writeInt(firstIDs[t]);
+                head.writeInt(tileCounts[t]);
+            }
+
+            // layers
+            head.writeInt(layers.size());
+
+            // special fields
+            head.writeInt(fields.size());
+            for(int f = 0; f < fields.size(); f++) {
+                String[] field = fields.get(f);
+                head.writeUTF(field[0]);
+                head.writeShort(Integer.parseInt(field[1]));
+                head.writeShort(Integer.parseInt(field[2]));
+                head.writeUTF(field[3]);
+                head.writeUTF(field[4]);
+            }
+
+            // chunks, line by line, empty chunks are not written
+            int chunksX = (mapSizeX + chunkSize - 1) / chunkSize;
+            int chunksY = (mapSizeY + chunkSize - 1) / chunkSize;
+            int[] offsets = new int[chunksX * chunksY];
+            ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+            DataOutputStream chunks = new DataOutputStream(chunkBytes);
+            int indexEnd = head.size() + offsets.length * 4;
+            for(int cy = 0; cy < chunksY; cy++) {
+                for(int cx = 0; cx < chunksX; cx++) {
+                    int c = cy * chunksX + cx;
+                    offsets[c] = indexEnd + chunks.size();
+                    if(!writeChunk(chunks, layers, widths, colliders, mapSizeX, mapSizeY, chunkSize, cx, cy))
+                        offsets[c] = -1;
+                }
+            }
+
+            // chunk index
+            for(int c = 0; c < offsets.length; c++)
+                head.writeInt(offsets[c]);
+
+            data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)));
+            headBytes.writeTo(data);
+            chunkBytes.writeTo(data);
+            data.close();
+            data = null;
+            return true;
+        } catch (Exception e) { // error compiling map
+            System.err.println("Could not compile map: " + map + ". Throw message: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            if(data != null) {
+                try {
+                    data.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                out.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the tiles and colliders of a chunk, if it is not empty
+     * @return true if chunk was written, false if it is empty
+     */
+    private static boolean writeChunk(DataOutputStream out, ArrayList<short[]> layers, int[] widths,
+                                      byte[] colliders, int mapSizeX, int mapSizeY, int chunkSize,
+                                      int cx, int cy) throws IOException {
+        int cells = chunkSize * chunkSize;
+        short[][] tiles = new short[layers.size()][];
+        byte[] packed = new byte[(cells + 3) / 4];
+        boolean empty = true;
+
+        for(int k = 0; k < cells; k++) {
+            int i = cy * chunkSize + k / chunkSize;
+            int j = cx * chunkSize + k % chunkSize;
+            if(i >= mapSizeY || j >= mapSizeX)
+                continue;
+
+            // tiles of each layer
+            for(int l = 0; l < layers.size(); l++) {
+                short[] layer = layers.get(l);
+                int cell = i * widths[l] + j;
+                if(j >= widths[l] || cell >= layer.length || layer[cell] == Layer.NO_TILE)
+                    continue;
+                if(tiles[l] == null)
+                    tiles[l] = new short[cells];
+                tiles[l][k] = layer[cell];
+                empty = false;
+            }
+
+            // collider types packed 2 bits each
+            byte type = colliders[i * mapSizeX + j];
+            if(type != 0) {
+                packed[k >> 2] |= type << ((k & 3) * 2);
+                empty = false;
+            }
+        }
+
+        if(empty)
+            return false;
+
+        for(int l = 0; l < tiles.length; l++) {
+            out.writeByte(tiles[l] != null ? 1 : 0);
+            if(tiles[l] != null)
+                for(int k = 0; k < cells; k++)
+                    out.writeShort(tiles[l][k]);
+        }
+        out.write(packed);
+        return true;
+    }
+
+    /**
+     * Reads the collider mask of a map
+     * @return the collider type of each tile, line by line, null if mask is invalid
+     */
+    private static byte[] readColliders(File file, String map, int mapSizeX, int mapSizeY) throws IOException {
+        byte[] colliders = new byte[mapSizeX * mapSizeY];
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int i = 0;
+            while((line = reader.readLine()) != null) {
+                String[] cols = line.split(",");
+                for(int j = 0; j < cols.length; j++) {
+                    int type = 0;
+                    if(cols[j].equals("1"))
+                        type = Map.COLLIDER_PHYSICAL;
+                    else if(cols[j].equals("2"))
+                        type = Map.COLLIDER_TRIGGER;
+                    if(type == 0)
+                        continue;
+                    if(i >= mapSizeY || j >= mapSizeX) {
+                        System.err.println("Map " + map + ": collider out of map bounds at " + i + "," + j);
+                        return null;
+                    }
+                    colliders[i * mapSizeX + j] = (byte) type;
+                }
+                i++;
+            }
+        } finally {
+            reader.close();
+        }
+        return colliders;
+    }
+
+    /**
+     * Reads the special fields of a map config file
+     * @return type, i, j, id and complement of each field, null if config is invalid
+     */
+    private static ArrayList<String[]> readFields(File file, String map, int mapSizeX, int mapSizeY)
+            throws IOException {
+        ArrayList<String[]> fields = new ArrayList<String[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line, type, id, complement;
+            while((line = reader.readLine()) != null) {
+                if(line.contains("--") || line.trim().isEmpty()) // comments and blank lines
+                    continue;
+
+                if(line.contains("_")) {
+                    type = line.substring(0, line.indexOf('_')).trim();
+                    id = line.substring(line.indexOf('_')+1, line.indexOf("=")).trim();
+                } else {
+                    type = line.substring(0, line.indexOf('=')).trim();
+                    id = "unused";
+                }
+                Vector2 index = Common.stringToVector2(line);
+                complement = line.contains(":") ? line.substring(line.indexOf(':')+1).trim() : "unused";
+
+                // validates type and position
+                Field.FieldType.valueOf(type);
+                if(index.x < 0 || index.x >= mapSizeY || index.y < 0 || index.y >= mapSizeX) {
+                    System.err.println("Map " + map + ": field " + type + " out of map bounds at " +
+                            (int) index.x + "," + (int) index.y);
+                    return null;
+                }
+
+                fields.add(new String[] {type, String.valueOf((int) index.x), String.valueOf((int) index.y),
+                        id, complement});
+            }
+        } finally {
+            reader.close();
+        }
+        return fields;
+    }
+
+    /**
+     * Checks if a tile global id belongs to a tileset
+     */
+    private static boolean inTilesets(int tileID, int[] firstIDs, int[] tileCounts) {
+        for(int t = 0; t < firstIDs.length; t++)
+            if(tileID >= firstIDs[t] && tileID < firstIDs[t] + tileCounts[t])
+                return true;
+        return false;
+    }
+
+    private static String text(Element element, String tag) {
+        return element.getElementsByTagName(tag).item(0).getTextContent();
+    }
+}
@@ -3,10 +3,24 @@ package com.mygdx.game.states.game.standard.map;
 import com.mygdx.game.util.Config;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Observable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class that will hold map configurations and information.
+ * Maps are loaded on demand, when first needed or in
+ * background when a teleport of current map leads to them,
+ * and kept in a least recently used cache bounded by the
+ * approximate memory of maps. Cache is only accessed
+ * from the rendering thread
  *
  * @author 	Pedro Sampaio
  * @since	0.3
@@ -23,22 +37,26 @@ public class MapConfig extends Observable {
     private static float maxZoom;    // maximum zoom (maintain max view relative to the tilesize)
 
     private Map currentMap; // the current game map being rendered
-    private ArrayList<Map> maps; // list of game maps
+    private LinkedHashMap<String, Map> maps; // loaded game maps by name, least recently used first
+    private HashMap<String, Future<MapData>> loading; // maps being read by map loading thread
+    private ExecutorService loader; // map loading thread
 
     /**
-     * Gets the list of game maps
-     * @return the list of game maps
+     * Gets the list of loaded game maps
+     * @return the list of loaded game maps
      */
     public ArrayList<Map> getMaps() {
-        return maps;
+        return new ArrayList<Map>(maps.values());
     }
 
     /**
-     * Sets the list of game maps
-     * @param maps the list of game maps
+     * Sets the list of loaded game maps
+     * @param maps the list of loaded game maps
      */
     public void setMaps(ArrayList<Map> maps) {
-        this.maps = maps;
+        this.maps.clear();
+        for(int i = 0; i < maps.size(); i++)
+            this.maps.put(maps.get(i).getName(), maps.get(i));
     }
 
     /**
@@ -51,10 +69,24 @@ public class MapConfig extends Observable {
 
     /**
      * Sets the current map being rendered on screen
+     * and starts loading the maps its teleports lead to
      * @param currentMap the current map of the game
      */
     public void setCurrentMap(Map currentMap) {
         this.currentMap = currentMap;
+        if(currentMap == null)
+            return;
+
+        // current map is the most recently used
+        if(maps.get(currentMap.getName()) == null)
+            maps.put(currentMap.getName(), currentMap);
+        // preloads maps reachable from current map
+        if(Config.mapPreload) {
+            ArrayList<Field> teleports = currentMap.getMapTeleports();
+            for(int i = 0; i < teleports.size(); i++)
+                preload(teleports.get(i).getID());
+        }
+        evict();
     }
 
 
@@ -64,8 +96,9 @@ public class MapConfig extends Observable {
     protected MapConfig() {
         // Exists only to defeat instantiation.
         setDefault();
-        // initializes list of game maps
-        maps = new ArrayList<Map>();
+        // initializes cache of game maps (access ordered)
+        maps = new LinkedHashMap<String, Map>(16, 0.75f, true);
+        loading = new HashMap<String, Future<MapData>>();
     }
 
     /**
@@ -133,6 +166,34 @@ public class MapConfig extends Observable {
      */
     public Map createMap(String[] layers, ArrayList<Tileset> tilesets, String name,
                          int mapSizeX, int mapSizeY, int tileSize) {
+        // global id limits of tilesets
+        int[] firstIDs = new int[tilesets.size()];
+        int[] tileCounts = new int[tilesets.size()];
+        for (int k = 0; k < tilesets.size(); k++) {
+            firstIDs[k] = tilesets.get(k).getFirstID();
+            tileCounts[k] = tilesets.get(k).getTileCount();
+        }
+
+        ArrayList<Layer> mapLayers = parseLayers(layers, firstIDs, tileCounts);
+        if (mapLayers == null)
+            return null;
+
+        // return the new map created with all information
+        // (selected layer is set as the first one - 0)
+        return new Map(mapLayers, tilesets, name, mapSizeX, mapSizeY, tileSize);
+    }
+
+    /**
+     * Parses the layers information of a map file into layers
+     * of tile global ids. Does not need graphics, so it
+     * can run on map loading thread
+     *
+     * @param layers     the string of tile ids of each layer, line by line
+     * @param firstIDs   the first global id of each tileset of map
+     * @param tileCounts the number of tiles of each tileset of map
+     * @return the parsed layers, or null if a tile does not belong to a tileset
+     */
+    static ArrayList<Layer> parseLayers(String[] layers, int[] firstIDs, int[] tileCounts) {
 
         // debugs broken string
         if (Config.debug) {
@@ -141,8 +202,8 @@ public class MapConfig extends Observable {
 
         // the list of layers for the created map;
         ArrayList<Layer> mapLayers = new ArrayList<Layer>();
-        // the matrix of tiles for each layer
-        Tile[][] tiles = null;
+        // the global ids of tiles for each layer, line by line
+        short[] tiles = null;
         int i = 0;
         int j = 0;
         // for each layer string received, breaks the string to get the information needed
@@ -152,52 +213,33 @@ public class MapConfig extends Observable {
 
             // for matrix initialization, lets see how many columns there is
             String[] tIDs = lines[0].split(",");
+            int width = tIDs.length;
 
-            // initialize tiles matrix for this layer
-            tiles = new Tile[lines.length][tIDs.length];
+            // initialize tiles of this layer
+            tiles = new short[lines.length * width];
 
             // iterates for each line existing in the layer grid
             for (i = 0; i < lines.length; i++) {
                 // gets the tile IDs from the current line i
                 tIDs = lines[i].split(",");
-                // for each tID found, creates a new tile
+                // for each tID found, stores the tile id
                 for (j = 0; j < tIDs.length; j++) {
                     // information of the tile
                     int tileID = Integer.parseInt(tIDs[j]); // the global id of the tile
 
-                    // if tile id is 0 we dont need to create
-                    // a tile, since it does not exist
-                    if (tileID == 0)
+                    // if tile id is 0 there is no tile
+                    if (tileID == Layer.NO_TILE)
                         continue;
 
-                    int tMatrixI = i;    // the i-index of the tile in the map grid
-                    int tMatrixJ = j;    // the j-index of the tile in the map grid
-                    // information we still need to find
-                    Tileset tileTS = null;    // the tileset for the tile
-                    int tIndexI = 0;        // the i-index of the tile in the tileset
-                    int tIndexJ = 0;        // the j-index of the tile in the tileset
-
-                    // lets search through the tilesets to find the remaining info needed
-                    for (int k = 0; k < tilesets.size(); k++) {
-                        int tileSizeX = tilesets.get(k).getTileSizeX();    // the number of tiles of the tileset in x-axis
-                        int tileCount = tilesets.get(k).getTileCount(); // the number of tiles in the tileset
-                        int firstID = tilesets.get(k).getFirstID();  // the firstID of the tileset
-
-                        // tile belongs to the current tileset if tileID
-                        // is within tilesets ID limits [firstID, firstID+tileCount[
-                        if (tileID >= firstID && tileID < (firstID + tileCount)) {
-                            tileTS = tilesets.get(k); // stores tile tileset
-                            // calculates the index I of tile in tileset
-                            tIndexI = (tileID - firstID) / tileSizeX;
-                            tIndexJ = (tileID - firstID) % tileSizeX;
-                            // done finding needed info
-                            break;
-                        }
-
+                    // tile must belong to a tileset, within tilesets ID limits [firstID, firstID+tileCount[
+                    boolean found = false;
+                    for (int k = 0; k < firstIDs.length && !found; k++) {
+                        int firstID = firstIDs[k];  // the firstID of the tileset
+                        found = tileID >= firstID && tileID < (firstID + tileCounts[k]);
                     }
 
-                    // could not find a tile tileset, abort map creation
-                    if (tileTS == null) {
+                    // could not find a tile tileset (or id does not fit), abort map creation
+                    if (!found || tileID > 0xFFFF || j >= width) {
                         // debugs the problematic tile
                         if (Config.debug) {
                             System.out.println("\nCould not find tileset of tileID: " + tileID);
@@ -205,8 +247,8 @@ public class MapConfig extends Observable {
                         return null;
                     }
 
-                    // now that we have all information, lets create the tile and add to the matrix of tiles
-                    tiles[tMatrixI][tMatrixJ] = new Tile(tIndexI, tIndexJ, tileTS, tileID, tMatrixI, tMatrixJ);
+                    // now that we have all information, lets store the tile id (read back as unsigned)
+                    tiles[i * width + j] = (short) tileID;
 
                     // debugs broken string
                     if (Config.debug) {
@@ -221,7 +263,7 @@ public class MapConfig extends Observable {
 
             // creates layer that will contain the tiles for the current
             // layer and adds to the list of map layers
-            mapLayers.add(new Layer(tiles, l, 1));
+            mapLayers.add(new Layer(tiles, width, l, 1));
 
             // debugs broken string
             if (Config.debug) {
@@ -229,9 +271,7 @@ public class MapConfig extends Observable {
             }
         }
 
-        // return the new map created with all information
-        // (selected layer is set as the first one - 0)
-        return new Map(mapLayers, name, mapSizeX, mapSizeY, tileSize);
+        return mapLayers;
     }
 
     /**
@@ -319,49 +359,196 @@ public class MapConfig extends Observable {
     }
 
     /**
-     * Loads all maps in the list of game maps
-     * to be accessed throughout the games life
+     * Loads the map that will be the current map, and starts
+     * loading in background the maps reachable from it
      * @param mapID the map ID (From enum of maps) to be set as current map
      */
     public void loadMaps(int mapID) {
-        // creates maps
-        Map exampleMap = MapReaderM2D.loadFileDOM("example_map");
-        Map testMap = MapReaderM2D.loadFileDOM("testmap");
-        Map mapDemo = MapReaderM2D.loadFileDOM("mapdemo");
-        String currentMap = Map.MapID.values()[mapID].toString();
+        Map map = getMapWithID(Map.MapID.values()[mapID].toString());
         // sets current map
-        if(currentMap.equals("example_map"))
-            setCurrentMap(exampleMap);
-        else if(currentMap.equals("testmap"))
-            setCurrentMap(testMap);
-        else if(currentMap.equals("mapdemo"))
-            setCurrentMap(mapDemo);
-        else {
-            System.err.println("Unknown map saved. Loaded default map: "+mapDemo.getName());
-            setCurrentMap(mapDemo);
+        if(map == null) {
+            map = getMapWithID(Map.MapID.mapdemo.toString());
+            System.err.println("Unknown map saved. Loaded default map: "+map.getName());
         }
-        // adds to the list of maps
-        maps.add(exampleMap);
-        maps.add(testMap);
-        maps.add(mapDemo);
+        setCurrentMap(map);
     }
 
     /**
-     * Gets map from list of game maps
-     * with the correspondent id
+     * Finishes the creation of a map read in background, if any,
+     * uploading its textures. Must be called by the rendering thread
+     * every frame. Only one map is created per call, to spread the
+     * cost of texture uploads
+     */
+    public void update() {
+        Iterator<java.util.Map.Entry<String, Future<MapData>>> it = loading.entrySet().iterator();
+        while(it.hasNext()) {
+            java.util.Map.Entry<String, Future<MapData>> entry = it.next();
+            if(!entry.getValue().isDone())
+                continue;
+
+            it.remove();
+            MapData data = getLoaded(entry.getKey(), entry.getValue());
+            if(data != null) {
+                maps.put(entry.getKey(), data.createMap());
+                evict();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Starts reading a map in background, if it
+     * is not loaded nor being loaded already
+     * @param name the map name
+     */
+    private void preload(final String name) {
+        if(maps.containsKey(name) || loading.containsKey(name))
+            return;
+
+        loading.put(name, getLoader().submit(new Callable<MapData>() {
+            @Override
+            public MapData call() {
+                MapData data = readMap(name);
+                if(data != null) {
+                    try {
+                        data.decodeImages();
+                    } catch (RuntimeException e) {
+                        data.dispose();
+                        throw e;
+                    }
+                }
+                return data;
+            }
+        }));
+    }
+
+    /**
+     * Gets the result of a map read in background
+     * @param name      the map name
+     * @param future    the background read of map
+     * @return the map information read, null if map could not be read
+     */
+    private MapData getLoaded(String name, Future<MapData> future) {
+        try {
+            return future.get();
+        } catch (Exception e) { // error reading map in background
+            System.err.println("Could not load map "+name+" in background: "+e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Disposes least recently used maps until loaded maps
+     * fit in the configured memory. Current map and the most
+     * recently used one are never disposed
+     */
+    private void evict() {
+        long size = 0;
+        for(Map map : maps.values())
+            size += map.getMemorySize();
+
+        Iterator<Map> it = maps.values().iterator();
+        while(size > Config.mapCacheMemory && it.hasNext()) {
+            Map map = it.next();
+            if(map == currentMap || !it.hasNext())
+                continue;
+            size -= map.getMemorySize();
+            it.remove();
+            map.dispose();
+        }
+    }
+
+    /**
+     * @return the map loading thread, created when first needed
+     */
+    private ExecutorService getLoader() {
+        if(loader == null) {
+            loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "map-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return loader;
+    }
+
+    /**
+     * Reads a map from its compiled file, if there is one
+     * and compiled maps are enabled, or from its map files.
+     * Does not create graphics resources, so it can be
+     * called from map loading thread
+     * @param name the map name
+     * @return the map information read, null if map could not be read
+     */
+    private static MapData readMap(String name) {
+        if(Config.mapCompiled && MapReaderBinary.exists(name)) {
+            MapData data = MapReaderBinary.readFile(name);
+            if(data != null)
+                return data;
+        }
+        return MapReaderM2D.readFileDOM(name);
+    }
+
+    /**
+     * Disposes all loaded maps and stops loading maps. Waits
+     * for the map being read in background, if any, so images
+     * it decodes are disposed as well
+     */
+    public void dispose() {
+        if(loader != null) {
+            // maps waiting to be read are never read, the one being read is waited for
+            loader.shutdownNow();
+            try {
+                if(!loader.awaitTermination(Config.mapLoaderShutdownWait, TimeUnit.MILLISECONDS))
+                    System.err.println("Map loading thread did not stop, images of map being read may leak");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            loader = null;
+        }
+        // disposes images of maps already read in background
+        for(java.util.Map.Entry<String, Future<MapData>> entry : loading.entrySet()) {
+            if(entry.getValue().isDone()) {
+                MapData data = getLoaded(entry.getKey(), entry.getValue());
+                if(data != null)
+                    data.dispose();
+            }
+        }
+        loading.clear();
+
+        for(Map map : maps.values())
+            map.dispose();
+        maps.clear();
+        currentMap = null;
+    }
+
+    /**
+     * Gets map from list of game maps with the correspondent
+     * id, loading it if it is not loaded yet (waits for it if
+     * it is being loaded in background)
      * @return the map attached to the id received in parameter
      */
     public Map getMapWithID(String id) {
-        // iterates through list of maps
-        for(int i = 0 ; i < maps.size(); i++) {
-            // current map of iteration
-            Map map = maps.get(i);
-            if(map.getName().equals(id)) {
-                return map;
-            }
+        // map already loaded
+        Map map = maps.get(id);
+        if(map != null)
+            return map;
+
+        // waits background loading or loads map now
+        Future<MapData> future = loading.remove(id);
+        MapData data = future != null ? getLoaded(id, future) : readMap(id);
+        if(data == null) {
+            System.err.println("Map "+id+" was not found.");
+            return null;
         }
 
-        System.err.println("Map "+id+" was not found.");
-        return null;
+        map = data.createMap();
+        maps.put(id, map);
+        evict();
+        return map;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+
+import java.util.ArrayList;
+
+/**
+ * Information of a map read from its files, without
+ * any graphics resource. Map readers fill it and tileset
+ * images may be decoded on the map loading thread, so
+ * only texture upload and map creation are left to
+ * the rendering thread, that owns the graphics context
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+class MapData {
+
+    /**
+     * Information of a tileset of map and its decoded image
+     */
+    static class TilesetSource {
+        String name; // the name of tileset
+        String imagePath; // the path of tileset image in assets
+        int tileSize; // the size of tileset tiles
+        int firstID; // the global id of the first tile of tileset
+        int tileCount; // the number of tiles of tileset
+        Pixmap image; // the decoded image of tileset, null if not decoded yet
+
+        TilesetSource(String name, String imagePath, int tileSize, int firstID, int tileCount) {
+            this.name = name;
+            this.imagePath = imagePath;
+            this.tileSize = tileSize;
+            this.firstID = firstID;
+            this.tileCount = tileCount;
+        }
+    }
+
+    String name; // the name of map
+    int mapSizeX; // number of tiles in map on x-axis (columns)
+    int mapSizeY; // number of tiles in map on y-axis (lines)
+    int tileSize; // the size of map tiles
+    ArrayList<TilesetSource> tilesets = new ArrayList<TilesetSource>(); // tilesets of map
+    ArrayList<Layer> layers; // layers of tile ids
+    byte[] colliders; // collider type of each tile, null to read map collider file
+    ArrayList<Field> fields; // special fields, null to read map config file
+    ChunkStreamer streamer; // streamer of map chunks, null if map is read whole
+
+    /**
+     * Decodes tileset images, so textures only need to be
+     * uploaded when map is created. Can be called from any thread
+     */
+    void decodeImages() {
+        for(int t = 0; t < tilesets.size(); t++) {
+            TilesetSource ts = tilesets.get(t);
+            if(ts.image == null)
+                ts.image = new Pixmap(Gdx.files.internal(ts.imagePath));
+        }
+    }
+
+    /**
+     * Creates the map, uploading tileset textures.
+     * Must be called from the rendering thread
+     * @return the created map
+     */
+    Map createMap() {
+        ArrayList<Tileset> mapTilesets = new ArrayList<Tileset>(tilesets.size());
+        for(int t = 0; t < tilesets.size(); t++) {
+            TilesetSource ts = tilesets.get(t);
+            if(ts.image != null) {
+                mapTilesets.add(new Tileset(ts.name, ts.tileSize, new Texture(ts.image), ts.imagePath,
+                                            ts.firstID, ts.tileCount));
+                ts.image.dispose();
+                ts.image = null;
+            } else
+                mapTilesets.add(TilesetConfig.getInstance().createTileset(ts.name, ts.tileSize, ts.imagePath,
+                                                                          ts.firstID, ts.tileCount));
+        }
+
+        return new Map(layers, mapTilesets, name, mapSizeX, mapSizeY, tileSize, colliders, fields, streamer);
+    }
+
+    /**
+     * Disposes decoded images, when map will not be created
+     */
+    void dispose() {
+        for(int t = 0; t < tilesets.size(); t++) {
+            TilesetSource ts = tilesets.get(t);
+            if(ts.image != null) {
+                ts.image.dispose();
+                ts.image = null;
+            }
+        }
+    }
+}
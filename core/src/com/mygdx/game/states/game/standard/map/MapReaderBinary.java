@@ -0,0 +1,197 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.mygdx.game.util.Config;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Reads maps compiled by {@link MapCompiler} from a single
+ * binary file (.mapb) that holds what is otherwise parsed
+ * from .m2d, .col and .config text files: header, tileset
+ * table, fields and the tiles and colliders of each chunk of
+ * map, found through a chunk index. Maps with more tiles than
+ * {@link Config#mapStreamMinTiles} are streamed by chunks
+ * around the camera, the others are read whole.
+ *
+ * Format (big endian, strings as written by DataOutputStream.writeUTF):
+ * <pre>
+ * int magic, int version, int mapSizeX, int mapSizeY, int tileSize, int chunkSize
+ * int tilesets, each: string name, string source, int tileSize, int firstID, int tileCount
+ * int layers
+ * int fields, each: string type, short i, short j, string id, string complement
+ * int[chunksX * chunksY] offset of each chunk in file, line by line, -1 if chunk is empty
+ * chunks, each: for each layer: byte has tiles, short[chunkSize * chunkSize] tile ids if it has
+ *               byte[(chunkSize * chunkSize + 3) / 4] collider types, 2 bits each, line by line
+ * </pre>
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MapReaderBinary {
+
+    public static final String EXTENSION = ".mapb"; // extension of compiled map files
+    static final int MAGIC = 0x504D4150; // first int of compiled map files ("PMAP")
+    static final int VERSION = 2; // current version of compiled map format
+
+    /**
+     * Checks if a map was compiled
+     * @param map the map name, without extension
+     * @return true if compiled map file exists, false otherwise
+     */
+    public static boolean exists(String map) {
+        return Gdx.files.internal("maps/" + map + EXTENSION).exists();
+    }
+
+    /**
+     * Loads a compiled map (maps must be in assets/maps and
+     * tilesets used in the maps must be in assets/imgs/tilesets)
+     * @param map the map name, without extension
+     * @return the Map object with the loaded information, null if map could not be loaded
+     */
+    public static Map loadFile(String map) {
+        MapData data = readFile(map);
+        return data == null ? null : data.createMap();
+    }
+
+    /**
+     * Reads a compiled map without creating graphics
+     * resources, so it can run on map loading thread.
+     * Chunks of streamed maps are not read
+     * @param map the map name, without extension
+     * @return the information read, null if map could not be read
+     */
+    static MapData readFile(String map) {
+        FileHandle file = Gdx.files.internal("maps/" + map + EXTENSION);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(file.read(), 64 * 1024));
+
+            // header
+            if(in.readInt() != MAGIC) {
+                System.err.println("Not a compiled map file: " + file.path());
+                return null;
+            }
+            int version = in.readInt();
+            if(version != VERSION) {
+                System.err.println("Unsupported compiled map version " + version + ": " + file.path());
+                return null;
+            }
+            MapData data = new MapData();
+            data.name = map;
+            data.mapSizeX = in.readInt();
+            data.mapSizeY = in.readInt();
+            data.tileSize = in.readInt();
+            int chunkSize = in.readInt();
+
+            // tilesets
+            int nTilesets = in.readInt();
+            for(int t = 0; t < nTilesets; t++) {
+                String tsName = in.readUTF();
+                String tsSource = in.readUTF();
+                int tsTileSize = in.readInt();
+                int tsFirstID = in.readInt();
+                int tsTileCount = in.readInt();
+                data.tilesets.add(new MapData.TilesetSource(tsName, "imgs/tilesets/" + tsSource, tsTileSize,
+                                                            tsFirstID, tsTileCount));
+            }
+
+            // layers, without chunks yet
+            int nLayers = in.readInt();
+            data.layers = new ArrayList<Layer>(nLayers);
+            for(int l = 0; l < nLayers; l++)
+                data.layers.add(new Layer(data.mapSizeX, data.mapSizeY, chunkSize, l, 1));
+
+            // special fields
+            int nFields = in.readInt();
+            data.fields = new ArrayList<Field>(nFields);
+            for(int f = 0; f < nFields; f++) {
+                Field.FieldType type = Field.FieldType.valueOf(in.readUTF());
+                Vector2 index = new Vector2(in.readShort(), in.readShort());
+                data.fields.add(new Field(index, type, in.readUTF(), in.readUTF()));
+            }
+
+            // chunk index
+            int chunksX = (data.mapSizeX + chunkSize - 1) / chunkSize;
+            int chunksY = (data.mapSizeY + chunkSize - 1) / chunkSize;
+            int[] offsets = new int[chunksX * chunksY];
+            for(int c = 0; c < offsets.length; c++)
+                offsets[c] = in.readInt();
+
+            // large maps are streamed by chunks
+            if((long) data.mapSizeX * data.mapSizeY > Config.mapStreamMinTiles) {
+                data.streamer = new ChunkStreamer(file, offsets, nLayers, chunkSize, chunksX);
+                return data;
+            }
+
+            // other maps have all chunks read now (chunks are stored in index order)
+            data.colliders = new byte[data.mapSizeX * data.mapSizeY];
+            for(int c = 0; c < offsets.length; c++) {
+                if(offsets[c] < 0)
+                    continue;
+                int cx = c % chunksX;
+                int cy = c / chunksX;
+                ChunkStreamer.Chunk chunk = readChunk(in, nLayers, chunkSize);
+                for(int l = 0; l < nLayers; l++)
+                    data.layers.get(l).setChunk(cx, cy, chunk.tiles[l]);
+                for(int k = 0; k < chunk.colliders.length; k++) {
+                    int i = cy * chunkSize + k / chunkSize;
+                    int j = cx * chunkSize + k % chunkSize;
+                    if(i < data.mapSizeY && j < data.mapSizeX)
+                        data.colliders[i * data.mapSizeX + j] = chunk.colliders[k];
+                }
+            }
+
+            return data;
+        } catch (Exception e) { // error reading compiled file
+            System.err.println("Could not read compiled map file: " + map + ". Throw message: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        } finally {
+            if(in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the tiles and colliders of a chunk
+     * @param in            the compiled map data, at the start of chunk
+     * @param layerCount    the number of layers of map
+     * @param chunkSize     the number of tiles on each side of a chunk
+     * @return the chunk read
+     */
+    static ChunkStreamer.Chunk readChunk(DataInputStream in, int layerCount, int chunkSize) throws IOException {
+        int cells = chunkSize * chunkSize;
+        byte[] bytes = new byte[cells * 2];
+
+        // tiles of each layer
+        short[][] tiles = new short[layerCount][];
+        for(int l = 0; l < layerCount; l++) {
+            if(in.readByte() == 0)
+                continue;
+            in.readFully(bytes);
+            tiles[l] = new short[cells];
+            ByteBuffer.wrap(bytes).asShortBuffer().get(tiles[l]);
+        }
+
+        // collider types packed 2 bits each
+        byte[] packed = new byte[(cells + 3) / 4];
+        in.readFully(packed);
+        byte[] colliders = new byte[cells];
+        for(int k = 0; k < cells; k++)
+            colliders[k] = (byte) ((packed[k >> 2] >> ((k & 3) * 2)) & 3);
+
+        return new ChunkStreamer.Chunk(tiles, colliders);
+    }
+}
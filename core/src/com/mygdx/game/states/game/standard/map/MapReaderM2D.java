@@ -3,8 +3,6 @@ package com.mygdx.game.states.game.standard.map;
 import com.badlogic.gdx.Gdx;
 import com.mygdx.game.states.game.standard.map.Map;
 import com.mygdx.game.states.game.standard.map.MapConfig;
-import com.mygdx.game.states.game.standard.map.Tileset;
-import com.mygdx.game.states.game.standard.map.TilesetConfig;
 import com.mygdx.game.util.Config;
 
 import org.w3c.dom.Document;
@@ -39,6 +37,20 @@ public class MapReaderM2D {
      * @return the Map object with the loaded information from map file
      */
     public static Map loadFileDOM(String map) {
+        MapData data = readFileDOM(map);
+        return data == null ? null : data.createMap();
+    }
+
+    /**
+     * Reads a map from a file of 2D Map Builder extension (.m2d)
+     * without creating graphics resources, so it can run on
+     * map loading thread. Colliders and fields are read
+     * from map text files when the map is created
+     *
+     * @param map 	the .m2d file map name, without the format
+     * @return the information read from map file, null if map could not be read
+     */
+    static MapData readFileDOM(String map) {
 
         try {
             // the file containing the information to be loaded
@@ -82,7 +94,7 @@ public class MapReaderM2D {
              * Retrieving tilesets information
              */
             NodeList tsList = doc.getElementsByTagName("tileset"); // list of tileset nodes
-            ArrayList<Tileset> tilesets = new ArrayList<Tileset>(); // the list of tilesets to be contained in the project
+            ArrayList<MapData.TilesetSource> tilesets = new ArrayList<MapData.TilesetSource>(); // the list of tilesets to be contained in the project
 
             if(Config.debug) {
                 System.out.println("\nTileset Info:");
@@ -106,9 +118,9 @@ public class MapReaderM2D {
                     int tsTileCount = Integer.parseInt(tsElem.getElementsByTagName("tilecount").item(0).getTextContent());
                     int tsTileSize = Integer.parseInt(tsElem.getElementsByTagName("tilesize").item(0).getTextContent());
 
-                    // creates tileset and adds to the list of tilesets
-                    tilesets.add(TilesetConfig.getInstance().createTileset(tsName, tsTileSize,
-                                "imgs/tilesets/"+tsSource, tsFirstID, tsTileCount));
+                    // adds tileset to the list of tilesets (its image is loaded when map is created)
+                    tilesets.add(new MapData.TilesetSource(tsName, "imgs/tilesets/"+tsSource, tsTileSize,
+                                tsFirstID, tsTileCount));
 
                     // debugs tileset info read
                     if(Config.debug) {
@@ -147,16 +159,30 @@ public class MapReaderM2D {
 
             }
 
-            // creates a map with the information gathered on layers and tilesets
-            Map loadedMap = MapConfig.getInstance().createMap(layers, tilesets, map, mapWidth, mapHeight, tileSize);
+            // parses layers with the information gathered on layers and tilesets
+            int[] firstIDs = new int[tilesets.size()];
+            int[] tileCounts = new int[tilesets.size()];
+            for (int i = 0; i < tilesets.size(); i++) {
+                firstIDs[i] = tilesets.get(i).firstID;
+                tileCounts[i] = tilesets.get(i).tileCount;
+            }
+            ArrayList<Layer> mapLayers = MapConfig.parseLayers(layers, firstIDs, tileCounts);
 
-            // createMap was not able to create the map with the information provided
-            if(loadedMap == null) {
+            // parseLayers was not able to create the layers with the information provided
+            if(mapLayers == null) {
                 System.err.println("\nError: could not create map with map file information");
+                return null;
             }
 
-            // returns the map with loaded information
-            return loadedMap;
+            // returns the information read (colliders and fields are read by map)
+            MapData data = new MapData();
+            data.name = map;
+            data.mapSizeX = mapWidth;
+            data.mapSizeY = mapHeight;
+            data.tileSize = tileSize;
+            data.tilesets = tilesets;
+            data.layers = mapLayers;
+            return data;
         } catch (Exception e) { // error loading saved file
             System.err.println("Could not load map file: "+map+". Throw message: "+e.getMessage());
             e.printStackTrace();
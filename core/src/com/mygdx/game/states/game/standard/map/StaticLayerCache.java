@@ -0,0 +1,148 @@
+package com.mygdx.game.states.game.standard.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Matrix4;
+
+import java.util.ArrayList;
+
+/**
+ * Layers of a map pre-baked at load into sprite caches,
+ * one cache for each square chunk of tiles, so each visible
+ * chunk is drawn with one draw call (one per tileset used in
+ * the chunk) instead of one batch draw per tile. Tiles of
+ * layers do not change at runtime, so all layers are baked
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+class StaticLayerCache {
+
+    private static final int MAX_INDEXED_SPRITES = 8191; // maximum sprites of a cache with indices
+    private static final int VERTEX_BYTES = 5 * 4; // bytes of a vertex (x, y, color, u, v)
+    private static final int INDEXED_SPRITE_BYTES = 4 * VERTEX_BYTES + 6 * 2; // bytes of a sprite with indices (4 vertices, 6 shorts)
+    private static final int SPRITE_BYTES = 6 * VERTEX_BYTES; // bytes of a sprite without indices (6 vertices)
+
+    private SpriteCache cache; // sprite cache with vertices of all chunks
+    private int[][] chunks; // cache id of each chunk, -1 if chunk has no tiles
+    private int chunkSize; // number of tiles on each side of a chunk
+    private int layerCount; // number of layers baked
+    private Matrix4 projection; // projection of caches, moved to game camera position
+    private long memorySize; // approximate bytes of vertices and indices of caches
+
+    private StaticLayerCache(SpriteCache cache, int[][] chunks, int chunkSize, int layerCount, long memorySize) {
+        this.cache = cache;
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.layerCount = layerCount;
+        this.memorySize = memorySize;
+        this.projection = new Matrix4();
+    }
+
+    /**
+     * Bakes the layers of a map
+     * @param layers    the layers of map
+     * @param regions   the image region of each tile global id
+     * @param mapSizeX  number of tiles in map on x-axis (columns)
+     * @param mapSizeY  number of tiles in map on y-axis (lines)
+     * @param tileSize  the size of the map's tile
+     * @param chunkSize number of tiles on each side of a chunk
+     * @return the cache of layers, null if there are no tiles to bake
+     */
+    static StaticLayerCache build(ArrayList<Layer> layers, TextureRegion[] regions, int mapSizeX, int mapSizeY,
+                                  int tileSize, int chunkSize) {
+        int layerCount = layers.size();
+        int sprites = 0;
+        for(int l = 0; l < layerCount; l++) {
+            Layer layer = layers.get(l);
+            for(int i = 0; i < mapSizeY; i++)
+                for(int j = 0; j < mapSizeX; j++)
+                    if(layer.getTileId(i, j) != Layer.NO_TILE)
+                        sprites++;
+        }
+
+        if(sprites == 0)
+            return null;
+
+        boolean indexed = sprites <= MAX_INDEXED_SPRITES;
+        SpriteCache cache = new SpriteCache(sprites, indexed);
+        long memorySize = (long) sprites * (indexed ? INDEXED_SPRITE_BYTES : SPRITE_BYTES);
+        int chunksX = (mapSizeX + chunkSize - 1) / chunkSize;
+        int chunksY = (mapSizeY + chunkSize - 1) / chunkSize;
+        int[][] chunks = new int[chunksY][chunksX];
+
+        // each chunk holds its tiles of all baked layers, in layer order
+        for(int cy = 0; cy < chunksY; cy++) {
+            for(int cx = 0; cx < chunksX; cx++) {
+                int added = 0;
+                cache.beginCache();
+                for(int l = 0; l < layerCount; l++) {
+                    Layer layer = layers.get(l);
+                    for(int i = cy * chunkSize; i < Math.min((cy + 1) * chunkSize, mapSizeY); i++) {
+                        for(int j = cx * chunkSize; j < Math.min((cx + 1) * chunkSize, mapSizeX); j++) {
+                            int id = layer.getTileId(i, j);
+                            if(id == Layer.NO_TILE)
+                                continue;
+                            cache.add(regions[id], j * tileSize, i * tileSize);
+                            added++;
+                        }
+                    }
+                }
+                int id = cache.endCache();
+                chunks[cy][cx] = added > 0 ? id : -1;
+            }
+        }
+
+        return new StaticLayerCache(cache, chunks, chunkSize, layerCount, memorySize);
+    }
+
+    /**
+     * Draws the chunks that contain visible tiles
+     * @param firstX    the first visible tile column
+     * @param firstY    the first visible tile line
+     * @param lastX     the column after the last visible one
+     * @param lastY     the line after the last visible one
+     * @param combined  the projection of game camera
+     * @param originX   the map x coordinate drawn at the left of viewport
+     * @param originY   the map y coordinate drawn at the top of viewport
+     */
+    void render(int firstX, int firstY, int lastX, int lastY, Matrix4 combined, float originX, float originY) {
+        int firstCX = Math.max(firstX, 0) / chunkSize;
+        int firstCY = Math.max(firstY, 0) / chunkSize;
+        int lastCX = Math.min((lastX - 1) / chunkSize, chunks[0].length - 1);
+        int lastCY = Math.min((lastY - 1) / chunkSize, chunks.length - 1);
+
+        projection.set(combined).translate(-originX, -originY, 0);
+        cache.setProjectionMatrix(projection);
+
+        // tiles of upper layers have transparent pixels
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.begin();
+        for(int cy = firstCY; cy <= lastCY; cy++)
+            for(int cx = firstCX; cx <= lastCX; cx++)
+                if(chunks[cy][cx] >= 0)
+                    cache.draw(chunks[cy][cx]);
+        cache.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    /**
+     * @return the number of layers baked
+     */
+    int getLayerCount() {return layerCount;}
+
+    /**
+     * @return the approximate bytes of vertices and indices of caches
+     */
+    long getMemorySize() {return memorySize;}
+
+    /**
+     * disposes the vertices and shader of caches
+     */
+    void dispose() {
+        cache.dispose();
+    }
+}
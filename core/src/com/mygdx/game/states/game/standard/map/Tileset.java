@@ -1,6 +1,7 @@
 package com.mygdx.game.states.game.standard.map;
 
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 
 /**
  * Class that represents a tileset to be used in map creation.
@@ -22,6 +23,7 @@ public class Tileset {
     private int tileSize;		// the size of tiles in the tileset (square tiles)
     private Texture image;		// the source image of the tileset
     private String imagePath;	// the image path for the tileset
+    private TextureRegion[] regions;	// the image region of each tile, flipped for the world camera (y axis down)
 
     /**
      * Class constructor
@@ -47,6 +49,8 @@ public class Tileset {
         this.tileSizeY = (int) Math.ceil(image.getHeight()/(float)(tileSize));
 
         this.tileCount = this.tileSizeX * this.tileSizeY;
+        // cuts the image region of each tile once
+        this.regions = createRegions();
     }
 
     /**
@@ -74,6 +78,39 @@ public class Tileset {
         // calculates tile with image's width and height info, and the size of a tile
         this.tileSizeX = (int) Math.ceil(image.getWidth()/(float)(tileSize));
         this.tileSizeY = (int) Math.ceil(image.getHeight()/(float)(tileSize));
+        // cuts the image region of each tile once
+        this.regions = createRegions();
+    }
+
+    /**
+     * Cuts the image region of each tile of tileset,
+     * clamped to image bounds and flipped as the world
+     * camera has y axis down
+     * @return the regions of tiles, indexed by tile index in tileset
+     */
+    private TextureRegion[] createRegions() {
+        int imgWidth = image.getWidth();
+        int imgHeight = image.getHeight();
+        // clamps for image source bounds
+        int regionWidth = Math.min(tileSize, imgWidth);
+        int regionHeight = Math.min(tileSize, imgHeight);
+
+        TextureRegion[] tileRegions = new TextureRegion[tileCount];
+        for(int t = 0; t < tileCount; t++) {
+            // gets anchors for cutting tile in tileset
+            int sImgX = (t % tileSizeX) * tileSize;
+            int sImgY = (t / tileSizeX) * tileSize;
+            if(sImgX + tileSize > imgWidth) // raster limit on X
+                sImgX = imgWidth - regionWidth;
+            if(sImgY + tileSize > imgHeight) // raster limit on Y
+                sImgY = imgHeight - regionHeight;
+            if(sImgX < 0) sImgX = 0;
+            if(sImgY < 0) sImgY = 0;
+
+            tileRegions[t] = new TextureRegion(image, sImgX, sImgY, regionWidth, regionHeight);
+            tileRegions[t].flip(false, true);
+        }
+        return tileRegions;
     }
 
     /**
@@ -139,7 +176,7 @@ public class Tileset {
     /**
      * @param tileSize the tileSize to set
      */
-    public void setTileSize(int tileSize) {
+    private void setTileSize(int tileSize) {
         this.tileSize = tileSize;
     }
 
@@ -149,11 +186,17 @@ public class Tileset {
     public Texture getImage() {
         return  image;
     }
+    /**
+     * @return the image regions of tiles, indexed by tile index in tileset
+     */
+    public TextureRegion[] getRegions() {
+        return regions;
+    }
 
     /**
      * @param image the image to set
      */
-    public void setImage(Texture image) {
+    private void setImage(Texture image) {
         this.image = image;
     }
 
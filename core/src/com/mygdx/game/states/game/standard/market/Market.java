@@ -54,6 +54,11 @@ public class Market implements ServerListener {
     private boolean isRetrieving; // is data being retrieved?
     private String infoStr; // string containing information to display to player
     private ArrayList<MarketItem> marketItems; // list of market items being sold at retrieve moment
+    private MarketFilter marketFilter; // filter and sort order of market items requested, null for all items
+    private MarketFilter.Sort marketSort = MarketFilter.Sort.ITEM; // sort order of market items chosen by player
+    private Item.Quality marketQuality; // quality of market items chosen by player, null for any
+    private boolean marketLastPage = true; // if all pages of market items were received
+    private boolean fetchingPage; // is next page of market items being retrieved?
     private ArrayList<MarketItem> inventoryItems; // list of player inventory items
     private ArrayList<MarketItem> listings; // list player listings (items sold by player atm)
     private Inventory playerInventory; // player's inventory reference
@@ -100,6 +105,8 @@ public class Market implements ServerListener {
      */
 
     private ColliderButton refreshButton; // refresh server data button
+    private ColliderButton sortButton; // sort order of market items button
+    private ColliderButton qualityButton; // quality filter of market items button
     private ArrayList<ColliderButton> buyButtons; // list of buy tab buttons
     private ArrayList<ColliderButton> sellButtons; // list of sell tab buttons
     private ArrayList<ColliderButton> listingsButtons; // list of listings tab buttons
@@ -212,6 +219,41 @@ public class Market implements ServerListener {
             }
         };
 
+        // cycles sort order of market items
+        sortButton = new ColliderButton(refreshButtonX - refreshButtonW * 1.1f, refreshButtonY,
+                        refreshButtonW, refreshButtonH, buttonTex, pressedButtonTex, Resource.marketFont,
+                        sortKey(marketSort)) {
+            @Override
+            public void onPress() {
+            }
+
+            @Override
+            public void onRelease() {
+                MarketFilter.Sort[] sorts = MarketFilter.Sort.values();
+                marketSort = sorts[(marketSort.ordinal() + 1) % sorts.length];
+                setButtonTextKey(sortKey(marketSort));
+                applyMarketFilter();
+            }
+        };
+
+        // cycles quality filter of market items, any quality after the last one
+        qualityButton = new ColliderButton(refreshButtonX - refreshButtonW * 2.2f, refreshButtonY,
+                        refreshButtonW, refreshButtonH, buttonTex, pressedButtonTex, Resource.marketFont,
+                        qualityKey(marketQuality)) {
+            @Override
+            public void onPress() {
+            }
+
+            @Override
+            public void onRelease() {
+                Item.Quality[] qualities = Item.Quality.values();
+                int next = marketQuality == null ? 0 : marketQuality.ordinal() + 1;
+                marketQuality = next < qualities.length ? qualities[next] : null;
+                setButtonTextKey(qualityKey(marketQuality));
+                applyMarketFilter();
+            }
+        };
+
         // initializes lists
         buyButtons = new ArrayList<ColliderButton>();
         sellButtons = new ArrayList<ColliderButton>();
@@ -223,9 +265,60 @@ public class Market implements ServerListener {
 
         // adds buttons to respective lists
         buyButtons.add(refreshButton);
+        buyButtons.add(sortButton);
+        buyButtons.add(qualityButton);
         listingsButtons.add(refreshButton);
     }
 
+    /**
+     * Gets the text key of a sort order of market items
+     * @param sort the sort order
+     * @return the text key of sort order
+     */
+    private static String sortKey(MarketFilter.Sort sort) {
+        switch (sort) {
+            case PRICE_ASC:
+                return "marketSortPriceAsc";
+            case PRICE_DESC:
+                return "marketSortPriceDesc";
+            case NEWEST:
+                return "marketSortNewest";
+            default:
+                return "marketSortItem";
+        }
+    }
+
+    /**
+     * Gets the text key of a quality filter of market items
+     * @param quality the quality, null for any
+     * @return the text key of quality filter
+     */
+    private static String qualityKey(Item.Quality quality) {
+        if(quality == null)
+            return "marketQualityAny";
+        switch (quality) {
+            case UNCOMMON:
+                return "marketQualityUncommon";
+            case RARE:
+                return "marketQualityRare";
+            case LEGENDARY:
+                return "marketQualityLegendary";
+            default:
+                return "marketQualityNormal";
+        }
+    }
+
+    /**
+     * Retrieves market items again with the sort order
+     * and quality filter chosen by player
+     */
+    private void applyMarketFilter() {
+        MarketFilter filter = new MarketFilter();
+        filter.setSort(marketSort);
+        filter.setQuality(marketQuality);
+        setMarketFilter(filter);
+    }
+
     /**
      * Builds market tabs colliders that
      * will respond to touch inputs
@@ -900,6 +993,9 @@ public class Market implements ServerListener {
         // sends message to server to retrieve market data
         // market message
         MessageMarket marketMsg = new MessageMarket(character, MessageMarket.Action.RETRIEVE_ITEMS);
+        marketMsg.setFilter(marketFilter); // filters and sorts items in server
+        marketMsg.setPageSize(Config.marketPageSize); // only first page, others are retrieved on scroll
+        fetchingPage = false; // first page replaces any page being retrieved
         // wraps market message in message content class
         MessageContent msg = new MessageContent(this.getClass().toString(), marketMsg, MessageContent.Type.MARKET);
         // sends message to server
@@ -908,6 +1004,44 @@ public class Market implements ServerListener {
         svMarketTS = System.currentTimeMillis();
     }
 
+    /**
+     * Retrieves next page of market items, after the
+     * last item received, if there are more items to retrieve
+     */
+    private void fetchNextMarketPage() {
+        if(fetchingPage || marketLastPage || marketItems.isEmpty())
+            return;
+
+        fetchingPage = true; // sets retrieving page flag, player can keep browsing meanwhile
+        // cursor is the last item received, only its sort keys are needed
+        MarketItem last = marketItems.get(marketItems.size() - 1);
+        MarketItem after = new MarketItem();
+        after.setMid(last.getMid());
+        after.setUid(last.getUid());
+        after.setLevel(last.getLevel());
+        after.setPrice(last.getPrice());
+        after.setQuality(last.getQuality());
+        // market message
+        MessageMarket marketMsg = new MessageMarket(character, MessageMarket.Action.RETRIEVE_ITEMS);
+        marketMsg.setFilter(marketFilter);
+        marketMsg.setAfter(after);
+        marketMsg.setPageSize(Config.marketPageSize);
+        // wraps market message in message content class
+        MessageContent msg = new MessageContent(this.getClass().toString(), marketMsg, MessageContent.Type.MARKET);
+        // sends message to server
+        PucmonClient.getInstance().sendMessage(msg);
+    }
+
+    /**
+     * Sets filter and sort order of market items and
+     * retrieves market items again with them
+     * @param marketFilter the filter of market items, null for all items
+     */
+    public void setMarketFilter(MarketFilter marketFilter) {
+        this.marketFilter = marketFilter;
+        refreshMarketItems();
+    }
+
     /**
      * Refreshes list of player listings
      * by sending a message to server
@@ -1097,7 +1231,11 @@ public class Market implements ServerListener {
                                 timedInfo(Main.getInstance().getLang().get("generalError"));
                             break;
                         case RETRIEVE_ITEMS:
-                            timedInfo(Main.getInstance().getLang().get("marketNoItemsSold"));
+                            if(fetchingPage) { // next page could not be retrieved
+                                fetchingPage = false;
+                                timedInfo(Main.getInstance().getLang().get("generalError"));
+                            } else
+                                timedInfo(Main.getInstance().getLang().get("marketNoItemsSold"));
                             break;
                         case REMOVE_ITEM:
                             if(svResponseFlag == MessageFlag.ITEM_ALREADY_SOLD)
@@ -1228,13 +1366,29 @@ public class Market implements ServerListener {
      * @param msgMarket the market message containing market items data received from server
      */
     private void handleMarketRetrieving(MessageMarket msgMarket) {
-        marketItems = msgMarket.getItems(); // stores updated market items received from server
-        // refresh entry buttons
-        refreshEntryButtons();
+        boolean nextPage = msgMarket.getAfter() != null; // page requested after items already received?
+        // a first page was requested meanwhile, ignores stale page
+        if(nextPage && !fetchingPage)
+            return;
+
+        int firstNew = 0; // index of first item received in this message
+        if(nextPage) { // appends page, keeping player scroll
+            float delta = buyDeltaY;
+            firstNew = marketItems.size();
+            marketItems.addAll(msgMarket.getItems());
+            refreshEntryButtons();
+            buyDeltaY = delta;
+        } else {
+            marketItems = msgMarket.getItems(); // stores updated market items received from server
+            // refresh entry buttons
+            refreshEntryButtons();
+        }
+        marketLastPage = msgMarket.isLastPage();
+        fetchingPage = false;
 
         if(Config.debug)
             System.out.println("Market Items: ");
-        for (int i = 0; i < marketItems.size(); i++) {
+        for (int i = firstNew; i < marketItems.size(); i++) {
             // updates item name and description with factory information
             marketItems.get(i).setName(Factory.getItemName(marketItems.get(i).getUid()));
             marketItems.get(i).setDescription(Factory.getItemDescription(marketItems.get(i).getUid(), marketItems.get(i).getLevel()));
@@ -1251,7 +1405,8 @@ public class Market implements ServerListener {
         }
 
         // sets info string informing success of retrieving
-        timedInfo(Main.getInstance().getLang().get("marketRetrievingOk"));
+        if(!nextPage)
+            timedInfo(Main.getInstance().getLang().get("marketRetrievingOk"));
     }
 
     /**
@@ -1514,6 +1669,10 @@ public class Market implements ServerListener {
 
             if (selectedDelta > maxDeltaY) // clamps to avoid surpassing max delta Y
                 selectedDelta = maxDeltaY;
+
+            // close to the end of market items received, retrieves next page
+            if(selectedTab == Tab.Buy && maxDeltaY - selectedDelta <= Config.marketPrefetchEntries * gapY)
+                fetchNextMarketPage();
         }
 
         if(selectedTab == Tab.Listings)
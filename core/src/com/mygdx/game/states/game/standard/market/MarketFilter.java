@@ -0,0 +1,96 @@
+package com.mygdx.game.states.game.standard.market;
+
+import com.mygdx.game.states.game.standard.item.Equipment;
+import com.mygdx.game.states.game.standard.item.Item;
+import com.mygdx.game.states.game.standard.item.factory.Factory;
+
+import java.io.Serializable;
+
+/**
+ * Filter and sort order of market items being sold.
+ * Criteria not set match any item
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MarketFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L; // version of serialized form
+
+    public static final int ANY = -1; // value of criteria that match any item
+
+    // Sort orders of market items
+    public enum Sort {ITEM, PRICE_ASC, PRICE_DESC, NEWEST}
+
+    private int uid = ANY; // the unique ID of items
+    private Equipment.Slot slot; // the equipment slot of items, null for any
+    private Item.Quality quality; // the quality of items, null for any
+    private int minLevel = ANY; // the minimum level of items
+    private int maxLevel = ANY; // the maximum level of items
+    private long minPrice = ANY; // the minimum price of items
+    private long maxPrice = ANY; // the maximum price of items
+    private Sort sort = Sort.ITEM; // the sort order of items
+
+    /**
+     * Checks if a market item matches this filter
+     * @param uid       the unique ID of item
+     * @param quality   the quality of item
+     * @param level     the level of item
+     * @param price     the price of item
+     * @return true if item matches all criteria set, false otherwise
+     */
+    public boolean matches(int uid, Item.Quality quality, int level, long price) {
+        return matchesUid(uid) &&
+                (this.quality == null || this.quality == quality) &&
+                (minLevel == ANY || level >= minLevel) &&
+                (maxLevel == ANY || level <= maxLevel) &&
+                (minPrice == ANY || price >= minPrice) &&
+                (maxPrice == ANY || price <= maxPrice);
+    }
+
+    /**
+     * Checks if a unique ID matches the uid and equipment slot of this filter
+     * @param uid the unique ID of item
+     * @return true if unique ID matches the criteria set, false otherwise
+     */
+    public boolean matchesUid(int uid) {
+        return (this.uid == ANY || this.uid == uid) &&
+                (slot == null || slot == Factory.getEquipmentSlot(uid));
+    }
+
+    /**
+     * Getters and Setters
+     */
+
+    public int getUid() {return uid;}
+
+    public void setUid(int uid) {this.uid = uid;}
+
+    public Equipment.Slot getSlot() {return slot;}
+
+    public void setSlot(Equipment.Slot slot) {this.slot = slot;}
+
+    public Item.Quality getQuality() {return quality;}
+
+    public void setQuality(Item.Quality quality) {this.quality = quality;}
+
+    public int getMinLevel() {return minLevel;}
+
+    public void setMinLevel(int minLevel) {this.minLevel = minLevel;}
+
+    public int getMaxLevel() {return maxLevel;}
+
+    public void setMaxLevel(int maxLevel) {this.maxLevel = maxLevel;}
+
+    public long getMinPrice() {return minPrice;}
+
+    public void setMinPrice(long minPrice) {this.minPrice = minPrice;}
+
+    public long getMaxPrice() {return maxPrice;}
+
+    public void setMaxPrice(long maxPrice) {this.maxPrice = maxPrice;}
+
+    public Sort getSort() {return sort;}
+
+    public void setSort(Sort sort) {this.sort = sort;}
+}
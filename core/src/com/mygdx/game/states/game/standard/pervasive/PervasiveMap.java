@@ -30,7 +30,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -352,6 +351,8 @@ public class PervasiveMap implements ServerListener {
         // sends message to server to retrieve mission data
         // mission message
         MessageMissionData missionMsg = new MessageMissionData(character, MessageMissionData.Action.RETRIEVE_MISSIONS);
+        // sends version of missions held, so server only sends missions changed since it
+        missionMsg.setVersion(Common.getInstance().getMissionsVersion());
         // wraps mission message in message content class
         MessageContent msg = new MessageContent(this.getClass().toString(), missionMsg, MessageContent.Type.MISSION_DATA);
         // sends message to server
@@ -673,8 +674,8 @@ public class PervasiveMap implements ServerListener {
      */
     private void handleMissionsRetrieving(MessageMissionData msgMission) {
         // gets player missions completed
-        HashMap<Integer, Timestamp> missionsDone = msgMission.getMissions();
-        Common.getInstance().setMissionsDone(missionsDone);
+        Common.getInstance().updateMissionsDone(msgMission.getMissions(), msgMission.getVersion(), msgMission.isDelta());
+        Common.getInstance().setSensorsVersion(msgMission.getSensorsVersion());
 
         // updates with the newly obtained info
         for(int i = 0; i < locations.size(); i++) {
@@ -73,6 +73,7 @@ public class SensorUI implements ServerListener {
      */
     ArrayList<SensorInfo> sensors; // list of nearby sensors
     ArrayList<SensorCompact> serverSensors; // list of registered server sensors
+    private long serverSensorsVersion; // version of registered server sensors held, 0 if none
     private boolean sensorsRetrieved = false; // have sensors been retrieved from server yet?
     private boolean missionsRetrieved = false; // have player completed missions been retrieved from server yet?
 
@@ -164,6 +165,8 @@ public class SensorUI implements ServerListener {
         // sends message to server to retrieve sensors data
         // sensor message
         MessageSensor sensorMsg = new MessageSensor();
+        // sends version of sensors held, so server only sends them again if they changed
+        sensorMsg.setVersion(serverSensorsVersion);
         // wraps sensor message in message content class
         MessageContent msg = new MessageContent(this.getClass().toString(), sensorMsg, MessageContent.Type.SENSOR);
         // sends message to server
@@ -181,6 +184,8 @@ public class SensorUI implements ServerListener {
         // sends message to server to retrieve mission data
         // mission message
         MessageMissionData missionMsg = new MessageMissionData(character, MessageMissionData.Action.RETRIEVE_MISSIONS);
+        // sends version of missions held, so server only sends missions changed since it
+        missionMsg.setVersion(Common.getInstance().getMissionsVersion());
         // wraps mission message in message content class
         MessageContent msg = new MessageContent(this.getClass().toString(), missionMsg, MessageContent.Type.MISSION_DATA);
         // sends message to server
@@ -582,6 +587,10 @@ public class SensorUI implements ServerListener {
     public void enable () {
         Common.setTouchableStage(uiStage, Touchable.enabled);
         active = true;
+        // asks for registered sensors only if server told a version other than the one held
+        long current = Common.getInstance().getSensorsVersion();
+        if(sensorsRetrieved && current != 0 && current != serverSensorsVersion)
+            retrieveServerSensors();
     }
 
     /**
@@ -688,7 +697,10 @@ public class SensorUI implements ServerListener {
                 if (svResponseFlag == MessageFlag.OKIDOKI) {
                     // gets sensor data from server
                     this.serverSensors = msgSensor.getSensors();
+                    this.serverSensorsVersion = msgSensor.getVersion();
                     sensorsRetrieved = true; // sensors have been retrieved
+                } else if (svResponseFlag == MessageFlag.SENSORS_NOT_MODIFIED && serverSensors != null) {
+                    sensorsRetrieved = true; // sensors held are up to date
                 }
                 break;
             case MISSION_DATA:
@@ -715,6 +727,11 @@ public class SensorUI implements ServerListener {
                             System.err.println(Main.getInstance().getLang().get("generalError"));
                             break;
                         case COMPLETE_MISSION:
+                            // repeated completion request, first one was already registered
+                            if(svResponseFlag == MessageFlag.MISSION_ALREADY_COMPLETED) {
+                                System.err.println("Mission completion was already registered: " + msgMission.getMission_id());
+                                break;
+                            }
                             System.err.println("Something went wrong while registering completed mission in database");
                             System.err.println(Main.getInstance().getLang().get("generalError"));
                         default:
@@ -791,9 +808,8 @@ public class SensorUI implements ServerListener {
      */
     private void handleMissionsRetrieving(MessageMissionData msgMission) {
         // gets player missions completed
-        HashMap<Integer, Timestamp> missionsDone = msgMission.getMissions();
-
-        Common.getInstance().setMissionsDone(missionsDone);
+        Common.getInstance().updateMissionsDone(msgMission.getMissions(), msgMission.getVersion(), msgMission.isDelta());
+        Common.getInstance().setSensorsVersion(msgMission.getSensorsVersion());
 
         // force sensor refresh due to new mission data received
         refreshSensors();
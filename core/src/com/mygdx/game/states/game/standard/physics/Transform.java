@@ -127,8 +127,6 @@ public class Transform {
         // gets current map
         Map currentMap = MapConfig.getInstance().getCurrentMap();
 
-        // gets current map active colliders
-        Collider[][] mapColliders = currentMap.getColliders();
         // gets current visible map viewport info
         Rectangle vp = currentMap.getViewportGrid();
         int first_j = (int) vp.x;
@@ -153,7 +151,7 @@ public class Transform {
                 if(dataJ >= mapSizeX)
                     dataJ = mapSizeX - 1;
 
-                Collider coll = mapColliders[dataI][dataJ]; // other collider
+                Collider coll = currentMap.getCollider(dataI, dataJ); // other collider
 
                 if(coll != null) { // checks if a collider exists in iteration pos
                     // only checks physical collision if collider is physical
@@ -169,7 +167,7 @@ public class Transform {
                         }
                     }
                     else { // checks trigger collisions
-                        if (futureCollider.overlaps(mapColliders[dataI][dataJ])) {
+                        if (futureCollider.overlaps(coll)) {
                             // trigger trigger collision callback
                             if (collider.getParent() instanceof Collision) {
                                 Collision collision = (Collision) collider.getParent();
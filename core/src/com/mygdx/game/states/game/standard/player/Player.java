@@ -320,15 +320,15 @@ public class Player implements GameLoop, Collision {
         if(other.getParent() instanceof Vector2) {
             Vector2 tileCollided = (Vector2) other.getParent();
 
-            // get mask of special tiles (fields) of current map
-            Field[][] fields = MapConfig.getInstance().getCurrentMap().getFields();
             // gets indexes of tile collided
             int i = (int)tileCollided.x; int j = (int)tileCollided.y;
+            // gets special tile (field) of current map, if any
+            Field field = MapConfig.getInstance().getCurrentMap().getField(i, j);
             // checks if it is a special tile
-            if(fields[i][j] != null) {
+            if(field != null) {
                 // if it is a special field, decide what
                 // to do depending on type of field
-                fieldCollided(fields[i][j]);
+                fieldCollided(field);
             }
         }
     }
@@ -36,6 +36,7 @@ import com.sddl.client.PucmonClient;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /**
@@ -602,7 +603,8 @@ public class MenuInitial implements GameState, ServerListener, Serializable {
 				System.out.println("char: "+ loginMsg.getCharacter() + " | world: " + loginMsg.getWorldMap()
 				+ " | level: " + loginMsg.getLevel() + " | exp: " + loginMsg.getExperience() +
 				" | posx : " + loginMsg.getPosx() + " | posy: " + loginMsg.getPosy() + " | gold: " + loginMsg.getGold()
-				+ " | InvINFO: " + loginMsg.getInventoryData() + " | EquipINFO: " + loginMsg.getEquipmentData());
+				+ " | InvINFO: " + Arrays.toString(loginMsg.getInventory())
+				+ " | EquipINFO: " + Arrays.toString(loginMsg.getEquipment()));
 				Main.getInstance().loginToGame(loginMsg);
 				break;
 			case ACCOUNT_PASSWORD_DO_NOT_MATCH:
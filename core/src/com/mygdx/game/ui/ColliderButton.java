@@ -197,6 +197,8 @@ public abstract class ColliderButton {
      * Getters and setters
      */
 
+    public void setButtonTextKey(String buttonTextKey) {this.buttonTextKey = buttonTextKey;}
+
     public float getPressedMoveY() {
         return pressedMoveY;
     }
@@ -17,6 +17,7 @@ import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 import com.mygdx.game.Main;
 import com.mygdx.game.states.game.standard.architecture.Resource;
 import com.mygdx.game.states.game.standard.item.Equipment;
@@ -50,6 +51,10 @@ public class Common {
     private HashMap<Integer, Mission> missions;
     // hashmap of player's completed missions
     private HashMap<Integer, Timestamp> missionsDone;
+    // server version of player's completed missions held, 0 if none
+    private long missionsVersion;
+    // server version of registered sensors, as last told by server, 0 if unknown
+    private long sensorsVersion;
 
     // singleton reference
     private static Common instance = null;
@@ -173,10 +178,12 @@ public class Common {
         return (Gdx.graphics.getHeight() / Config.baseHeight) * gameCam.getZoom();
     }
 
-    private static ShapeRenderer debugRenderer = new ShapeRenderer();
+    private static ShapeRenderer debugRenderer; // created on first use, so server can load this class headless
 
     public static void drawDebugLine(Vector2 start, Vector2 end)
     {
+        if(debugRenderer == null)
+            debugRenderer = new ShapeRenderer();
         Gdx.gl.glLineWidth(2);
         debugRenderer.begin(ShapeRenderer.ShapeType.Line);
         debugRenderer.setColor(Color.WHITE);
@@ -501,6 +508,207 @@ public class Common {
         return wornEquipment;
     }
 
+    /**
+     * Packed inventory format: each item is stored as three
+     * consecutive ints {uid, level, slot}. For inventory items
+     * slot packs page, i and j indexes (see {@link #packSlot}),
+     * for worn equipments slot is the equipment slot index
+     */
+    public static final int PACKED_STRIDE = 3;
+
+    /**
+     * Packs an inventory position in a single int
+     * @param page  the inventory page index
+     * @param i     the i index in page
+     * @param j     the j index in page
+     * @return the packed inventory slot
+     */
+    public static int packSlot(int page, int i, int j) {
+        return (page << 16) | ((i & 0xff) << 8) | (j & 0xff);
+    }
+
+    /**
+     * @param slot the packed inventory slot
+     * @return the inventory page index of slot
+     */
+    public static int slotPage(int slot) {return slot >>> 16;}
+
+    /**
+     * @param slot the packed inventory slot
+     * @return the i index of slot
+     */
+    public static int slotI(int slot) {return (slot >> 8) & 0xff;}
+
+    /**
+     * @param slot the packed inventory slot
+     * @return the j index of slot
+     */
+    public static int slotJ(int slot) {return slot & 0xff;}
+
+    /**
+     * Packs player inventory items in an int array
+     * @param invPages  player inventory pages
+     * @return the packed inventory items {uid, level, slot}
+     */
+    public static int[] packInventory(ArrayList<Item[][]> invPages) {
+        // counts items first to allocate packed array only once
+        int n = 0;
+        for(int p = 0; p < invPages.size(); p++) {
+            Item[][] page = invPages.get(p);
+            for(int i = 0; i < page.length; i++)
+                for(int j = 0; j < page[i].length; j++)
+                    if(page[i][j] != null)
+                        n++;
+        }
+
+        int[] packed = new int[n * PACKED_STRIDE];
+        int k = 0;
+        for(int p = 0; p < invPages.size(); p++) {
+            Item[][] page = invPages.get(p); // the current page
+            for(int i = 0; i < page.length; i++) {
+                for(int j = 0; j < page[i].length; j++) {
+                    Item item = page[i][j];
+                    if(item == null)
+                        continue;
+                    if(item.isEquipable()) { // equipments are stored with uID and level
+                        packed[k++] = ((Equipment) item).getUniqueID();
+                        packed[k++] = ((Equipment) item).getLevel();
+                    } else { // items are stored with its id that is unique already and -1 as level
+                        packed[k++] = item.getId();
+                        packed[k++] = -1;
+                    }
+                    packed[k++] = packSlot(p, i, j);
+                }
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks inventory items to inventory data structure
+     * @param packed the packed inventory items {uid, level, slot}
+     * @return the pages of inventory containing the unpacked items
+     */
+    public static ArrayList<Item[][]> unpackInventory(int[] packed) {
+        // initialize pages
+        ArrayList<Item[][]> pages = new ArrayList<Item[][]>(Config.inventoryNPages);
+        for(int i = 0 ; i < Config.inventoryNPages; i++)
+            pages.add(new Item[Config.inventoryMaxItemsY][Config.inventoryMaxItemsX]);
+
+        for(int k = 0; packed != null && k + PACKED_STRIDE <= packed.length; k += PACKED_STRIDE) {
+            int slot = packed[k + 2];
+            // creates item and adds item to its corresponded place in inventory
+            pages.get(slotPage(slot))[slotI(slot)][slotJ(slot)] = Factory.createItem(packed[k], packed[k + 1], false);
+        }
+        return pages;
+    }
+
+    /**
+     * Packs player worn equipments in an int array
+     * @param wornEquips player worn equipments to pack
+     * @return the packed worn equipments {uid, level, slot}
+     */
+    public static int[] packWornEquipment(Equipment[] wornEquips) {
+        int n = 0;
+        for(int i = 0; i < wornEquips.length; i++)
+            if(wornEquips[i] != null)
+                n++;
+
+        int[] packed = new int[n * PACKED_STRIDE];
+        int k = 0;
+        for(int i = 0; i < wornEquips.length; i++) {
+            if(wornEquips[i] != null) {
+                packed[k++] = wornEquips[i].getUniqueID();
+                packed[k++] = wornEquips[i].getLevel();
+                packed[k++] = i;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks worn equipments to worn equipment array
+     * @param packed the packed worn equipments {uid, level, slot}
+     * @return the array of worn equipments
+     */
+    public static Equipment[] unpackWornEquipment(int[] packed) {
+        Equipment[] wornEquipment = new Equipment[Equipment.Slot.values().length];
+        for(int k = 0; packed != null && k + PACKED_STRIDE <= packed.length; k += PACKED_STRIDE)
+            wornEquipment[packed[k + 2]] = (Equipment) Factory.createItem(packed[k], packed[k + 1], false);
+        return wornEquipment;
+    }
+
+    /**
+     * Finds the differences between two packed inventories sorted by slot,
+     * as produced by {@link #packInventory} and {@link #packWornEquipment}
+     * @param last      the previous packed inventory
+     * @param current   the current packed inventory
+     * @param changed   receives the {uid, level, slot} triples filled or changed
+     * @param removed   receives the slots emptied
+     */
+    public static void diffPacked(int[] last, int[] current, IntArray changed, IntArray removed) {
+        int a = 0, b = 0;
+        while(a < last.length || b < current.length) {
+            if(b >= current.length || (a < last.length && last[a + 2] < current[b + 2])) {
+                removed.add(last[a + 2]); // slot only in previous inventory
+                a += PACKED_STRIDE;
+            } else if(a >= last.length || last[a + 2] > current[b + 2]) {
+                addTriple(changed, current, b); // slot only in current inventory
+                b += PACKED_STRIDE;
+            } else { // slot in both, checks content
+                if(last[a] != current[b] || last[a + 1] != current[b + 1])
+                    addTriple(changed, current, b);
+                a += PACKED_STRIDE;
+                b += PACKED_STRIDE;
+            }
+        }
+    }
+
+    /**
+     * Adds a packed {uid, level, slot} triple to an int array
+     */
+    private static void addTriple(IntArray array, int[] packed, int k) {
+        array.add(packed[k]);
+        array.add(packed[k + 1]);
+        array.add(packed[k + 2]);
+    }
+
+    /**
+     * Applies differences found by {@link #diffPacked} to a packed inventory.
+     * All arrays must be sorted by slot, as the merged array will be
+     * @param base      the packed inventory to apply differences to
+     * @param changed   the {uid, level, slot} triples filled or changed
+     * @param removed   the slots emptied
+     * @return the packed inventory with differences applied
+     */
+    public static int[] mergePacked(int[] base, int[] changed, int[] removed) {
+        if(changed == null)
+            changed = new int[0];
+        if(removed == null)
+            removed = new int[0];
+        if(changed.length == 0 && removed.length == 0)
+            return base;
+
+        IntArray merged = new IntArray(base.length + changed.length);
+        int a = 0, b = 0, r = 0;
+        while(a < base.length || b < changed.length) {
+            if(b >= changed.length || (a < base.length && base[a + 2] < changed[b + 2])) {
+                // skips slots emptied
+                while(r < removed.length && removed[r] < base[a + 2])
+                    r++;
+                if(r >= removed.length || removed[r] != base[a + 2])
+                    addTriple(merged, base, a); // slot kept from base
+                a += PACKED_STRIDE;
+            } else {
+                if(a < base.length && base[a + 2] == changed[b + 2])
+                    a += PACKED_STRIDE; // slot overwritten
+                addTriple(merged, changed, b);
+                b += PACKED_STRIDE;
+            }
+        }
+        return merged.toArray();
+    }
+
     /**
      * Inserts a break line character in the last
      * space character found in string received.
@@ -674,6 +882,26 @@ public class Common {
         this.missionsDone = missionsDone;
     }
 
+    public long getMissionsVersion() {return missionsVersion;}
+
+    public long getSensorsVersion() {return sensorsVersion;}
+
+    public void setSensorsVersion(long sensorsVersion) {this.sensorsVersion = sensorsVersion;}
+
+    /**
+     * Updates player's completed missions with data received from server
+     * @param missions  the completed missions received
+     * @param version   the server version of completed missions
+     * @param delta     if missions received are only the ones changed since version held
+     */
+    public void updateMissionsDone(HashMap<Integer, Timestamp> missions, long version, boolean delta) {
+        if(delta)
+            missionsDone.putAll(missions);
+        else
+            missionsDone = missions;
+        missionsVersion = version;
+    }
+
     /**
      * Prints in console the desired latency in milliseconds
      * received in parameters with a label
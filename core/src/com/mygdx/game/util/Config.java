@@ -21,7 +21,19 @@ public class Config {
     public static float playerBaseSpeed = 150f; // player speed (without equipment effects)
     public static float playerSpeed = 150f; // player speed
     public static float saveTime = 5f; // time between each save of player progress
+    public static float saveHeartbeatTime = 10f; // maximum time without saves to server while nothing changes
     public static float responseTimeout = 5f; // maximum time to wait for server response
+    public static boolean mapStaticCache = true; // pre-bakes static map layers in sprite caches at load
+    public static int mapCacheChunkSize = 16; // number of tiles on each side of a pre-baked map chunk
+    public static int mapChunkSize = 32; // number of tiles on each side of a map chunk (unit of map storage and streaming)
+    public static int mapStreamMinTiles = 256 * 256; // compiled maps with more tiles than this are streamed by chunks
+    public static int mapStreamRadius = 2; // chunks around camera chunk kept loaded in streamed maps
+    public static long mapStreamRetryDelay = 250; // time in ms before a chunk that could not be read is read again, doubled at each failure
+    public static long mapStreamRetryMaxDelay = 8000; // longest time in ms between reads of a chunk that keeps failing
+    public static boolean mapCompiled = true; // loads maps compiled by map compiler (.mapb) when available
+    public static boolean mapPreload = true; // loads in background the maps reachable by teleports of current map
+    public static long mapCacheMemory = 64L * 1024 * 1024; // approximate bytes of loaded maps kept (least recently used are disposed)
+    public static long mapLoaderShutdownWait = 5000; // time in ms to wait for the map being read in background when maps are disposed
     public static int initialMapID = 2; // initial map id
     public static int initialMapPosx = 364; // initial position x on initial map
     public static int initialMapPosy = 2208; // initial position y on initial map
@@ -228,6 +240,8 @@ public class Config {
     public static float marketButtonsScaleX = 1f; // scale of buttons texture in X axis
     public static float marketButtonsScaleY = 1f; // scale of buttons texture in Y axis
     public static int marketSellMaxDigits = 12; // maximum number of digits in sell input
+    public static int marketPageSize = 20; // number of market items requested in each page
+    public static int marketPrefetchEntries = 5; // remaining entries below view that trigger next page request
 
     /***************************
      * Pervasive Map Constants *
@@ -288,4 +302,54 @@ public class Config {
     public static Color sensorModerateColor = new Color(242/255f, 213/255f, 50/255f, 1.0f);
     public static Color sensorStrongColor = new Color(215/255f, 232/255f, 32/255f, 1.0f);
     public static Color sensorStrongestColor = new Color(137/255f, 219/255f, 24/255f, 1.0f);
+
+    /*********************
+     * Network Constants *
+     *********************/
+    public static boolean wireBinaryCodec = true; // encodes messages with binary codec instead of java serialization
+
+    /********************
+     * Server Constants *
+     ********************/
+    public static int svIngressCapacity = 4096; // maximum number of received messages waiting to be decoded
+    public static long svIngressTimeout = 50; // time in ms the listener waits for ingress room before dropping a message
+    public static int svDecoderThreads = 2; // number of threads decoding received messages
+    public static int svLaneCapacity = 512; // maximum number of messages waiting in each worker lane
+    public static long svLaneTimeout = 1000; // time in ms a decoder waits for lane room before dropping a message
+    public static int svSessionWorkers = 8; // worker lanes for login, save, logoff, sign up, ack and market changes
+    public static int svRankingWorkers = 2; // worker lanes for ranking messages
+    public static int svMarketWorkers = 4; // worker lanes for market searches
+    public static int svSensingWorkers = 2; // worker lanes for mission data and sensor messages
+    public static long svOfflineTimeout = 15000; // time in ms without saves or logins after which a player is considered offline
+    public static long svPresenceWheelTick = 100; // time span in ms of each bucket of online players timing wheel
+    public static int svSensorQueueCapacity = 16384; // maximum number of sensor readings waiting to be written
+    public static int svSensorBatchSize = 512; // maximum number of sensor readings written in each batch
+    public static long svSensorBatchDelay = 250; // maximum time in ms a sensor reading waits for its batch to fill
+    public static long svSensorRawRetention = 172800000; // time in ms raw sensor samples are kept (2 days)
+    public static long svSensorMinuteRetention = 2592000000L; // time in ms minute rollups of sensor samples are kept (30 days)
+    public static long svSensorHourRetention = 31536000000L; // time in ms hour rollups of sensor samples are kept (365 days)
+    public static long svSensorMinuteQuerySpan = 21600000; // longest range in ms of sensor queries answered with minute rollups (6 hours)
+    public static long svSensorPruneInterval = 3600000; // time in ms between each deletion of old sensor data
+    public static int svSensorPruneChunk = 10000; // maximum number of sensor rows deleted by each statement
+    public static int svSensorRetryFailures = 3; // failures in a row after which readings of a failed batch are not retried
+    public static long svSensorRegistryRefresh = 30000; // time in ms between each refresh of registered sensors from database
+    public static long svSensorRegistryRetry = 5000; // minimum time in ms between attempts to load sensors after a failure
+    public static long svMissionRepeatGuard = 10000; // time in ms a mission completed again is taken as a repeated request
+    public static boolean svMetricsJmx = true; // exposes server metrics over JMX
+    public static int svMetricsHttpPort = 0; // local port of metrics http endpoint, 0 disables it
+    public static int svPasswordIterations = 10000; // work factor of account password hashes, raising it rehashes passwords on login
+    public static int svCredentialCacheSize = 4096; // maximum number of recent password verifications kept to skip rehashing
+    public static long svStatsInterval = 60000; // time in ms between each server statistics log
+    public static int svDbPoolSize = 16; // maximum number of open database connections
+    public static long svDbBorrowTimeout = 5000; // time in ms to wait for a free database connection
+    public static long svDbValidationInterval = 30000; // idle time in ms after which a connection is checked before use
+    public static int svDbValidationTimeout = 2; // time in seconds a connection health check may take
+    public static int svDbStatementCache = 64; // maximum number of prepared statements cached per connection
+    public static long svCacheFlushTick = 1000; // time in ms between each check for player states to flush
+    public static long svCacheMaxStaleness = 30000; // maximum time in ms a saved player state may wait to be persisted
+    public static long svCacheIdleEviction = 600000; // time in ms after which unused persisted player states are evicted
+    public static boolean svCacheFlushOnShutdown = true; // persists pending player states when server shuts down
+    public static long svRankingReconcileInterval = 600000; // time in ms between each rebuild of ranking from database
+    public static int svMarketMaxPageSize = 100; // maximum number of market items sent in each page
+    public static long svMarketLoadRetry = 10000; // minimum time in ms between attempts to load market after a failure
 }
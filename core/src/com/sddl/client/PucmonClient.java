@@ -1,7 +1,9 @@
 package com.sddl.client;
 
+import com.mygdx.game.messages.MessageCodec;
 import com.mygdx.game.messages.MessageContent;
 import com.mygdx.game.messages.ServerMessages;
+import com.mygdx.game.util.Config;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -12,7 +14,6 @@ import lac.cnclib.net.NodeConnection;
 import lac.cnclib.net.NodeConnectionListener;
 import lac.cnclib.net.mrudp.MrUdpNodeConnection;
 import lac.cnclib.sddl.message.ApplicationMessage;
-import lac.cnclib.sddl.serialization.Serialization;
 
 /***
  * Works as an interface to server requests
@@ -145,8 +146,7 @@ public class PucmonClient implements NodeConnectionListener {
      * Message received callback updates status of connectivity
      */
     public void sendAckMessage () {
-        ApplicationMessage message = new ApplicationMessage();
-        message.setContentObject(new MessageContent(null, "ack", MessageContent.Type.ACK));
+        ApplicationMessage message = wrap(new MessageContent(null, "ack", MessageContent.Type.ACK));
 
         try {
             connection.sendMessage(message);
@@ -165,8 +165,7 @@ public class PucmonClient implements NodeConnectionListener {
 
         // connection is okay, send message
         if(isConnected) {
-            ApplicationMessage message = new ApplicationMessage();
-            message.setContentObject(msg);
+            ApplicationMessage message = wrap(msg);
 
             try {
                 connection.sendMessage(message);
@@ -180,6 +179,21 @@ public class PucmonClient implements NodeConnectionListener {
         }
     }
 
+    /**
+     * Wraps a message content in an application message,
+     * encoded with binary codec if enabled in config
+     * @param msg the message content to wrap
+     * @return the application message to send to the server
+     */
+    private static ApplicationMessage wrap(MessageContent msg) {
+        ApplicationMessage message = new ApplicationMessage();
+        if(Config.wireBinaryCodec)
+            message.setContent(MessageCodec.encode(msg));
+        else
+            message.setContentObject(msg);
+        return message;
+    }
+
     /***
      * SDDL callback for connection with the server event
      * updates status of the client to mirror current connectivity
@@ -202,8 +216,9 @@ public class PucmonClient implements NodeConnectionListener {
     public void newMessageReceived(NodeConnection remoteCon, lac.cnclib.sddl.message.Message message) {
 
         // gets the message content
-        MessageContent msgContent = (MessageContent)
-                Serialization.fromJavaByteStream(message.getContent());
+        MessageContent msgContent = MessageCodec.read(message.getContent());
+        if(msgContent == null) // not a game message
+            return;
 
         // checks if message type equals ack
         if(msgContent.getType() == MessageContent.Type.ACK) {
@@ -0,0 +1,133 @@
+package sddl.loadtest;
+
+import com.mygdx.game.messages.MessageCodec;
+import com.mygdx.game.messages.MessageContent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lac.cnclib.sddl.serialization.Serialization;
+import lac.cnet.sddl.objects.Message;
+import lac.cnet.sddl.objects.PrivateMessage;
+import lac.cnet.sddl.udi.core.SddlLayer;
+import sddl.server.MessageHandler;
+import sddl.server.ServerState;
+
+/**
+ * Drives the server message handler in this process, with
+ * a local stand-in of the SDDL layer that hands replies back
+ * to the sessions. Requests go through the binary codec and
+ * are handled in the thread of the session, so measured
+ * latencies are the time spent by the handler and database,
+ * without network and dispatcher queues
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class InProcessTransport implements Transport {
+
+    private static final long UPDATE_TICK = 100; // server state update tick in ms, as in server
+
+    private MessageHandler handler; // the server message handler
+    private SddlLayer layer; // stand-in of SDDL layer that receives replies
+    private UUID gatewayId = UUID.randomUUID(); // gateway id of all sessions
+    private ConcurrentHashMap<UUID, LoadSession> sessions; // open sessions by node id
+
+    /**
+     * Creates server message handler and stand-in
+     * layer, and starts updating server state
+     */
+    public InProcessTransport() {
+        this.sessions = new ConcurrentHashMap<UUID, LoadSession>();
+        this.handler = MessageHandler.getInstance();
+
+        // only writes to topics are used by handler, other calls are ignored
+        this.layer = (SddlLayer) Proxy.newProxyInstance(SddlLayer.class.getClassLoader(),
+                new Class<?>[] {SddlLayer.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if(method.getName().equals("writeTopic") && args != null && args.length == 2
+                        && args[1] instanceof PrivateMessage)
+                    deliver((PrivateMessage) args[1]);
+                if(method.getDeclaringClass() == Object.class && method.getName().equals("hashCode"))
+                    return System.identityHashCode(proxy);
+                if(method.getDeclaringClass() == Object.class && method.getName().equals("equals"))
+                    return proxy == args[0];
+                return null;
+            }
+        });
+
+        startServerUpdate();
+    }
+
+    /**
+     * Updates server state in another thread, so players
+     * that stop saving go offline as in the server
+     */
+    private void startServerUpdate() {
+        final Thread updateThread = new Thread("server-update") {
+            @Override
+            public void run() {
+                while(true) {
+                    try {
+                        sleep(UPDATE_TICK);
+                        ServerState.getInstance().update();
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while updating server state: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        updateThread.setDaemon(true);
+        updateThread.start();
+    }
+
+    /**
+     * Decodes a reply written by the handler
+     * and hands it to the session it is sent to
+     * @param privateMessage the reply written by handler
+     */
+    private void deliver(PrivateMessage privateMessage) {
+        LoadSession session = sessions.get(privateMessage.getNodeId());
+        if(session == null)
+            return;
+
+        lac.cnclib.sddl.message.Message reply = Serialization.fromProtocolMessage(privateMessage.getMessage());
+        MessageContent msgContent = reply != null ? MessageCodec.read(reply.getContent()) : null;
+        if(msgContent != null)
+            session.onReply(msgContent);
+    }
+
+    @Override
+    public void open(LoadSession session) {
+        session.setNodeId(UUID.randomUUID());
+        sessions.put(session.getNodeId(), session);
+    }
+
+    @Override
+    public void send(LoadSession session, MessageContent msg) {
+        Message message = new Message();
+        message.setSenderId(session.getNodeId());
+        message.setGatewayId(gatewayId);
+
+        // decodes request as server would
+        byte[] frame = MessageCodec.encode(msg);
+        message.setContent(frame);
+        MessageContent decoded = MessageCodec.decode(frame);
+
+        handler.handleMessage(layer, message, decoded != null ? decoded : msg);
+    }
+
+    @Override
+    public void close(LoadSession session) {
+        if(session.getNodeId() != null)
+            sessions.remove(session.getNodeId());
+    }
+}
@@ -0,0 +1,272 @@
+package sddl.loadtest;
+
+import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.messages.MessageFlag;
+
+import java.util.EnumMap;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sddl.server.metrics.LatencyHistogram;
+
+/**
+ * Headless load generator that simulates many game clients
+ * against the server, either in this process (driving the
+ * message handler directly) or through the real SDDL path,
+ * and reports throughput and latency of each message type.
+ * Sessions use their own accounts ({@code <prefix><n>}), so
+ * run it against a staging database: saves and market buys
+ * change the data of those accounts and of the market.
+ *
+ * Usage: LoadGenerator [--mode inprocess|sddl] [--sessions n]
+ *        [--duration s] [--ramp s] [--think min-max (ms)]
+ *        [--threads n] [--gateway host:port] [--signup]
+ *        [--prefix name] [--mix ranking:market:missions]
+ *        [--buy-ratio r] [--timeout ms] [--report s] [--seed n]
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class LoadGenerator {
+
+    /**
+     * Counters and latencies of a message type
+     */
+    static class TypeStats {
+        private LatencyHistogram latencies = new LatencyHistogram(); // latencies in us of completed requests
+        private AtomicLong sent = new AtomicLong(); // number of requests sent
+        private AtomicLong ok = new AtomicLong(); // number of requests completed without errors
+        private AtomicLong rejected = new AtomicLong(); // number of requests refused by server (e.g. item already sold)
+        private AtomicLong errors = new AtomicLong(); // number of requests that failed
+        private AtomicLong timeouts = new AtomicLong(); // number of requests without reply in time
+
+        void sent() {sent.incrementAndGet();}
+
+        void timeout() {timeouts.incrementAndGet();}
+
+        /**
+         * Records a completed request
+         * @param nanos the latency of request in ns
+         * @param flag  the flag of reply, null if request has no reply
+         */
+        void complete(long nanos, MessageFlag flag) {
+            latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if(flag == null || flag == MessageFlag.OKIDOKI)
+                ok.incrementAndGet();
+            else if(flag == MessageFlag.GENERAL_ERROR)
+                errors.incrementAndGet();
+            else
+                rejected.incrementAndGet();
+        }
+    }
+
+    // options
+    private String mode = "inprocess"; // inprocess or sddl
+    private int sessions = 100; // number of simulated clients
+    private long duration = 60000; // time in ms to run after ramp up
+    private long ramp = 10000; // time in ms over which sessions start
+    private long thinkMin = 1000; // minimum time in ms between requests of a session
+    private long thinkMax = 3000; // maximum time in ms between requests of a session
+    private int threads = 16; // threads that run sessions
+    private String host = "localhost"; // sddl mode: gateway host
+    private int port = 7171; // sddl mode: gateway port
+    private boolean signUp = false; // if sessions create their accounts first
+    private String prefix = "load"; // prefix of session accounts
+    private int[] mix = {1, 2, 2}; // weights of ranking, market and missions requests
+    private double buyRatio = 0.1; // chance of a market request being a buy
+    private long timeout = 10000; // time in ms to wait for a reply
+    private long reportInterval = 10000; // time in ms between progress reports
+    private long seed = 42; // seed of session random choices
+
+    private Transport transport; // the way sessions reach server
+    private ScheduledThreadPoolExecutor scheduler; // runs session steps
+    private EnumMap<MessageContent.Type, TypeStats> stats; // stats of each message type
+    private volatile boolean stopping; // if sessions must log off
+    private CountDownLatch done; // sessions not finished yet
+    private long startTime; // time in ms generator started
+
+    /**
+     * Runs load generator
+     * @param args the options of load generator
+     */
+    public static void main(String[] args) {
+        LoadGenerator generator = new LoadGenerator();
+        if(!generator.parse(args)) {
+            System.err.println("Usage: LoadGenerator [--mode inprocess|sddl] [--sessions n] [--duration s] [--ramp s]\n" +
+                    "       [--think min-max] [--threads n] [--gateway host:port] [--signup] [--prefix name]\n" +
+                    "       [--mix ranking:market:missions] [--buy-ratio r] [--timeout ms] [--report s] [--seed n]");
+            System.exit(1);
+        }
+        generator.run();
+        System.exit(0);
+    }
+
+    /**
+     * Parses options of load generator
+     * @param args the options
+     * @return true if options are valid, false otherwise
+     */
+    boolean parse(String[] args) {
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if(arg.equals("--signup")) {
+                    signUp = true;
+                    continue;
+                }
+                if(i + 1 >= args.length)
+                    return false;
+                String value = args[++i];
+                if(arg.equals("--mode"))
+                    mode = value;
+                else if(arg.equals("--sessions"))
+                    sessions = Integer.parseInt(value);
+                else if(arg.equals("--duration"))
+                    duration = Long.parseLong(value) * 1000;
+                else if(arg.equals("--ramp"))
+                    ramp = Long.parseLong(value) * 1000;
+                else if(arg.equals("--think")) {
+                    String[] range = value.split("-");
+                    thinkMin = Long.parseLong(range[0]);
+                    thinkMax = range.length > 1 ? Long.parseLong(range[1]) : thinkMin;
+                } else if(arg.equals("--threads"))
+                    threads = Integer.parseInt(value);
+                else if(arg.equals("--gateway")) {
+                    String[] address = value.split(":");
+                    host = address[0];
+                    if(address.length > 1)
+                        port = Integer.parseInt(address[1]);
+                } else if(arg.equals("--prefix"))
+                    prefix = value;
+                else if(arg.equals("--mix")) {
+                    String[] weights = value.split(":");
+                    for(int w = 0; w < mix.length; w++)
+                        mix[w] = Integer.parseInt(weights[w]);
+                } else if(arg.equals("--buy-ratio"))
+                    buyRatio = Double.parseDouble(value);
+                else if(arg.equals("--timeout"))
+                    timeout = Long.parseLong(value);
+                else if(arg.equals("--report"))
+                    reportInterval = Long.parseLong(value) * 1000;
+                else if(arg.equals("--seed"))
+                    seed = Long.parseLong(value);
+                else
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Invalid option: " + e.getMessage());
+            return false;
+        }
+
+        return (mode.equals("inprocess") || mode.equals("sddl")) && sessions > 0 && threads > 0
+                && thinkMin >= 0 && thinkMax >= thinkMin && mix[0] + mix[1] + mix[2] > 0;
+    }
+
+    /**
+     * Runs sessions for the configured duration,
+     * logs them off and prints the final report
+     */
+    void run() {
+        stats = new EnumMap<MessageContent.Type, TypeStats>(MessageContent.Type.class);
+        for(MessageContent.Type type : MessageContent.Type.values())
+            stats.put(type, new TypeStats());
+
+        transport = mode.equals("sddl") ? new SddlTransport(host, port, timeout) : new InProcessTransport();
+        scheduler = new ScheduledThreadPoolExecutor(threads);
+        done = new CountDownLatch(sessions);
+
+        System.out.println("=== Load started: " + sessions + " sessions (" + mode + ") ===");
+        startTime = System.currentTimeMillis();
+
+        // spreads session starts over ramp up
+        Random random = new Random(seed);
+        for(int i = 0; i < sessions; i++) {
+            LoadSession session = new LoadSession(this, prefix + i, random.nextLong(), signUp);
+            session.start(ramp * i / sessions);
+        }
+
+        // reports progress until duration ends
+        long end = startTime + ramp + duration;
+        try {
+            while(System.currentTimeMillis() < end) {
+                Thread.sleep(Math.max(1, Math.min(reportInterval, end - System.currentTimeMillis())));
+                if(System.currentTimeMillis() < end)
+                    printReport("progress");
+            }
+
+            // lets sessions finish their requests and log off
+            stopping = true;
+            if(!done.await(timeout + thinkMax + 5000, TimeUnit.MILLISECONDS))
+                System.err.println(done.getCount() + " sessions did not finish in time");
+        } catch (InterruptedException e) {
+            System.err.println("Load generator interrupted: " + e.getMessage());
+        }
+
+        printReport("final");
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Prints throughput and latencies of each message type
+     * @param title the title of report
+     */
+    void printReport(String title) {
+        double elapsed = (System.currentTimeMillis() - startTime) / 1000.0;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("=== Load report (%s) %.1f s, %d sessions, %s ===%n", title, elapsed, sessions, mode));
+        report.append(String.format("%-13s %9s %9s %8s %8s %8s %9s %9s %9s %9s %9s%n", "type", "sent", "ok", "rejected",
+                "errors", "timeouts", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for(MessageContent.Type type : MessageContent.Type.values()) {
+            TypeStats s = stats.get(type);
+            if(s.sent.get() == 0)
+                continue;
+            report.append(String.format("%-13s %9d %9d %8d %8d %8d %9.1f %9.2f %9.2f %9.2f %9.2f%n", type, s.sent.get(),
+                    s.ok.get(), s.rejected.get(), s.errors.get(), s.timeouts.get(),
+                    s.latencies.getCount() / Math.max(elapsed, 0.001),
+                    s.latencies.getPercentile(50) / 1000.0, s.latencies.getPercentile(99) / 1000.0,
+                    s.latencies.getPercentile(99.9) / 1000.0, s.latencies.getMax() / 1000.0));
+        }
+        System.out.print(report.toString());
+    }
+
+    /**
+     * Schedules a task of a session
+     * @param task  the task to run
+     * @param delay the delay in ms before running task
+     */
+    void schedule(Runnable task, long delay) {
+        if(!scheduler.isShutdown())
+            scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Draws a think time of a session
+     * @param random the random source of session
+     * @return the think time in ms
+     */
+    long thinkTime(Random random) {
+        return thinkMin + (long) (random.nextDouble() * (thinkMax - thinkMin));
+    }
+
+    /**
+     * Callback of sessions that finished
+     */
+    void sessionDone() {
+        done.countDown();
+    }
+
+    TypeStats getStats(MessageContent.Type type) {return stats.get(type);}
+
+    Transport getTransport() {return transport;}
+
+    boolean isStopping() {return stopping;}
+
+    int[] getMix() {return mix;}
+
+    double getBuyRatio() {return buyRatio;}
+
+    long getTimeout() {return timeout;}
+}
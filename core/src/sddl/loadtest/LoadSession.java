@@ -0,0 +1,377 @@
+package sddl.loadtest;
+
+import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.messages.MessageFlag;
+import com.mygdx.game.messages.MessageLogin;
+import com.mygdx.game.messages.MessageLogoff;
+import com.mygdx.game.messages.MessageMarket;
+import com.mygdx.game.messages.MessageMissionData;
+import com.mygdx.game.messages.MessageRanking;
+import com.mygdx.game.messages.MessageSave;
+import com.mygdx.game.messages.MessageSignUp;
+import com.mygdx.game.states.game.standard.market.MarketItem;
+import com.mygdx.game.util.Config;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A simulated game client. Signs up (if asked), logs in and,
+ * while online, saves every {@link Config#saveTime} and between
+ * think times opens ranking, browses and buys from market and
+ * retrieves missions, as players do. Each session has at most
+ * one request waiting for a reply, whose latency is recorded
+ * when the reply arrives
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class LoadSession {
+
+    /**
+     * Listeners of client screens that send each request
+     */
+    private static final String MENU_LISTENER = "class com.mygdx.game.states.menu.MenuInitial";
+    private static final String GAME_LISTENER = "class com.mygdx.game.states.game.standard.controller.Game";
+    private static final String RANKING_LISTENER = "class com.mygdx.game.states.game.standard.ranking.Ranking";
+    private static final String MARKET_LISTENER = "class com.mygdx.game.states.game.standard.market.Market";
+    private static final String MISSION_LISTENER = "class com.mygdx.game.states.game.standard.pervasive.PervasiveMap";
+
+    enum Phase {SIGNUP, LOGIN, ONLINE, DONE}
+
+    private LoadGenerator generator; // generator that runs this session
+    private String account; // account of session, also its password and character name
+    private Random random; // random source of session choices
+    private UUID nodeId; // node id of session, when given by transport
+    private boolean opened; // if transport channel is open
+    private Phase phase; // current phase of session
+
+    private MessageContent.Type pendingType; // type of request waiting for reply, null if none
+    private long pendingSince; // time in ns pending request was sent
+    private long generation; // number of requests sent, identifies pending request
+
+    // player state, as client holds it
+    private int worldMap, level, posx, posy;
+    private long experience, gold;
+    private int[] inventory, equipment;
+    private long lastSave; // last time in ms a save was sent
+    private long saveSequence; // sequence of last save sent
+    private boolean fullSave; // if next save must carry whole state
+    private long missionsVersion; // version of missions held
+    private ArrayList<MarketItem> marketItems = new ArrayList<MarketItem>(); // items of last market page seen
+
+    /**
+     * Creates a session
+     * @param generator the generator that runs this session
+     * @param account   the account of session, also used as password and character name
+     * @param seed      the seed of session random choices
+     * @param signUp    if session must create its account before logging in
+     */
+    public LoadSession(LoadGenerator generator, String account, long seed, boolean signUp) {
+        this.generator = generator;
+        this.account = account;
+        this.random = new Random(seed);
+        this.phase = signUp ? Phase.SIGNUP : Phase.LOGIN;
+    }
+
+    /**
+     * Starts session after a delay
+     * @param delay the delay in ms before first request
+     */
+    public void start(long delay) {
+        scheduleStep(delay);
+    }
+
+    /**
+     * Schedules the next step of session
+     * @param delay the delay in ms before next step
+     */
+    private void scheduleStep(long delay) {
+        generator.schedule(new Runnable() {
+            @Override
+            public void run() {
+                step();
+            }
+        }, delay);
+    }
+
+    /**
+     * Sends the next request of session, or
+     * logs off if generator is stopping
+     */
+    private synchronized void step() {
+        if(phase == Phase.DONE)
+            return;
+
+        if(generator.isStopping()) {
+            stop();
+            return;
+        }
+
+        if(!opened) {
+            try {
+                generator.getTransport().open(this);
+                opened = true;
+            } catch (Exception e) {
+                System.err.println("Session " + account + " could not reach server: " + e.getMessage());
+                scheduleStep(generator.thinkTime(random));
+                return;
+            }
+        }
+
+        switch (phase) {
+            case SIGNUP:
+                send(new MessageContent(MENU_LISTENER, new MessageSignUp(account, account, account),
+                                        MessageContent.Type.SIGNUP));
+                break;
+            case LOGIN:
+                send(new MessageContent(MENU_LISTENER, new MessageLogin(account, account), MessageContent.Type.LOGIN));
+                break;
+            default:
+                send(nextAction());
+                break;
+        }
+    }
+
+    /**
+     * Chooses the next request of an online player
+     * @return the next request to send
+     */
+    private MessageContent nextAction() {
+        if(System.currentTimeMillis() - lastSave >= saveInterval())
+            return save();
+
+        int[] mix = generator.getMix();
+        int pick = random.nextInt(mix[0] + mix[1] + mix[2]);
+        if(pick < mix[0])
+            return new MessageContent(RANKING_LISTENER, new MessageRanking(account), MessageContent.Type.RANKING);
+        if(pick < mix[0] + mix[1])
+            return market();
+        return missions();
+    }
+
+    /**
+     * Builds a save request: the whole state after login
+     * or a resync, otherwise only experience and position
+     * @return the save request
+     */
+    private MessageContent save() {
+        lastSave = System.currentTimeMillis();
+        experience += random.nextInt(50);
+        posx += random.nextInt(3) - 1;
+        posy += random.nextInt(3) - 1;
+
+        MessageSave save;
+        if(fullSave) {
+            save = new MessageSave(account, worldMap, level, experience, posx, posy, gold, inventory, equipment);
+            fullSave = false;
+        } else {
+            save = new MessageSave(account, worldMap, level, experience, posx, posy, gold, new int[0], new int[0]);
+            save.setDelta(true);
+            save.setChanged(MessageSave.FIELD_EXPERIENCE | MessageSave.FIELD_POSITION);
+        }
+        save.setSequence(++saveSequence);
+        return new MessageContent(GAME_LISTENER, save, MessageContent.Type.SAVE);
+    }
+
+    /**
+     * Builds a market request: buys one of the items
+     * seen with a chance, otherwise browses first page
+     * @return the market request
+     */
+    private MessageContent market() {
+        MessageMarket market;
+        if(!marketItems.isEmpty() && random.nextDouble() < generator.getBuyRatio()) {
+            market = new MessageMarket(account, MessageMarket.Action.BUY_ITEM);
+            market.setItem(marketItems.remove(random.nextInt(marketItems.size())));
+        } else {
+            market = new MessageMarket(account, MessageMarket.Action.RETRIEVE_ITEMS);
+            market.setPageSize(Config.marketPageSize);
+        }
+        return new MessageContent(MARKET_LISTENER, market, MessageContent.Type.MARKET);
+    }
+
+    /**
+     * Builds a request of missions changed since version held
+     * @return the missions request
+     */
+    private MessageContent missions() {
+        MessageMissionData missions = new MessageMissionData(account, MessageMissionData.Action.RETRIEVE_MISSIONS);
+        missions.setVersion(missionsVersion);
+        return new MessageContent(MISSION_LISTENER, missions, MessageContent.Type.MISSION_DATA);
+    }
+
+    /**
+     * Sends a request, waiting for its reply if it has one
+     * @param request the request to send
+     */
+    private synchronized void send(MessageContent request) {
+        long sent = ++generation;
+        pendingType = request.getType();
+        pendingSince = System.nanoTime();
+        generator.getStats(pendingType).sent();
+
+        try {
+            generator.getTransport().send(this, request);
+        } catch (Exception e) {
+            System.err.println("Session " + account + " could not send " + pendingType + ": " + e.getMessage());
+            complete(sent, null, true);
+            return;
+        }
+
+        if(!hasReply(request.getType()))
+            complete(sent, null, false);
+        else if(pendingType != null && generation == sent)
+            scheduleTimeout(sent);
+    }
+
+    /**
+     * Gives up waiting for a reply after the configured timeout
+     * @param sent the generation of request waited
+     */
+    private void scheduleTimeout(final long sent) {
+        generator.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LoadSession.this) {
+                    if(generation != sent || pendingType == null)
+                        return;
+                    generator.getStats(pendingType).timeout();
+                    pendingType = null;
+                    scheduleStep(0);
+                }
+            }
+        }, generator.getTimeout());
+    }
+
+    /**
+     * Callback of transport for a reply of server
+     * @param reply the reply received
+     */
+    public synchronized void onReply(MessageContent reply) {
+        // server lost track of delta saves, next save carries whole state
+        if(reply.getType() == MessageContent.Type.SAVE && reply.getFlag() == MessageFlag.SAVE_RESYNC_REQUIRED)
+            fullSave = true;
+
+        if(reply.getType() == pendingType && hasReply(pendingType))
+            complete(generation, reply, false);
+    }
+
+    /**
+     * Completes the pending request, recording its
+     * latency and scheduling the next step of session
+     * @param sent      the generation of completed request
+     * @param reply     the reply received, null if request has no reply
+     * @param failed    if request could not be sent
+     */
+    private void complete(long sent, MessageContent reply, boolean failed) {
+        if(generation != sent || pendingType == null)
+            return;
+
+        MessageContent.Type type = pendingType;
+        pendingType = null;
+        generator.getStats(type).complete(System.nanoTime() - pendingSince,
+                                          failed ? MessageFlag.GENERAL_ERROR : reply != null ? reply.getFlag() : null);
+
+        if(reply != null)
+            handleReply(reply);
+
+        long delay = generator.thinkTime(random);
+        // keeps saving on time while player thinks
+        if(phase == Phase.ONLINE)
+            delay = Math.max(0, Math.min(delay, lastSave + saveInterval() - System.currentTimeMillis()));
+        scheduleStep(delay);
+    }
+
+    /**
+     * Updates session with the content of a reply
+     * @param reply the reply received
+     */
+    private void handleReply(MessageContent reply) {
+        switch (reply.getType()) {
+            case SIGNUP:
+                // account is ready if it was created or taken by a previous run
+                if(reply.getFlag() != MessageFlag.GENERAL_ERROR)
+                    phase = Phase.LOGIN;
+                break;
+            case LOGIN:
+                if(reply.getFlag() == MessageFlag.OKIDOKI && reply.getContent() != null) {
+                    MessageLogin login = (MessageLogin) reply.getContent();
+                    worldMap = login.getWorldMap();
+                    level = login.getLevel();
+                    experience = login.getExperience();
+                    posx = login.getPosx();
+                    posy = login.getPosy();
+                    gold = login.getGold();
+                    inventory = login.getInventory() != null ? login.getInventory() : new int[0];
+                    equipment = login.getEquipment() != null ? login.getEquipment() : new int[0];
+                    lastSave = System.currentTimeMillis();
+                    saveSequence = 0;
+                    fullSave = true;
+                    missionsVersion = 0;
+                    phase = Phase.ONLINE;
+                }
+                break;
+            case MARKET:
+                MessageMarket market = (MessageMarket) reply.getContent();
+                if(market != null && market.getAction() == MessageMarket.Action.RETRIEVE_ITEMS) {
+                    marketItems.clear();
+                    ArrayList<MarketItem> items = market.getItems();
+                    for(int i = 0; items != null && i < items.size(); i++)
+                        if(!items.get(i).isSold() && !account.equals(items.get(i).getSeller()))
+                            marketItems.add(items.get(i));
+                }
+                break;
+            case MISSION_DATA:
+                MessageMissionData missions = (MessageMissionData) reply.getContent();
+                if(missions != null && reply.getFlag() == MessageFlag.OKIDOKI)
+                    missionsVersion = missions.getVersion();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Logs off player, if online, and ends session
+     */
+    private void stop() {
+        if(phase == Phase.ONLINE) {
+            try {
+                generator.getStats(MessageContent.Type.LOGOFF).sent();
+                long start = System.nanoTime();
+                generator.getTransport().send(this, new MessageContent(GAME_LISTENER, new MessageLogoff(account),
+                                                                      MessageContent.Type.LOGOFF));
+                generator.getStats(MessageContent.Type.LOGOFF).complete(System.nanoTime() - start, null);
+            } catch (Exception e) {
+                System.err.println("Session " + account + " could not log off: " + e.getMessage());
+            }
+        }
+        phase = Phase.DONE;
+        generator.getTransport().close(this);
+        generator.sessionDone();
+    }
+
+    /**
+     * Checks if server replies to a type of request
+     * @param type the type of request
+     * @return true if server replies to request, false otherwise
+     */
+    private static boolean hasReply(MessageContent.Type type) {
+        return type != MessageContent.Type.SAVE && type != MessageContent.Type.LOGOFF;
+    }
+
+    /**
+     * @return the time in ms between saves of an online player
+     */
+    private static long saveInterval() {
+        return (long) (Config.saveTime * 1000);
+    }
+
+    public String getAccount() {return account;}
+
+    public UUID getNodeId() {return nodeId;}
+
+    public void setNodeId(UUID nodeId) {this.nodeId = nodeId;}
+}
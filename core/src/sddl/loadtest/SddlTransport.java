@@ -0,0 +1,134 @@
+package sddl.loadtest;
+
+import com.mygdx.game.messages.MessageCodec;
+import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.util.Config;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import lac.cnclib.net.NodeConnection;
+import lac.cnclib.net.NodeConnectionListener;
+import lac.cnclib.net.mrudp.MrUdpNodeConnection;
+import lac.cnclib.sddl.message.ApplicationMessage;
+
+/**
+ * Reaches the server through the real SDDL path, with
+ * one MR-UDP connection to the gateway for each session,
+ * exactly as game clients do
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SddlTransport implements Transport {
+
+    private InetSocketAddress gateway; // address of SDDL gateway
+    private long connectTimeout; // maximum time in ms to wait for a connection
+    private ConcurrentHashMap<LoadSession, MrUdpNodeConnection> connections; // connection of each open session
+
+    /**
+     * Creates transport that connects sessions to a gateway
+     * @param host              the gateway host
+     * @param port              the gateway port
+     * @param connectTimeout    the maximum time in ms to wait for a connection
+     */
+    public SddlTransport(String host, int port, long connectTimeout) {
+        this.gateway = new InetSocketAddress(host, port);
+        this.connectTimeout = connectTimeout;
+        this.connections = new ConcurrentHashMap<LoadSession, MrUdpNodeConnection>();
+    }
+
+    @Override
+    public void open(final LoadSession session) throws IOException {
+        final CountDownLatch connected = new CountDownLatch(1);
+
+        MrUdpNodeConnection connection = new MrUdpNodeConnection();
+        connection.addNodeConnectionListener(new NodeConnectionListener() {
+            @Override
+            public void connected(NodeConnection remoteCon) {
+                connected.countDown();
+            }
+
+            @Override
+            public void newMessageReceived(NodeConnection remoteCon, lac.cnclib.sddl.message.Message message) {
+                MessageContent msgContent = MessageCodec.read(message.getContent());
+                if(msgContent != null && msgContent.getType() != MessageContent.Type.ACK)
+                    session.onReply(msgContent);
+            }
+
+            @Override
+            public void reconnected(NodeConnection remoteCon, SocketAddress endPoint, boolean wasHandover,
+                                    boolean wasMandatory) {}
+
+            @Override
+            public void disconnected(NodeConnection remoteCon) {
+                System.err.println("Session " + session.getAccount() + " disconnected");
+            }
+
+            @Override
+            public void unsentMessages(NodeConnection remoteCon, List<lac.cnclib.sddl.message.Message> unsentMessages) {
+                System.err.println("Session " + session.getAccount() + " could not send " + unsentMessages.size() + " messages");
+            }
+
+            @Override
+            public void internalException(NodeConnection remoteCon, Exception e) {
+                System.err.println("Session " + session.getAccount() + " connection error: " + e.getMessage());
+            }
+        });
+        connection.connect(gateway);
+
+        try {
+            if(!connected.await(connectTimeout, TimeUnit.MILLISECONDS)) {
+                disconnect(session, connection);
+                throw new IOException("Timed out connecting to " + gateway);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            disconnect(session, connection);
+            throw new IOException("Interrupted while connecting to " + gateway);
+        }
+
+        connections.put(session, connection);
+    }
+
+    @Override
+    public void send(LoadSession session, MessageContent msg) throws IOException {
+        MrUdpNodeConnection connection = connections.get(session);
+        if(connection == null)
+            throw new IOException("Session " + session.getAccount() + " is not connected");
+
+        // wraps message as game client does
+        ApplicationMessage message = new ApplicationMessage();
+        if(Config.wireBinaryCodec)
+            message.setContent(MessageCodec.encode(msg));
+        else
+            message.setContentObject(msg);
+
+        connection.sendMessage(message);
+    }
+
+    @Override
+    public void close(LoadSession session) {
+        MrUdpNodeConnection connection = connections.remove(session);
+        if(connection != null)
+            disconnect(session, connection);
+    }
+
+    /**
+     * Disconnects a connection, releasing its socket and receiving thread
+     * @param session       the session of the connection
+     * @param connection    the connection to disconnect
+     */
+    private void disconnect(LoadSession session, MrUdpNodeConnection connection) {
+        try {
+            connection.disconnect();
+        } catch (IOException e) {
+            System.err.println("Session " + session.getAccount() + " could not disconnect: " + e.getMessage());
+        }
+    }
+}
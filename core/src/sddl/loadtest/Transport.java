@@ -0,0 +1,36 @@
+package sddl.loadtest;
+
+import com.mygdx.game.messages.MessageContent;
+
+import java.io.IOException;
+
+/**
+ * The way simulated sessions reach the server. Replies
+ * of the server are delivered with {@link LoadSession#onReply}
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public interface Transport {
+
+    /**
+     * Opens the channel of a session with the server
+     * @param session the session to open
+     * @throws IOException if session could not reach the server
+     */
+    void open(LoadSession session) throws IOException;
+
+    /**
+     * Sends a request of a session to the server
+     * @param session   the session that sends the request
+     * @param msg       the request to send
+     * @throws IOException if request could not be sent
+     */
+    void send(LoadSession session, MessageContent msg) throws IOException;
+
+    /**
+     * Closes the channel of a session with the server
+     * @param session the session to close
+     */
+    void close(LoadSession session);
+}
@@ -0,0 +1,360 @@
+package sddl.server;
+
+import com.mygdx.game.util.Config;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sddl.server.db.DBHelper;
+import sddl.server.db.RowHandler;
+
+/**
+ * In-memory ranking of characters ordered by experience.
+ * Characters are kept in an indexable skip list, so updates,
+ * top players and the position of a character are all
+ * resolved in O(log N) without reading the players table.
+ * Saves update the ranking incrementally and a reconciler
+ * thread periodically rebuilds it from database
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class Leaderboard {
+
+    private static final int MAX_LEVEL = 32; // maximum number of skip list levels
+    private static final float LEVEL_PROBABILITY = 0.25f; // probability of a node reaching the next level
+
+    /**
+     * A character in the ranking
+     */
+    private static class Node {
+        String name; // the character name
+        long experience; // the character experience, ranking key
+        int level; // the character level, displayed on ranking
+        long updated; // last time this node was updated by a save
+        Node[] next; // the next node in each level
+        int[] span; // number of positions skipped by each next link
+
+        Node(String name, long experience, int level, int height) {
+            this.name = name;
+            this.experience = experience;
+            this.level = level;
+            this.next = new Node[height];
+            this.span = new int[height];
+        }
+    }
+
+    private DBHelper dbHelper; // database helper used to reconcile ranking
+    private PlayerStateCache stateCache; // state cache holding saves not persisted yet
+
+    private Node head; // skip list head, holds no character
+    private int height; // current number of levels in use
+    private int length; // number of characters in ranking
+    private HashMap<String, Node> nodes; // ranking nodes by character name
+    private volatile boolean loaded; // if ranking was already read from database
+
+    private Random random = new Random(); // random generator of node heights
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // ranking readers/writer lock
+
+    /**
+     * Creates ranking and starts its reconciler thread,
+     * that also performs the first load from database
+     * @param dbHelper   the database helper used to reconcile ranking
+     * @param stateCache the state cache holding saves not persisted yet
+     */
+    public Leaderboard(DBHelper dbHelper, PlayerStateCache stateCache) {
+        this.dbHelper = dbHelper;
+        this.stateCache = stateCache;
+        clear();
+        startReconciler();
+    }
+
+    /**
+     * Resets skip list to an empty ranking
+     */
+    private void clear() {
+        head = new Node(null, 0, 0, MAX_LEVEL);
+        height = 1;
+        length = 0;
+        nodes = new HashMap<String, Node>();
+    }
+
+    /**
+     * Starts thread that loads ranking and
+     * periodically reconciles it with database
+     */
+    private void startReconciler() {
+        final Thread reconcileThread = new Thread("ranking-reconciler") {
+            @Override
+            public void run() {
+                while(true) {
+                    try {
+                        reconcile();
+                        sleep(Config.svRankingReconcileInterval);
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while reconciling ranking: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        reconcileThread.setDaemon(true);
+        reconcileThread.start();
+    }
+
+    /**
+     * Updates a character in ranking
+     * @param character  the character name
+     * @param level      the character level
+     * @param experience the character experience
+     */
+    public void update(String character, int level, long experience) {
+        lock.writeLock().lock();
+        try {
+            put(character, level, experience, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fills ranking structure with top players and
+     * finds the position of a character in ranking
+     * @param ranking   the ranking structure to fill with names and levels
+     * @param n         the number of top players to fill
+     * @param character the character to find position of
+     * @return the position of character in ranking, 0 if character is not ranked
+     */
+    public int fillRanking(LinkedHashMap<String, Integer> ranking, int n, String character) {
+        lock.readLock().lock();
+        try {
+            Node x = head.next[0];
+            for(int i = 0; i < n && x != null; i++, x = x.next[0])
+                ranking.put(x.name, x.level);
+
+            Node node = nodes.get(character);
+            return node == null ? 0 : rankOf(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds ranking from database. Characters saved during
+     * the rebuild or with saves not persisted yet keep their
+     * in-memory values, as they are more recent than database
+     */
+    public void reconcile() {
+        final Leaderboard fresh = new Leaderboard();
+        long start = System.currentTimeMillis();
+
+        // reads ranking data from database into a new skip list
+        boolean ok = dbHelper.getRanking(new RowHandler() {
+            @Override
+            public boolean handleRow(ResultSet rs) throws SQLException {
+                fresh.put(rs.getString("name"), rs.getInt("level"), rs.getLong("experience"), 0);
+                return true;
+            }
+        });
+
+        if(!ok) {
+            System.err.println("SQL error while reconciling ranking data");
+            return;
+        }
+
+        int corrected = 0; // number of characters that diverged from database
+        lock.writeLock().lock();
+        try {
+            Iterator<Node> it = nodes.values().iterator();
+            while(it.hasNext()) {
+                Node node = it.next();
+                if(node.updated >= start || stateCache.isPending(node.name))
+                    fresh.put(node.name, node.level, node.experience, node.updated);
+                else {
+                    Node stored = fresh.nodes.get(node.name);
+                    if(stored == null || stored.experience != node.experience)
+                        corrected++;
+                }
+            }
+
+            // adopts rebuilt skip list
+            head = fresh.head;
+            height = fresh.height;
+            length = fresh.length;
+            nodes = fresh.nodes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if(loaded && corrected > 0)
+            System.out.println("Ranking reconciled: " + corrected + " characters corrected");
+        loaded = true;
+    }
+
+    /**
+     * @return true if ranking was already read from database
+     */
+    public boolean isLoaded() {return loaded;}
+
+    /**
+     * @return the number of characters in ranking
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Creates an empty ranking without reconciler,
+     * used to rebuild ranking from database
+     */
+    private Leaderboard() {
+        clear();
+    }
+
+    /**
+     * Inserts or moves a character in the skip list
+     * @param character  the character name
+     * @param level      the character level
+     * @param experience the character experience
+     * @param updated    the time of update
+     */
+    private void put(String character, int level, long experience, long updated) {
+        Node node = nodes.get(character);
+        if(node != null) {
+            if(node.experience == experience) { // position is kept
+                node.level = level;
+                node.updated = updated;
+                return;
+            }
+            remove(node);
+        }
+
+        node = insert(character, level, experience);
+        node.updated = updated;
+        nodes.put(character, node);
+    }
+
+    /**
+     * Checks if a node comes before a ranking key:
+     * higher experience first, ties ordered by name
+     * @param node       the node to check
+     * @param experience the experience of the key
+     * @param name       the name of the key
+     * @return true if node is ranked before key
+     */
+    private static boolean before(Node node, long experience, String name) {
+        return node.experience > experience ||
+                (node.experience == experience && node.name.compareTo(name) < 0);
+    }
+
+    /**
+     * @return a random node height
+     */
+    private int randomHeight() {
+        int h = 1;
+        while(h < MAX_LEVEL && random.nextFloat() < LEVEL_PROBABILITY)
+            h++;
+        return h;
+    }
+
+    /**
+     * Inserts a new node in skip list
+     * @param character  the character name
+     * @param level      the character level
+     * @param experience the character experience
+     * @return the inserted node
+     */
+    private Node insert(String character, int level, long experience) {
+        Node[] update = new Node[MAX_LEVEL]; // last node before new node in each level
+        int[] rank = new int[MAX_LEVEL]; // position of update nodes
+
+        Node x = head;
+        for(int i = height - 1; i >= 0; i--) {
+            rank[i] = (i == height - 1) ? 0 : rank[i + 1];
+            while(x.next[i] != null && before(x.next[i], experience, character)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int h = randomHeight();
+        if(h > height) {
+            for(int i = height; i < h; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = length;
+            }
+            height = h;
+        }
+
+        Node node = new Node(character, experience, level, h);
+        for(int i = 0; i < h; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        // levels above new node skip one more position
+        for(int i = h; i < height; i++)
+            update[i].span[i]++;
+
+        length++;
+        return node;
+    }
+
+    /**
+     * Removes a node from skip list
+     * @param node the node to remove
+     */
+    private void remove(Node node) {
+        Node x = head;
+        for(int i = height - 1; i >= 0; i--) {
+            while(x.next[i] != null && before(x.next[i], node.experience, node.name))
+                x = x.next[i];
+
+            if(x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else
+                x.span[i]--;
+        }
+
+        while(height > 1 && head.next[height - 1] == null)
+            height--;
+
+        length--;
+    }
+
+    /**
+     * Finds the position of a node in ranking
+     * @param node the node to find position of
+     * @return the 1-based position of node
+     */
+    private int rankOf(Node node) {
+        int rank = 0;
+        Node x = head;
+        for(int i = height - 1; i >= 0; i--) {
+            while(x.next[i] != null && (x.next[i] == node || before(x.next[i], node.experience, node.name))) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if(x == node)
+                return rank;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,492 @@
+package sddl.server;
+
+import com.mygdx.game.messages.MessageFlag;
+import com.mygdx.game.states.game.standard.item.factory.Factory;
+import com.mygdx.game.states.game.standard.market.MarketFilter;
+import com.mygdx.game.states.game.standard.market.MarketItem;
+import com.mygdx.game.util.Config;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sddl.server.db.DBHelper;
+
+/**
+ * In-memory order book of the market, loaded once from
+ * the market table. Items being sold are indexed by
+ * uid, quality, level and price, and by price and listing
+ * order, so browsing pages never reads the database. Purchases, removals and collections
+ * change the state of a listing with compare-and-set,
+ * so only one concurrent request succeeds, and are
+ * written through to database before answering.
+ * While book could not be loaded, requests are
+ * served directly by database
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MarketBook {
+
+    /**
+     * States of a listing
+     */
+    private static final int OPEN = 0; // item is being sold
+    private static final int SOLD = 1; // item was sold, seller may collect gold
+    private static final int CLOSED = 2; // item was removed or collected
+
+    /**
+     * An item listed in market
+     */
+    private static class Listing {
+        final int uid; // the unique ID of item
+        final int quality; // the quality ordinal of item
+        final int level; // the level of item
+        final long price; // the price of item
+        final int mid; // the market ID of item
+        final MarketItem item; // the item data
+        final AtomicInteger state = new AtomicInteger(OPEN); // the listing state
+
+        Listing(int uid, int quality, int level, long price, int mid, MarketItem item) {
+            this.uid = uid;
+            this.quality = quality;
+            this.level = level;
+            this.price = price;
+            this.mid = mid;
+            this.item = item;
+        }
+
+        Listing(MarketItem item) {
+            this(item.getUid(), item.getQuality().ordinal(), item.getLevel(), item.getPrice(), item.getMid(), item);
+        }
+    }
+
+    /**
+     * Index order of listings: uid, quality, level, price and market ID
+     */
+    private static final Comparator<Listing> KEY_ORDER = new Comparator<Listing>() {
+        @Override
+        public int compare(Listing a, Listing b) {
+            if(a.uid != b.uid) return a.uid < b.uid ? -1 : 1;
+            if(a.quality != b.quality) return a.quality < b.quality ? -1 : 1;
+            if(a.level != b.level) return a.level < b.level ? -1 : 1;
+            if(a.price != b.price) return a.price < b.price ? -1 : 1;
+            if(a.mid != b.mid) return a.mid < b.mid ? -1 : 1;
+            return 0;
+        }
+    };
+
+    /**
+     * Price order of listings: price and market ID
+     */
+    private static final Comparator<Listing> PRICE_ORDER = new Comparator<Listing>() {
+        @Override
+        public int compare(Listing a, Listing b) {
+            if(a.price != b.price) return a.price < b.price ? -1 : 1;
+            if(a.mid != b.mid) return a.mid < b.mid ? -1 : 1;
+            return 0;
+        }
+    };
+
+    /**
+     * Listing order of listings: market ID
+     */
+    private static final Comparator<Listing> MID_ORDER = new Comparator<Listing>() {
+        @Override
+        public int compare(Listing a, Listing b) {
+            return a.mid < b.mid ? -1 : (a.mid == b.mid ? 0 : 1);
+        }
+    };
+
+    private DBHelper dbHelper; // database helper used to load and persist market
+
+    private ConcurrentHashMap<Integer, Listing> listings; // listings by market ID
+    private ConcurrentSkipListSet<Listing> open; // listings being sold, by index order
+    private ConcurrentSkipListSet<Listing> byPrice; // listings being sold, by price order
+    private ConcurrentSkipListSet<Listing> byMid; // listings being sold, by listing order
+    private ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Listing>> bySeller; // listings of each seller
+    private volatile boolean loaded; // if market was already read from database
+    private volatile long lastLoadAttempt; // last time market load was attempted
+
+    // requests share the book, loading replaces it
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates market book and loads it from database
+     * @param dbHelper the database helper used to load and persist market
+     */
+    public MarketBook(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        load();
+    }
+
+    /**
+     * Loads market entries from database, replacing current book.
+     * Requests wait until loading is finished. Must not be called
+     * while holding the read lock
+     * @return true if market was loaded, false otherwise
+     */
+    public boolean load() {
+        lastLoadAttempt = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            ArrayList<MarketItem> entries = dbHelper.retrieveAllMarketEntries();
+            if(entries == null) {
+                System.err.println("Could not load market, serving it from database");
+                return false;
+            }
+
+            listings = new ConcurrentHashMap<Integer, Listing>();
+            open = new ConcurrentSkipListSet<Listing>(KEY_ORDER);
+            byPrice = new ConcurrentSkipListSet<Listing>(PRICE_ORDER);
+            byMid = new ConcurrentSkipListSet<Listing>(MID_ORDER);
+            bySeller = new ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Listing>>();
+            for(int i = 0; i < entries.size(); i++) {
+                Listing listing = new Listing(entries.get(i));
+                if(entries.get(i).isSold())
+                    listing.state.set(SOLD);
+                add(listing);
+            }
+
+            loaded = true;
+            System.out.println("Market loaded: " + entries.size() + " entries");
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retries to load book if previous attempts failed.
+     * Must be called before acquiring the read lock
+     */
+    private void ensureLoaded() {
+        if(loaded)
+            return;
+
+        long now = System.currentTimeMillis();
+        if(now - lastLoadAttempt >= Config.svMarketLoadRetry) {
+            lastLoadAttempt = now;
+            load();
+        }
+    }
+
+    /**
+     * Adds a listing to book indexes
+     * @param listing the listing to add
+     */
+    private void add(Listing listing) {
+        listings.put(listing.mid, listing);
+        if(listing.state.get() == OPEN)
+            index(listing);
+
+        ConcurrentSkipListMap<Integer, Listing> sellerListings = bySeller.get(listing.item.getSeller());
+        if(sellerListings == null) {
+            ConcurrentSkipListMap<Integer, Listing> created = new ConcurrentSkipListMap<Integer, Listing>();
+            sellerListings = bySeller.putIfAbsent(listing.item.getSeller(), created);
+            if(sellerListings == null)
+                sellerListings = created;
+        }
+        sellerListings.put(listing.mid, listing);
+    }
+
+    /**
+     * Adds a listing to indexes of items being sold
+     * @param listing the listing being sold
+     */
+    private void index(Listing listing) {
+        open.add(listing);
+        byPrice.add(listing);
+        byMid.add(listing);
+    }
+
+    /**
+     * Removes a listing from indexes of items being sold
+     * @param listing the listing not being sold anymore
+     */
+    private void unindex(Listing listing) {
+        open.remove(listing);
+        byPrice.remove(listing);
+        byMid.remove(listing);
+    }
+
+    /**
+     * Removes a closed listing from book indexes
+     * @param listing the listing to remove
+     */
+    private void discard(Listing listing) {
+        listings.remove(listing.mid);
+        ConcurrentSkipListMap<Integer, Listing> sellerListings = bySeller.get(listing.item.getSeller());
+        if(sellerListings != null)
+            sellerListings.remove(listing.mid);
+    }
+
+    /**
+     * Copies listing data to a market item to be sent to clients
+     * @param listing the listing to copy
+     * @return the market item with listing data
+     */
+    private static MarketItem toMarketItem(Listing listing) {
+        MarketItem marketItem = new MarketItem();
+        marketItem.setMid(listing.mid);
+        marketItem.setUid(listing.uid);
+        marketItem.setSeller(listing.item.getSeller());
+        marketItem.setLevel(listing.level);
+        marketItem.setPrice(listing.price);
+        marketItem.setQuality(listing.item.getQuality());
+        marketItem.setSold(listing.state.get() == SOLD);
+        return marketItem;
+    }
+
+    /**
+     * Gets the iterator of items being sold in the sort order of filter,
+     * starting after the cursor and skipping to the uid range of filter
+     * @param filter    the filter of items, null for all items
+     * @param after     the last item of previous page, null for first page
+     * @return the iterator of listings in sort order
+     */
+    private Iterator<Listing> iterator(MarketFilter filter, MarketItem after) {
+        Listing from = after == null ? null : new Listing(after.getUid(),
+                after.getQuality() == null ? -1 : after.getQuality().ordinal(),
+                after.getLevel(), after.getPrice(), after.getMid(), null);
+
+        switch(sortOf(filter)) {
+            case PRICE_ASC:
+                return from == null ? byPrice.iterator() : byPrice.tailSet(from, false).iterator();
+            case PRICE_DESC:
+                return from == null ? byPrice.descendingIterator() :
+                                        byPrice.descendingSet().tailSet(from, false).iterator();
+            case NEWEST:
+                return from == null ? byMid.descendingIterator() :
+                                        byMid.descendingSet().tailSet(from, false).iterator();
+            default:
+                // items of the same uid or equipment slot are contiguous in index
+                int firstUid = rangeStart(filter);
+                if(firstUid != MarketFilter.ANY) {
+                    Listing start = new Listing(firstUid, Integer.MIN_VALUE, Integer.MIN_VALUE,
+                                                Long.MIN_VALUE, Integer.MIN_VALUE, null);
+                    if(from == null || KEY_ORDER.compare(from, start) < 0)
+                        return open.tailSet(start, true).iterator();
+                }
+                return from == null ? open.iterator() : open.tailSet(from, false).iterator();
+        }
+    }
+
+    /**
+     * @param filter the filter of items, may be null
+     * @return the sort order of filter
+     */
+    private static MarketFilter.Sort sortOf(MarketFilter filter) {
+        return filter == null || filter.getSort() == null ? MarketFilter.Sort.ITEM : filter.getSort();
+    }
+
+    /**
+     * @param filter the filter of items, may be null
+     * @return the first uid of items matching filter when sorted by item, ANY if not restricted
+     */
+    private static int rangeStart(MarketFilter filter) {
+        if(filter == null || sortOf(filter) != MarketFilter.Sort.ITEM)
+            return MarketFilter.ANY;
+        if(filter.getUid() != MarketFilter.ANY)
+            return filter.getUid();
+        if(filter.getSlot() != null)
+            return Factory.getFirstID(filter.getSlot());
+        return MarketFilter.ANY;
+    }
+
+    /**
+     * Searches a page of items being sold. Pages are delimited by
+     * the last item of previous page, so items listed or sold
+     * meanwhile do not shift the following pages
+     * @param character the name of client character, whose items are not included
+     * @param filter    the filter and sort order of items, null for all items by item order
+     * @param after     the last item of previous page, null for first page
+     * @param limit     the maximum number of items to return
+     * @param page      the list to fill with matching items found
+     * @return 1 if there are more items after page, 0 if page is the last one, -1 in case of error
+     */
+    public int query(String character, MarketFilter filter, MarketItem after, int limit, ArrayList<MarketItem> page) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if(!loaded) { // serves request from database, with one more item to know if page is the last
+                ArrayList<MarketItem> items = dbHelper.retrieveMarketItems(character, filter, after, limit + 1);
+                if(items == null)
+                    return -1;
+                for(int i = 0; i < items.size() && i < limit; i++)
+                    page.add(items.get(i));
+                return items.size() > limit ? 1 : 0;
+            }
+
+            boolean ranged = rangeStart(filter) != MarketFilter.ANY;
+            Iterator<Listing> it = iterator(filter, after);
+            while(it.hasNext()) {
+                Listing listing = it.next();
+                // left uid range of filter, no more items can match
+                if(ranged && !filter.matchesUid(listing.uid))
+                    break;
+                if(listing.item.getSeller().equals(character) || listing.state.get() != OPEN)
+                    continue;
+                if(filter != null && !filter.matches(listing.uid, listing.item.getQuality(), listing.level, listing.price))
+                    continue;
+                if(page.size() >= limit)
+                    return 1;
+                page.add(toMarketItem(listing));
+            }
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves all items listed by a player, sold or not
+     * @param character the name of client character
+     * @return the list of market items listed by player (empty if there are none), null in case of error
+     */
+    public ArrayList<MarketItem> retrieveListings(String character) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if(!loaded)
+                return dbHelper.retrieveMarketListings(character);
+
+            ArrayList<MarketItem> items = new ArrayList<MarketItem>();
+            ConcurrentSkipListMap<Integer, Listing> sellerListings = bySeller.get(character);
+            if(sellerListings != null) {
+                for(Listing listing : sellerListings.values())
+                    if(listing.state.get() != CLOSED)
+                        items.add(toMarketItem(listing));
+            }
+            return items;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Buys an item being sold. Only the first of concurrent buyers succeeds
+     * @param mid the market id of item to be bought
+     * @return message flag containing the flag result of this operation
+     */
+    public MessageFlag buy(int mid) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if(!loaded)
+                return dbHelper.buyMarketItem(mid);
+
+            Listing listing = listings.get(mid);
+            if(listing == null || !listing.state.compareAndSet(OPEN, SOLD))
+                return MessageFlag.ITEM_ALREADY_BOUGHT;
+            unindex(listing);
+
+            // writes purchase through to database
+            MessageFlag flag = dbHelper.buyMarketItem(mid);
+            if(flag == MessageFlag.GENERAL_ERROR) { // could not persist, item is still being sold
+                listing.state.set(OPEN);
+                index(listing);
+            }
+            return flag;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Registers an item to be sold in market
+     * @param item the item to be sold, receives the market id generated for it
+     * @return message flag containing the flag result of this operation
+     */
+    public MessageFlag register(MarketItem item) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+
+            // writes listing through to database
+            MessageFlag flag = dbHelper.registerMarketItem(item);
+            if(flag == MessageFlag.OKIDOKI && loaded) {
+                MarketItem listed = new MarketItem();
+                listed.setMid(item.getMid());
+                listed.setUid(item.getUid());
+                listed.setSeller(item.getSeller());
+                listed.setLevel(item.getLevel());
+                listed.setPrice(item.getPrice());
+                listed.setQuality(item.getQuality());
+                add(new Listing(listed));
+            }
+            return flag;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an item not sold yet from market
+     * @param mid the market id of item to be removed
+     * @return message flag containing the flag result of this operation
+     */
+    public MessageFlag remove(int mid) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if(!loaded)
+                return dbHelper.removeItemFromMarket(mid);
+
+            Listing listing = listings.get(mid);
+            if(listing == null || !listing.state.compareAndSet(OPEN, CLOSED))
+                return MessageFlag.ITEM_ALREADY_SOLD;
+            unindex(listing);
+
+            // writes removal through to database
+            MessageFlag flag = dbHelper.removeItemFromMarket(mid);
+            if(flag == MessageFlag.OKIDOKI)
+                discard(listing);
+            else { // could not persist, item is still being sold
+                listing.state.set(OPEN);
+                index(listing);
+            }
+            return flag;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects gold of an item sold
+     * @param mid the market id of item to be collected
+     * @return message flag containing the flag result of this operation
+     */
+    public MessageFlag collect(int mid) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            if(!loaded)
+                return dbHelper.collectItemFromMarket(mid);
+
+            Listing listing = listings.get(mid);
+            if(listing == null || !listing.state.compareAndSet(SOLD, CLOSED))
+                return MessageFlag.ITEM_ALREADY_COLLECTED;
+
+            // writes collection through to database
+            MessageFlag flag = dbHelper.collectItemFromMarket(mid);
+            if(flag == MessageFlag.OKIDOKI)
+                discard(listing);
+            else // could not persist, gold is still to be collected
+                listing.state.set(SOLD);
+            return flag;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if book is loaded and serving requests from memory
+     */
+    public boolean isLoaded() {return loaded;}
+}
@@ -0,0 +1,335 @@
+package sddl.server;
+
+import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.messages.MessageMarket;
+import com.mygdx.game.util.Config;
+
+import java.util.EnumMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lac.cnet.sddl.objects.Message;
+import sddl.server.metrics.Metrics;
+
+/**
+ * Staged pipeline that takes received messages out of the
+ * SDDL listener thread. Messages go first to bounded ingress
+ * queues, are decoded by a set of decoder threads and then
+ * handled by worker pools chosen by message type. Each decoder
+ * has its own ingress queue and each pool is made of single
+ * threaded lanes; a sender is always mapped to the same decoder
+ * and to the same lane, keeping the order of its messages
+ * (e.g. a SAVE followed by a LOGOFF). Order is only kept within
+ * a pool, so every message that changes player state, market
+ * changes included, is handled by the session pool
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MessageDispatcher {
+
+    private PucmonServer server; // server that decodes raw messages
+    private BlockingQueue<Message>[] ingress; // received messages waiting to be decoded, one queue per decoder
+    private Thread[] decoders; // threads that decode received messages
+    private EnumMap<MessageContent.Type, WorkerPool> pools; // worker pool of each message type
+    private WorkerPool session; // pool of messages that change player state
+
+    /**
+     * Backpressure metrics
+     */
+    private AtomicLong received = new AtomicLong(); // number of messages accepted into ingress
+    private AtomicLong rejected = new AtomicLong(); // number of messages dropped due to full ingress
+    private AtomicLong laneRejected = new AtomicLong(); // number of decoded messages dropped due to full lanes
+    private AtomicLong ingressPeak = new AtomicLong(); // highest ingress depth observed
+    private EnumMap<MessageContent.Type, AtomicLong> handled; // number of handled messages of each type
+
+    /**
+     * Dispatcher constructor that builds worker pools
+     * and starts decoder threads
+     * @param server the server that will decode received messages
+     */
+    @SuppressWarnings("unchecked")
+    public MessageDispatcher(PucmonServer server) {
+        this.server = server;
+
+        // pools shared by message types that must keep per-sender order
+        session = new WorkerPool("session", Config.svSessionWorkers);
+        WorkerPool ranking = new WorkerPool("ranking", Config.svRankingWorkers);
+        WorkerPool market = new WorkerPool("market", Config.svMarketWorkers);
+        WorkerPool sensing = new WorkerPool("sensing", Config.svSensingWorkers);
+
+        pools = new EnumMap<MessageContent.Type, WorkerPool>(MessageContent.Type.class);
+        pools.put(MessageContent.Type.SIGNUP, session);
+        pools.put(MessageContent.Type.LOGIN, session);
+        pools.put(MessageContent.Type.SAVE, session);
+        pools.put(MessageContent.Type.LOGOFF, session);
+        pools.put(MessageContent.Type.ACK, session);
+        pools.put(MessageContent.Type.RANKING, ranking);
+        pools.put(MessageContent.Type.MARKET, market); // only searches, see poolOf
+        pools.put(MessageContent.Type.MISSION_DATA, sensing);
+        pools.put(MessageContent.Type.SENSOR, sensing);
+
+        handled = new EnumMap<MessageContent.Type, AtomicLong>(MessageContent.Type.class);
+        for(MessageContent.Type type : MessageContent.Type.values())
+            handled.put(type, new AtomicLong());
+
+        // starts decoder threads, each one with its share of ingress capacity
+        int nDecoders = Math.max(1, Config.svDecoderThreads);
+        ingress = (BlockingQueue<Message>[]) new BlockingQueue<?>[nDecoders];
+        decoders = new Thread[nDecoders];
+        for(int i = 0; i < decoders.length; i++) {
+            final BlockingQueue<Message> queue =
+                    new ArrayBlockingQueue<Message>(Math.max(1, Config.svIngressCapacity / nDecoders));
+            ingress[i] = queue;
+            decoders[i] = new Thread("decoder-" + i) {
+                @Override
+                public void run() {
+                    while(true) {
+                        try {
+                            Message message = queue.take();
+                            MessageDispatcher.this.server.decodeMessage(message);
+                        } catch (InterruptedException e) {
+                            System.err.println("Decoder thread interrupted: " + e.getMessage());
+                            return;
+                        } catch (Throwable e) { // errors must not kill the decoder
+                            System.err.println("Could not decode received message: " + e.getMessage());
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            };
+            decoders[i].setDaemon(true);
+            decoders[i].start();
+        }
+
+        // exposes queue depths as gauges
+        Metrics.getInstance().registerGauge("dispatcher.ingress", new Metrics.Gauge() {
+            @Override
+            public long value() {return getIngressDepth();}
+        });
+        Metrics.getInstance().registerGauge("dispatcher.lane.rejected", new Metrics.Gauge() {
+            @Override
+            public long value() {return laneRejected.get();}
+        });
+        registerPoolGauge(session);
+        registerPoolGauge(ranking);
+        registerPoolGauge(market);
+        registerPoolGauge(sensing);
+    }
+
+    /**
+     * Exposes the number of pending tasks of a pool as a gauge
+     * @param pool the worker pool
+     */
+    private void registerPoolGauge(final WorkerPool pool) {
+        Metrics.getInstance().registerGauge("dispatcher.pool." + pool.name, new Metrics.Gauge() {
+            @Override
+            public long value() {return pool.getPending();}
+        });
+    }
+
+    /**
+     * Submits a received message to the ingress queue of the
+     * decoder of its sender. Waits at most {@link Config#svIngressTimeout}
+     * for room, dropping the message if ingress is still full
+     * (clients retry on timeout)
+     * @param message the received message
+     * @return true if message was accepted, false if it was dropped
+     */
+    public boolean submit(Message message) {
+        UUID sender = message.getSenderId();
+        BlockingQueue<Message> queue = ingress[sender == null ? 0 : (sender.hashCode() & 0x7fffffff) % ingress.length];
+        boolean accepted = false;
+        try {
+            accepted = queue.offer(message, Config.svIngressTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(!accepted) {
+            rejected.incrementAndGet();
+            System.err.println("Ingress queue full, dropping message from: " + message.getSenderId());
+            return false;
+        }
+
+        received.incrementAndGet();
+
+        // keeps track of ingress peak depth
+        long depth = getIngressDepth();
+        long peak = ingressPeak.get();
+        while(depth > peak && !ingressPeak.compareAndSet(peak, depth))
+            peak = ingressPeak.get();
+
+        return true;
+    }
+
+    /**
+     * Dispatches a decoded message to the worker lane
+     * responsible for its type and sender. Waits at most
+     * {@link Config#svLaneTimeout} if the lane is full, propagating
+     * backpressure to ingress, dropping the message if lane is
+     * still full (clients retry on timeout)
+     * @param message       the message received
+     * @param msgContent    the decoded message content
+     */
+    public void dispatch(final Message message, final MessageContent msgContent) {
+        final MessageContent.Type type = msgContent.getType();
+        final long dispatched = System.nanoTime(); // time spent waiting in lane is measured as well
+        WorkerPool pool = poolOf(msgContent);
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long started = System.nanoTime();
+                try {
+                    MessageHandler.getInstance().handleMessage(server.core, message, msgContent);
+                } finally {
+                    Metrics.getInstance().recordMessage(type, dispatched, started, System.nanoTime());
+                }
+                handled.get(type).incrementAndGet();
+            }
+        };
+
+        boolean accepted = false;
+        try {
+            accepted = pool.execute(message.getSenderId(), task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if(!accepted) {
+            laneRejected.incrementAndGet();
+            System.err.println("Lane of pool " + pool.name + " full, dropping " + type + " message from: " + message.getSenderId());
+        }
+    }
+
+    /**
+     * Gets the worker pool of a message. Market messages that
+     * change player state (e.g. registering an item removes it
+     * from the inventory) go to the session pool, keeping their
+     * order with the saves of the same sender
+     * @param msgContent the decoded message content
+     * @return the worker pool that will handle the message
+     */
+    private WorkerPool poolOf(MessageContent msgContent) {
+        if(msgContent.getType() == MessageContent.Type.MARKET && msgContent.getContent() instanceof MessageMarket
+                && ((MessageMarket) msgContent.getContent()).getAction() != MessageMarket.Action.RETRIEVE_ITEMS)
+            return session;
+        return pools.get(msgContent.getType());
+    }
+
+    /**
+     * @return the current number of messages waiting to be decoded
+     */
+    public int getIngressDepth() {
+        int depth = 0;
+        for(int i = 0; i < ingress.length; i++)
+            depth += ingress[i].size();
+        return depth;
+    }
+
+    /**
+     * @return the number of messages dropped due to full ingress
+     */
+    public long getRejected() {return rejected.get();}
+
+    /**
+     * @return the number of decoded messages dropped due to full lanes
+     */
+    public long getLaneRejected() {return laneRejected.get();}
+
+    /**
+     * Prints dispatcher statistics in console
+     */
+    public void printStats() {
+        StringBuilder stats = new StringBuilder("=== Dispatcher Stats ===\n");
+        stats.append("ingress: ").append(getIngressDepth()).append("/").append(Config.svIngressCapacity);
+        stats.append(" (peak ").append(ingressPeak.get()).append(")");
+        stats.append(" received: ").append(received.get());
+        stats.append(" rejected: ").append(rejected.get());
+        stats.append(" lane rejected: ").append(laneRejected.get()).append("\n");
+        for(MessageContent.Type type : MessageContent.Type.values()) {
+            WorkerPool pool = pools.get(type);
+            stats.append(type).append(": handled ").append(handled.get(type).get());
+            stats.append(" pool ").append(pool.name).append(" pending ").append(pool.getPending()).append("\n");
+        }
+        System.out.println(stats.toString());
+    }
+
+    /**
+     * Pool of single threaded lanes. Messages
+     * of a sender are always executed by the same lane
+     */
+    private static class WorkerPool {
+        private String name; // name of the pool
+        private Lane[] lanes; // lanes of this pool
+
+        /**
+         * Creates and starts the lanes of this pool
+         * @param name      the name of the pool
+         * @param nLanes    the number of lanes of the pool
+         */
+        WorkerPool(String name, int nLanes) {
+            this.name = name;
+            this.lanes = new Lane[Math.max(1, nLanes)];
+            for(int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane(name + "-" + i);
+                lanes[i].start();
+            }
+        }
+
+        /**
+         * Executes task in the lane of the sender, waiting
+         * at most {@link Config#svLaneTimeout} for lane room
+         * @param sender    the sender of the message
+         * @param task      the task to execute
+         * @return true if task was queued, false if lane is full
+         * @throws InterruptedException if interrupted while waiting for lane room
+         */
+        boolean execute(UUID sender, Runnable task) throws InterruptedException {
+            int idx = sender == null ? 0 : (sender.hashCode() & 0x7fffffff) % lanes.length;
+            return lanes[idx].tasks.offer(task, Config.svLaneTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return the number of tasks waiting in all lanes of this pool
+         */
+        int getPending() {
+            int pending = 0;
+            for(int i = 0; i < lanes.length; i++)
+                pending += lanes[i].tasks.size();
+            return pending;
+        }
+    }
+
+    /**
+     * Single worker thread with its bounded queue of tasks
+     */
+    private static class Lane extends Thread {
+        private BlockingQueue<Runnable> tasks; // tasks waiting to be executed
+
+        Lane(String name) {
+            super(name);
+            setDaemon(true);
+            tasks = new ArrayBlockingQueue<Runnable>(Config.svLaneCapacity);
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                try {
+                    tasks.take().run();
+                } catch (InterruptedException e) {
+                    System.err.println("Lane thread interrupted: " + e.getMessage());
+                    return;
+                } catch (Throwable e) { // errors must not kill the lane, its senders would wait forever
+                    System.err.println("Error while handling message in lane " + getName() + ": " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package sddl.server;
 
 import com.badlogic.gdx.Gdx;
+import com.mygdx.game.messages.MessageCodec;
 import com.mygdx.game.messages.MessageContent;
 import com.mygdx.game.messages.MessageFlag;
 import com.mygdx.game.messages.MessageLogin;
@@ -12,10 +13,11 @@ import com.mygdx.game.messages.MessageSave;
 import com.mygdx.game.messages.MessageSensor;
 import com.mygdx.game.messages.MessageSignUp;
 import com.mygdx.game.sensors.SensorCompact;
-import com.mygdx.game.states.game.standard.item.Item;
 import com.mygdx.game.states.game.standard.market.MarketItem;
+import com.mygdx.game.util.Common;
 import com.mygdx.game.util.Config;
 
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
@@ -23,8 +25,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-
-import javax.sql.rowset.CachedRowSet;
+import java.util.Map;
 
 import lac.cnclib.sddl.message.ApplicationMessage;
 import lac.cnclib.sddl.serialization.Serialization;
@@ -32,6 +33,9 @@ import lac.cnet.sddl.objects.Message;
 import lac.cnet.sddl.objects.PrivateMessage;
 import lac.cnet.sddl.udi.core.SddlLayer;
 import sddl.server.db.DBHelper;
+import sddl.server.db.RowHandler;
+import sddl.server.db.SensorRollup;
+import sddl.server.metrics.Metrics;
 
 /**
  * Will handle all messages received by the server
@@ -50,6 +54,12 @@ public class MessageHandler {
      * Database
      */
     DBHelper dbHelper; // database helper module to help database manipulations
+    PlayerStateCache stateCache; // write-behind cache of players saved state
+    Leaderboard leaderboard; // in-memory ranking of characters
+    MarketBook marketBook; // in-memory market listings
+    SensorIngest sensorIngest; // asynchronous writer of sensor readings
+    SensorRegistry sensorRegistry; // in-memory registered sensors
+    MissionCache missionCache; // in-memory completed missions of online players
 
     /**
      * Constructor to defeat instantiation
@@ -57,6 +67,18 @@ public class MessageHandler {
     protected MessageHandler() {
         // initalize db helper
         dbHelper = new DBHelper();
+        // initialize player state cache
+        stateCache = new PlayerStateCache(dbHelper);
+        // initialize ranking, loading it from database in background
+        leaderboard = new Leaderboard(dbHelper, stateCache);
+        // initialize market, loading it from database
+        marketBook = new MarketBook(dbHelper);
+        // initialize sensor readings ingestion
+        sensorIngest = new SensorIngest(dbHelper);
+        // initialize sensor registry, loading it from database in background
+        sensorRegistry = new SensorRegistry(dbHelper);
+        // initialize completed missions cache, warmed at login
+        missionCache = new MissionCache(dbHelper, sensorRegistry);
     }
 
     /**
@@ -66,7 +88,7 @@ public class MessageHandler {
      *
      * @return the MessageHandler singleton instance
      */
-    public static MessageHandler getInstance() {
+    public static synchronized MessageHandler getInstance() {
         if(instance == null)
             instance = new MessageHandler();
 
@@ -130,11 +152,11 @@ public class MessageHandler {
         // creates ack return message
         MessageContent retMsg = new MessageContent(null, "ack", MessageContent.Type.ACK);
 
-        // embodies the serializable content message to send
-        // to the client that requested the ranking
-        ApplicationMessage appMsg = new ApplicationMessage();
-        appMsg.setContentObject(retMsg);
-        privateMessage.setMessage(Serialization.toProtocolMessage(appMsg));
+        // embodies the content message to send
+        // to the client that requested the ack
+        byte[] bytes = Serialization.toProtocolMessage(wrap(retMsg));
+        privateMessage.setMessage(bytes);
+        Metrics.getInstance().recordBytesOut(bytes.length);
 
         // sends the private message to the client
         core.writeTopic(PrivateMessage.class.getSimpleName(), privateMessage);
@@ -150,44 +172,44 @@ public class MessageHandler {
         MessageFlag responseFlag = MessageFlag.OKIDOKI; // initially okidoki
 
         // gets player character from client to pinpoint and store position in ranking
-        String character = ((MessageRanking)msgContent.getContent()).getCharacter();
-
-        // gets ranking data
-        CachedRowSet rankingData = dbHelper.getRanking();
+        final String character = ((MessageRanking)msgContent.getContent()).getCharacter();
 
         // creates ranking structure
-        LinkedHashMap<String, Integer> ranking = new LinkedHashMap<String, Integer>();
+        final LinkedHashMap<String, Integer> ranking = new LinkedHashMap<String, Integer>();
 
         // creates a message for the ranking
-        MessageRanking msgRanking = new MessageRanking(character);
-
-        // builds ranking structure with retrieved data, if there are any
-        if(rankingData != null) {
-            int n = 0; // number of players read
-
-            try {
-                // iterates through result set
-                while (rankingData.next()) {
+        final MessageRanking msgRanking = new MessageRanking(character);
+
+        if(leaderboard.isLoaded()) {
+            // reads top players and client player position from in-memory ranking
+            msgRanking.setPosition(leaderboard.fillRanking(ranking, Config.rankingNTopPlayers, character));
+        } else {
+            // ranking is still loading, builds ranking structure while ranking data is streamed
+            boolean ok = dbHelper.getRanking(new RowHandler() {
+                int n = 0; // number of players read
+
+                @Override
+                public boolean handleRow(ResultSet rs) throws SQLException {
                     // if number does not exceed ranking limit of top players, add to ranking structure
                     if(n < Config.rankingNTopPlayers)
-                        ranking.put(rankingData.getString("name"), rankingData.getInt("level"));
+                        ranking.put(rs.getString("name"), rs.getInt("level"));
 
                     // keeps iterating through result set to find position of client player
-                    if(character.equals(rankingData.getString("name"))) {
+                    if(character.equals(rs.getString("name"))) {
                         msgRanking.setPosition(n+1);
                         if(n >= Config.rankingNTopPlayers) // if we were just looking for client player position
-                            break; // stop iterating once position is found
+                            return false; // stop iterating once position is found
                     }
 
                     n++; // increments number of considered players in ranking
+                    return true;
                 }
-            } catch (SQLException e) {
+            });
+
+            if(!ok) { // ranking was not retrieved, puts flag of general error
                 System.err.println("SQL error while reading ranking data");
-                e.printStackTrace();
                 responseFlag = MessageFlag.GENERAL_ERROR;
             }
-        } else { // ranking was not retrieved, puts flag of general error
-            responseFlag = MessageFlag.GENERAL_ERROR;
         }
 
         // puts ranking data in message
@@ -215,10 +237,12 @@ public class MessageHandler {
         String password = ((MessageSignUp) msgContent.getContent()).getPassword();
         String character = ((MessageSignUp) msgContent.getContent()).getCharacter();
 
-        // tries to create new account but only
-        // if account and character names are available
-        if(dbHelper.isAccountNameAvailable(account)) {
-            if(dbHelper.isCharacterNameAvailable(character)) {
+        // tries to create new account but only if account and character
+        // names are available (requests are rejected if they cannot be checked)
+        requestFlag = dbHelper.checkAccountNameAvailable(account);
+        if(requestFlag == MessageFlag.OKIDOKI) {
+            requestFlag = dbHelper.checkCharacterNameAvailable(character);
+            if(requestFlag == MessageFlag.OKIDOKI) {
                 //character and account name are available
                 // tries to creates account
                 if(!dbHelper.createAccount(account, password)) {
@@ -229,15 +253,12 @@ public class MessageHandler {
                         requestFlag = MessageFlag.GENERAL_ERROR; // could not create player sucessfully
                         dbHelper.removeAccount(account); // deletes created account
                     }
-                    else // everything was ok!
+                    else { // everything was ok!
                         requestFlag = MessageFlag.OKIDOKI;
+                        leaderboard.update(character, 1, 0); // new character enters ranking
+                    }
                 }
             }
-            else { // character name not available
-                requestFlag = MessageFlag.CHARACTER_NAME_TAKEN;
-            }
-        } else { // account name not available
-            requestFlag = MessageFlag.ACCOUNT_TAKEN;
         }
 
         // creates a message for the sign up response
@@ -259,78 +280,45 @@ public class MessageHandler {
      * @param msgContent    the message content received
      */
     private void handleSaveRequest(Message message, MessageContent msgContent) {
-        /**
-         *  gets msg data
-          */
+        // gets save message
+        MessageSave save = (MessageSave) msgContent.getContent();
         // gets player character name
-        String character = ((MessageSave) msgContent.getContent()).getCharacter();
-        // gets player world map id
-        int worldMap = ((MessageSave) msgContent.getContent()).getWorldMap();
-        // gets player level
-        int level = ((MessageSave) msgContent.getContent()).getLevel();
-        // gets player experience
-        long exp = ((MessageSave) msgContent.getContent()).getExperience();
-        // gets player position x
-        int posx = ((MessageSave) msgContent.getContent()).getPosx();
-        // gets player position y
-        int posy = ((MessageSave) msgContent.getContent()).getPosy();
-        // gets player gold
-        long gold = ((MessageSave) msgContent.getContent()).getGold();
-        // gets serialized string containing player inventory data
-        String invInfo = ((MessageSave) msgContent.getContent()).getInventoryData();
-        // gets serialized string containing player worn equipment data
-        String eqInfo = ((MessageSave) msgContent.getContent()).getEquipmentData();
-
-        /**
-         * updates player general data
-          */
-        dbHelper.updatePlayer(character, worldMap, level, exp, posx, posy, gold);
-
-        /**
-         * updates player inventory items
-         */
-
-        // split strings for each item existent
-        String[] items = invInfo.split("\\.");
-        // resets player item db
-        dbHelper.resetPlayerItems(character);
-        // iterates through player items strings
-        for(int i = 1; i < items.length; i++) { // ignores first data that is trash
-            // split string again, to separate item data
-            String[] data = items[i].split(";");
-            // gets item uID
-            int uID = Integer.parseInt(data[0].substring(3));
-            // gets item level
-            int item_level = Integer.parseInt(data[1].substring(3));
-            // gets item inventory page
-            int page = Integer.parseInt(data[2].substring(5));
-            // gets item i index in inventory
-            int i_idx = Integer.parseInt(data[3].substring(2));
-            // gets item ji index in inventory
-            int j_idx = Integer.parseInt(data[4].substring(2));
-            // inserts item into database in player
-            dbHelper.addPlayerItem(character, uID, item_level, page, i_idx, j_idx);
+        String character = save.getCharacter();
+        // gets packed player inventory items {uid, level, slot}
+        int[] items = save.getInventory();
+        // gets packed player worn equipments {uid, level, slot}
+        int[] equips = save.getEquipment();
+
+        // ignores malformed saves
+        if(items == null || equips == null || items.length % Common.PACKED_STRIDE != 0
+                || equips.length % Common.PACKED_STRIDE != 0) {
+            System.err.println("Malformed save received from character: " + character);
+            return;
         }
 
-        /**
-         * updates player worn equipments
-         */
-        // split strings for each equipment existent
-        String[] equips = eqInfo.split("\\.");
-        // resets player equipments db
-        dbHelper.resetPlayerEquipments(character);
-        // iterates through player items strings
-        for(int i = 1; i < equips.length; i++) { // ignores first data that is trash
-            // split string again, to separate item data
-            String[] data = equips[i].split(";");
-            // gets equipment uID
-            int uID = Integer.parseInt(data[0].substring(3));
-            // gets equipment level
-            int item_level = Integer.parseInt(data[1].substring(3));
-            // gets equipment slot
-            int slot = Integer.parseInt(data[2].substring(5));
-            // inserts item into database in player
-            dbHelper.addPlayerEquipment(character, uID, item_level, slot);
+        if(!save.isDelta()) {
+            /**
+             * stores player general data, inventory items and worn equipments
+             * in state cache, to be persisted later in a single transaction
+             */
+            stateCache.save(character, save.getWorldMap(), save.getLevel(), save.getExperience(), save.getPosx(),
+                            save.getPosy(), save.getGold(), items, equips, save.getSequence());
+
+            // updates character position in ranking
+            leaderboard.update(character, save.getLevel(), save.getExperience());
+        } else {
+            // applies only the changes on top of cached state
+            PlayerState state = stateCache.applyDelta(character, save);
+
+            if(state == null) {
+                // a save was missed or state is gone, asks client for a full save
+                MessageContent retMsg = new MessageContent(msgContent.getListener(), null, MessageContent.Type.SAVE);
+                retMsg.setFlag(MessageFlag.SAVE_RESYNC_REQUIRED);
+                sendMessageToClient(message, retMsg);
+            } else if((save.getChanged() & (MessageSave.FIELD_LEVEL | MessageSave.FIELD_EXPERIENCE)) != 0) {
+                // updates character position in ranking
+                leaderboard.update(character, state.getLevel(), state.getExperience());
+            }
         }
 
         // uses save to update player online tick
@@ -350,14 +338,15 @@ public class MessageHandler {
         String account = ((MessageLogin) msgContent.getContent()).getAccount();
         String password = ((MessageLogin) msgContent.getContent()).getPassword();
 
-        // tries to login and get player general data
-        CachedRowSet playerData = dbHelper.login(account, password);
+        // tries to login and get player general data, inventory and equipments at once
+        HashMap<Integer, Timestamp> missions = new HashMap<Integer, Timestamp>();
+        MessageLogin loginMsg = dbHelper.login(account, password, missions);
 
         // the response message
         MessageContent response;
 
         // login was not made, due to account and password mismatch
-        if(playerData == null) {
+        if(loginMsg == null) {
             // builds message only to inform about password and account mistmatch
             response = new MessageContent(msgContent.getListener(), null, MessageContent.Type.LOGIN);
             response.setFlag(MessageFlag.ACCOUNT_PASSWORD_DO_NOT_MATCH);
@@ -367,91 +356,40 @@ public class MessageHandler {
             return;
         }
 
-        // login message response that will contain all login needed player info
-        MessageLogin loginMsg = new MessageLogin(account, password);
-
-        // player data was sucessfully retrieved, gets all player general information
-        try {
-            while (playerData.next()) {
-                // gather all player general info into response login message
-                loginMsg.setCharacter(playerData.getString("name"));
-                loginMsg.setWorldMap(playerData.getInt("world_map"));
-                loginMsg.setLevel(playerData.getInt("level"));
-                loginMsg.setExperience(playerData.getLong("experience"));
-                loginMsg.setPosx(playerData.getInt("posx"));
-                loginMsg.setPosy(playerData.getInt("posy"));
-                loginMsg.setGold(playerData.getLong("gold"));
-                loginMsg.setFirstLogin(playerData.getBoolean("first_login"));
-                break;
-            }
-        } catch (SQLException e) {
-            System.err.println("Could not read player information from login");
-            requestFlag = MessageFlag.GENERAL_ERROR;
-            e.printStackTrace();
-        }
+        // sets character online, if it is not online already
+        requestFlag = dbHelper.claimOnlineStatus(loginMsg.getCharacter());
 
-        // if character is already online, return informing about the error
-        if(dbHelper.isCharacterOnline(loginMsg.getCharacter())) {
-            // builds message only to inform about password and account mismatch
+        // if character is already online (or could not be set online), return informing about the error
+        if(requestFlag != MessageFlag.OKIDOKI) {
             response = new MessageContent(msgContent.getListener(), null, MessageContent.Type.LOGIN);
-            response.setFlag(MessageFlag.CHARACTER_ALREADY_ONLINE);
+            response.setFlag(requestFlag);
             // sends message to client
             sendMessageToClient(message, response);
             // return
             return;
         }
 
-        // gets character items
-        CachedRowSet playerItems = dbHelper.getPlayerItems(loginMsg.getCharacter());
-        String itemsData = ""; // inventory items data
-        if(playerItems != null) { // if player has items
-            try {
-                // builds inventory items dada string
-                while (playerItems.next()) {
-                    itemsData += ".id_"; // item separator token
-                    itemsData += playerItems.getString("uid") + ";"; // stores item uID
-                    itemsData += "lv_"+playerItems.getString("level") + ";"; // stores item level
-                    itemsData += "page_" + playerItems.getString("page") + ";"; // stores item inventory page index
-                    itemsData += "i_" + playerItems.getString("idxi") + ";"; // stores item inventory i - index
-                    itemsData += "j_" + playerItems.getString("idxj"); // stores item inventory j - index - last info
-                }
-            } catch (SQLException e) {
-                System.err.println("Could not read items data");
-                requestFlag = MessageFlag.GENERAL_ERROR;
-                e.printStackTrace();
+        // if character state is cached, it is more recent than database state
+        PlayerState cached = stateCache.get(loginMsg.getCharacter());
+        if(cached != null) {
+            synchronized (cached) {
+                loginMsg.setWorldMap(cached.getWorldMap());
+                loginMsg.setLevel(cached.getLevel());
+                loginMsg.setExperience(cached.getExperience());
+                loginMsg.setPosx(cached.getPosx());
+                loginMsg.setPosy(cached.getPosy());
+                loginMsg.setGold(cached.getGold());
+                loginMsg.setFirstLogin(false);
+                loginMsg.setInventory(cached.getItems());
+                loginMsg.setEquipment(cached.getEquips());
             }
         }
-        // sets inventory items data in login response message
-        loginMsg.setInventoryData(itemsData);
-
-        // gets player equipments
-        CachedRowSet playerEquips = dbHelper.getPlayerEquipments(loginMsg.getCharacter());
-        String equipsData = ""; // player equipments data
-        if(playerEquips != null) { // if player has equipped equipments
-            try {
-                // builds worn equipment data string
-                while (playerEquips.next()) {
-                    equipsData += ".id_"; // equipment separator token
-                    equipsData += playerEquips.getString("uid") + ";"; // stores equipment uID
-                    equipsData += "lv_"+playerEquips.getString("level") + ";"; // stores equipment level
-                    equipsData += "slot_" + playerEquips.getString("slot"); // stores equipment slot
-                }
-            } catch (SQLException e) {
-                System.err.println("Could not read equipments data");
-                requestFlag = MessageFlag.GENERAL_ERROR;
-                e.printStackTrace();
-            }
-        }
-        // sets player worn equipments data in login response message
-        loginMsg.setEquipmentData(equipsData);
 
-        // if everything is ok, adds to online list
-        if(requestFlag == MessageFlag.OKIDOKI) {
-            // updates online players data
-            ServerState.getInstance().updateOnlinePlayer(loginMsg.getCharacter());
-            // updates database
-            dbHelper.updatePlayerOnlineStatus(loginMsg.getCharacter(), true);
-        }
+        // caches completed missions read with login
+        missionCache.warm(loginMsg.getCharacter(), missions);
+
+        // adds to online list
+        ServerState.getInstance().updateOnlinePlayer(loginMsg.getCharacter());
 
         // builds message content with login message
         response = new MessageContent(msgContent.getListener(), loginMsg, MessageContent.Type.LOGIN);
@@ -469,8 +407,16 @@ public class MessageHandler {
     private void handleLogoffRequest(Message message, MessageContent msgContent) {
         // gets msg data
         String character = ((MessageLogoff) msgContent.getContent()).getCharacter();
+        // persists pending state before character goes offline, retrying later if it fails
+        if(!flushBeforeOffline(character))
+            return;
+        // character is not tracked as online anymore
+        ServerState.getInstance().removeOnlinePlayer(character);
         // updates character online status to offline
         dbHelper.updatePlayerOnlineStatus(character, false);
+        // character left, next session starts a fresh save
+        dbHelper.forgetPlayer(character);
+        missionCache.forget(character);
     }
 
     /**
@@ -479,8 +425,54 @@ public class MessageHandler {
      * @param online    the online status to update
      */
     public void handleStatusUpdate(String character, boolean online) {
+        // persists pending state before character goes offline, retrying later if it fails
+        if(!online && !flushBeforeOffline(character))
+            return;
         // updates character online status
         dbHelper.updatePlayerOnlineStatus(character, online);
+        // character left, next session starts a fresh save
+        if(!online) {
+            dbHelper.forgetPlayer(character);
+            missionCache.forget(character);
+        }
+    }
+
+    /**
+     * Handles characters that went offline without logging off,
+     * updating their online status in a single database write
+     * @param characters the characters that went offline
+     */
+    public void handlePlayersOffline(ArrayList<String> characters) {
+        ArrayList<String> offline = new ArrayList<String>(characters.size());
+        for(int i = 0; i < characters.size(); i++) {
+            // persists pending state before character goes offline, retrying later if it fails
+            if(!flushBeforeOffline(characters.get(i)))
+                continue;
+            // character left, next session starts a fresh save
+            dbHelper.forgetPlayer(characters.get(i));
+            missionCache.forget(characters.get(i));
+            offline.add(characters.get(i));
+        }
+        // updates characters online status to offline
+        if(!offline.isEmpty())
+            dbHelper.setPlayersOffline(offline);
+    }
+
+    /**
+     * Persists pending state of a character that is going offline.
+     * If the write fails, character stays online and tracked, so
+     * it goes offline again (and its state is flushed again)
+     * once its presence times out
+     * @param character the character going offline
+     * @return true if state is persisted and character can go offline, false otherwise
+     */
+    private boolean flushBeforeOffline(String character) {
+        if(stateCache.flush(character))
+            return true;
+
+        System.err.println("Could not persist state of " + character + ", keeping it online to retry");
+        ServerState.getInstance().updateOnlinePlayer(character);
+        return false;
     }
 
     /**
@@ -501,81 +493,64 @@ public class MessageHandler {
         // and fill the response message with the correct content
         switch (msgAction) {
             case RETRIEVE_ITEMS:
-                CachedRowSet rs = dbHelper.retrieveMarketItems(msgMarket.getCharacter());
-                if(rs == null) { // no items are being sold, not able to display market
-                    responseFlag = MessageFlag.EMPTY_MARKET;
-                    break;
-                }
-                // if not empty, populate list of market items with row set
-                ArrayList<MarketItem> marketItems = new ArrayList<MarketItem>(); // array list of market items
-                // iterates through row set
-                try {
-                    while (rs.next()) {
-                        MarketItem marketItem = new MarketItem(); // the market item
-                        marketItem.setMid(rs.getInt("id")); // sets item market ID
-                        marketItem.setUid(rs.getInt("uid")); // sets item unique ID
-                        marketItem.setSeller(rs.getString("name")); // sets item seller name
-                        marketItem.setLevel(rs.getInt("level")); // sets market item level
-                        marketItem.setPrice(rs.getLong("price")); // sets market item price
-                        marketItem.setQuality(Item.Quality.values()[rs.getInt("quality")]); // sets market item quality
-                        marketItems.add(marketItem); // adds market item to list of market items
-                    }
-                    // adds list of market items to response message
-                    msgMarketResponse.setItems(marketItems);
-                } catch (SQLException e) {
+                // page size requested, bounded by server
+                int pageSize = msgMarket.getPageSize() <= 0 ? Config.marketPageSize :
+                                    Math.min(msgMarket.getPageSize(), Config.svMarketMaxPageSize);
+                ArrayList<MarketItem> marketItems = new ArrayList<MarketItem>(pageSize);
+                int more = marketBook.query(msgMarket.getCharacter(), msgMarket.getFilter(),
+                                            msgMarket.getAfter(), pageSize, marketItems);
+                if(more < 0) { // could not read market items
                     System.err.println("Could not read market items data");
                     responseFlag = MessageFlag.GENERAL_ERROR;
-                    e.printStackTrace();
+                    break;
+                }
+                if(marketItems.isEmpty() && msgMarket.getAfter() == null) { // no items are being sold, not able to display market
+                    responseFlag = MessageFlag.EMPTY_MARKET;
+                    break;
                 }
+                // adds page of market items to response message
+                msgMarketResponse.setItems(marketItems);
+                msgMarketResponse.setAfter(msgMarket.getAfter()); // client appends pages requested after an item
+                msgMarketResponse.setLastPage(more == 0);
                 break;
             case BUY_ITEM:
                 // tries to buy item
-                responseFlag = dbHelper.buyMarketItem(msgMarket.getItem().getMid()); // already stores response flag based on result of operation
+                responseFlag = marketBook.buy(msgMarket.getItem().getMid()); // already stores response flag based on result of operation
                 msgMarketResponse.setItem(msgMarket.getItem()); // puts item in response msg for further necessities
                 break;
             case REGISTER_ITEM:
                 // tries to register item
-                responseFlag = dbHelper.registerMarketItem(msgMarket.getItem()); // already stores response flag based on result of operation
+                responseFlag = marketBook.register(msgMarket.getItem()); // already stores response flag based on result of operation
+                // item left player inventory, removes it from cached state too
+                if(responseFlag == MessageFlag.OKIDOKI)
+                    stateCache.removeItem(msgMarket.getItem().getSeller(), msgMarket.getItem().getPage(),
+                                            msgMarket.getItem().getIdxI(), msgMarket.getItem().getIdxJ());
                 msgMarketResponse.setItem(msgMarket.getItem()); // puts item in response msg for further necessities
                 break;
             case REMOVE_ITEM:
                 // tries to remove item
-                responseFlag = dbHelper.removeItemFromMarket(msgMarket.getItem().getMid()); // already stores response flag based on operation result
+                responseFlag = marketBook.remove(msgMarket.getItem().getMid()); // already stores response flag based on operation result
                 msgMarketResponse.setItem(msgMarket.getItem()); // puts item in response msg for further necessities
                 break;
             case SHOW_LISTINGS:
-                // get listings database row set
-                CachedRowSet listingsRS = dbHelper.retrieveMarketListings(msgMarket.getCharacter());
-                if(listingsRS == null) { // no items are being sold by player, empty listings
+                // get listings of player
+                ArrayList<MarketItem> listings = marketBook.retrieveListings(msgMarket.getCharacter());
+                if(listings == null) { // could not read player listings
+                    System.err.println("Could not read market items data");
+                    responseFlag = MessageFlag.GENERAL_ERROR;
+                    break;
+                }
+                if(listings.isEmpty()) { // no items are being sold by player, empty listings
                     responseFlag = MessageFlag.NO_ITEMS_SOLD_BY_PLAYER;
                     break;
                 } // else return list of market items being sold by player
 
-                ArrayList<MarketItem> listings = new ArrayList<MarketItem>(); // array list of player listings
-                // iterates through row set
-                try {
-                    while (listingsRS.next()) {
-                        MarketItem marketItem = new MarketItem(); // the market item
-                        marketItem.setMid(listingsRS.getInt("id")); // sets item market ID
-                        marketItem.setUid(listingsRS.getInt("uid")); // sets item unique ID
-                        marketItem.setSeller(msgMarket.getCharacter()); // sets item seller name
-                        marketItem.setLevel(listingsRS.getInt("level")); // sets market item level
-                        marketItem.setPrice(listingsRS.getLong("price")); // sets market item price
-                        marketItem.setQuality(Item.Quality.values()[listingsRS.getInt("quality")]); // sets market item quality
-                        marketItem.setSold(listingsRS.getBoolean("sold")); // sets if item was sold and player can collect respective gold
-                        listings.add(marketItem); // adds market item to list of market items
-                    }
-                    // adds player listings to response message
-                    msgMarketResponse.setItems(listings);
-                } catch (SQLException e) {
-                    System.err.println("Could not read market items data");
-                    responseFlag = MessageFlag.GENERAL_ERROR;
-                    e.printStackTrace();
-                }
+                // adds player listings to response message
+                msgMarketResponse.setItems(listings);
                 break;
             case COLLECT:
                 // tries to collect item
-                responseFlag = dbHelper.collectItemFromMarket(msgMarket.getItem().getMid()); // already stores response flag based on operation result
+                responseFlag = marketBook.collect(msgMarket.getItem().getMid()); // already stores response flag based on operation result
                 msgMarketResponse.setItem(msgMarket.getItem()); // puts item in response msg for further necessities
                 break;
             default:
@@ -613,67 +588,69 @@ public class MessageHandler {
 
         switch (msgAction) {
             case RETRIEVE_MISSIONS:
-                // gets player completed missions data
-                CachedRowSet missionData = dbHelper.getPlayerCompletedMissions(character);
-
-                // creates missions structure
-                HashMap<Integer, Timestamp> missions = new HashMap<Integer, Timestamp>();
-
-                // builds mission data structure with retrieved data, if there are any
-                if (missionData != null) {
-                    try {
-                        // iterates through result set
-                        while (missionData.next()) {
-                            // puts each mission completed by the player in mission data structure
-                            missions.put(missionData.getInt("mission_id"), missionData.getTimestamp("timestamp"));
-                        }
-                    } catch (SQLException e) {
-                        System.err.println("SQL error while reading missions data");
-                        e.printStackTrace();
-                        responseFlag = MessageFlag.GENERAL_ERROR;
-                    }
-                } else { // mission data was not retrieved, puts flag of general error
+                // puts player completed missions data in message, only the ones
+                // changed since the version client holds if it is still valid
+                if (!missionCache.retrieve(character, msgMission.getVersion(), msgMissionResponse)) {
+                    // mission data was not retrieved, puts flag of general error
                     System.err.println("error while reading missions data");
                     responseFlag = MessageFlag.GENERAL_ERROR;
+                    msgMissionResponse.setMissions(new HashMap<Integer, Timestamp>());
                 }
-
-                // puts mission data in message
-                msgMissionResponse.setMissions(missions);
+                // tells client the version of registered sensors, so it only asks for them if they changed
+                SensorRegistry.Snapshot registered = sensorRegistry.getSnapshot();
+                if(registered != null)
+                    msgMissionResponse.setSensorsVersion(registered.getVersion());
                 break;
             case COMPLETE_MISSION:
-                boolean ret = dbHelper.completeMission(character, msgMission.getMission_id());
-                if(!ret) {
+                responseFlag = missionCache.complete(character, msgMission.getMission_id());
+                if(responseFlag == MessageFlag.GENERAL_ERROR)
                     System.err.println("Something went wrong when registering completed mission in database");
-                    responseFlag = MessageFlag.GENERAL_ERROR;
-                }
                 // sets in response message the id of the completed mission
                 // in order to client be able to perform correct operations
                 msgMissionResponse.setMission_id(msgMission.getMission_id());
 
-                Iterator it = msgMission.getSensorData().entrySet().iterator();
+                // repeated request, its sensor data was already registered
+                if(responseFlag == MessageFlag.MISSION_ALREADY_COMPLETED)
+                    break;
+
+                // queues sensor readings, written asynchronously in batches
+                String sensorId = msgMission.getSensor_id();
+                Iterator<Map.Entry<String, Double[]>> it = msgMission.getSensorData().entrySet().iterator();
                 while (it.hasNext()) {
-                    java.util.Map.Entry pair = (java.util.Map.Entry) it.next();
-                    Double[] values = (Double[]) pair.getValue();
+                    Map.Entry<String, Double[]> pair = it.next();
+                    Double[] values = pair.getValue();
                     if(Config.debug)
                         System.out.println("Sensor Service: " + pair.getKey() + " = " + Arrays.toString(values));
-                    boolean dataRet = dbHelper.registerSensorInput(msgMission.getSensor_id(), msgMission.getInput_type(),
-                                                    pair.getKey().toString(), Arrays.toString(values));
-                    if(!dataRet) {
-                        System.err.println("Something went wrong when registering sensor data: " + pair.getKey());
-                    }
+                    double[] samples = new double[values.length];
+                    for(int i = 0; i < values.length; i++)
+                        samples[i] = values[i] != null ? values[i] : Double.NaN;
+                    if(!sensorIngest.submitSamples(sensorId, pair.getKey(), samples))
+                        System.err.println("Sensor queue full, dropping sensor data: " + pair.getKey());
                 }
 
-                Iterator it2 = msgMission.getInputData().entrySet().iterator();
+                Iterator<Map.Entry<String, String>> it2 = msgMission.getInputData().entrySet().iterator();
                 while (it2.hasNext()) {
-                    java.util.Map.Entry pair = (java.util.Map.Entry) it2.next();
+                    Map.Entry<String, String> pair = it2.next();
                     if(Config.debug)
                         System.out.println("Sensor Input: " + pair.getKey() + " = " + pair.getValue());
-                    boolean dataRet = dbHelper.registerSensorInput(msgMission.getSensor_id(), msgMission.getInput_type(),
-                            pair.getKey().toString(), pair.getValue().toString());
-                    if(!dataRet) {
-                        System.err.println("Something went wrong when registering sensor data: " + pair.getKey());
-                    }
+                    if(!sensorIngest.submitInput(sensorId, msgMission.getInput_type(), pair.getKey(), pair.getValue()))
+                        System.err.println("Sensor queue full, dropping sensor data: " + pair.getKey());
+                }
+                break;
+            case RETRIEVE_SERIES:
+                // puts rollups of sensor within range in message
+                ArrayList<SensorRollup> rollups = sensorIngest.querySeries(msgMission.getSensor_id(),
+                                            msgMission.getSensor_name(), msgMission.getFrom(), msgMission.getTo());
+                if(rollups == null) {
+                    System.err.println("error while reading sensor series");
+                    responseFlag = MessageFlag.GENERAL_ERROR;
+                    break;
                 }
+                msgMissionResponse.setSensor_id(msgMission.getSensor_id());
+                msgMissionResponse.setSensor_name(msgMission.getSensor_name());
+                msgMissionResponse.setFrom(msgMission.getFrom());
+                msgMissionResponse.setTo(msgMission.getTo());
+                msgMissionResponse.setSensorData(seriesOf(rollups));
                 break;
             default:
                 System.err.println("Unknown type of mission data action requested: " + msgMission.getAction());
@@ -689,6 +666,35 @@ public class MessageHandler {
         sendMessageToClient(message, retMsg);
     }
 
+    /**
+     * Packs rollups of a sensor as the rows of each value index,
+     * {bucket start in ms, count, mean, min, max} for each bucket
+     * @param rollups the rollups ordered by value index and bucket
+     * @return the rows of each value index, keyed by index
+     */
+    private static HashMap<String, Double[]> seriesOf(ArrayList<SensorRollup> rollups) {
+        HashMap<String, Double[]> series = new HashMap<String, Double[]>();
+        int start = 0;
+        for(int i = 1; i <= rollups.size(); i++) {
+            // rows of an index end where next index starts
+            if(i < rollups.size() && rollups.get(i).getIndex() == rollups.get(start).getIndex())
+                continue;
+            Double[] rows = new Double[(i - start) * 5];
+            for(int r = start; r < i; r++) {
+                SensorRollup rollup = rollups.get(r);
+                int k = (r - start) * 5;
+                rows[k] = (double) rollup.getBucket();
+                rows[k + 1] = (double) rollup.getCount();
+                rows[k + 2] = rollup.getAverage();
+                rows[k + 3] = rollup.getMin();
+                rows[k + 4] = rollup.getMax();
+            }
+            series.put(String.valueOf(rollups.get(start).getIndex()), rows);
+            start = i;
+        }
+        return series;
+    }
+
     /**
      * handles sensor requests
      * @param message       the message received
@@ -701,39 +707,20 @@ public class MessageHandler {
         // response flag
         MessageFlag responseFlag = MessageFlag.OKIDOKI; // initially okidoki
 
-        // creates sensors structure
-        ArrayList<SensorCompact> sensors = new ArrayList<SensorCompact>();
-
-        // gets player sensors data
-        CachedRowSet sensorData = dbHelper.getSensors();
-
-        // builds sensor data structure with retrieved data, if there are any
-        if (sensorData != null) {
-            try {
-                // iterates through result set
-                while (sensorData.next()) {
-                    // create sensor data compact structure
-                    SensorCompact s = new SensorCompact();
-                    s.setSensor_id(sensorData.getString("sensor_id"));
-                    s.setSensor_type(sensorData.getString("sensor_type"));
-                    s.setMission_id(sensorData.getInt("mission_id"));
-                    s.setThumbnail_id(sensorData.getInt("thumbnail_id"));
-                    s.setSensor_code(sensorData.getString("code"));
-                    s.setN_inputs(sensorData.getInt("n_inputs"));
-                    s.setInput_type(sensorData.getString("input_type"));
-                    // puts each sensor found in sensor data structure
-                    sensors.add(s);
-                }
-            } catch (SQLException e) {
-                System.err.println("SQL error while reading missions data");
-                e.printStackTrace();
-                responseFlag = MessageFlag.GENERAL_ERROR;
-            }
-        } else { // sensor data was not retrieved, puts flag of general error
+        // gets registered sensors, loaded in memory
+        SensorRegistry.Snapshot registered = sensorRegistry.getSnapshot();
+
+        if (registered == null) { // sensor data could not be loaded, puts flag of general error
             responseFlag = MessageFlag.GENERAL_ERROR;
+            msgSensor.setSensors(new ArrayList<SensorCompact>());
+        } else if (registered.getVersion() == msgSensor.getVersion()) {
+            // client already holds current sensors, sends only version
+            responseFlag = MessageFlag.SENSORS_NOT_MODIFIED;
+            msgSensor.setSensors(null);
+        } else { // adds sensor data and its version to msg
+            msgSensor.setSensors(registered.getSensors());
+            msgSensor.setVersion(registered.getVersion());
         }
-        // adds sensor data to msg
-        msgSensor.setSensors(sensors);
 
         // wraps sensor message in the content message
         MessageContent retMsg = new MessageContent(msgContent.getListener(), msgSensor, MessageContent.Type.SENSOR);
@@ -744,6 +731,34 @@ public class MessageHandler {
     }
 
 
+    /**
+     * Answers a message encoded with another codec version with an
+     * error, so clients out of date do not wait for a reply. The reply
+     * is java serialized, which clients of every codec version read
+     * @param core      the sddl core
+     * @param message   the message received
+     * @param header    the type and listener of message received, null if not readable
+     */
+    public void handleUnsupportedVersion(SddlLayer core, Message message, MessageContent header) {
+        if(header == null)
+            return;
+
+        MessageContent retMsg = new MessageContent(header.getListener(), null, header.getType());
+        retMsg.setFlag(MessageFlag.GENERAL_ERROR);
+
+        PrivateMessage privateMessage = new PrivateMessage();
+        privateMessage.setGatewayId(message.getGatewayId());
+        privateMessage.setNodeId(message.getSenderId());
+
+        ApplicationMessage appMsg = new ApplicationMessage();
+        appMsg.setContentObject(retMsg);
+        byte[] bytes = Serialization.toProtocolMessage(appMsg);
+        privateMessage.setMessage(bytes);
+        Metrics.getInstance().recordBytesOut(bytes.length);
+
+        core.writeTopic(PrivateMessage.class.getSimpleName(), privateMessage);
+    }
+
     /**
      * Sends message to client
      * @param message       the message received to be able to send message to message`s client
@@ -755,16 +770,55 @@ public class MessageHandler {
         privateMessage.setGatewayId(message.getGatewayId());
         privateMessage.setNodeId(message.getSenderId());
 
-        // embodies the serializable content message to send
+        // embodies the content message to send
         // to the client that requested the message
-        ApplicationMessage appMsg = new ApplicationMessage();
-        appMsg.setContentObject(msg);
-        privateMessage.setMessage(Serialization.toProtocolMessage(appMsg));
+        byte[] bytes = Serialization.toProtocolMessage(wrap(msg));
+        privateMessage.setMessage(bytes);
+        Metrics.getInstance().recordBytesOut(bytes.length);
 
         // sends the private message to the client
         core.writeTopic(PrivateMessage.class.getSimpleName(), privateMessage);
     }
 
+    /**
+     * Wraps a message content in an application message,
+     * encoded with binary codec if enabled in config
+     * @param msg the message content to wrap
+     * @return the application message to send to the client
+     */
+    private static ApplicationMessage wrap(MessageContent msg) {
+        ApplicationMessage appMsg = new ApplicationMessage();
+        if(Config.wireBinaryCodec)
+            appMsg.setContent(MessageCodec.encode(msg));
+        else
+            appMsg.setContentObject(msg);
+        return appMsg;
+    }
+
+    /**
+     * Handles server shutdown, persisting pending player states if configured to
+     */
+    public void handleShutdown() {
+        if(Config.svCacheFlushOnShutdown)
+            stateCache.flushAll();
+        sensorIngest.flushAll();
+    }
+
+    /**
+     * @return the write-behind cache of players saved state
+     */
+    public PlayerStateCache getStateCache() {return stateCache;}
+
+    /**
+     * @return the asynchronous writer of sensor readings
+     */
+    public SensorIngest getSensorIngest() {return sensorIngest;}
+
+    /**
+     * @return the in-memory registry of sensors
+     */
+    public SensorRegistry getSensorRegistry() {return sensorRegistry;}
+
     /**
      * Handle reset online status of all players to offline message
      */
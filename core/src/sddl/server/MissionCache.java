@@ -0,0 +1,218 @@
+package sddl.server;
+
+import com.mygdx.game.messages.MessageFlag;
+import com.mygdx.game.messages.MessageMissionData;
+import com.mygdx.game.util.Config;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sddl.server.db.DBHelper;
+
+/**
+ * In-memory completed missions of online characters.
+ * Missions completed by a character are kept by id
+ * with their completion times, warmed at login, so mission
+ * retrievals are served from memory and repeated completions
+ * are detected before reaching database. Every change is
+ * tagged with a version, so clients can ask only for the
+ * missions that changed since the version they hold
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class MissionCache {
+
+    /**
+     * Last completion of a mission
+     */
+    private static class Completion {
+        final long time; // last completion time in ms
+        final long version; // version at which mission last changed
+
+        Completion(long time, long version) {
+            this.time = time;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Completed missions of a character
+     */
+    private static class Progress {
+        final long baseVersion; // version at which progress was loaded
+        HashMap<Integer, Completion> completed = new HashMap<Integer, Completion>(); // completions by mission id
+
+        Progress(long baseVersion) {
+            this.baseVersion = baseVersion;
+        }
+
+        /**
+         * Sets a mission as completed
+         * @param id        the mission id
+         * @param time      the completion time in ms
+         * @param version   the version of change
+         */
+        void complete(int id, long time, long version) {
+            completed.put(id, new Completion(time, version));
+        }
+    }
+
+    // versions only grow, across server restarts as well, by starting from current time
+    private AtomicLong clock = new AtomicLong(System.currentTimeMillis() << 16);
+
+    private DBHelper dbHelper; // database helper used to load and write missions
+    private SensorRegistry sensorRegistry; // registered sensors, that define the known missions
+    private ConcurrentHashMap<String, Progress> progresses; // completed missions by character name
+
+    /**
+     * Creates an empty mission cache
+     * @param dbHelper          the database helper used to load and write missions
+     * @param sensorRegistry    the registered sensors, that define the known missions
+     */
+    public MissionCache(DBHelper dbHelper, SensorRegistry sensorRegistry) {
+        this.dbHelper = dbHelper;
+        this.sensorRegistry = sensorRegistry;
+        this.progresses = new ConcurrentHashMap<String, Progress>();
+    }
+
+    /**
+     * Caches completed missions of a character, read at login
+     * @param character the character name
+     * @param missions  the completed missions with their completion time
+     */
+    public void warm(String character, HashMap<Integer, Timestamp> missions) {
+        progresses.put(character, load(missions));
+    }
+
+    /**
+     * Builds progress of completed missions
+     * @param missions the completed missions with their completion time
+     * @return the progress of completed missions
+     */
+    private Progress load(HashMap<Integer, Timestamp> missions) {
+        long version = clock.incrementAndGet();
+        Progress progress = new Progress(version);
+
+        Iterator<Map.Entry<Integer, Timestamp>> it = missions.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<Integer, Timestamp> mission = it.next();
+            if(mission.getKey() >= 0)
+                progress.complete(mission.getKey(), mission.getValue() != null ? mission.getValue().getTime() : 0, version);
+        }
+        return progress;
+    }
+
+    /**
+     * Gets progress of a character, reading it from
+     * database if it is not cached (e.g. after a restart).
+     * Progress read is only cached for characters tracked as
+     * online, as only those are forgotten when they leave
+     * @param character the character name
+     * @return the progress of character, null if it could not be read
+     */
+    private Progress get(String character) {
+        Progress progress = progresses.get(character);
+        if(progress != null)
+            return progress;
+
+        HashMap<Integer, Timestamp> missions = dbHelper.getPlayerCompletedMissions(character);
+        if(missions == null)
+            return null;
+
+        progress = load(missions);
+        if(!ServerState.getInstance().isOnline(character))
+            return progress;
+
+        Progress raced = progresses.putIfAbsent(character, progress);
+        if(raced != null)
+            return raced;
+        // character may have left meanwhile, after being forgotten
+        if(!ServerState.getInstance().isOnline(character))
+            progresses.remove(character, progress);
+        return progress;
+    }
+
+    /**
+     * Fills a response with the completed missions of a character.
+     * If the version held by client is still valid, only missions
+     * changed since it are sent, otherwise all missions are sent
+     * @param character the character name
+     * @param since     the version of missions held by client, 0 if none
+     * @param response  the response to fill with missions and current version
+     * @return true if missions were retrieved, false if an error occurred
+     */
+    public boolean retrieve(String character, long since, MessageMissionData response) {
+        Progress progress = get(character);
+        if(progress == null)
+            return false;
+
+        HashMap<Integer, Timestamp> missions = new HashMap<Integer, Timestamp>();
+        synchronized (progress) {
+            // versions before progress was loaded are not comparable, sends all
+            boolean delta = since >= progress.baseVersion;
+            long version = progress.baseVersion;
+
+            Iterator<Map.Entry<Integer, Completion>> it = progress.completed.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, Completion> mission = it.next();
+                Completion completion = mission.getValue();
+                version = Math.max(version, completion.version);
+                if(!delta || completion.version > since)
+                    missions.put(mission.getKey(), new Timestamp(completion.time));
+            }
+
+            response.setMissions(missions);
+            response.setDelta(delta);
+            response.setVersion(version);
+        }
+        return true;
+    }
+
+    /**
+     * Completes a mission of a character. A mission completed
+     * again within {@link Config#svMissionRepeatGuard} is taken
+     * as a repeated request and rejected without touching database.
+     * Only missions of registered sensors can be completed
+     * @param character the character name
+     * @param missionId the id of completed mission
+     * @return OKIDOKI if completion was registered, MISSION_ALREADY_COMPLETED if
+     *         it is a repeated request, GENERAL_ERROR if mission is unknown or an error occurred
+     */
+    public MessageFlag complete(String character, int missionId) {
+        SensorRegistry.Snapshot registered = sensorRegistry.getSnapshot();
+        if(registered == null || !registered.hasMission(missionId)) {
+            System.err.println("Refused completion of unknown mission " + missionId + " by " + character);
+            return MessageFlag.GENERAL_ERROR;
+        }
+
+        Progress progress = get(character);
+        if(progress == null)
+            return MessageFlag.GENERAL_ERROR;
+
+        synchronized (progress) {
+            long now = System.currentTimeMillis();
+            Completion last = progress.completed.get(missionId);
+            if(last != null && now - last.time < Config.svMissionRepeatGuard)
+                return MessageFlag.MISSION_ALREADY_COMPLETED;
+
+            if(!dbHelper.completeMission(character, missionId, new Timestamp(now)))
+                return MessageFlag.GENERAL_ERROR;
+
+            progress.complete(missionId, now, clock.incrementAndGet());
+        }
+        return MessageFlag.OKIDOKI;
+    }
+
+    /**
+     * Forgets completed missions of a character that left the game
+     * @param character the character name
+     */
+    public void forget(String character) {
+        progresses.remove(character);
+    }
+}
@@ -1,9 +1,14 @@
 package sddl.server;
 
+import com.mygdx.game.messages.MessageSave;
+import com.mygdx.game.util.Common;
+
 /**
  * Class that represents an online player
  * in the server storing necessary data
  * to determine a character online status
+ * and the last saved state of the character
+ * that may not be persisted in database yet
  *
  * @author Pedro Sampaio
  * @since   1.6
@@ -14,6 +19,26 @@ public class PlayerState {
 
     private long lastTick; // the last tick received by character to determine online status
 
+    /**
+     * Saved state of the character
+     */
+    private int worldMap; // player current world map
+    private int level;  // player level
+    private long experience; // player experience
+    private int posx; // player world map pos x
+    private int posy; // player world map pos y
+    private long gold; // player gold amount
+    private int[] items; // player inventory items packed as {uid, level, slot} triples
+    private int[] equips; // player worn equipments packed as {uid, level, slot} triples
+
+    private boolean dirty; // if saved state was not persisted yet
+    private long dirtySince; // when saved state became different from persisted state
+    private long version; // incremented on every save received
+    private long sequence; // sequence number of last save applied in player session
+    private long lastAccess; // last time this state was saved or read
+    private boolean evicted; // if this state was removed from the state cache
+    private final Object flushLock = new Object(); // serializes flushes of this character
+
     /**
      * player state constructor
      *
@@ -23,6 +48,123 @@ public class PlayerState {
         this.name = name;
     }
 
+    /**
+     * Stores a save of the character
+     *
+     * @param worldMap  player current world map
+     * @param level     player level
+     * @param exp       player experience
+     * @param posx      player world map pos x
+     * @param posy      player world map pos y
+     * @param gold      player gold amount
+     * @param items     player inventory items packed as {uid, level, slot} triples
+     * @param equips    player worn equipments packed as {uid, level, slot} triples
+     * @param sequence  the sequence number of save in player session
+     * @return true if save overwrote a save not persisted yet (coalesced), false otherwise
+     */
+    public synchronized boolean save(int worldMap, int level, long exp, int posx, int posy,
+                                     long gold, int[] items, int[] equips, long sequence) {
+        this.worldMap = worldMap;
+        this.level = level;
+        this.experience = exp;
+        this.posx = posx;
+        this.posy = posy;
+        this.gold = gold;
+        this.items = items;
+        this.equips = equips;
+        this.sequence = sequence;
+        return touch();
+    }
+
+    /**
+     * Applies a delta save of the character. Sequence
+     * must follow the sequence of last save applied
+     *
+     * @param save  the delta save received
+     * @return true if delta overwrote a save not persisted yet (coalesced), false otherwise
+     */
+    public synchronized boolean applyDelta(MessageSave save) {
+        this.sequence = save.getSequence();
+        this.lastAccess = System.currentTimeMillis();
+
+        int changed = save.getChanged();
+        int[] changedItems = save.getInventory(), changedEquips = save.getEquipment();
+        int[] removedItems = save.getRemovedItems(), removedEquips = save.getRemovedEquipment();
+        boolean slotsChanged = (changedItems != null && changedItems.length > 0) ||
+                (removedItems != null && removedItems.length > 0) ||
+                (changedEquips != null && changedEquips.length > 0) ||
+                (removedEquips != null && removedEquips.length > 0);
+
+        // nothing changed, save only keeps character online
+        if(changed == 0 && !slotsChanged)
+            return false;
+
+        if((changed & MessageSave.FIELD_WORLD_MAP) != 0)
+            this.worldMap = save.getWorldMap();
+        if((changed & MessageSave.FIELD_LEVEL) != 0)
+            this.level = save.getLevel();
+        if((changed & MessageSave.FIELD_EXPERIENCE) != 0)
+            this.experience = save.getExperience();
+        if((changed & MessageSave.FIELD_POSITION) != 0) {
+            this.posx = save.getPosx();
+            this.posy = save.getPosy();
+        }
+        if((changed & MessageSave.FIELD_GOLD) != 0)
+            this.gold = save.getGold();
+        this.items = Common.mergePacked(items, changedItems, removedItems);
+        this.equips = Common.mergePacked(equips, changedEquips, removedEquips);
+        return touch();
+    }
+
+    /**
+     * Marks saved state as changed
+     * @return true if saved state was already pending persistence (coalesced), false otherwise
+     */
+    private boolean touch() {
+        this.version++;
+        this.lastAccess = System.currentTimeMillis();
+
+        boolean coalesced = dirty;
+        if(!dirty) {
+            dirty = true;
+            dirtySince = lastAccess;
+        }
+        return coalesced;
+    }
+
+    /**
+     * Removes an item from saved inventory, if present
+     * @param page  the inventory page of the item
+     * @param i     the i index of the item
+     * @param j     the j index of the item
+     */
+    public synchronized void removeItem(int page, int i, int j) {
+        if(items == null)
+            return;
+
+        int slot = Common.packSlot(page, i, j);
+        for(int k = 0; k < items.length; k += Common.PACKED_STRIDE) {
+            if(items[k + 2] == slot) {
+                // saved arrays may be shared with messages, so removal copies
+                int[] remaining = new int[items.length - Common.PACKED_STRIDE];
+                System.arraycopy(items, 0, remaining, 0, k);
+                System.arraycopy(items, k + Common.PACKED_STRIDE, remaining, k, items.length - k - Common.PACKED_STRIDE);
+                items = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Marks saved state as persisted, if no
+     * save was received after the given version
+     * @param persistedVersion the version that was persisted
+     */
+    public synchronized void markPersisted(long persistedVersion) {
+        if(version == persistedVersion)
+            dirty = false;
+    }
+
     /**
      * Getters and setters
      */
@@ -34,4 +176,43 @@ public class PlayerState {
     public long getLastTick() {return lastTick;}
 
     public void setLastTick(long lastTick) {this.lastTick = lastTick;}
+
+    public synchronized int getWorldMap() {return worldMap;}
+
+    public synchronized int getLevel() {return level;}
+
+    public synchronized long getExperience() {return experience;}
+
+    public synchronized int getPosx() {return posx;}
+
+    public synchronized int getPosy() {return posy;}
+
+    public synchronized long getGold() {return gold;}
+
+    public synchronized int[] getItems() {return items;}
+
+    public synchronized int[] getEquips() {return equips;}
+
+    public synchronized boolean isDirty() {return dirty;}
+
+    public synchronized long getDirtySince() {return dirtySince;}
+
+    public synchronized long getVersion() {return version;}
+
+    public synchronized long getSequence() {return sequence;}
+
+    /**
+     * @return true if a full save of character was received, so deltas can be applied
+     */
+    public synchronized boolean hasBaseline() {return items != null && equips != null;}
+
+    public synchronized long getLastAccess() {return lastAccess;}
+
+    public synchronized void setLastAccess(long lastAccess) {this.lastAccess = lastAccess;}
+
+    public synchronized boolean isEvicted() {return evicted;}
+
+    public synchronized void setEvicted(boolean evicted) {this.evicted = evicted;}
+
+    public Object getFlushLock() {return flushLock;}
 }
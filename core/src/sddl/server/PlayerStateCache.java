@@ -0,0 +1,280 @@
+package sddl.server;
+
+import com.mygdx.game.messages.MessageSave;
+import com.mygdx.game.util.Config;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sddl.server.db.DBHelper;
+
+/**
+ * Write-behind cache of characters saved state.
+ * Saves received from clients are stored in memory and
+ * persisted by a flusher thread once they are older than
+ * {@link Config#svCacheMaxStaleness}, so consecutive saves
+ * of a character are coalesced into a single database write.
+ * Characters are also flushed when they leave the game
+ * and, optionally, when the server shuts down
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class PlayerStateCache {
+
+    private DBHelper dbHelper; // database helper used to persist states
+    private ConcurrentHashMap<String, PlayerState> states; // saved states by character name
+
+    /**
+     * Write counters
+     */
+    private AtomicLong saves = new AtomicLong(); // number of saves received
+    private AtomicLong coalesced = new AtomicLong(); // number of saves that overwrote a pending save
+    private AtomicLong flushed = new AtomicLong(); // number of database writes made
+    private AtomicLong failed = new AtomicLong(); // number of database writes that failed
+    private AtomicLong hits = new AtomicLong(); // number of logins served from cache
+    private AtomicLong resyncs = new AtomicLong(); // number of delta saves that required a full save
+
+    /**
+     * Creates cache and starts its flusher thread
+     * @param dbHelper the database helper used to persist states
+     */
+    public PlayerStateCache(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.states = new ConcurrentHashMap<String, PlayerState>();
+        startFlusher();
+    }
+
+    /**
+     * Starts thread that periodically flushes stale
+     * states and evicts states that are no longer used
+     */
+    private void startFlusher() {
+        final Thread flushThread = new Thread("state-flusher") {
+            @Override
+            public void run() {
+                while(true) {
+                    try {
+                        sleep(Config.svCacheFlushTick);
+                        flushStale();
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while flushing player states: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * Stores a save of a character to be persisted later
+     *
+     * @param character the character name
+     * @param worldMap  player current world map
+     * @param level     player level
+     * @param exp       player experience
+     * @param posx      player world map pos x
+     * @param posy      player world map pos y
+     * @param gold      player gold amount
+     * @param items     player inventory items packed as {uid, level, slot} triples
+     * @param equips    player worn equipments packed as {uid, level, slot} triples
+     * @param sequence  the sequence number of save in player session
+     */
+    public void save(String character, int worldMap, int level, long exp, int posx, int posy,
+                     long gold, int[] items, int[] equips, long sequence) {
+        while(true) {
+            PlayerState state = states.get(character);
+            if(state == null) {
+                PlayerState created = new PlayerState(character);
+                state = states.putIfAbsent(character, created);
+                if(state == null)
+                    state = created;
+            }
+
+            synchronized (state) {
+                // state was evicted meanwhile, retries with a new one
+                if(state.isEvicted())
+                    continue;
+
+                saves.incrementAndGet();
+                if(state.save(worldMap, level, exp, posx, posy, gold, items, equips, sequence))
+                    coalesced.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies a delta save of a character to its cached state
+     * @param character the character name
+     * @param save      the delta save received
+     * @return the updated state, null if state is not cached or a save
+     *         was missed, in which case a full save is needed
+     */
+    public PlayerState applyDelta(String character, MessageSave save) {
+        PlayerState state = states.get(character);
+        if(state == null) {
+            resyncs.incrementAndGet();
+            return null;
+        }
+
+        synchronized (state) {
+            // state was evicted or previous delta saves were lost
+            if(state.isEvicted() || !state.hasBaseline() || save.getSequence() != state.getSequence() + 1) {
+                resyncs.incrementAndGet();
+                return null;
+            }
+
+            saves.incrementAndGet();
+            if(state.applyDelta(save))
+                coalesced.incrementAndGet();
+            return state;
+        }
+    }
+
+    /**
+     * Gets the cached state of a character, if it is hot
+     * @param character the character name
+     * @return the cached state of character, null if character is not cached
+     */
+    public PlayerState get(String character) {
+        PlayerState state = states.get(character);
+        if(state != null) {
+            state.setLastAccess(System.currentTimeMillis());
+            hits.incrementAndGet();
+        }
+        return state;
+    }
+
+    /**
+     * Checks if a character has a save not persisted yet
+     * @param character the character name
+     * @return true if character has a pending save, false otherwise
+     */
+    public boolean isPending(String character) {
+        PlayerState state = states.get(character);
+        return state != null && state.isDirty();
+    }
+
+    /**
+     * Removes an item from the cached inventory of a character,
+     * for items that left the inventory by other means than saves
+     * @param character the character name
+     * @param page      the inventory page of the item
+     * @param i         the i index of the item
+     * @param j         the j index of the item
+     */
+    public void removeItem(String character, int page, int i, int j) {
+        PlayerState state = states.get(character);
+        if(state != null)
+            state.removeItem(page, i, j);
+    }
+
+    /**
+     * Persists the state of a character if it has pending changes
+     * @param character the character name
+     * @return true if state is persisted, false if the write failed
+     */
+    public boolean flush(String character) {
+        PlayerState state = states.get(character);
+        if(state == null)
+            return true;
+        return flush(state);
+    }
+
+    /**
+     * Persists every state with pending changes
+     */
+    public void flushAll() {
+        Iterator<PlayerState> it = states.values().iterator();
+        while(it.hasNext())
+            flush(it.next());
+    }
+
+    /**
+     * Persists states that have been pending for longer than
+     * max staleness and evicts clean states not used for a while
+     */
+    private void flushStale() {
+        long now = System.currentTimeMillis();
+        Iterator<PlayerState> it = states.values().iterator();
+        while(it.hasNext()) {
+            PlayerState state = it.next();
+            if(state.isDirty()) {
+                if(now - state.getDirtySince() >= Config.svCacheMaxStaleness)
+                    flush(state);
+            } else if(now - state.getLastAccess() > Config.svCacheIdleEviction) {
+                synchronized (state) {
+                    // only evicts if no save arrived meanwhile
+                    if(!state.isDirty()) {
+                        state.setEvicted(true);
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Persists the state received if it has pending changes.
+     * Flushes of the same character never run concurrently
+     * @param state the state to persist
+     * @return true if state is persisted, false if the write failed
+     */
+    private boolean flush(PlayerState state) {
+        synchronized (state.getFlushLock()) {
+            int worldMap, level, posx, posy;
+            long exp, gold, version;
+            int[] items, equips;
+
+            // takes a consistent snapshot of the state
+            synchronized (state) {
+                if(!state.isDirty())
+                    return true;
+                worldMap = state.getWorldMap();
+                level = state.getLevel();
+                exp = state.getExperience();
+                posx = state.getPosx();
+                posy = state.getPosy();
+                gold = state.getGold();
+                items = state.getItems();
+                equips = state.getEquips();
+                version = state.getVersion();
+            }
+
+            // writes snapshot without blocking new saves
+            if(dbHelper.savePlayer(state.getName(), worldMap, level, exp, posx, posy, gold, items, equips)) {
+                state.markPersisted(version);
+                flushed.incrementAndGet();
+                return true;
+            }
+
+            failed.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Prints cache statistics in console
+     */
+    public void printStats() {
+        System.out.println("=== State Cache Stats ===\n" +
+                "cached: " + states.size() + " saves: " + saves.get() + " coalesced: " + coalesced.get() +
+                " flushed: " + flushed.get() + " failed: " + failed.get() + " login hits: " + hits.get() +
+                " resyncs: " + resyncs.get());
+    }
+
+    /**
+     * Getters for cache statistics
+     */
+
+    public long getCoalesced() {return coalesced.get();}
+
+    public long getFlushed() {return flushed.get();}
+}
@@ -1,6 +1,8 @@
 package sddl.server;
 
+import com.mygdx.game.messages.MessageCodec;
 import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.util.Config;
 import com.mysql.fabric.Server;
 
 import java.io.Serializable;
@@ -26,6 +28,7 @@ import lac.cnet.sddl.objects.PrivateMessage;
 import lac.cnet.sddl.udi.core.SddlLayer;
 import lac.cnet.sddl.udi.core.UniversalDDSLayerFactory;
 import lac.cnet.sddl.udi.core.listener.UDIDataReaderListener;
+import sddl.server.metrics.Metrics;
 
 /**
  * The main class for the game server. Uses ContextNet middleware
@@ -47,6 +50,8 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
 
     int        counter;
 
+    MessageDispatcher dispatcher; // staged pipeline that handles received messages
+
     /** Mobile Hubs Data */
     private static final Map<UUID, UUID> mMobileHubs = new HashMap<UUID, UUID>();
 
@@ -66,6 +71,10 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
      *
      */
     protected PucmonServer() {
+        // starts the pipeline before receiving any messages
+        dispatcher = new MessageDispatcher(this);
+        Metrics.getInstance().startEndpoints();
+
         // Create a layer and participant
         core = UniversalDDSLayerFactory.getInstance();
         core.createParticipant(UniversalDDSLayerFactory.CNET_DOMAIN);
@@ -86,6 +95,14 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
 
         startPlayerManagement();
 
+        // persists pending player states on shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                MessageHandler.getInstance().handleShutdown();
+            }
+        });
+
         System.out.println("=== Server Started (Listening) ===");
         synchronized (this) {
             try {
@@ -104,11 +121,20 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
         final Thread pManageThread = new Thread() {
             @Override
             public void run() {
+                long lastStats = System.currentTimeMillis(); // last time statistics were logged
                 while(true) {
                     try {
                         // each tick
                         sleep(svUpdateTick);
                         ServerState.getInstance().update();
+                        // logs pipeline statistics periodically
+                        if(System.currentTimeMillis() - lastStats > Config.svStatsInterval) {
+                            dispatcher.printStats();
+                            MessageHandler.getInstance().getStateCache().printStats();
+                            MessageHandler.getInstance().getSensorIngest().printStats();
+                            Metrics.getInstance().printStats();
+                            lastStats = System.currentTimeMillis();
+                        }
                     } catch (InterruptedException e) {
                         System.err.println("Thread exception: " + e.getMessage());
                         e.printStackTrace();
@@ -123,23 +149,16 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
 
     /**
      * SDDL callback for receiving messages.
-     * pass control for the handler of server messages
+     * registers new nodes and hands the message to the
+     * dispatcher, keeping the listener thread free of
+     * decoding and database work
      *
      * @param topic the message received
      */
     @Override
     public void onNewData(ApplicationObject topic) {
-        Message message = (Message) topic;
-       // System.out.println("Message Received: "+Serialization.fromJavaByteStream(message.getContent()));
-
-        /**
-         * mobile hub tests
-         */
-        Message msg = null;
-        MessageTag msgTag = null;
-
         if( topic instanceof Message ) {
-            msg = (Message) topic;
+            Message msg = (Message) topic;
             UUID nodeId = msg.getSenderId();
             UUID gatewayId = msg.getGatewayId();
 
@@ -153,46 +172,8 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
                     System.out.println( i + ": " + nodes.get( i ) );
             }
 
-            String content = new String( msg.getContent() );
-            JSONParser parser = new JSONParser();
-
-            try {
-                JSONObject object = (JSONObject) parser.parse( content );
-                String tag = (String) object.get( "tag" );
-                msgTag = MessageTag.valueOf(tag);
-
-                switch( msgTag ) {
-                    case SensorData:
-                        String sensorUUID = (String) object.get( "uuid" );
-                        String sensorSource = (String) object.get( "source" );
-                        String sensorName = (String) object.get( "sensor_name" );
-                        JSONArray sensorData  = (JSONArray) object.get( "sensor_value" );
-                        System.out.println("\nSensor UUID: "+ sensorUUID + "\nSensor Source: " + sensorSource +
-                                                "\nSensor Name: " + sensorName + "\nSensor Data: "  + sensorData);
-                        break;
-
-                    case EventData:
-                        System.out.println("EventData-> tag: " + tag);
-                        //handleEvent( label, data );
-                        break;
-
-                    case ReplyData:
-                        System.out.println("ReplyData-> tag: " + tag);
-                    case ErrorData:
-                        //handleMessage( tag, object );
-                        System.out.println("ErrorData-> tag: " + tag);
-                        break;
-                }
-            } catch( Exception ex ) {
-                // casts received message to the agreement model for game server communications
-                Serializable rawContent = Serialization.fromJavaByteStream(message.getContent());
-                if( rawContent instanceof MessageContent ) {
-                    MessageContent msgContent = (MessageContent) rawContent;
-
-                    // handles the message received
-                    MessageHandler.getInstance().handleMessage(core, message, msgContent);
-                }
-            }
+            // hands message to the decoding stage
+            dispatcher.submit(msg);
         }
 
         // m-hub test msg
@@ -223,6 +204,96 @@ public class PucmonServer implements UDIDataReaderListener<ApplicationObject> {
 
     }
 
+    /**
+     * Decodes a received message, called by the dispatcher
+     * decoder threads. M-Hub messages are JSON, game messages
+     * are binary frames or serialized message contents that are
+     * dispatched to the worker pools of their type
+     *
+     * @param message the message received
+     */
+    void decodeMessage(Message message) {
+        Metrics.getInstance().recordBytesIn(message.getContent().length);
+
+        // binary game messages are decoded and dispatched right away
+        if(MessageCodec.isFrame(message.getContent())) {
+            MessageContent msgContent = MessageCodec.decode(message.getContent());
+            if(msgContent != null)
+                dispatcher.dispatch(message, msgContent);
+            else if(MessageCodec.versionOf(message.getContent()) != MessageCodec.VERSION)
+                MessageHandler.getInstance().handleUnsupportedVersion(core, message,
+                                                    MessageCodec.decodeHeader(message.getContent()));
+            return;
+        }
+
+        MessageTag msgTag = null;
+
+        String content = new String( message.getContent() );
+        JSONParser parser = new JSONParser();
+
+        try {
+            JSONObject object = (JSONObject) parser.parse( content );
+            String tag = (String) object.get( "tag" );
+            msgTag = MessageTag.valueOf(tag);
+
+            switch( msgTag ) {
+                case SensorData:
+                    String sensorUUID = (String) object.get( "uuid" );
+                    String sensorSource = (String) object.get( "source" );
+                    String sensorName = (String) object.get( "sensor_name" );
+                    JSONArray sensorData  = (JSONArray) object.get( "sensor_value" );
+                    if(Config.debug)
+                        System.out.println("\nSensor UUID: "+ sensorUUID + "\nSensor Source: " + sensorSource +
+                                            "\nSensor Name: " + sensorName + "\nSensor Data: "  + sensorData);
+                    handleSensorData(sensorUUID, sensorName, sensorData);
+                    break;
+
+                case EventData:
+                    System.out.println("EventData-> tag: " + tag);
+                    //handleEvent( label, data );
+                    break;
+
+                case ReplyData:
+                    System.out.println("ReplyData-> tag: " + tag);
+                case ErrorData:
+                    //handleMessage( tag, object );
+                    System.out.println("ErrorData-> tag: " + tag);
+                    break;
+            }
+        } catch( Exception ex ) {
+            // casts received message to the agreement model for game server communications
+            Serializable rawContent = Serialization.fromJavaByteStream(message.getContent());
+            if( rawContent instanceof MessageContent ) {
+                MessageContent msgContent = (MessageContent) rawContent;
+
+                // dispatches the message to the worker pool of its type
+                dispatcher.dispatch(message, msgContent);
+            }
+        }
+    }
+
+    /**
+     * Queues numeric values of an M-Hub sensor reading
+     * to be written asynchronously. Values that are not
+     * numbers are stored as NaN, keeping their index
+     *
+     * @param sensorUUID    the uuid of the sensor
+     * @param sensorName    the name of the sensor (e.g. Temperature)
+     * @param sensorData    the values read by the sensor
+     */
+    private void handleSensorData(String sensorUUID, String sensorName, JSONArray sensorData) {
+        if(sensorUUID == null || sensorName == null || sensorData == null)
+            return;
+
+        double[] values = new double[sensorData.size()];
+        for(int i = 0; i < values.length; i++) {
+            Object value = sensorData.get(i);
+            values[i] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+
+        MessageHandler.getInstance().getSensorIngest().submitSamples(sensorUUID, sensorName, values);
+    }
+
     /**
      * Sends a message to a unique component (UNICAST)
      * @param appMSG The application message (e.g. a String message)
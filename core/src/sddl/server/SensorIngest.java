@@ -0,0 +1,378 @@
+package sddl.server;
+
+import com.mygdx.game.util.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sddl.server.db.DBHelper;
+import sddl.server.db.SensorBatch;
+import sddl.server.db.SensorRollup;
+import sddl.server.metrics.Metrics;
+
+/**
+ * Asynchronous ingestion of sensor telemetry. Readings from
+ * M-Hubs and from missions are queued without touching the
+ * database, and a writer thread drains the queue in batches,
+ * grouped by sensor, that are written with batched inserts.
+ * Bursts of telemetry never block gameplay request handling:
+ * if the queue is full, readings are dropped and counted.
+ * If a batch cannot be written, its readings are written one by
+ * one, so a single bad reading does not lose the whole batch.
+ * Numeric samples are also rolled up by minute and hour, and
+ * old samples and rollups are pruned by a thread of their own,
+ * so series can be queried by range without scanning raw samples
+ * and storage stays bounded without stalling the writer
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SensorIngest {
+
+    /**
+     * A sensor reading waiting to be written
+     */
+    private static class Reading {
+        final String sensorId; // the id of the sensor
+        final String type; // the type of input, null for numeric samples
+        final String name; // the sensor name or input name
+        final double[] values; // the numeric values read, null for text inputs
+        final String data; // the text data of input, null for numeric samples
+        final long received; // the time in ms the reading was received
+
+        Reading(String sensorId, String type, String name, double[] values, String data) {
+            this.sensorId = sensorId;
+            this.type = type;
+            this.name = name;
+            this.values = values;
+            this.data = data;
+            this.received = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Orders readings by sensor and name, so rows of
+     * the same series are contiguous in each batch
+     */
+    private static final Comparator<Reading> BY_SENSOR = new Comparator<Reading>() {
+        @Override
+        public int compare(Reading r1, Reading r2) {
+            int cmp = r1.sensorId.compareTo(r2.sensorId);
+            if(cmp != 0)
+                return cmp;
+            return r1.name.compareTo(r2.name);
+        }
+    };
+
+    private DBHelper dbHelper; // database helper used to write readings
+    private BlockingQueue<Reading> queue; // readings waiting to be written
+
+    /**
+     * Ingestion metrics
+     */
+    private AtomicLong accepted = new AtomicLong(); // number of readings queued
+    private AtomicLong dropped = new AtomicLong(); // number of readings dropped due to full queue
+    private AtomicLong invalid = new AtomicLong(); // number of readings rejected for missing sensor id, name or data
+    private AtomicLong written = new AtomicLong(); // number of readings written to database
+    private AtomicLong failed = new AtomicLong(); // number of readings lost in failed writes
+    private AtomicLong batches = new AtomicLong(); // number of batches written
+    private AtomicLong lastLag = new AtomicLong(); // lag in ms of oldest reading of last batch
+    private AtomicLong maxLag = new AtomicLong(); // highest lag in ms observed since last stats
+    private long lastStatsTime = System.currentTimeMillis(); // time of last stats log
+    private long lastStatsWritten; // number of readings written at last stats log
+
+    /**
+     * Creates ingestion queue and starts its writer and pruner threads
+     * @param dbHelper the database helper used to write readings
+     */
+    public SensorIngest(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.queue = new ArrayBlockingQueue<Reading>(Config.svSensorQueueCapacity);
+        Metrics.getInstance().registerGauge("sensors.queue", new Metrics.Gauge() {
+            @Override
+            public long value() {return queue.size();}
+        });
+        startWriter();
+        startPruner();
+    }
+
+    /**
+     * Starts thread that drains queued readings in batches
+     */
+    private void startWriter() {
+        final Thread writerThread = new Thread("sensor-writer") {
+            @Override
+            public void run() {
+                ArrayList<Reading> pending = new ArrayList<Reading>(Config.svSensorBatchSize);
+                SensorBatch batch = new SensorBatch();
+                while(true) {
+                    try {
+                        // waits for a first reading, then for the batch to fill up to a limit
+                        Reading first = queue.take();
+                        pending.add(first);
+                        long deadline = first.received + Config.svSensorBatchDelay;
+                        while(pending.size() < Config.svSensorBatchSize) {
+                            long wait = deadline - System.currentTimeMillis();
+                            if(queue.drainTo(pending, Config.svSensorBatchSize - pending.size()) == 0) {
+                                if(wait <= 0)
+                                    break;
+                                Reading next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                                if(next == null)
+                                    break;
+                                pending.add(next);
+                            }
+                        }
+                        write(pending, batch);
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while writing sensor readings: " + e.getMessage());
+                        e.printStackTrace();
+                    } finally {
+                        pending.clear();
+                    }
+                }
+            }
+        };
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Starts thread that periodically prunes data older than
+     * retention, apart from the writer so ingestion never waits for it
+     */
+    private void startPruner() {
+        final Thread pruneThread = new Thread("sensor-pruner") {
+            @Override
+            public void run() {
+                while(true) {
+                    try {
+                        prune();
+                        sleep(Config.svSensorPruneInterval);
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while pruning sensor data: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        pruneThread.setDaemon(true);
+        pruneThread.start();
+    }
+
+    /**
+     * Queues the numeric values of a sensor reading
+     * @param sensorId  the id of the sensor
+     * @param name      the sensor name (or input name) of the reading
+     * @param values    the values read
+     * @return true if reading was queued, false if it was dropped or is not valid
+     */
+    public boolean submitSamples(String sensorId, String name, double[] values) {
+        if(sensorId == null || name == null || values == null) {
+            invalid.incrementAndGet();
+            return false;
+        }
+        return offer(new Reading(sensorId, null, name, values, null));
+    }
+
+    /**
+     * Queues a text input of a sensor
+     * @param sensorId  the id of the sensor
+     * @param type      the type of the input
+     * @param name      the name of the input
+     * @param data      the data of the input
+     * @return true if input was queued, false if it was dropped or is not valid
+     */
+    public boolean submitInput(String sensorId, String type, String name, String data) {
+        if(sensorId == null || name == null) {
+            invalid.incrementAndGet();
+            return false;
+        }
+        return offer(new Reading(sensorId, type, name, null, data));
+    }
+
+    /**
+     * Offers a reading to the queue without waiting for room
+     * @param reading the reading to queue
+     * @return true if reading was queued, false if it was dropped
+     */
+    private boolean offer(Reading reading) {
+        if(!queue.offer(reading)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Writes pending readings in a single batch, grouped by sensor.
+     * If the batch fails, readings are written one by one, so only
+     * the readings that cannot be written are lost
+     * @param pending   the readings to write
+     * @param batch     the batch to reuse for writing
+     */
+    private void write(ArrayList<Reading> pending, SensorBatch batch) {
+        Collections.sort(pending, BY_SENSOR);
+
+        long oldest = Long.MAX_VALUE;
+        for(int i = 0; i < pending.size(); i++) {
+            add(pending.get(i), batch);
+            oldest = Math.min(oldest, pending.get(i).received);
+        }
+
+        boolean ok = dbHelper.registerSensorBatch(batch);
+        batch.clear();
+        if(ok) {
+            written.addAndGet(pending.size());
+            batches.incrementAndGet();
+        } else if(pending.size() > 1)
+            writeEach(pending, batch);
+        else {
+            System.err.println("Something went wrong when registering sensor data, lost 1 reading");
+            failed.incrementAndGet();
+        }
+
+        // lag of the batch is the time its oldest reading waited to be written
+        long lag = System.currentTimeMillis() - oldest;
+        lastLag.set(lag);
+        long max = maxLag.get();
+        while(lag > max && !maxLag.compareAndSet(max, lag))
+            max = maxLag.get();
+    }
+
+    /**
+     * Writes readings of a failed batch one by one. Stops after
+     * {@link Config#svSensorRetryFailures} failures in a row, as
+     * the database is then likely down, counting the rest as lost
+     * @param pending   the readings to write
+     * @param batch     the batch to reuse for writing
+     */
+    private void writeEach(ArrayList<Reading> pending, SensorBatch batch) {
+        int lost = 0;
+        int failures = 0; // failures in a row
+        for(int i = 0; i < pending.size(); i++) {
+            if(failures >= Config.svSensorRetryFailures) {
+                lost += pending.size() - i;
+                break;
+            }
+
+            add(pending.get(i), batch);
+            if(dbHelper.registerSensorBatch(batch)) {
+                written.incrementAndGet();
+                failures = 0;
+            } else {
+                lost++;
+                failures++;
+            }
+            batch.clear();
+        }
+
+        batches.incrementAndGet();
+        if(lost > 0) {
+            System.err.println("Something went wrong when registering sensor data, lost " + lost + " of " +
+                                pending.size() + " readings");
+            failed.addAndGet(lost);
+        }
+    }
+
+    /**
+     * Adds a reading to a batch
+     * @param reading   the reading to add
+     * @param batch     the batch to add the reading to
+     */
+    private static void add(Reading reading, SensorBatch batch) {
+        if(reading.values != null)
+            batch.addSamples(reading.sensorId, reading.name, reading.values, reading.received);
+        else
+            batch.addInput(reading.sensorId, reading.type, reading.name, reading.data, reading.received);
+    }
+
+    /**
+     * Deletes samples and rollups older than their retention
+     */
+    private void prune() {
+        long now = System.currentTimeMillis();
+
+        long deleted = dbHelper.pruneSensorData(now - Config.svSensorRawRetention,
+                        now - Config.svSensorMinuteRetention, now - Config.svSensorHourRetention,
+                        Config.svSensorPruneChunk);
+        if(deleted < 0)
+            System.err.println("Something went wrong when pruning old sensor data");
+        else if(Config.debug)
+            System.out.println("Pruned " + deleted + " rows of old sensor data");
+    }
+
+    /**
+     * Retrieves the rollups of a sensor within a time range.
+     * Minute rollups are used for short ranges still within
+     * their retention, hour rollups otherwise
+     * @param sensorId      the id of the sensor
+     * @param sensorName    the sensor name (or input name)
+     * @param from          the start of range in ms (inclusive)
+     * @param to            the end of range in ms (exclusive)
+     * @return the rollups of the sensor ordered by value index and bucket, null if an error occurred
+     */
+    public ArrayList<SensorRollup> querySeries(String sensorId, String sensorName, long from, long to) {
+        boolean minutes = to - from <= Config.svSensorMinuteQuerySpan &&
+                            from >= System.currentTimeMillis() - Config.svSensorMinuteRetention;
+        SensorRollup.Resolution resolution = minutes ? SensorRollup.Resolution.MINUTE : SensorRollup.Resolution.HOUR;
+
+        return querySeries(sensorId, sensorName, resolution, from, to);
+    }
+
+    /**
+     * Retrieves the rollups of a sensor within a time range
+     * @param sensorId      the id of the sensor
+     * @param sensorName    the sensor name (or input name)
+     * @param resolution    the resolution of rollups
+     * @param from          the start of range in ms (inclusive)
+     * @param to            the end of range in ms (exclusive)
+     * @return the rollups of the sensor ordered by value index and bucket, null if an error occurred
+     */
+    public ArrayList<SensorRollup> querySeries(String sensorId, String sensorName,
+                                               SensorRollup.Resolution resolution, long from, long to) {
+        return dbHelper.retrieveSensorRollups(sensorId, sensorName, resolution, from, to);
+    }
+
+    /**
+     * Writes all queued readings, to be called when server shuts down
+     */
+    public void flushAll() {
+        ArrayList<Reading> pending = new ArrayList<Reading>();
+        SensorBatch batch = new SensorBatch();
+        while(queue.drainTo(pending, Config.svSensorBatchSize) > 0) {
+            write(pending, batch);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Logs ingestion statistics: rate of readings
+     * written since last log, queue depth and lag
+     */
+    public synchronized void printStats() {
+        long now = System.currentTimeMillis();
+        long total = written.get();
+        double rate = (total - lastStatsWritten) * 1000.0 / Math.max(1, now - lastStatsTime);
+        lastStatsTime = now;
+        lastStatsWritten = total;
+
+        System.out.println("=== Sensor Ingest Stats ===\n" +
+                "queue: " + queue.size() + "/" + Config.svSensorQueueCapacity +
+                " accepted: " + accepted.get() + " dropped: " + dropped.get() + " invalid: " + invalid.get() +
+                " written: " + total + " failed: " + failed.get() + " batches: " + batches.get() + "\n" +
+                "rate: " + String.format("%.1f", rate) + " readings/s lag: " + lastLag.get() +
+                "ms (max " + maxLag.getAndSet(0) + "ms)");
+    }
+}
@@ -0,0 +1,181 @@
+package sddl.server;
+
+import com.mygdx.game.sensors.SensorCompact;
+import com.mygdx.game.util.Config;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import sddl.server.db.DBHelper;
+
+/**
+ * In-memory registry of the sensors registered in database.
+ * Sensors are loaded at startup and refreshed periodically
+ * by a background thread, every {@link Config#svSensorRegistryRefresh}:
+ * sensors are only changed directly in database, so the registry
+ * polls for changes instead of being told of them.
+ * Each content of the registry is tagged with a version, a
+ * hash of its sensors, so clients that already hold the
+ * current version do not need to receive the list again
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SensorRegistry {
+
+    public static final long NO_VERSION = 0; // version of clients that hold no sensors yet
+
+    /**
+     * The registered sensors and their version, replaced as a whole
+     */
+    public static class Snapshot {
+        private final ArrayList<SensorCompact> sensors; // the registered sensors, never modified
+        private final long version; // the version of registered sensors
+        private final HashSet<Integer> missions; // ids of missions of registered sensors
+
+        Snapshot(ArrayList<SensorCompact> sensors, long version) {
+            this.sensors = sensors;
+            this.version = version;
+            this.missions = new HashSet<Integer>();
+            for(int i = 0; i < sensors.size(); i++)
+                missions.add(sensors.get(i).getMission_id());
+        }
+
+        public ArrayList<SensorCompact> getSensors() {return sensors;}
+
+        public long getVersion() {return version;}
+
+        /**
+         * Checks if a mission belongs to a registered sensor
+         * @param missionId the mission id to check
+         * @return true if mission is known, false otherwise
+         */
+        public boolean hasMission(int missionId) {return missions.contains(missionId);}
+    }
+
+    private DBHelper dbHelper; // database helper used to load sensors
+    private volatile Snapshot snapshot; // current registered sensors, null if never loaded
+    private long lastRefresh; // last time sensors were read from database
+
+    /**
+     * Creates registry and starts its refresher thread,
+     * that also performs the first load from database
+     * @param dbHelper the database helper used to load sensors
+     */
+    public SensorRegistry(DBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        startRefresher();
+    }
+
+    /**
+     * Starts thread that loads sensors and
+     * periodically refreshes them from database
+     */
+    private void startRefresher() {
+        final Thread refreshThread = new Thread("sensor-registry") {
+            @Override
+            public void run() {
+                while(true) {
+                    try {
+                        refresh();
+                        sleep(Config.svSensorRegistryRefresh);
+                    } catch (InterruptedException e) {
+                        System.err.println("Thread exception: " + e.getMessage());
+                        return;
+                    } catch (Exception e) {
+                        System.err.println("Error while refreshing sensor registry: " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        refreshThread.setDaemon(true);
+        refreshThread.start();
+    }
+
+    /**
+     * Reads sensors from database, replacing registered
+     * sensors and their version if they have changed
+     * @return true if sensors were read, false if an error occurred
+     */
+    public synchronized boolean refresh() {
+        lastRefresh = System.currentTimeMillis();
+
+        ArrayList<SensorCompact> sensors = dbHelper.getSensors();
+        if(sensors == null) { // keeps current sensors until database is back
+            System.err.println("SQL error while reading sensors data");
+            return false;
+        }
+
+        long version = versionOf(sensors);
+        if(snapshot == null || snapshot.getVersion() != version) {
+            snapshot = new Snapshot(sensors, version);
+            if(Config.debug)
+                System.out.println("Sensor registry updated to version " + Long.toHexString(version));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the registered sensors, trying to load them
+     * if they could not be loaded yet. Attempts are throttled
+     * by {@link Config#svSensorRegistryRetry}
+     * @return the registered sensors and their version, null if they could not be loaded
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if(current == null) {
+            synchronized (this) {
+                if(snapshot == null && System.currentTimeMillis() - lastRefresh > Config.svSensorRegistryRetry)
+                    refresh();
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Computes the version of a list of sensors as a 64-bit
+     * FNV-1a hash of its content, so the same sensors keep
+     * the same version across server restarts
+     * @param sensors the sensors to compute version
+     * @return the version of sensors, never {@link #NO_VERSION}
+     */
+    private static long versionOf(ArrayList<SensorCompact> sensors) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < sensors.size(); i++) {
+            SensorCompact s = sensors.get(i);
+            hash = hash(hash, s.getSensor_id());
+            hash = hash(hash, s.getSensor_type());
+            hash = hash(hash, String.valueOf(s.getMission_id()));
+            hash = hash(hash, String.valueOf(s.getThumbnail_id()));
+            hash = hash(hash, s.getSensor_code());
+            hash = hash(hash, String.valueOf(s.getN_inputs()));
+            hash = hash(hash, s.getInput_type());
+        }
+        return hash == NO_VERSION ? 1 : hash;
+    }
+
+    /**
+     * Mixes a field into a FNV-1a hash, null fields
+     * and field boundaries included
+     * @param hash  the current hash
+     * @param field the field to mix
+     * @return the updated hash
+     */
+    private static long hash(long hash, String field) {
+        if(field != null) {
+            for(int i = 0; i < field.length(); i++) {
+                hash ^= field.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        } else {
+            hash ^= 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // field separator
+        hash ^= 0x1f;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+}
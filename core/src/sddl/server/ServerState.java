@@ -1,28 +1,66 @@
 package sddl.server;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import com.mygdx.game.util.Config;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sddl.server.metrics.Metrics;
 
 /**
  * Manages the server current state of
  * online players. Later, it might be of use also
- * for real-time online architecture for player interactions
+ * for real-time online architecture for player interactions.
+ * Players are kept in a hashed timing wheel by the time
+ * they are due to go offline, so each update only checks
+ * the players whose timeout is due, instead of all players
  *
  * @author Pedro Sampaio
  * @since   1.6
  */
 public class ServerState {
 
-    private HashMap<String, Long> onlinePlayers; // currently online players with their last tick stored
-    private float offlineTick = 15000f; // how long a user without tick updates will be considered offline (in ms)
+    private static final long EXPIRED = Long.MIN_VALUE; // last tick of a presence that went offline
+
+    /**
+     * The presence of an online player in a session
+     */
+    private static class Presence {
+        final String character; // the character name
+        final AtomicLong lastTick; // last tick received, EXPIRED once offline
+
+        Presence(String character, long lastTick) {
+            this.character = character;
+            this.lastTick = new AtomicLong(lastTick);
+        }
+    }
+
+    private ConcurrentHashMap<String, Presence> onlinePlayers; // currently online players with their last tick stored
+    private long offlineTick = Config.svOfflineTimeout; // how long a user without tick updates will be considered offline (in ms)
+    private long wheelTick = Config.svPresenceWheelTick; // time span of each timing wheel bucket (in ms)
+    private ConcurrentLinkedQueue<Presence>[] wheel; // buckets of presences by the tick they are due
+    private long currentTick; // last wheel tick processed, only used by update thread
+    private ArrayList<Presence> due = new ArrayList<Presence>(); // presences of the bucket being processed
+    private ArrayList<String> expired = new ArrayList<String>(); // players gone offline in an update
     private static ServerState instance = null; // the singleton instance
 
     /**
      * Constructor that initializes online players data structure
      */
+    @SuppressWarnings("unchecked")
     private ServerState() {
-        this.onlinePlayers = new HashMap<String, Long>();
+        this.onlinePlayers = new ConcurrentHashMap<String, Presence>();
+        // wheel spans more than a timeout, so a presence is never due in the bucket being processed
+        this.wheel = (ConcurrentLinkedQueue<Presence>[]) new ConcurrentLinkedQueue<?>[(int) (offlineTick / wheelTick) + 2];
+        for(int i = 0; i < wheel.length; i++)
+            wheel[i] = new ConcurrentLinkedQueue<Presence>();
+        this.currentTick = System.currentTimeMillis() / wheelTick;
+        Metrics.getInstance().registerGauge("players.online", new Metrics.Gauge() {
+            @Override
+            public long value() {return onlinePlayers.size();}
+        });
         MessageHandler.getInstance().handleResetOnlineStatus();
     }
 
@@ -30,7 +68,7 @@ public class ServerState {
      * singleton get instance method
      * @return the singleton instance
      */
-    public static ServerState getInstance() {
+    public static synchronized ServerState getInstance() {
         if(instance == null)
             instance = new ServerState();
 
@@ -49,50 +87,106 @@ public class ServerState {
      * @param onlinePlayer the online player to updates in structure
      */
     public void updateOnlinePlayer(String onlinePlayer) {
-        onlinePlayers.put(onlinePlayer, System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+
+        while(true) {
+            Presence presence = onlinePlayers.get(onlinePlayer);
+            if(presence == null) { // player is not online, schedules new presence
+                Presence created = new Presence(onlinePlayer, now);
+                if(onlinePlayers.putIfAbsent(onlinePlayer, created) == null) {
+                    schedule(created, now + offlineTick);
+                    return;
+                }
+                continue; // raced with another update, retries
+            }
+
+            long last = presence.lastTick.get();
+            if(last == EXPIRED) { // presence is going offline, replaces it
+                onlinePlayers.remove(onlinePlayer, presence);
+                continue;
+            }
+
+            // presence stays in its bucket, timeout is rechecked when bucket is due
+            if(last >= now || presence.lastTick.compareAndSet(last, now))
+                return;
+        }
+    }
+
+    /**
+     * Removes a character from online players,
+     * when player leaves the game on its own
+     * @param onlinePlayer the player that went offline
+     */
+    public void removeOnlinePlayer(String onlinePlayer) {
+        Presence presence = onlinePlayers.remove(onlinePlayer);
+        if(presence != null)
+            presence.lastTick.set(EXPIRED); // bucket entry is discarded when due
+    }
+
+    /**
+     * Puts a presence in the bucket of the tick it is due
+     * @param presence  the presence to schedule
+     * @param deadline  the time the presence is due
+     */
+    private void schedule(Presence presence, long deadline) {
+        wheel[(int) ((deadline / wheelTick) % wheel.length)].add(presence);
     }
 
     /**
      * Checks players ticks removing
-     * offline ones and updating database
+     * offline ones and updating database.
+     * Only buckets due since last check are processed
      */
-    public void checkStatus() {
-        Iterator it = onlinePlayers.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry)it.next();
-
-            // if last tick has surpassed limit, removes from online player and updates database
-            if(System.currentTimeMillis() - ((Long)pair.getValue()) > offlineTick) {
-                String character = (String)pair.getKey(); // character to update status
-                it.remove(); // avoids a ConcurrentModificationException
-                // updates character online status to offline
-                MessageHandler.getInstance().handleStatusUpdate(character, false);
+    public synchronized void checkStatus() {
+        long now = System.currentTimeMillis();
+        long nowTick = now / wheelTick;
+
+        // at most one full turn of wheel, in case checks were delayed
+        long firstTick = Math.max(currentTick + 1, nowTick - wheel.length + 1);
+        for(long tick = firstTick; tick <= nowTick; tick++) {
+            // takes bucket entries first, rescheduled presences may return to the same bucket
+            ConcurrentLinkedQueue<Presence> bucket = wheel[(int) (tick % wheel.length)];
+            Presence presence;
+            while((presence = bucket.poll()) != null)
+                due.add(presence);
+
+            for(int i = 0; i < due.size(); i++) {
+                presence = due.get(i);
+                long last = presence.lastTick.get();
+                if(last == EXPIRED || onlinePlayers.get(presence.character) != presence)
+                    continue; // stale entry of a presence already offline
+
+                // if last tick has surpassed limit, removes from online players
+                if(now - last > offlineTick && presence.lastTick.compareAndSet(last, EXPIRED)) {
+                    onlinePlayers.remove(presence.character, presence);
+                    expired.add(presence.character);
+                } else // ticked meanwhile, reschedules by its last tick (never into current bucket)
+                    schedule(presence, Math.max(presence.lastTick.get() + offlineTick, (nowTick + 1) * wheelTick));
             }
+            due.clear();
+        }
+        currentTick = nowTick;
 
+        // updates online status of all expired characters at once
+        if(!expired.isEmpty()) {
+            MessageHandler.getInstance().handlePlayersOffline(expired);
+            expired.clear();
         }
     }
 
     /**
-     * Updates a character last tick in the
-     * list of online characters
-     * @param character the name of the character to update last tick
+     * Checks if a character is tracked as online
+     * @param character the character name
+     * @return true if character is online, false otherwise
+     */
+    public boolean isOnline(String character) {
+        return onlinePlayers.containsKey(character);
+    }
+
+    /**
+     * @return the number of players currently online
      */
-//    public void updatePlayerTick(String character) {
-//        for(int i = 0; i < onlinePlayers.size(); i++) {
-//            if(onlinePlayers.get(i).getName().equals(character))
-//                onlinePlayers.get(i).setLastTick(System.currentTimeMillis());
-//        }
-//    }
-
-//    /**
-//     * Getters and setters
-//     */
-//
-//    public ArrayList<PlayerState> getOnlinePlayers() {
-//        return onlinePlayers;
-//    }
-//
-//    public void setOnlinePlayers(ArrayList<PlayerState> onlinePlayers) {
-//        this.onlinePlayers = onlinePlayers;
-//    }
+    public int getOnlineCount() {
+        return onlinePlayers.size();
+    }
 }
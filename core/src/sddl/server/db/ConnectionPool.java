@@ -0,0 +1,148 @@
+package sddl.server.db;
+
+import com.mygdx.game.util.Config;
+
+import java.sql.SQLException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * Bounded pool of database connections. Connections are
+ * opened on demand up to {@link Config#svDbPoolSize} and
+ * reused afterwards. Connections idle for longer than
+ * {@link Config#svDbValidationInterval} are health checked
+ * before being handed out, and broken ones are replaced
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class ConnectionPool {
+
+    private DataSource ds; // data source that opens new connections
+    private LinkedBlockingQueue<PooledConnection> idle; // connections ready to be borrowed
+    private AtomicInteger open; // number of connections currently open
+    private AtomicInteger discarded; // number of connections discarded by health checks or errors
+
+    /**
+     * Creates pool that opens connections with data source received
+     * @param ds the data source of database connections
+     */
+    public ConnectionPool(DataSource ds) {
+        this.ds = ds;
+        this.idle = new LinkedBlockingQueue<PooledConnection>();
+        this.open = new AtomicInteger();
+        this.discarded = new AtomicInteger();
+    }
+
+    /**
+     * Borrows a connection from the pool. Opens a new connection if
+     * there is no idle one and pool is not full, otherwise waits for
+     * a connection to be released
+     * @return a healthy connection that must be released after use
+     * @throws SQLException if no connection could be obtained
+     */
+    public PooledConnection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + Config.svDbBorrowTimeout;
+
+        while(true) {
+            PooledConnection con = idle.poll();
+
+            // no idle connections, opens a new one if pool is not full
+            if(con == null && reserve()) {
+                try {
+                    return new PooledConnection(ds.getConnection());
+                } catch (SQLException e) {
+                    open.decrementAndGet(); // frees reserved room
+                    throw e;
+                }
+            }
+
+            // pool is full, waits for a released connection
+            if(con == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                try {
+                    if(remaining > 0)
+                        con = idle.poll(remaining, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if(con == null)
+                    throw new SQLException("Timeout waiting for a database connection");
+            }
+
+            // health checks connections that were idle for too long
+            if(System.currentTimeMillis() - con.getLastUsed() > Config.svDbValidationInterval && !con.isValid()) {
+                discard(con);
+                continue; // tries again with another connection
+            }
+
+            return con;
+        }
+    }
+
+    /**
+     * Releases a borrowed connection back to the pool,
+     * discarding it if it was marked as broken
+     * @param con the connection to release
+     */
+    public void release(PooledConnection con) {
+        if(con == null)
+            return;
+
+        if(con.isBroken()) {
+            discard(con);
+            return;
+        }
+
+        con.setLastUsed(System.currentTimeMillis());
+        idle.offer(con);
+    }
+
+    /**
+     * Closes every idle connection of the pool
+     */
+    public void close() {
+        PooledConnection con;
+        while((con = idle.poll()) != null) {
+            con.close();
+            open.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserves room for a new connection if pool is not full
+     * @return true if room was reserved, false if pool is full
+     */
+    private boolean reserve() {
+        while(true) {
+            int current = open.get();
+            if(current >= Config.svDbPoolSize)
+                return false;
+            if(open.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Closes connection and frees its room in the pool
+     * @param con the connection to discard
+     */
+    private void discard(PooledConnection con) {
+        con.close();
+        open.decrementAndGet();
+        discarded.incrementAndGet();
+    }
+
+    /**
+     * Getters for pool statistics
+     */
+
+    public int getOpen() {return open.get();}
+
+    public int getIdle() {return idle.size();}
+
+    public int getDiscarded() {return discarded.get();}
+}
@@ -0,0 +1,182 @@
+package sddl.server.db;
+
+import com.badlogic.gdx.utils.Base64Coder;
+import com.mygdx.game.util.Config;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Account passwords stored as salted PBKDF2 hashes
+ * (pbkdf2$iterations$salt$hash), verified by the server
+ * instead of matched by the database. Recent successful
+ * verifications are kept in a bounded LRU so reconnecting
+ * players do not pay the work factor again. Passwords stored
+ * in plain text by older versions are still accepted, and
+ * rehashed by the caller when {@link #needsRehash} says so
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class Credentials {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1"; // key derivation available since java 6
+    private static final String PREFIX = "pbkdf2"; // prefix of hashed passwords
+    private static final int SALT_BYTES = 16; // size of random salt of each password
+    private static final int HASH_BITS = 160; // size of derived hash
+
+    private static Credentials instance = null; // singleton instance
+
+    private SecureRandom random; // source of salts and cache key
+    private byte[] cacheKey; // secret mixed into cached fingerprints
+    private LinkedHashMap<String, String> verified; // fingerprint of last verification of each account (LRU)
+
+    private Credentials() {
+        random = new SecureRandom();
+        cacheKey = new byte[SALT_BYTES];
+        random.nextBytes(cacheKey);
+        // access ordered map to evict least recently verified accounts
+        verified = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > Config.svCredentialCacheSize;
+            }
+        };
+    }
+
+    public static synchronized Credentials getInstance() {
+        if(instance == null)
+            instance = new Credentials();
+        return instance;
+    }
+
+    /**
+     * Hashes a password with a new random salt
+     * and the configured work factor, to be stored
+     * @param password the password to hash
+     * @return the hashed password, null if hashing is not available
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int iterations = Config.svPasswordIterations;
+        byte[] hash = derive(password, salt, iterations);
+        if(hash == null)
+            return null;
+
+        return PREFIX + "$" + iterations + "$" + new String(Base64Coder.encode(salt)) +
+                "$" + new String(Base64Coder.encode(hash));
+    }
+
+    /**
+     * Verifies a password against the one stored for an account
+     * @param account   the account name
+     * @param password  the password received
+     * @param stored    the password stored for account
+     * @return true if password matches the stored one, false otherwise
+     */
+    public boolean verify(String account, String password, String stored) {
+        if(password == null || stored == null)
+            return false;
+
+        // same password verified recently against the same stored hash
+        String fingerprint = fingerprint(password, stored);
+        synchronized (verified) {
+            if(fingerprint != null && fingerprint.equals(verified.get(account)))
+                return true;
+        }
+
+        boolean match;
+        if(stored.startsWith(PREFIX + "$")) {
+            String[] parts = stored.split("\\$");
+            try {
+                byte[] salt = Base64Coder.decode(parts[2]);
+                byte[] expected = Base64Coder.decode(parts[3]);
+                byte[] hash = derive(password, salt, Integer.parseInt(parts[1]));
+                match = hash != null && MessageDigest.isEqual(hash, expected);
+            } catch (RuntimeException e) {
+                System.err.println("Malformed password hash of account " + account);
+                return false;
+            }
+        } else // plain text password of older versions
+            match = MessageDigest.isEqual(bytes(password), bytes(stored));
+
+        if(match && fingerprint != null) {
+            synchronized (verified) {
+                verified.put(account, fingerprint);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Checks if a stored password should be hashed again, for
+     * being plain text or hashed with another work factor
+     * @param stored the password stored
+     * @return true if password should be hashed again, false otherwise
+     */
+    public boolean needsRehash(String stored) {
+        return !stored.startsWith(PREFIX + "$" + Config.svPasswordIterations + "$");
+    }
+
+    /**
+     * Forgets the recent verification of an account,
+     * when its password changes or account is removed
+     * @param account the account name
+     */
+    public void forget(String account) {
+        synchronized (verified) {
+            verified.remove(account);
+        }
+    }
+
+    /**
+     * Derives the hash of a password
+     * @param password      the password
+     * @param salt          the salt of password
+     * @param iterations    the work factor
+     * @return the derived hash, null if derivation is not available
+     */
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            System.err.println("Could not hash password: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Fast keyed digest of a password and the stored hash
+     * it matched, kept instead of the password itself
+     */
+    private String fingerprint(String password, String stored) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(cacheKey);
+            digest.update(bytes(stored));
+            digest.update((byte) 0);
+            digest.update(bytes(password));
+            return new String(Base64Coder.encode(digest.digest()));
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,152 +1,298 @@
 package sddl.server.db;
 
 
+import com.badlogic.gdx.utils.IntArray;
 import com.mygdx.game.messages.MessageFlag;
+import com.mygdx.game.messages.MessageLogin;
+import com.mygdx.game.sensors.SensorCompact;
+import com.mygdx.game.states.game.standard.item.factory.Factory;
+import com.mygdx.game.states.game.standard.market.MarketFilter;
 import com.mygdx.game.states.game.standard.market.MarketItem;
-import com.sun.rowset.CachedRowSetImpl;
+import com.mygdx.game.util.Common;
 
-import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.sql.DataSource;
-import javax.sql.rowset.CachedRowSet;
+
+import sddl.server.metrics.Metrics;
 
 /**
  * Class that serves as bridge to help
- * server database manipulations
+ * server database manipulations. Uses a bounded
+ * pool of connections and parameterized statements
+ * that are prepared once per pooled connection
  *
  * @author  Pedro Sampaio
  * @since   1.5
  */
 public class DBHelper {
 
+    // number of names in each statement that sets players offline
+    private static final int OFFLINE_CHUNK = 32;
+
+    // statement that sets a chunk of players offline, always with the same text to reuse its prepared statement
+    private static final String OFFLINE_SQL = offlineSql();
+
     // factory of data source for db connection
     DataSource ds;
 
+    // pool of database connections
+    ConnectionPool pool;
+
+    // last inventory persisted of each character saved in this session
+    ConcurrentHashMap<String, PersistedInventory> persistedInventories;
+
     /**
      * DBHelper constructor creates data source connection data
      */
     public DBHelper() {
         ds = DataSourceFactory.getMySQLDataSource();
+        pool = new ConnectionPool(ds);
+        persistedInventories = new ConcurrentHashMap<String, PersistedInventory>();
+
+        // exposes connection pool usage as gauges
+        Metrics.getInstance().registerGauge("db.connections.open", new Metrics.Gauge() {
+            @Override
+            public long value() {return pool.getOpen();}
+        });
+        Metrics.getInstance().registerGauge("db.connections.idle", new Metrics.Gauge() {
+            @Override
+            public long value() {return pool.getIdle();}
+        });
     }
 
     /**
-     * Executes queries on database returning
-     * the result in a cached row set
+     * Executes queries on database handing each
+     * row of the result to the handler received
+     * @param op        the name of the database operation, for metrics
      * @param sqlQuery  the sql query to be executed on database
-     * @return the cached row set containing the results of the query received in parameter
+     * @param handler   the handler that will receive each row of the result
+     * @param params    the parameters to bind in the query, in order
+     * @return true if query was successfully executed, false if an error occurred
      */
-    private CachedRowSet query(String sqlQuery) {
-        Connection con = null;
-        Statement stmt = null;
+    private boolean query(String op, String sqlQuery, RowHandler handler, Object... params) {
+        PooledConnection con = null;
         ResultSet rs = null;
-        CachedRowSet rowSet = null;
+        long start = System.nanoTime();
+        boolean ok = false;
 
         try {
-            con = ds.getConnection();
-            stmt = con.createStatement();
-            rs = stmt.executeQuery(sqlQuery);
-            rowSet = new CachedRowSetImpl(); // stores
-            rowSet.populate(rs); // the result set in a cached row set to return it
+            con = pool.borrow();
+            PreparedStatement stmt = con.prepare(sqlQuery);
+            bind(stmt, params);
+            rs = stmt.executeQuery();
+            // streams rows to the handler until it asks to stop
+            while (rs.next()) {
+                if(!handler.handleRow(rs))
+                    break;
+            }
+            ok = true;
+            return true;
         } catch (SQLException e) {
+            markBroken(con, e);
             e.printStackTrace();
-        }finally{
+            return false;
+        } finally {
             try {
                 if(rs != null) rs.close();
-                if(stmt != null) stmt.close();
-                if(con != null) con.close();
             } catch (SQLException e) {
                 e.printStackTrace();
             }
+            pool.release(con);
+            Metrics.getInstance().recordDb(op, start, ok);
         }
+    }
+
+    /**
+     * Executes queries on database mapping each
+     * row of the result into a list of objects
+     * @param op        the name of the database operation, for metrics
+     * @param sqlQuery  the sql query to be executed on database
+     * @param mapper    the mapper that builds an object from each row
+     * @param params    the parameters to bind in the query, in order
+     * @return the list of mapped objects (empty if there are no results), null if an error occurred
+     */
+    private <T> ArrayList<T> queryList(String op, String sqlQuery, final RowMapper<T> mapper, Object... params) {
+        final ArrayList<T> list = new ArrayList<T>();
+
+        boolean ok = query(op, sqlQuery, new RowHandler() {
+            @Override
+            public boolean handleRow(ResultSet rs) throws SQLException {
+                list.add(mapper.mapRow(rs));
+                return true;
+            }
+        }, params);
+
+        return ok ? list : null;
+    }
+
+    /**
+     * Checks if query returns at least one row
+     * @param op        the name of the database operation, for metrics
+     * @param sqlQuery  the sql query to be executed on database
+     * @param params    the parameters to bind in the query, in order
+     * @return true if there are results, false if there are none, null if an error occurred
+     */
+    private Boolean exists(String op, String sqlQuery, Object... params) {
+        final boolean[] found = {false};
+
+        boolean ok = query(op, sqlQuery, new RowHandler() {
+            @Override
+            public boolean handleRow(ResultSet rs) throws SQLException {
+                found[0] = true;
+                return false; // one row is enough
+            }
+        }, params);
 
-        return rowSet;
+        return ok ? Boolean.valueOf(found[0]) : null;
     }
 
     /**
      * Executes operations on database which may be an INSERT, UPDATE,
      * or DELETE statement or an SQL statement that returns nothing, such as an SQL DDL statement.
+     * @param op        the name of the database operation, for metrics
      * @param sqlQuery  the sql query to be executed on database
+     * @param params    the parameters to bind in the query, in order
      * @return the number of lines affected (0 if none was affected, -1 if error occurred)
      */
-    private int execute(String sqlQuery) {
-        Connection con = null;
-        Statement stmt = null;
+    private int execute(String op, String sqlQuery, Object... params) {
+        PooledConnection con = null;
         int n_affected = -1;
+        long start = System.nanoTime();
 
         try {
-            con = ds.getConnection();
-            stmt = con.createStatement();
-            n_affected = stmt.executeUpdate(sqlQuery);
+            con = pool.borrow();
+            PreparedStatement stmt = con.prepare(sqlQuery);
+            bind(stmt, params);
+            n_affected = stmt.executeUpdate();
         } catch (SQLException e) {
+            markBroken(con, e);
             e.printStackTrace();
-        }finally{
-            try {
-                if(stmt != null) stmt.close();
-                if(con != null) con.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+        } finally {
+            pool.release(con);
+            Metrics.getInstance().recordDb(op, start, n_affected >= 0);
         }
 
         return n_affected;
     }
 
     /**
-     * Returns if account name is already taken or not
-     * @param account   the account name to check availability
-     * @return  true if account name is free, false otherwise
+     * Executes an INSERT statement on database and gets the key generated for the new row
+     * @param op        the name of the database operation, for metrics
+     * @param sqlQuery  the sql insert to be executed on database
+     * @param params    the parameters to bind in the query, in order
+     * @return the key generated for the inserted row, -1 if error occurred
      */
-    public boolean isAccountNameAvailable(String account) {
-        CachedRowSet rs = query("SELECT * FROM `accounts` WHERE name = '"+account+"'");
+    private int insert(String op, String sqlQuery, Object... params) {
+        PooledConnection con = null;
+        int key = -1;
+        long start = System.nanoTime();
+
         try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, account name is free to be created
-                return true;
+            con = pool.borrow();
+            PreparedStatement stmt = con.prepareInsert(sqlQuery);
+            bind(stmt, params);
+            if(stmt.executeUpdate() > 0) {
+                ResultSet rs = stmt.getGeneratedKeys();
+                try {
+                    if(rs.next())
+                        key = rs.getInt(1);
+                } finally {
+                    rs.close();
+                }
             }
         } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
+            markBroken(con, e);
             e.printStackTrace();
+        } finally {
+            pool.release(con);
+            Metrics.getInstance().recordDb(op, start, key >= 0);
         }
 
-        // otherwise, there are results so account name is not free
-        return false;
+        return key;
+    }
+
+    /**
+     * Binds parameters to prepared statement
+     * @param stmt      the statement to bind parameters
+     * @param params    the parameters to bind, in order
+     * @throws SQLException if a parameter could not be bound
+     */
+    private static void bind(PreparedStatement stmt, Object[] params) throws SQLException {
+        for(int i = 0; i < params.length; i++)
+            stmt.setObject(i + 1, params[i]);
+    }
+
+    /**
+     * Marks connection as broken in case of connection
+     * errors, so pool discards it on release
+     * @param con   the connection that raised the error
+     * @param e     the error raised
+     */
+    private static void markBroken(PooledConnection con, SQLException e) {
+        // SQL state class 08 represents connection exceptions
+        if(con != null && e.getSQLState() != null && e.getSQLState().startsWith("08"))
+            con.setBroken(true);
+    }
+
+    /**
+     * @return the pool of database connections
+     */
+    public ConnectionPool getPool() {return pool;}
+
+    /**
+     * Checks if account name is already taken or not
+     * @param account   the account name to check availability
+     * @return  OKIDOKI if account name is free, ACCOUNT_TAKEN if it is taken,
+     *          GENERAL_ERROR if it could not be checked
+     */
+    public MessageFlag checkAccountNameAvailable(String account) {
+        Boolean taken = exists("isAccountNameAvailable", "SELECT 1 FROM `accounts` WHERE name = ? LIMIT 1", account);
+
+        if(taken == null) // something went wrong
+            return MessageFlag.GENERAL_ERROR;
+
+        // if there are no results, account name is free to be created
+        return taken ? MessageFlag.ACCOUNT_TAKEN : MessageFlag.OKIDOKI;
     }
 
     /**
-     * Returns if character name is already taken or not
+     * Checks if character name is already taken or not
      * @param character   the character name to check availability
-     * @return  true if character name is free, false otherwise
+     * @return  OKIDOKI if character name is free, CHARACTER_NAME_TAKEN if it is taken,
+     *          GENERAL_ERROR if it could not be checked
      */
-    public boolean isCharacterNameAvailable(String character) {
-        CachedRowSet rs = query("SELECT * FROM `players` WHERE name = '"+character+"'");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, character name is free to be created
-                return true;
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-        }
+    public MessageFlag checkCharacterNameAvailable(String character) {
+        Boolean taken = exists("isCharacterNameAvailable", "SELECT 1 FROM `players` WHERE name = ? LIMIT 1", character);
+
+        if(taken == null) // something went wrong
+            return MessageFlag.GENERAL_ERROR;
 
-        // otherwise, there are results so character name is not free
-        return false;
+        // if there are no results, character name is free to be created
+        return taken ? MessageFlag.CHARACTER_NAME_TAKEN : MessageFlag.OKIDOKI;
     }
 
     /**
-     * Creates new account on database
+     * Creates new account on database, storing
+     * only the salted hash of its password
      * @param name   the account name
      * @param password the account password
      * @return  true if account was successfully created, false otherwise
      */
     public boolean createAccount(String name, String password) {
-        int lines = execute("INSERT INTO `accounts` (name, password) VALUES ('"+name+"', '"+password+"')");
+        String hash = Credentials.getInstance().hash(password);
+        if(hash == null) // hashing is not available
+            return false;
+
+        int lines = execute("createAccount", "INSERT INTO `accounts` (name, password) VALUES (?, ?)", name, hash);
 
         if(lines < 1) // something went wrong
             return false;
@@ -161,7 +307,8 @@ public class DBHelper {
      * @return  true if account was successfully removed, false otherwise
      */
     public boolean removeAccount(String name) {
-        int lines = execute("DELETE FROM `accounts` WHERE name = '"+name+"'");
+        int lines = execute("removeAccount", "DELETE FROM `accounts` WHERE name = ?", name);
+        Credentials.getInstance().forget(name);
 
         if(lines < 1) // something went wrong
             return false;
@@ -184,10 +331,10 @@ public class DBHelper {
      */
     public boolean createPlayer(String name, int worldMap, String accName, int level,
                                 long exp, int posx, int posy, long gold) {
-        int lines = execute("INSERT INTO `players` (name, world_map, account_id, level, " +
-                            "experience, posx, posy, gold) VALUES ('"+name+"', "+worldMap+", " +
-                            "(SELECT id from `accounts` WHERE name='"+accName+"'), "+level+", " +
-                            +exp+", "+posx+", "+posy+", "+gold+")");
+        int lines = execute("createPlayer", "INSERT INTO `players` (name, world_map, account_id, level, " +
+                            "experience, posx, posy, gold) VALUES (?, ?, " +
+                            "(SELECT id from `accounts` WHERE name = ?), ?, ?, ?, ?, ?)",
+                            name, worldMap, accName, level, exp, posx, posy, gold);
 
         if(lines < 1) // something went wrong
             return false;
@@ -197,221 +344,324 @@ public class DBHelper {
     }
 
     /**
-     * Updates player volatile data on database
-     * @param name      the character name of player that will be updated
+     * Saves all player data in a single transaction. Player id is
+     * resolved once per session and only inventory slots and equipment
+     * slots that changed since the last save are deleted and inserted,
+     * using batched statements. The first save of a session rewrites
+     * all items and equipments of the player
+     * @param name      the character name of player that will be saved
      * @param worldMap  the current world map ID of player
      * @param level     the current level of player
      * @param exp       the current amount of experience of player
      * @param posx      the current x position of player in current worldMap
      * @param posy      the current y position of player in current worldMap
      * @param gold      the current amount of gold of player
-     * @return  true if player was successfully updated, false otherwise
+     * @param items     the inventory items packed as {uid, level, slot} triples
+     * @param equips    the worn equipments packed as {uid, level, slot} triples
+     * @return  true if player was successfully saved, false otherwise
      */
-    public boolean updatePlayer(String name, int worldMap, int level,
-                                long exp, int posx, int posy, long gold) {
-        int lines = execute("UPDATE `players` SET world_map = "+worldMap+", level = "+level+", " +
-                            "experience = "+exp+", posx = "+posx+", posy = "+posy+"," +
-                            "gold = "+gold+", first_login = 0, online = true WHERE name = '"+name+"';");
-
-        if(lines < 1) // something went wrong
-            return false;
+    public boolean savePlayer(String name, int worldMap, int level, long exp, int posx, int posy,
+                              long gold, int[] items, int[] equips) {
+        PooledConnection con = null;
+        long start = System.nanoTime();
+        boolean ok = false;
+        PersistedInventory persisted = persistedInventories.get(name);
+        HashMap<Integer, Long> itemSlots = PersistedInventory.slots(items);
+        HashMap<Integer, Long> equipSlots = PersistedInventory.slots(equips);
 
-        // otherwise, everything is ok
-        return true;
-    }
-
-    /**
-     * Tries to login with given account name and password
-     * returning player information in case of success
-     * @param name      the account name
-     * @param password  the account password
-     * @return  the cached row set containing player information in case of success, null otherwise
-     */
-    public CachedRowSet login(String name, String password) {
-        // query db for a match in account name and password
-        CachedRowSet rs = query("SELECT * FROM `players` WHERE account_id = (SELECT id FROM " +
-                                "`accounts` WHERE name = '"+name+"' AND password = '"+password+"')");
         try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, account name and password did not match any entry
-                return null; // return null indicating it
+            con = pool.borrow();
+            con.getConnection().setAutoCommit(false);
+
+            // resolves player id only once per session
+            int playerId = persisted != null ? persisted.getPlayerId() : selectPlayerId(con, name);
+            if(playerId < 0)
+                throw new SQLException("Could not find character to save: " + name);
+
+            // updates player general data
+            PreparedStatement stmt = con.prepare("UPDATE `players` SET world_map = ?, level = ?, experience = ?, " +
+                                        "posx = ?, posy = ?, gold = ?, first_login = 0 WHERE id = ?");
+            bind(stmt, new Object[] {worldMap, level, exp, posx, posy, gold, playerId});
+            stmt.executeUpdate();
+
+            // without a previous save in this session, rewrites every slot
+            HashMap<Integer, Long> lastItems = new HashMap<Integer, Long>();
+            HashMap<Integer, Long> lastEquips = new HashMap<Integer, Long>();
+            if(persisted == null) {
+                stmt = con.prepare("DELETE FROM `player_items` WHERE player_id = ?");
+                stmt.setInt(1, playerId);
+                stmt.executeUpdate();
+                stmt = con.prepare("DELETE FROM `player_equipments` WHERE player_id = ?");
+                stmt.setInt(1, playerId);
+                stmt.executeUpdate();
+            } else {
+                lastItems = persisted.getItems();
+                lastEquips = persisted.getEquips();
             }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
-        }
 
-        // otherwise, return
-        return rs;
-    }
+            // deletes item slots that were emptied or changed
+            PreparedStatement delete = con.prepare("DELETE FROM `player_items` WHERE player_id = ? " +
+                                                    "AND page = ? AND idxi = ? AND idxj = ?");
+            int n = 0;
+            Iterator<Map.Entry<Integer, Long>> it = lastItems.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, Long> slot = it.next();
+                if(!slot.getValue().equals(itemSlots.get(slot.getKey()))) {
+                    int key = slot.getKey();
+                    delete.setInt(1, playerId);
+                    delete.setInt(2, Common.slotPage(key));
+                    delete.setInt(3, Common.slotI(key));
+                    delete.setInt(4, Common.slotJ(key));
+                    delete.addBatch();
+                    n++;
+                }
+            }
+            if(n > 0) delete.executeBatch();
+
+            // inserts item slots that were filled or changed
+            PreparedStatement insert = con.prepare("INSERT INTO `player_items` (uid, player_id, level, page, idxi, idxj) " +
+                                                    "VALUES (?, ?, ?, ?, ?, ?)");
+            n = 0;
+            it = itemSlots.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, Long> slot = it.next();
+                if(!slot.getValue().equals(lastItems.get(slot.getKey()))) {
+                    int key = slot.getKey();
+                    long content = slot.getValue();
+                    insert.setInt(1, (int) (content >>> 32));
+                    insert.setInt(2, playerId);
+                    insert.setInt(3, (int) content);
+                    insert.setInt(4, Common.slotPage(key));
+                    insert.setInt(5, Common.slotI(key));
+                    insert.setInt(6, Common.slotJ(key));
+                    insert.addBatch();
+                    n++;
+                }
+            }
+            if(n > 0) insert.executeBatch();
+
+            // deletes equipment slots that were emptied or changed
+            delete = con.prepare("DELETE FROM `player_equipments` WHERE player_id = ? AND slot = ?");
+            n = 0;
+            it = lastEquips.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, Long> slot = it.next();
+                if(!slot.getValue().equals(equipSlots.get(slot.getKey()))) {
+                    delete.setInt(1, playerId);
+                    delete.setInt(2, slot.getKey());
+                    delete.addBatch();
+                    n++;
+                }
+            }
+            if(n > 0) delete.executeBatch();
+
+            // inserts equipment slots that were filled or changed
+            insert = con.prepare("INSERT INTO `player_equipments` (uid, player_id, level, slot) VALUES (?, ?, ?, ?)");
+            n = 0;
+            it = equipSlots.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, Long> slot = it.next();
+                if(!slot.getValue().equals(lastEquips.get(slot.getKey()))) {
+                    long content = slot.getValue();
+                    insert.setInt(1, (int) (content >>> 32));
+                    insert.setInt(2, playerId);
+                    insert.setInt(3, (int) content);
+                    insert.setInt(4, slot.getKey());
+                    insert.addBatch();
+                    n++;
+                }
+            }
+            if(n > 0) insert.executeBatch();
 
-    /**
-     * Gets every item a character has in inventory (excluding worn equipments)
-     * @param character the character name to get items
-     * @return cached row set containing all items from character received in parameter,
-     *         null in case of empty entries
-     */
-    public CachedRowSet getPlayerItems(String character) {
-        CachedRowSet rs = query("SELECT * FROM `player_items` WHERE player_id = " +
-                "(SELECT id FROM players WHERE name = '"+character+"')");
+            con.getConnection().commit();
 
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, player has no items
-                return null; // return null indicating it
-            }
+            // stores what is now persisted to diff against on next save
+            PersistedInventory next = new PersistedInventory(playerId);
+            next.setItems(itemSlots);
+            next.setEquips(equipSlots);
+            persistedInventories.put(name, next);
+
+            ok = true;
+            return true;
         } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
+            System.err.println("Could not save character: " + name);
             e.printStackTrace();
-            return null;
+            // persisted state is unknown, next save rewrites everything
+            persistedInventories.remove(name);
+            markBroken(con, e);
+            rollback(con);
+            return false;
+        } finally {
+            if(con != null) {
+                try {
+                    con.getConnection().setAutoCommit(true);
+                } catch (SQLException e) {
+                    con.setBroken(true);
+                }
+            }
+            pool.release(con);
+            Metrics.getInstance().recordDb("savePlayer", start, ok);
         }
-
-        // otherwise, return
-        return rs;
     }
 
     /**
-     * Inserts items into character item database
-     * @param character the character name to insert items
-     * @param uid  the unique id of item to be added
-     * @param level the level of item to be added
-     * @param page the page from inventory of item to be added
-     * @param idxi the index i from inventory of item to be added
-     * @param idxj the index j from inventory of item to be added
-     * @return true if player item was successfully added, false otherwise
+     * Forgets the persisted inventory of a character,
+     * to be called when the character leaves the game
+     * @param name the character name
      */
-    public boolean addPlayerItem(String character, int uid, int level, int page, int idxi, int idxj) {
-        int lines = execute("INSERT INTO `player_items` (uid, player_id, level, page, idxi, idxj) " +
-                "VALUES ("+uid+", " + "(SELECT id from `players` WHERE name='"+character+"'), "
-                +level+", "+page+", "+idxi+", "+idxj+")");
-
-        if(lines < 1) // something went wrong
-            return false;
-
-        // otherwise, return
-        return true;
+    public void forgetPlayer(String name) {
+        persistedInventories.remove(name);
     }
 
     /**
-     * Resets player items by deleting all entries of player received in parameter
-     * @param character the character to delete all items from
-     * @return true if player items were successfully reset, false otherwise
+     * Selects the database id of a character
+     * @param con   the connection to use
+     * @param name  the character name
+     * @return the id of the character, -1 if it was not found
+     * @throws SQLException if query could not be executed
      */
-    public boolean resetPlayerItems(String character) {
-        int rowsDeleted = execute("DELETE FROM `player_items` WHERE player_id = " +
-                                    "(SELECT id FROM `players` where name = '"+character+"')");
-
-        // resets ID from table to not overflow indexes
-        execute("ALTER TABLE player_items AUTO_INCREMENT = 1;");
-
-        if(rowsDeleted < 0) // something went wrong
-            return false;
-
-        // otherwise, return
-        return true;
+    private static int selectPlayerId(PooledConnection con, String name) throws SQLException {
+        PreparedStatement stmt = con.prepare("SELECT id FROM `players` WHERE name = ?");
+        stmt.setString(1, name);
+        ResultSet rs = stmt.executeQuery();
+        try {
+            return rs.next() ? rs.getInt("id") : -1;
+        } finally {
+            rs.close();
+        }
     }
 
     /**
-     * Gets every equipment a character has equipped
-     * @param character the character name to get equipments
-     * @return cached row set containing all equipments from character received in parameter,
-     *         null in case of empty entries
+     * Rolls back the current transaction of a connection,
+     * discarding the connection if rollback fails
+     * @param con the connection to roll back
      */
-    public CachedRowSet getPlayerEquipments(String character) {
-        CachedRowSet rs = query("SELECT * FROM `player_equipments` WHERE player_id = " +
-                "(SELECT id FROM players WHERE name = '"+character+"')");
+    private static void rollback(PooledConnection con) {
+        if(con == null)
+            return;
 
         try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, player has no items
-                return null; // return null indicating it
-            }
+            con.getConnection().rollback();
         } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
+            con.setBroken(true);
         }
-
-        // otherwise, return
-        return rs;
     }
 
     /**
-     * Inserts equipments into character equipment database
-     * @param character the character name to insert equipment
-     * @param uid  the unique id of equipment to be added
-     * @param level the level of equipment to be added
-     * @param slot the equipment slot of the equipment to be added
-     * @return true if player equipment was successfully added, false otherwise
+     * Tries to login with given account name and password
+     * returning player information in case of success.
+     * Player general data, inventory items, worn equipments and
+     * completed missions are read in a single query by account
+     * name, one row per player, item, equipment or mission, in
+     * this order. Password is verified against the stored hash
+     * by the server, and plain text or outdated hashes are
+     * replaced by a hash with the current work factor
+     * @param name      the account name
+     * @param password  the account password
+     * @param missions  the map to fill with completed missions and their completion time
+     * @return  the login message filled with player information, inventory and
+     *          equipments packed as {uid, level, slot} triples in case of success, null otherwise
      */
-    public boolean addPlayerEquipment(String character, int uid, int level, int slot) {
-        int lines = execute("INSERT INTO `player_equipments` (uid, player_id, level, slot) " +
-                "VALUES ("+uid+", " + "(SELECT id from `players` WHERE name='"+character+"'), "
-                +level+", "+slot+")");
+    public MessageLogin login(String name, String password, final HashMap<Integer, Timestamp> missions) {
+        final MessageLogin loginMsg = new MessageLogin(name, password);
+        final String[] stored = {null}; // password stored for account
+        final IntArray items = new IntArray(Common.PACKED_STRIDE * 16); // inventory items data
+        final IntArray equips = new IntArray(Common.PACKED_STRIDE * 8); // worn equipments data
+
+        // query db for account stored password, with all player data
+        boolean ok = query("login", "SELECT 0 AS kind, a.password, p.name, p.world_map, p.level, p.experience, " +
+                "p.posx, p.posy, p.gold, p.first_login, 0 AS uid, 0 AS item_level, 0 AS page, 0 AS idxi, 0 AS idxj, " +
+                "0 AS slot, NULL AS completed_at " +
+                "FROM `accounts` a JOIN `players` p ON p.account_id = a.id WHERE a.name = ? " +
+                "UNION ALL SELECT 1, NULL, NULL, 0, 0, 0, 0, 0, 0, 0, i.uid, i.level, i.page, i.idxi, i.idxj, 0, NULL " +
+                "FROM `accounts` a JOIN `players` p ON p.account_id = a.id " +
+                "JOIN `player_items` i ON i.player_id = p.id WHERE a.name = ? " +
+                "UNION ALL SELECT 2, NULL, NULL, 0, 0, 0, 0, 0, 0, 0, e.uid, e.level, 0, 0, 0, e.slot, NULL " +
+                "FROM `accounts` a JOIN `players` p ON p.account_id = a.id " +
+                "JOIN `player_equipments` e ON e.player_id = p.id WHERE a.name = ? " +
+                "UNION ALL SELECT 3, NULL, NULL, 0, 0, 0, 0, 0, 0, 0, m.mission_id, 0, 0, 0, 0, 0, m.timestamp " +
+                "FROM `accounts` a JOIN `players` p ON p.account_id = a.id " +
+                "JOIN `mission_storage` m ON m.player_id = p.id WHERE a.name = ? " +
+                "ORDER BY kind", new RowHandler() {
+            @Override
+            public boolean handleRow(ResultSet rs) throws SQLException {
+                switch(rs.getInt("kind")) {
+                    case 0: // gather all player general info into login message
+                        stored[0] = rs.getString("password");
+                        loginMsg.setCharacter(rs.getString("name"));
+                        loginMsg.setWorldMap(rs.getInt("world_map"));
+                        loginMsg.setLevel(rs.getInt("level"));
+                        loginMsg.setExperience(rs.getLong("experience"));
+                        loginMsg.setPosx(rs.getInt("posx"));
+                        loginMsg.setPosy(rs.getInt("posy"));
+                        loginMsg.setGold(rs.getLong("gold"));
+                        loginMsg.setFirstLogin(rs.getBoolean("first_login"));
+                        break;
+                    case 1: // packs inventory item
+                        items.add(rs.getInt("uid"));
+                        items.add(rs.getInt("item_level"));
+                        items.add(Common.packSlot(rs.getInt("page"), rs.getInt("idxi"), rs.getInt("idxj")));
+                        break;
+                    case 2: // packs worn equipment
+                        equips.add(rs.getInt("uid"));
+                        equips.add(rs.getInt("item_level"));
+                        equips.add(rs.getInt("slot"));
+                        break;
+                    default: // stores completed mission
+                        missions.put(rs.getInt("uid"), rs.getTimestamp("completed_at"));
+                        break;
+                }
+                return true;
+            }
+        }, name, name, name, name);
 
-        if(lines < 1) // something went wrong
-            return false;
+        // account name and password did not match any entry (or an error occurred)
+        if(!ok || !Credentials.getInstance().verify(name, password, stored[0])) {
+            missions.clear();
+            return null; // return null indicating it
+        }
 
-        // otherwise, return
-        return true;
+        // replaces plain text or outdated hash of account password
+        if(Credentials.getInstance().needsRehash(stored[0]))
+            rehashPassword(name, password);
+
+        // otherwise, return with packed inventory and equipments
+        loginMsg.setInventory(items.toArray());
+        loginMsg.setEquipment(equips.toArray());
+        return loginMsg;
     }
 
     /**
-     * Resets player equipments by deleting all entries of player received in parameter
-     * @param character the character to delete all equipments from
-     * @return true if player equipments were successfully reset, false otherwise
+     * Stores password of account hashed with the current work factor
+     * @param name      the account name
+     * @param password  the account password, already verified
      */
-    public boolean resetPlayerEquipments(String character) {
-        int rowsDeleted = execute("DELETE FROM `player_equipments` WHERE player_id = " +
-                "(SELECT id FROM `players` where name = '"+character+"')");
-
-        // resets ID from table to not overflow indexes
-        execute("ALTER TABLE player_equipments AUTO_INCREMENT = 1;");
-
-        if(rowsDeleted < 0) // something went wrong
-            return false;
-
-        // otherwise, return
-        return true;
+    private void rehashPassword(String name, String password) {
+        String hash = Credentials.getInstance().hash(password);
+        if(hash != null && execute("rehashPassword", "UPDATE `accounts` SET password = ? WHERE name = ?",
+                hash, name) > 0)
+            Credentials.getInstance().forget(name);
     }
 
     /**
-     * Checks if a character is online
-     * @param character the character name to check if it is online
-     * @return true if player is online, false otherwise (or if there was a problem)
+     * Sets a character online only if it is offline, so
+     * concurrent logins of the same character can not both succeed
+     * @param character the character name to set online
+     * @return message flag containing the flag result of this operation
      */
-    public boolean isCharacterOnline(String character) {
-        CachedRowSet rs = query("SELECT online FROM `players` WHERE name = '"+character+"'");
+    public MessageFlag claimOnlineStatus(String character) {
+        int lines = execute("claimOnlineStatus", "UPDATE `players` SET online = 1 WHERE name = ? AND online = 0", character);
 
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, player was not found
-                return false; // return false indicating it
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return false;
+        if(lines < 0) { // something went wrong
+            System.err.println("Error updating character online data: "+ character);
+            return MessageFlag.GENERAL_ERROR;
         }
 
-        boolean online = false;
-        try {
-            while (rs.next()) {
-                online = rs.getBoolean("online");
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading character online data: "+ character);
-            e.printStackTrace();
-            return false;
-        }
+        // character was online already
+        if(lines == 0)
+            return MessageFlag.CHARACTER_ALREADY_ONLINE;
 
-        // otherwise, return
-        return online;
+        return MessageFlag.OKIDOKI;
     }
 
     /**
@@ -421,7 +671,7 @@ public class DBHelper {
      * @return  true if player was successfully updated, false otherwise
      */
     public boolean updatePlayerOnlineStatus(String name, boolean online) {
-        int lines = execute("UPDATE `players` SET online = "+online+" WHERE name = '"+name+"'");
+        int lines = execute("updatePlayerOnlineStatus", "UPDATE `players` SET online = ? WHERE name = ?", online, name);
 
         if(lines < 1) // something went wrong
             return false;
@@ -430,12 +680,44 @@ public class DBHelper {
         return true;
     }
 
+    /**
+     * Updates online status of characters to offline, in statements
+     * of {@link #OFFLINE_CHUNK} names. The last chunk is padded by
+     * repeating its last name, so every call reuses the same
+     * prepared statement whatever the number of names
+     * @param names the character names of players that went offline
+     * @return true if players were successfully updated, false otherwise
+     */
+    public boolean setPlayersOffline(ArrayList<String> names) {
+        boolean ok = true;
+        Object[] params = new Object[OFFLINE_CHUNK];
+        for(int start = 0; start < names.size(); start += OFFLINE_CHUNK) {
+            for(int i = 0; i < OFFLINE_CHUNK; i++)
+                params[i] = names.get(Math.min(start + i, names.size() - 1));
+
+            // something went wrong
+            if(execute("setPlayersOffline", OFFLINE_SQL, params) < 0)
+                ok = false;
+        }
+        return ok;
+    }
+
+    /**
+     * @return the statement that sets {@link #OFFLINE_CHUNK} players offline
+     */
+    private static String offlineSql() {
+        StringBuilder sql = new StringBuilder("UPDATE `players` SET online = 0 WHERE name IN (?");
+        for(int i = 1; i < OFFLINE_CHUNK; i++)
+            sql.append(", ?");
+        return sql.append(')').toString();
+    }
+
     /**
      * Reset online status of all players to offline
      * @return true if status was successfully reset, false otherwise
      */
     public boolean resetOnlineStatus() {
-        int lines = execute("UPDATE players SET online = 0");
+        int lines = execute("resetOnlineStatus", "UPDATE players SET online = 0");
 
         if(lines < 1) // something went wrong
             return false;
@@ -445,86 +727,143 @@ public class DBHelper {
     }
 
     /**
-     * Gets ranking of players by retrieving list of players
+     * Gets ranking of players by streaming the list of players
      * in order of their gained experience (thus, their levels)
-     * @return  the cached row set containing ranking information in case of success, null otherwise
+     * @param handler the handler that will receive each ranking row (name, level)
+     * @return  true if ranking was successfully read, false otherwise
      */
-    public CachedRowSet getRanking() {
+    public boolean getRanking(RowHandler handler) {
         // query db for getting descending order of players based on their experience
-        CachedRowSet rs = query("SELECT name,level FROM `players` ORDER BY experience DESC");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, there are no players in game yet
-                return null; // return null indicating it
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
-        }
-
-        // otherwise, return
-        return rs;
+        return query("getRanking", "SELECT name,level,experience FROM `players` ORDER BY experience DESC", handler);
     }
 
     /**
-     * Retrieves all items being sold in market
-     * excluding the ones being sold by client player character
+     * Retrieves a page of items being sold in market
+     * excluding the ones being sold by client player character.
+     * Pages are delimited by the last item of previous page,
+     * so each page is a range read of the market indexes
      * @param character the name of client character
-     * @return the cached row set containing market items information in case of success, null otherwise
+     * @param filter    the filter and sort order of items, null for all items by item order
+     * @param after     the last item of previous page, null for first page
+     * @param limit     the maximum number of items to retrieve
+     * @return the list of market items being sold (empty if there are none), null in case of error
      */
-    public CachedRowSet retrieveMarketItems(String character) {
-        // query db to get all entries of market items except the ones being sold by client character
-        CachedRowSet rs = query("SELECT  market.*, players.name FROM `market` " +
-                "JOIN players ON market.player_id = players.id WHERE player_id != " +
-                "(SELECT id FROM `players` where name = '"+character+"') AND sold = 0");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, there are no items being sold at the moment that d
-                return null; // return null indicating it
+    public ArrayList<MarketItem> retrieveMarketItems(String character, MarketFilter filter, MarketItem after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT market.*, players.name FROM `market` " +
+                "JOIN players ON market.player_id = players.id WHERE market.player_id != " +
+                "(SELECT id FROM `players` where name = ?) AND market.sold = 0");
+        ArrayList<Object> params = new ArrayList<Object>();
+        params.add(character);
+
+        // filter criteria
+        MarketFilter.Sort sort = MarketFilter.Sort.ITEM;
+        if(filter != null) {
+            if(filter.getSort() != null)
+                sort = filter.getSort();
+            if(filter.getUid() != MarketFilter.ANY) {
+                sql.append(" AND market.uid = ?");
+                params.add(filter.getUid());
+            }
+            if(filter.getSlot() != null) {
+                sql.append(" AND market.uid >= ? AND market.uid < ?");
+                params.add(Factory.getFirstID(filter.getSlot()));
+                params.add(Factory.getEndID(filter.getSlot()));
+            }
+            if(filter.getQuality() != null) {
+                sql.append(" AND market.quality = ?");
+                params.add(filter.getQuality().ordinal());
+            }
+            if(filter.getMinLevel() != MarketFilter.ANY) {
+                sql.append(" AND market.level >= ?");
+                params.add(filter.getMinLevel());
+            }
+            if(filter.getMaxLevel() != MarketFilter.ANY) {
+                sql.append(" AND market.level <= ?");
+                params.add(filter.getMaxLevel());
+            }
+            if(filter.getMinPrice() != MarketFilter.ANY) {
+                sql.append(" AND market.price >= ?");
+                params.add(filter.getMinPrice());
+            }
+            if(filter.getMaxPrice() != MarketFilter.ANY) {
+                sql.append(" AND market.price <= ?");
+                params.add(filter.getMaxPrice());
             }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
         }
 
-        // otherwise, return
-        return rs;
+        // starts page after last item of previous page, in sort order
+        switch(sort) {
+            case PRICE_ASC:
+                if(after != null) {
+                    sql.append(" AND (market.price, market.id) > (?, ?)");
+                    params.add(after.getPrice());
+                    params.add(after.getMid());
+                }
+                sql.append(" ORDER BY market.price, market.id");
+                break;
+            case PRICE_DESC:
+                if(after != null) {
+                    sql.append(" AND (market.price, market.id) < (?, ?)");
+                    params.add(after.getPrice());
+                    params.add(after.getMid());
+                }
+                sql.append(" ORDER BY market.price DESC, market.id DESC");
+                break;
+            case NEWEST:
+                if(after != null) {
+                    sql.append(" AND market.id < ?");
+                    params.add(after.getMid());
+                }
+                sql.append(" ORDER BY market.id DESC");
+                break;
+            default:
+                if(after != null) {
+                    sql.append(" AND (market.uid, market.quality, market.level, market.price, market.id) > (?, ?, ?, ?, ?)");
+                    params.add(after.getUid());
+                    params.add(after.getQuality() == null ? -1 : after.getQuality().ordinal());
+                    params.add(after.getLevel());
+                    params.add(after.getPrice());
+                    params.add(after.getMid());
+                }
+                sql.append(" ORDER BY market.uid, market.quality, market.level, market.price, market.id");
+                break;
+        }
+        sql.append(" LIMIT ?");
+        params.add(limit);
+
+        // query db to get page of market items
+        return queryList("retrieveMarketItems", sql.toString(), ResultMappers.MARKET_ITEM, params.toArray());
+    }
+
+    /**
+     * Retrieves all market entries, sold or not, with their seller names
+     * @return the list of market entries (empty if there are none), null in case of error
+     */
+    public ArrayList<MarketItem> retrieveAllMarketEntries() {
+        return queryList("retrieveAllMarketEntries", "SELECT market.*, players.name FROM `market` " +
+                "JOIN players ON market.player_id = players.id", ResultMappers.MARKET_ITEM);
     }
 
     /**
      * Execute operations to buy market items
-     * if items were not bought yet
+     * if items were not bought yet. Availability is checked
+     * in the same statement that marks item as sold, so
+     * concurrent buyers can not buy the same item twice
      * @param mid the market id of item to be bought
      * @return message flag containing the flag result of this operation
      */
     public MessageFlag buyMarketItem(int mid) {
-        // query availability of market item
-        CachedRowSet rs = query("SELECT sold FROM `market` WHERE id = "+mid+"");
+        // marks item as sold only if it was not sold yet
+        int lines = execute("buyMarketItem", "UPDATE `market` SET sold = 1 WHERE id = ? AND sold = 0", mid);
 
-        boolean sold = false;
-        try {
-            while (rs.next()) {
-                sold = rs.getBoolean("sold"); // gets sold flag
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading market item data of id: "+ mid);
-            e.printStackTrace();
+        if(lines < 0) { // something went wrong
+            System.err.println("Error updating market item data of id: "+ mid);
             return MessageFlag.GENERAL_ERROR; // returns general error flag
         }
 
-        // if item was already sold, return flag representing it
-        if(sold)
+        // if no item was updated, item was already sold (or removed)
+        if(lines == 0)
             return MessageFlag.ITEM_ALREADY_BOUGHT;
-        else { // if not sold, update status to sold as it will be bought by client request
-            int lines = execute("UPDATE `market` SET sold = 1 WHERE id = "+mid+"");
-
-            if(lines < 1) // something went wrong
-                return MessageFlag.GENERAL_ERROR;
-        }
 
         // return ok flag
         return MessageFlag.OKIDOKI;
@@ -533,22 +872,25 @@ public class DBHelper {
     /**
      * Register an item to be sold in market item
      * by adding the entry to the market item db table
-     * @param item the item to be added to the list of market items being sold
+     * @param item the item to be added to the list of market items being sold,
+     *             receives the market id generated for it
      * @return message flag containing the flag result of this operation
      */
     public MessageFlag registerMarketItem(MarketItem item) {
         // execute insert into database market table
-        int lines = execute("INSERT INTO `market` (uid, player_id, level, price, quality, sold) " +
-                "VALUES ("+item.getUid()+",(SELECT id from `players` WHERE name='"+item.getSeller()+"'), "
-                +item.getLevel()+", "+item.getPrice()+", "+item.getQuality().ordinal()+" , 0)");
+        int mid = insert("registerMarketItem", "INSERT INTO `market` (uid, player_id, level, price, quality, sold) " +
+                "VALUES (?, (SELECT id from `players` WHERE name = ?), ?, ?, ?, 0)",
+                item.getUid(), item.getSeller(), item.getLevel(), item.getPrice(), item.getQuality().ordinal());
 
-        if(lines < 1) // something went wrong
+        if(mid < 0) // something went wrong
             return MessageFlag.GENERAL_ERROR; // return general error flag
 
+        item.setMid(mid); // item is now identified by its market id
+
         // deletes item entry from player items in database table as it has been put in market
-        int rowsDeleted = execute("DELETE FROM `player_items` WHERE player_id = " +
-                "(SELECT id FROM `players` WHERE name = '"+item.getSeller()+"') AND " +
-                "page = "+item.getPage()+" AND idxi = "+item.getIdxI()+" AND idxj = "+item.getIdxJ()+"");
+        int rowsDeleted = execute("registerMarketItem", "DELETE FROM `player_items` WHERE player_id = " +
+                "(SELECT id FROM `players` WHERE name = ?) AND page = ? AND idxi = ? AND idxj = ?",
+                item.getSeller(), item.getPage(), item.getIdxI(), item.getIdxJ());
 
         // otherwise, return ok flag
         return MessageFlag.OKIDOKI;
@@ -560,10 +902,10 @@ public class DBHelper {
      * @return message flag containing the flag result of this operation
      */
     public MessageFlag removeItemFromMarket(int mid) {
-        // deletes item entry from market
-        int rowsDeleted = execute("DELETE FROM `market` WHERE id = " + mid);
+        // deletes item entry from market, only if it was not sold meanwhile
+        int rowsDeleted = execute("removeItemFromMarket", "DELETE FROM `market` WHERE id = ? AND sold = 0", mid);
 
-        if(rowsDeleted < 0) // something went wrong (item was not there anymore, sold already)
+        if(rowsDeleted < 1) // something went wrong (item was not there anymore, sold already)
             return MessageFlag.ITEM_ALREADY_SOLD; // return flag representing that item was already sold
 
         return MessageFlag.OKIDOKI; // return flag representing that remove operation was successful
@@ -572,27 +914,12 @@ public class DBHelper {
     /**
      * Retrieves all items being sold in market by client player
      * @param character the name of client character
-     * @return the cached row set containing market items information in case of success,
-     *          null if no items are sold by player or sql error happens
+     * @return the list of market items sold by player (empty if there are none), null in case of error
      */
-    public CachedRowSet retrieveMarketListings(String character) {
+    public ArrayList<MarketItem> retrieveMarketListings(String character) {
         // query db to get all entries of market items sold by client character
-        CachedRowSet rs = query("SELECT * FROM `market` WHERE player_id = " +
-                "(SELECT id FROM `players` where name = '"+character+"')");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, there are no items being sold at the moment that by client player
-                return null; // return null indicating it
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
-        }
-
-        // otherwise, return
-        return rs;
+        return queryList("retrieveMarketListings", "SELECT * FROM `market` WHERE player_id = " +
+                "(SELECT id FROM `players` where name = ?)", ResultMappers.marketListing(character), character);
     }
 
     /**
@@ -601,10 +928,10 @@ public class DBHelper {
      * @return message flag containing the flag result of this operation
      */
     public MessageFlag collectItemFromMarket(int mid) {
-        // deletes item entry from market
-        int rowsDeleted = execute("DELETE FROM `market` WHERE id = " + mid);
+        // deletes item entry from market, only if it was sold
+        int rowsDeleted = execute("collectItemFromMarket", "DELETE FROM `market` WHERE id = ? AND sold = 1", mid);
 
-        if(rowsDeleted < 0) // something went wrong (item was not there anymore, collected already)
+        if(rowsDeleted < 1) // something went wrong (item was not there anymore, collected already)
             return MessageFlag.ITEM_ALREADY_COLLECTED; // return flag representing that item was already sold
 
         return MessageFlag.OKIDOKI; // return flag representing that remove operation was successful
@@ -614,63 +941,44 @@ public class DBHelper {
      * Gets missions completed by player.
      *
      * @param character the name of client character
-     * @return the cached row set containing missions completed by the player in case of success,
-     *          empty row set if player has not completed any missions yet or null if sql error happens
+     * @return the map of missions completed by the player and their timestamps in case of success,
+     *          empty map if player has not completed any missions yet or null if sql error happens
      */
-    public CachedRowSet getPlayerCompletedMissions(String character) {
+    public HashMap<Integer, Timestamp> getPlayerCompletedMissions(String character) {
+        HashMap<Integer, Timestamp> missions = new HashMap<Integer, Timestamp>();
+
         // query db to get mission entry by client character
-        CachedRowSet rs = query("SELECT * FROM `mission_storage` WHERE player_id = " +
-                                "(SELECT id FROM `players` where name = '"+character+"')");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, player has not done any mission yet
-                return rs; // return null indicating it
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
-        }
+        boolean ok = query("getPlayerCompletedMissions", "SELECT * FROM `mission_storage` WHERE player_id = " +
+                                "(SELECT id FROM `players` where name = ?)",
+                                ResultMappers.missionsInto(missions), character);
 
         // otherwise, return missions data
-        return rs;
+        return ok ? missions : null;
     }
 
     /**
      * Gets existing sensors data in server db
      *
-     * @return the cached row set containing sensors data in case of success,
+     * @return the list of sensors in case of success,
      *          null if an error has occurred
      */
-    public CachedRowSet getSensors() {
+    public ArrayList<SensorCompact> getSensors() {
         // query db to get existing sensors data
-        CachedRowSet rs = query("SELECT * FROM `sensors`");
-        try {
-            // if cached row set is empty, isBeforeFirst is false
-            if (!rs.isBeforeFirst() ) {
-                // in this case, there are no sensors registered
-                return null; // return null indicating it
-            }
-        } catch (SQLException e) {
-            System.err.println("Error reading sql row set");
-            e.printStackTrace();
-            return null;
-        }
-
-        // otherwise, return missions data
-        return rs;
+        return queryList("getSensors", "SELECT * FROM `sensors`", ResultMappers.SENSOR);
     }
 
     /**
-     * Inserts mission completion record into mission storage database
+     * Inserts mission completion record into mission storage database,
+     * updating completion time if mission was completed before
      * @param character the character name of player that completed mission
      * @param mission_id  the mission id of the completed mission
+     * @param timestamp   the time of completion
      * @return true if mission was successfully added, false otherwise
      */
-    public boolean completeMission(String character, int mission_id) {
-        int lines = execute("INSERT INTO `mission_storage` (mission_id, player_id, timestamp) " +
-                "VALUES ("+mission_id+", (SELECT id from `players` WHERE name='"+character+"'), NULL)");
+    public boolean completeMission(String character, int mission_id, Timestamp timestamp) {
+        int lines = execute("completeMission", "INSERT INTO `mission_storage` (mission_id, player_id, timestamp) " +
+                "VALUES (?, (SELECT id from `players` WHERE name = ?), ?) " +
+                "ON DUPLICATE KEY UPDATE timestamp = VALUES(timestamp)", mission_id, character, timestamp);
 
         if(lines < 1) // something went wrong
             return false;
@@ -679,24 +987,146 @@ public class DBHelper {
         return true;
     }
 
-
     /**
-     * Registers in the database sensors obtained inputs,
-     * via automatic sensing or player sensing
-     * @param sensor_id     the id of the sensor responsible for collecting the data
-     * @param input_type    the type of this input
-     * @param input_name    the name of this input
-     * @param input_data    the data of this input
+     * Registers in the database a batch of sensors obtained inputs,
+     * via automatic sensing or player sensing. Numeric samples and
+     * text inputs are each written with a single batched statement
+     * in one transaction, together with the minute and hour rollups
+     * of the numeric samples
+     * @param batch the batch of sensor readings to register
      * @return true if everything went ok on database registration, false otherwise
      */
-    public boolean registerSensorInput(String sensor_id, String input_type, String input_name, String input_data) {
-        int lines = execute("INSERT INTO `sensors_input` (sensor_id, input_type, input_name, input_data, timestamp) " +
-                "VALUES ('"+sensor_id+"','"+input_type+"','"+input_name+"','"+input_data+"',NULL)");
+    public boolean registerSensorBatch(SensorBatch batch) {
+        PooledConnection con = null;
+        long start = System.nanoTime();
+        boolean ok = false;
 
-        if(lines < 1) // something went wrong
+        try {
+            con = pool.borrow();
+            con.getConnection().setAutoCommit(false);
+
+            if(batch.getSamples() > 0) {
+                PreparedStatement stmt = con.prepare("INSERT INTO `sensors_sample` " +
+                        "(sensor_id, sensor_name, idx, value, time_ms) VALUES (?, ?, ?, ?, ?)");
+                for(int i = 0; i < batch.getSamples(); i++) {
+                    stmt.setString(1, batch.getSampleSensor(i));
+                    stmt.setString(2, batch.getSampleName(i));
+                    stmt.setInt(3, batch.getSampleIndex(i));
+                    stmt.setDouble(4, batch.getSampleValue(i));
+                    stmt.setLong(5, batch.getSampleTime(i));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                // aggregates samples into rollups of each resolution
+                stmt = con.prepare("INSERT INTO `sensors_rollup` " +
+                        "(sensor_id, sensor_name, idx, resolution, bucket, count, sum, min, max) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                        "count = count + VALUES(count), sum = sum + VALUES(sum), " +
+                        "min = LEAST(min, VALUES(min)), max = GREATEST(max, VALUES(max))");
+                for(SensorRollup.Resolution resolution : SensorRollup.Resolution.values()) {
+                    ArrayList<SensorRollup> rollups = batch.rollup(resolution);
+                    for(int i = 0; i < rollups.size(); i++) {
+                        SensorRollup rollup = rollups.get(i);
+                        stmt.setString(1, rollup.getSensorId());
+                        stmt.setString(2, rollup.getSensorName());
+                        stmt.setInt(3, rollup.getIndex());
+                        stmt.setInt(4, resolution.ordinal());
+                        stmt.setLong(5, rollup.getBucket());
+                        stmt.setLong(6, rollup.getCount());
+                        stmt.setDouble(7, rollup.getSum());
+                        stmt.setDouble(8, rollup.getMin());
+                        stmt.setDouble(9, rollup.getMax());
+                        stmt.addBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+
+            if(batch.getInputs() > 0) {
+                PreparedStatement stmt = con.prepare("INSERT INTO `sensors_input` " +
+                        "(sensor_id, input_type, input_name, input_data, timestamp) VALUES (?, ?, ?, ?, ?)");
+                for(int i = 0; i < batch.getInputs(); i++) {
+                    stmt.setString(1, batch.getInputSensor(i));
+                    stmt.setString(2, batch.getInputType(i));
+                    stmt.setString(3, batch.getInputName(i));
+                    stmt.setString(4, batch.getInputData(i));
+                    stmt.setTimestamp(5, new Timestamp(batch.getInputTime(i)));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            con.getConnection().commit();
+            ok = true;
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Could not register sensor batch of " + batch.getSamples() +
+                                " samples and " + batch.getInputs() + " inputs");
+            e.printStackTrace();
+            markBroken(con, e);
+            rollback(con);
             return false;
+        } finally {
+            if(con != null) {
+                try {
+                    con.getConnection().setAutoCommit(true);
+                } catch (SQLException e) {
+                    con.setBroken(true);
+                }
+            }
+            pool.release(con);
+            Metrics.getInstance().recordDb("registerSensorBatch", start, ok);
+        }
+    }
 
-        // otherwise, return
-        return true;
+    /**
+     * Retrieves the rollups of a sensor within a time range
+     * @param sensorId      the id of the sensor
+     * @param sensorName    the sensor name (or input name)
+     * @param resolution    the resolution of the rollups
+     * @param from          the start of range in ms (inclusive)
+     * @param to            the end of range in ms (exclusive)
+     * @return the rollups of the sensor ordered by value index and bucket, null if an error occurred
+     */
+    public ArrayList<SensorRollup> retrieveSensorRollups(String sensorId, String sensorName,
+                                                         SensorRollup.Resolution resolution, long from, long to) {
+        return queryList("retrieveSensorRollups", "SELECT * FROM `sensors_rollup` WHERE sensor_id = ? AND sensor_name = ? " +
+                        "AND resolution = ? AND bucket >= ? AND bucket < ? ORDER BY idx, bucket",
+                        ResultMappers.SENSOR_ROLLUP, sensorId, sensorName, resolution.ordinal(),
+                        resolution.bucketOf(from), to);
+    }
+
+    /**
+     * Deletes sensor samples and rollups older than their retention.
+     * Rows are deleted in chunks, so locks are held only briefly
+     * @param rawCutoff     time in ms before which raw samples are deleted
+     * @param minuteCutoff  time in ms before which minute rollups are deleted
+     * @param hourCutoff    time in ms before which hour rollups are deleted
+     * @param chunk         the maximum number of rows deleted by each statement
+     * @return the number of rows deleted, -1 if an error occurred
+     */
+    public long pruneSensorData(long rawCutoff, long minuteCutoff, long hourCutoff, int chunk) {
+        long deleted = 0;
+        int lines;
+
+        do {
+            lines = execute("pruneSensorData", "DELETE FROM `sensors_sample` WHERE time_ms < ? LIMIT " + chunk, rawCutoff);
+            if(lines < 0) return -1;
+            deleted += lines;
+        } while(lines == chunk);
+
+        long[] cutoffs = new long[] {minuteCutoff, hourCutoff};
+        SensorRollup.Resolution[] resolutions = SensorRollup.Resolution.values();
+        for(int i = 0; i < resolutions.length; i++) {
+            do {
+                lines = execute("pruneSensorData", "DELETE FROM `sensors_rollup` WHERE resolution = ? AND bucket < ? LIMIT " + chunk,
+                                resolutions[i].ordinal(), cutoffs[i]);
+                if(lines < 0) return -1;
+                deleted += lines;
+            } while(lines == chunk);
+        }
+
+        return deleted;
     }
 }
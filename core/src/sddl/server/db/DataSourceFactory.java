@@ -31,6 +31,10 @@ public class DataSourceFactory {
             mysqlDS.setURL(props.getProperty("MYSQL_DB_URL"));
             mysqlDS.setUser(props.getProperty("MYSQL_DB_USERNAME"));
             mysqlDS.setPassword(props.getProperty("MYSQL_DB_PASSWORD"));
+            // statements are prepared on server side, once per pooled connection
+            mysqlDS.setUseServerPrepStmts(true);
+            // batched inserts are sent as multi-row statements
+            mysqlDS.setRewriteBatchedStatements(true);
         } catch (IOException e) {
             System.err.println("Could not find db properties file: "+path);
             e.printStackTrace();
@@ -0,0 +1,66 @@
+package sddl.server.db;
+
+import com.mygdx.game.util.Common;
+
+import java.util.HashMap;
+
+/**
+ * Last inventory and worn equipments of a character
+ * persisted in database, used to write only the slots
+ * that changed between consecutive saves
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class PersistedInventory {
+
+    private int playerId; // the database id of the character
+    private HashMap<Integer, Long> items; // persisted items by packed inventory slot
+    private HashMap<Integer, Long> equips; // persisted equipments by equipment slot
+
+    /**
+     * Creates persisted inventory of a character
+     * @param playerId the database id of the character
+     */
+    public PersistedInventory(int playerId) {
+        this.playerId = playerId;
+        this.items = new HashMap<Integer, Long>();
+        this.equips = new HashMap<Integer, Long>();
+    }
+
+    /**
+     * Packs the item content of a slot in a long
+     * @param uid   the unique id of the item
+     * @param level the level of the item
+     * @return the packed slot content
+     */
+    public static long packSlot(int uid, int level) {
+        return ((long) uid << 32) | (level & 0xffffffffL);
+    }
+
+    /**
+     * Builds the map of slots from packed items or equipments
+     * @param packed the items or equipments packed as {uid, level, slot} triples
+     * @return the map of slots to packed slot contents
+     */
+    public static HashMap<Integer, Long> slots(int[] packed) {
+        HashMap<Integer, Long> slots = new HashMap<Integer, Long>(packed.length);
+        for(int k = 0; k + Common.PACKED_STRIDE <= packed.length; k += Common.PACKED_STRIDE)
+            slots.put(packed[k + 2], packSlot(packed[k], packed[k + 1]));
+        return slots;
+    }
+
+    /**
+     * Getters and setters
+     */
+
+    public int getPlayerId() {return playerId;}
+
+    public HashMap<Integer, Long> getItems() {return items;}
+
+    public void setItems(HashMap<Integer, Long> items) {this.items = items;}
+
+    public HashMap<Integer, Long> getEquips() {return equips;}
+
+    public void setEquips(HashMap<Integer, Long> equips) {this.equips = equips;}
+}
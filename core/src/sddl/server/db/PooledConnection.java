@@ -0,0 +1,136 @@
+package sddl.server.db;
+
+import com.mygdx.game.util.Config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Database connection held by the connection pool
+ * together with its cache of prepared statements.
+ * Statements are prepared once per connection and
+ * reused by every following call with the same sql
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class PooledConnection {
+
+    private Connection connection; // the underlying database connection
+    private LinkedHashMap<String, PreparedStatement> statements; // prepared statements cache (LRU)
+    private long lastUsed; // last time this connection was released to the pool
+    private boolean broken; // if an error has invalidated this connection
+
+    /**
+     * Wraps a database connection
+     * @param connection the connection to be pooled
+     */
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+        this.lastUsed = System.currentTimeMillis();
+        // access ordered map to evict least recently used statements
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if(size() > Config.svDbStatementCache) {
+                    closeStatement(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the prepared statement of the sql received,
+     * preparing it only if it is not cached yet
+     * @param sql   the sql of the statement
+     * @return the prepared statement ready to be bound
+     * @throws SQLException if statement could not be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if(stmt == null) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Gets the prepared statement of an insert that returns
+     * its generated keys, preparing it only if it is not cached yet
+     * @param sql   the sql of the insert statement
+     * @return the prepared statement ready to be bound
+     * @throws SQLException if statement could not be prepared
+     */
+    public PreparedStatement prepareInsert(String sql) throws SQLException {
+        String key = "#keys#" + sql; // distinct from the plain statement of same sql
+        PreparedStatement stmt = statements.get(key);
+        if(stmt == null) {
+            stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            statements.put(key, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Checks the health of this connection
+     * @return true if connection is still valid, false otherwise
+     */
+    boolean isValid() {
+        try {
+            return !broken && connection.isValid(Config.svDbValidationTimeout);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes all cached statements and the connection
+     */
+    void close() {
+        Iterator<PreparedStatement> it = statements.values().iterator();
+        while(it.hasNext())
+            closeStatement(it.next());
+        statements.clear();
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Could not close database connection");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes a statement ignoring errors
+     * @param stmt the statement to close
+     */
+    private static void closeStatement(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            System.err.println("Could not close prepared statement");
+        }
+    }
+
+    /**
+     * Getters and setters
+     */
+
+    public Connection getConnection() {return connection;}
+
+    long getLastUsed() {return lastUsed;}
+
+    void setLastUsed(long lastUsed) {this.lastUsed = lastUsed;}
+
+    boolean isBroken() {return broken;}
+
+    void setBroken(boolean broken) {this.broken = broken;}
+}
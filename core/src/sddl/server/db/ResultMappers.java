@@ -0,0 +1,107 @@
+package sddl.server.db;
+
+import com.mygdx.game.sensors.SensorCompact;
+import com.mygdx.game.states.game.standard.item.Item;
+import com.mygdx.game.states.game.standard.market.MarketItem;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+
+/**
+ * Result mappers that build game structures
+ * directly from database rows
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class ResultMappers {
+
+    /**
+     * Maps market rows joined with the seller name
+     */
+    public static final RowMapper<MarketItem> MARKET_ITEM = new RowMapper<MarketItem>() {
+        @Override
+        public MarketItem mapRow(ResultSet rs) throws SQLException {
+            MarketItem marketItem = new MarketItem(); // the market item
+            marketItem.setMid(rs.getInt("id")); // sets item market ID
+            marketItem.setUid(rs.getInt("uid")); // sets item unique ID
+            marketItem.setSeller(rs.getString("name")); // sets item seller name
+            marketItem.setLevel(rs.getInt("level")); // sets market item level
+            marketItem.setPrice(rs.getLong("price")); // sets market item price
+            marketItem.setQuality(Item.Quality.values()[rs.getInt("quality")]); // sets market item quality
+            marketItem.setSold(rs.getBoolean("sold")); // sets if item was sold already
+            return marketItem;
+        }
+    };
+
+    /**
+     * Maps sensor rows
+     */
+    public static final RowMapper<SensorCompact> SENSOR = new RowMapper<SensorCompact>() {
+        @Override
+        public SensorCompact mapRow(ResultSet rs) throws SQLException {
+            SensorCompact s = new SensorCompact();
+            s.setSensor_id(rs.getString("sensor_id"));
+            s.setSensor_type(rs.getString("sensor_type"));
+            s.setMission_id(rs.getInt("mission_id"));
+            s.setThumbnail_id(rs.getInt("thumbnail_id"));
+            s.setSensor_code(rs.getString("code"));
+            s.setN_inputs(rs.getInt("n_inputs"));
+            s.setInput_type(rs.getString("input_type"));
+            return s;
+        }
+    };
+
+    /**
+     * Maps market rows of items listed by a known seller
+     * @param seller the name of the seller of the listings
+     * @return the mapper of seller listings
+     */
+    public static RowMapper<MarketItem> marketListing(final String seller) {
+        return new RowMapper<MarketItem>() {
+            @Override
+            public MarketItem mapRow(ResultSet rs) throws SQLException {
+                MarketItem marketItem = new MarketItem(); // the market item
+                marketItem.setMid(rs.getInt("id")); // sets item market ID
+                marketItem.setUid(rs.getInt("uid")); // sets item unique ID
+                marketItem.setSeller(seller); // sets item seller name
+                marketItem.setLevel(rs.getInt("level")); // sets market item level
+                marketItem.setPrice(rs.getLong("price")); // sets market item price
+                marketItem.setQuality(Item.Quality.values()[rs.getInt("quality")]); // sets market item quality
+                marketItem.setSold(rs.getBoolean("sold")); // sets if item was sold and player can collect respective gold
+                return marketItem;
+            }
+        };
+    }
+
+    /**
+     * Fills mission map with mission storage rows
+     * @param missions the map of completed missions to fill
+     * @return the handler that fills the map
+     */
+    public static RowHandler missionsInto(final HashMap<Integer, Timestamp> missions) {
+        return new RowHandler() {
+            @Override
+            public boolean handleRow(ResultSet rs) throws SQLException {
+                missions.put(rs.getInt("mission_id"), rs.getTimestamp("timestamp"));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Maps sensor rollup rows
+     */
+    public static final RowMapper<SensorRollup> SENSOR_ROLLUP = new RowMapper<SensorRollup>() {
+        @Override
+        public SensorRollup mapRow(ResultSet rs) throws SQLException {
+            SensorRollup rollup = new SensorRollup(rs.getString("sensor_id"), rs.getString("sensor_name"),
+                                    rs.getInt("idx"), SensorRollup.Resolution.values()[rs.getInt("resolution")],
+                                    rs.getLong("bucket")); // the rollup of a bucket
+            rollup.add(rs.getLong("count"), rs.getDouble("sum"), rs.getDouble("min"), rs.getDouble("max"));
+            return rollup;
+        }
+    };
+}
@@ -0,0 +1,23 @@
+package sddl.server.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback that receives each row of a query
+ * result as it is read from the database,
+ * avoiding copies of the whole result
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public interface RowHandler {
+
+    /**
+     * Handles the current row of the result set
+     * @param rs    the result set positioned at the current row
+     * @return true to keep reading rows, false to stop reading
+     * @throws SQLException if row data could not be read
+     */
+    boolean handleRow(ResultSet rs) throws SQLException;
+}
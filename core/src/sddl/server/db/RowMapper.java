@@ -0,0 +1,24 @@
+package sddl.server.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set
+ * into an object of the given type
+ *
+ * @param <T> the type of the mapped object
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row of the result set
+     * @param rs    the result set positioned at the current row
+     * @return the object built from row data
+     * @throws SQLException if row data could not be read
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,172 @@
+package sddl.server.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Batch of sensor readings to be inserted at once in database.
+ * Readings are stored by column, numeric samples one value
+ * per row, so a batch is written with a single prepared
+ * statement per table and numeric values are never stored as text
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SensorBatch {
+
+    private static final int INITIAL_CAPACITY = 64; // initial number of rows of each column
+
+    /**
+     * Numeric sample columns
+     */
+    private String[] sampleSensor = new String[INITIAL_CAPACITY]; // the sensor id of each sample
+    private String[] sampleName = new String[INITIAL_CAPACITY]; // the sensor name (input) of each sample
+    private int[] sampleIndex = new int[INITIAL_CAPACITY]; // the index of each value in its reading
+    private double[] sampleValue = new double[INITIAL_CAPACITY]; // the value of each sample
+    private long[] sampleTime = new long[INITIAL_CAPACITY]; // the time in ms each sample was received
+    private int samples; // number of samples in batch
+
+    /**
+     * Text input columns
+     */
+    private String[] inputSensor = new String[INITIAL_CAPACITY]; // the sensor id of each input
+    private String[] inputType = new String[INITIAL_CAPACITY]; // the type of each input
+    private String[] inputName = new String[INITIAL_CAPACITY]; // the name of each input
+    private String[] inputData = new String[INITIAL_CAPACITY]; // the data of each input
+    private long[] inputTime = new long[INITIAL_CAPACITY]; // the time in ms each input was received
+    private int inputs; // number of text inputs in batch
+
+    /**
+     * Adds the values of a numeric reading, one sample per value.
+     * Values that are not finite numbers are skipped
+     * @param sensorId  the id of the sensor
+     * @param name      the sensor name (or input name) of the reading
+     * @param values    the values read
+     * @param time      the time in ms the reading was received
+     */
+    public void addSamples(String sensorId, String name, double[] values, long time) {
+        if(samples + values.length > sampleValue.length)
+            growSamples(samples + values.length);
+
+        for(int i = 0; i < values.length; i++) {
+            if(Double.isNaN(values[i]) || Double.isInfinite(values[i]))
+                continue; // values that are not numbers are not stored, index of others is kept
+            sampleSensor[samples] = sensorId;
+            sampleName[samples] = name;
+            sampleIndex[samples] = i;
+            sampleValue[samples] = values[i];
+            sampleTime[samples] = time;
+            samples++;
+        }
+    }
+
+    /**
+     * Adds a text input
+     * @param sensorId  the id of the sensor
+     * @param type      the type of the input
+     * @param name      the name of the input
+     * @param data      the data of the input
+     * @param time      the time in ms the input was received
+     */
+    public void addInput(String sensorId, String type, String name, String data, long time) {
+        if(inputs == inputData.length) {
+            int capacity = inputs * 2;
+            inputSensor = Arrays.copyOf(inputSensor, capacity);
+            inputType = Arrays.copyOf(inputType, capacity);
+            inputName = Arrays.copyOf(inputName, capacity);
+            inputData = Arrays.copyOf(inputData, capacity);
+            inputTime = Arrays.copyOf(inputTime, capacity);
+        }
+
+        inputSensor[inputs] = sensorId;
+        inputType[inputs] = type;
+        inputName[inputs] = name;
+        inputData[inputs] = data;
+        inputTime[inputs] = time;
+        inputs++;
+    }
+
+    /**
+     * Grows sample columns to hold at least the number of rows required
+     * @param required the number of rows required
+     */
+    private void growSamples(int required) {
+        int capacity = Math.max(sampleValue.length * 2, required);
+        sampleSensor = Arrays.copyOf(sampleSensor, capacity);
+        sampleName = Arrays.copyOf(sampleName, capacity);
+        sampleIndex = Arrays.copyOf(sampleIndex, capacity);
+        sampleValue = Arrays.copyOf(sampleValue, capacity);
+        sampleTime = Arrays.copyOf(sampleTime, capacity);
+    }
+
+    /**
+     * Aggregates the numeric samples of this batch by
+     * sensor value and time bucket of a resolution
+     * @param resolution the resolution of the rollups
+     * @return the rollups of the samples in batch
+     */
+    public ArrayList<SensorRollup> rollup(SensorRollup.Resolution resolution) {
+        LinkedHashMap<String, SensorRollup> rollups = new LinkedHashMap<String, SensorRollup>();
+
+        for(int i = 0; i < samples; i++) {
+            long bucket = resolution.bucketOf(sampleTime[i]);
+            String key = sampleSensor[i] + '\0' + sampleName[i] + '\0' + sampleIndex[i] + '\0' + bucket;
+            SensorRollup rollup = rollups.get(key);
+            if(rollup == null) {
+                rollup = new SensorRollup(sampleSensor[i], sampleName[i], sampleIndex[i], resolution, bucket);
+                rollups.put(key, rollup);
+            }
+            rollup.add(sampleValue[i]);
+        }
+
+        return new ArrayList<SensorRollup>(rollups.values());
+    }
+
+    /**
+     * Clears batch to be reused, keeping its capacity
+     */
+    public void clear() {
+        Arrays.fill(sampleSensor, 0, samples, null);
+        Arrays.fill(sampleName, 0, samples, null);
+        Arrays.fill(inputSensor, 0, inputs, null);
+        Arrays.fill(inputType, 0, inputs, null);
+        Arrays.fill(inputName, 0, inputs, null);
+        Arrays.fill(inputData, 0, inputs, null);
+        samples = 0;
+        inputs = 0;
+    }
+
+    /**
+     * @return true if batch has no rows, false otherwise
+     */
+    public boolean isEmpty() {return samples == 0 && inputs == 0;}
+
+    /**
+     * Getters
+     */
+
+    public int getSamples() {return samples;}
+
+    public String getSampleSensor(int i) {return sampleSensor[i];}
+
+    public String getSampleName(int i) {return sampleName[i];}
+
+    public int getSampleIndex(int i) {return sampleIndex[i];}
+
+    public double getSampleValue(int i) {return sampleValue[i];}
+
+    public long getSampleTime(int i) {return sampleTime[i];}
+
+    public int getInputs() {return inputs;}
+
+    public String getInputSensor(int i) {return inputSensor[i];}
+
+    public String getInputType(int i) {return inputType[i];}
+
+    public String getInputName(int i) {return inputName[i];}
+
+    public String getInputData(int i) {return inputData[i];}
+
+    public long getInputTime(int i) {return inputTime[i];}
+}
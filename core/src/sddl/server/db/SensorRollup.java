@@ -0,0 +1,112 @@
+package sddl.server.db;
+
+/**
+ * Aggregate of the samples of a sensor value within a
+ * time bucket, kept in database at minute and hour resolutions
+ * so series can be queried without scanning raw samples
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class SensorRollup {
+
+    // Resolutions of rollups kept in database
+    public enum Resolution {
+        MINUTE(60000L), HOUR(3600000L);
+
+        private final long span; // time span of each bucket in ms
+
+        Resolution(long span) {this.span = span;}
+
+        /**
+         * @return the time span of each bucket in ms
+         */
+        public long getSpan() {return span;}
+
+        /**
+         * @param time the time in ms
+         * @return the start time in ms of the bucket that contains time
+         */
+        public long bucketOf(long time) {return time - time % span;}
+    }
+
+    private String sensorId; // the id of the sensor
+    private String sensorName; // the sensor name (or input name)
+    private int index; // the index of the value in sensor readings
+    private Resolution resolution; // the resolution of the rollup
+    private long bucket; // the start time in ms of the bucket
+    private long count; // the number of samples aggregated
+    private double sum; // the sum of samples aggregated
+    private double min; // the minimum sample aggregated
+    private double max; // the maximum sample aggregated
+
+    /**
+     * Creates an empty rollup of a bucket
+     * @param sensorId      the id of the sensor
+     * @param sensorName    the sensor name (or input name)
+     * @param index         the index of the value in sensor readings
+     * @param resolution    the resolution of the rollup
+     * @param bucket        the start time in ms of the bucket
+     */
+    public SensorRollup(String sensorId, String sensorName, int index, Resolution resolution, long bucket) {
+        this.sensorId = sensorId;
+        this.sensorName = sensorName;
+        this.index = index;
+        this.resolution = resolution;
+        this.bucket = bucket;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Aggregates a sample into this rollup
+     * @param value the sample value
+     */
+    public void add(double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Aggregates stored values into this rollup
+     * @param count the number of samples
+     * @param sum   the sum of samples
+     * @param min   the minimum sample
+     * @param max   the maximum sample
+     */
+    public void add(long count, double sum, double min, double max) {
+        this.count += count;
+        this.sum += sum;
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+    }
+
+    /**
+     * @return the average of samples aggregated, NaN if there are none
+     */
+    public double getAverage() {return count > 0 ? sum / count : Double.NaN;}
+
+    /**
+     * Getters
+     */
+
+    public String getSensorId() {return sensorId;}
+
+    public String getSensorName() {return sensorName;}
+
+    public int getIndex() {return index;}
+
+    public Resolution getResolution() {return resolution;}
+
+    public long getBucket() {return bucket;}
+
+    public long getCount() {return count;}
+
+    public double getSum() {return sum;}
+
+    public double getMin() {return min;}
+
+    public double getMax() {return max;}
+}
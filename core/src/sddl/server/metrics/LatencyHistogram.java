@@ -0,0 +1,121 @@
+package sddl.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with bounded relative error,
+ * in the manner of HdrHistogram. Values are counted in buckets
+ * of powers of two, each split in {@link #SUB_BUCKETS} linear
+ * sub-buckets, so any value is recorded with at most ~6% error
+ * using a fixed amount of memory, and recording is a single
+ * atomic increment that never blocks the recording thread
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4; // bits of precision of each power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // sub-buckets of each power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS; // buckets covering all positive longs
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // number of values of each bucket
+    private final AtomicLong count = new AtomicLong(); // number of values recorded
+    private final AtomicLong sum = new AtomicLong(); // sum of values recorded
+    private final AtomicLong max = new AtomicLong(); // highest value recorded
+
+    /**
+     * Records a value
+     * @param value the value to record, negative values are recorded as zero
+     */
+    public void record(long value) {
+        if(value < 0)
+            value = 0;
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * Gets the bucket index of a value
+     * @param value the value, not negative
+     * @return the index of bucket that counts the value
+     */
+    static int indexOf(long value) {
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value counted by a bucket
+     * @param index the index of bucket
+     * @return the highest value counted by bucket
+     */
+    static long highestOf(int index) {
+        if(index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Gets the value at a percentile of recorded values
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at percentile (never above the highest value recorded), 0 if there are no values
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if(total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= target)
+                return Math.min(highestOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {return count.get();}
+
+    /**
+     * @return the mean of values recorded, 0 if there are no values
+     */
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+
+    /**
+     * @return the highest value recorded
+     */
+    public long getMax() {return max.get();}
+
+    /**
+     * Appends a summary of recorded values to a report
+     * @param report the report to append summary
+     */
+    public void summarize(StringBuilder report) {
+        report.append("count=").append(getCount());
+        report.append(" mean=").append(String.format("%.1f", getMean()));
+        report.append(" p50=").append(getPercentile(50));
+        report.append(" p90=").append(getPercentile(90));
+        report.append(" p99=").append(getPercentile(99));
+        report.append(" p999=").append(getPercentile(99.9));
+        report.append(" max=").append(getMax());
+    }
+}
@@ -0,0 +1,263 @@
+package sddl.server.metrics;
+
+import com.mygdx.game.messages.MessageContent;
+import com.mygdx.game.util.Config;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+/**
+ * Server metrics registry. Records latency histograms of each
+ * message type and of each database operation, bytes received
+ * and sent, and gauges of queue depths and online players.
+ * Metrics are logged periodically and exposed over JMX and,
+ * if a port is configured, over a local HTTP endpoint.
+ * Latencies are recorded in microseconds
+ * Pattern:
+ * Singleton
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * A value sampled when metrics are read (e.g. a queue depth)
+     */
+    public interface Gauge {
+        long value();
+    }
+
+    private static Metrics instance = null; // the singleton instance
+
+    private EnumMap<MessageContent.Type, LatencyHistogram> handleTimes; // time handling each message type
+    private EnumMap<MessageContent.Type, LatencyHistogram> totalTimes; // time from dispatch to handled of each type
+    private ConcurrentHashMap<String, LatencyHistogram> dbTimes; // time of each database operation
+    private ConcurrentHashMap<String, AtomicLong> dbErrors; // number of errors of each database operation
+    private ConcurrentSkipListMap<String, Gauge> gauges; // registered gauges by name
+
+    private AtomicLong bytesIn = new AtomicLong(); // number of bytes received
+    private AtomicLong bytesOut = new AtomicLong(); // number of bytes sent
+    private AtomicLong messagesIn = new AtomicLong(); // number of messages received
+    private AtomicLong messagesOut = new AtomicLong(); // number of messages sent
+
+    private HttpServer httpServer; // local http endpoint, null if not started
+
+    /**
+     * Creates empty metrics of every message type
+     */
+    private Metrics() {
+        handleTimes = new EnumMap<MessageContent.Type, LatencyHistogram>(MessageContent.Type.class);
+        totalTimes = new EnumMap<MessageContent.Type, LatencyHistogram>(MessageContent.Type.class);
+        for(MessageContent.Type type : MessageContent.Type.values()) {
+            handleTimes.put(type, new LatencyHistogram());
+            totalTimes.put(type, new LatencyHistogram());
+        }
+        dbTimes = new ConcurrentHashMap<String, LatencyHistogram>();
+        dbErrors = new ConcurrentHashMap<String, AtomicLong>();
+        gauges = new ConcurrentSkipListMap<String, Gauge>();
+    }
+
+    /**
+     * singleton get instance method
+     * @return the singleton instance
+     */
+    public static synchronized Metrics getInstance() {
+        if(instance == null)
+            instance = new Metrics();
+
+        return instance;
+    }
+
+    /**
+     * Records the latencies of a handled message
+     * @param type          the type of message
+     * @param dispatched    the time in ns the message was dispatched to a worker
+     * @param started       the time in ns the worker started handling it
+     * @param finished      the time in ns the worker finished handling it
+     */
+    public void recordMessage(MessageContent.Type type, long dispatched, long started, long finished) {
+        handleTimes.get(type).record(TimeUnit.NANOSECONDS.toMicros(finished - started));
+        totalTimes.get(type).record(TimeUnit.NANOSECONDS.toMicros(finished - dispatched));
+    }
+
+    /**
+     * Records a database operation that started at a given time
+     * @param op    the name of the database operation
+     * @param start the time in ns the operation started
+     * @param ok    true if operation succeeded, false if an error occurred
+     */
+    public void recordDb(String op, long start, boolean ok) {
+        LatencyHistogram histogram = dbTimes.get(op);
+        if(histogram == null) {
+            dbTimes.putIfAbsent(op, new LatencyHistogram());
+            histogram = dbTimes.get(op);
+        }
+        histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+        if(!ok) {
+            AtomicLong errors = dbErrors.get(op);
+            if(errors == null) {
+                dbErrors.putIfAbsent(op, new AtomicLong());
+                errors = dbErrors.get(op);
+            }
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a message received
+     * @param bytes the size of message in bytes
+     */
+    public void recordBytesIn(int bytes) {
+        messagesIn.incrementAndGet();
+        bytesIn.addAndGet(bytes);
+    }
+
+    /**
+     * Records a message sent
+     * @param bytes the size of message in bytes
+     */
+    public void recordBytesOut(int bytes) {
+        messagesOut.incrementAndGet();
+        bytesOut.addAndGet(bytes);
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge of same name
+     * @param name  the name of gauge
+     * @param gauge the gauge to sample
+     */
+    public void registerGauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Starts JMX and local HTTP endpoints, as configured
+     */
+    public synchronized void startEndpoints() {
+        if(Config.svMetricsJmx) {
+            try {
+                ObjectName name = new ObjectName("sddl.server:type=Metrics");
+                if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            } catch (Exception e) {
+                System.err.println("Could not register metrics in JMX: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        if(Config.svMetricsHttpPort > 0 && httpServer == null) {
+            try {
+                // only reachable from server machine
+                httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"),
+                                                Config.svMetricsHttpPort), 0);
+                httpServer.createContext("/metrics", new HttpHandler() {
+                    @Override
+                    public void handle(HttpExchange exchange) throws IOException {
+                        byte[] body = getReport().getBytes("UTF-8");
+                        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                        exchange.sendResponseHeaders(200, body.length);
+                        OutputStream out = exchange.getResponseBody();
+                        try {
+                            out.write(body);
+                        } finally {
+                            out.close();
+                        }
+                    }
+                });
+                httpServer.start();
+                System.out.println("Metrics available at http://127.0.0.1:" + Config.svMetricsHttpPort + "/metrics");
+            } catch (IOException e) {
+                System.err.println("Could not start metrics http endpoint: " + e.getMessage());
+                e.printStackTrace();
+                httpServer = null;
+            }
+        }
+    }
+
+    /**
+     * Prints metrics report in console
+     */
+    public void printStats() {
+        System.out.println(getReport());
+    }
+
+    /**
+     * Builds the text report of all metrics
+     * @return the report of all metrics, latencies in microseconds
+     */
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder("=== Server Metrics (us) ===\n");
+
+        report.append("traffic: in ").append(messagesIn.get()).append(" msgs ").append(bytesIn.get()).append(" bytes");
+        report.append(" out ").append(messagesOut.get()).append(" msgs ").append(bytesOut.get()).append(" bytes\n");
+
+        Iterator<Map.Entry<String, Long>> git = getGauges().entrySet().iterator();
+        while(git.hasNext()) {
+            Map.Entry<String, Long> gauge = git.next();
+            report.append("gauge ").append(gauge.getKey()).append(": ").append(gauge.getValue()).append("\n");
+        }
+
+        for(MessageContent.Type type : MessageContent.Type.values()) {
+            LatencyHistogram handle = handleTimes.get(type);
+            if(handle.getCount() == 0)
+                continue;
+            report.append("msg ").append(type).append(" handle: ");
+            handle.summarize(report);
+            report.append("\nmsg ").append(type).append(" total: ");
+            totalTimes.get(type).summarize(report);
+            report.append("\n");
+        }
+
+        Iterator<Map.Entry<String, LatencyHistogram>> dit =
+                new TreeMap<String, LatencyHistogram>(dbTimes).entrySet().iterator();
+        while(dit.hasNext()) {
+            Map.Entry<String, LatencyHistogram> db = dit.next();
+            AtomicLong errors = dbErrors.get(db.getKey());
+            report.append("db ").append(db.getKey()).append(": ");
+            db.getValue().summarize(report);
+            report.append(" errors=").append(errors == null ? 0 : errors.get()).append("\n");
+        }
+
+        return report.toString();
+    }
+
+    @Override
+    public long getBytesIn() {return bytesIn.get();}
+
+    @Override
+    public long getBytesOut() {return bytesOut.get();}
+
+    @Override
+    public Map<String, Long> getGauges() {
+        TreeMap<String, Long> values = new TreeMap<String, Long>();
+        Iterator<Map.Entry<String, Gauge>> it = gauges.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<String, Gauge> gauge = it.next();
+            try {
+                values.put(gauge.getKey(), gauge.getValue().value());
+            } catch (Exception e) {
+                System.err.println("Could not sample gauge " + gauge.getKey() + ": " + e.getMessage());
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,32 @@
+package sddl.server.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of server metrics, exposed over JMX
+ *
+ * @author  Pedro Sampaio
+ * @since   2.1
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the full text report of server metrics
+     */
+    String getReport();
+
+    /**
+     * @return the number of bytes received
+     */
+    long getBytesIn();
+
+    /**
+     * @return the number of bytes sent
+     */
+    long getBytesOut();
+
+    /**
+     * @return the current value of each gauge, by name
+     */
+    Map<String, Long> getGauges();
+}
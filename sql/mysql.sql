@@ -6,6 +6,8 @@ DROP TABLE IF EXISTS `market`;
 DROP TABLE IF EXISTS `mission_storage`;
 DROP TABLE IF EXISTS `sensors`;
 DROP TABLE IF EXISTS `sensors_input`;
+DROP TABLE IF EXISTS `sensors_sample`;
+DROP TABLE IF EXISTS `sensors_rollup`;
 
 CREATE TABLE `accounts`
 (
@@ -78,6 +80,8 @@ CREATE TABLE `market`
 	`sold` BOOLEAN NOT NULL DEFAULT FALSE,
 	PRIMARY KEY (`id`),
 	KEY (`player_id`),
+	KEY `market_item` (`sold`, `uid`, `quality`, `level`, `price`),
+	KEY `market_price` (`sold`, `price`),
 	FOREIGN KEY (`player_id`) REFERENCES `players`(`id`) ON DELETE CASCADE
 ) ENGINE = InnoDB;
 
@@ -121,4 +125,32 @@ CREATE TABLE `sensors_input`
 	PRIMARY KEY (`id`),
 	KEY (`sensor_id`),
 	FOREIGN KEY (`sensor_id`) REFERENCES `sensors`(`sensor_id`) ON DELETE CASCADE
-) ENGINE = InnoDB;
\ No newline at end of file
+) ENGINE = InnoDB;
+
+CREATE TABLE `sensors_sample`
+(
+	`id` BIGINT NOT NULL AUTO_INCREMENT,
+	`sensor_id` VARCHAR(255) NOT NULL,
+	`sensor_name` VARCHAR(255) NOT NULL,
+	`idx` INT NOT NULL DEFAULT 0,
+	`value` DOUBLE NOT NULL,
+	`time_ms` BIGINT NOT NULL,
+	PRIMARY KEY (`id`),
+	KEY `sample_series` (`sensor_id`, `sensor_name`, `time_ms`),
+	KEY `sample_time` (`time_ms`)
+) ENGINE = InnoDB;
+
+CREATE TABLE `sensors_rollup`
+(
+	`sensor_id` VARCHAR(255) NOT NULL,
+	`sensor_name` VARCHAR(255) NOT NULL,
+	`idx` INT NOT NULL DEFAULT 0,
+	`resolution` TINYINT NOT NULL,
+	`bucket` BIGINT NOT NULL,
+	`count` BIGINT NOT NULL DEFAULT 0,
+	`sum` DOUBLE NOT NULL DEFAULT 0,
+	`min` DOUBLE NOT NULL,
+	`max` DOUBLE NOT NULL,
+	PRIMARY KEY (`sensor_id`, `sensor_name`, `idx`, `resolution`, `bucket`),
+	KEY `rollup_bucket` (`resolution`, `bucket`)
+) ENGINE = InnoDB;